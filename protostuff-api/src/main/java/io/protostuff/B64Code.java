@@ -242,7 +242,7 @@ public final class B64Code
                     final byte[] encoded = new byte[outputSize];
                     encode(input, inOffset, inLen, encoded, 0);
                     // return a fresh buffer.
-                    return new LinkedBuffer(session.nextBufferSize,
+                    return session.newBuffer(
                             new LinkedBuffer(encoded, 0, outputSize, lb));
                 }
 
@@ -280,7 +280,7 @@ public final class B64Code
                 final byte[] encoded = new byte[outputSize];
                 encode(input, inOffset, inLen, encoded, 0);
                 // return a fresh buffer.
-                return new LinkedBuffer(session.nextBufferSize,
+                return session.newBuffer(
                         new LinkedBuffer(encoded, 0, outputSize, lb));
             }
 
@@ -0,0 +1,18 @@
+package io.protostuff;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a {@code String} field (or all the {@code String} fields of a class) whose values repeat across messages (e.g
+ * country codes or statuses), so that the runtime schemas read them through a shared {@link StringCache} if the input
+ * is a {@link StringCacheInput}. On a {@code Map} field, its {@code String} keys and values are cached.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ ElementType.FIELD, ElementType.TYPE })
+public @interface CachedString
+{
+    boolean value() default true;
+}
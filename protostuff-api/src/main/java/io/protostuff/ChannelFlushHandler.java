@@ -0,0 +1,86 @@
+package io.protostuff;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.GatheringByteChannel;
+
+/**
+ * A {@link WriteSession.FlushHandler} that flushes a streamed session into a (blocking) {@link GatheringByteChannel}
+ * instead of its {@link java.io.OutputStream}. Two arrays flushed together (a full buffer and a large value) are written
+ * with a single gathering write. The rest of the message is written with {@link #writeTo(LinkedBuffer)}.
+ * <p>
+ * A streamed session cannot wait for a non-blocking channel in the middle of a message, so a write that does not
+ * accept any byte throws {@link java.nio.channels.IllegalBlockingModeException} (instead of spinning). For a
+ * non-blocking channel, buffer the message fully and use {@link LinkedBuffer#tryWriteTo(GatheringByteChannel,
+ * LinkedBuffer)}.
+ */
+public final class ChannelFlushHandler implements WriteSession.FlushHandler
+{
+
+    private final GatheringByteChannel channel;
+    private final OutputStream out;
+
+    public ChannelFlushHandler(GatheringByteChannel channel)
+    {
+        this.channel = channel;
+        out = Channels.newOutputStream(channel);
+    }
+
+    /**
+     * Returns the channel written to.
+     */
+    public GatheringByteChannel getChannel()
+    {
+        return channel;
+    }
+
+    /**
+     * Returns a stream over the channel, for the {@link WriteSession} that uses this handler (all its flushes go through
+     * this handler anyway).
+     */
+    public OutputStream getOutputStream()
+    {
+        return out;
+    }
+
+    @Override
+    public int flush(WriteSession session, byte[] buf, int offset, int len)
+            throws IOException
+    {
+        LinkedBuffer.writeFully(channel, new ByteBuffer[] {
+                ByteBuffer.wrap(buf, offset, len) });
+        return offset;
+    }
+
+    @Override
+    public int flush(WriteSession session, byte[] buf, int offset, int len,
+            byte[] next, int nextoffset, int nextlen) throws IOException
+    {
+        LinkedBuffer.writeFully(channel, new ByteBuffer[] {
+                ByteBuffer.wrap(buf, offset, len),
+                ByteBuffer.wrap(next, nextoffset, nextlen) });
+        return offset;
+    }
+
+    @Override
+    public int flush(WriteSession session, LinkedBuffer lb, byte[] buf, int offset,
+            int len) throws IOException
+    {
+        LinkedBuffer.writeFully(channel, new ByteBuffer[] {
+                ByteBuffer.wrap(buf, offset, len) });
+        return lb.start;
+    }
+
+    /**
+     * Writes the contents of the buffers (the rest of a message that was not flushed yet) with a single gathering
+     * write.
+     * 
+     * @return the number of bytes written.
+     */
+    public int writeTo(LinkedBuffer node) throws IOException
+    {
+        return LinkedBuffer.writeTo(channel, node);
+    }
+}
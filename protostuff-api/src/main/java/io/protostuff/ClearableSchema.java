@@ -0,0 +1,15 @@
+package io.protostuff;
+
+/**
+ * A schema that can reset a message, so that the message (and what it holds) can be reused as the target of another
+ * {@link #mergeFrom(Input, Object) merge} instead of allocating a new one.
+ */
+public interface ClearableSchema<T> extends Schema<T>
+{
+
+    /**
+     * Resets the fields of the {@code message} to their state on a {@link #newMessage() new message}.
+     */
+    public void clear(T message);
+
+}
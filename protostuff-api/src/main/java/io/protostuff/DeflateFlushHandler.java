@@ -0,0 +1,216 @@
+package io.protostuff;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+
+/**
+ * A {@link WriteSession.FlushHandler} that deflates the bytes flushed by a streamed session (and the buffers written
+ * with {@link #writeTo(LinkedBuffer)}) into an {@link OutputStream}, so that serialization and compression run in one
+ * pass. The deflated bytes are written in frames, each prefixed with its (varint32) size, and a frame of size zero ends
+ * the stream (see {@link #finish()}). The {@code InflatingInputStream} of protostuff-core reads them back.
+ * <p>
+ * The deflate stream is flushed at the end of every message so that a reader can decode a message as soon as it is
+ * written. The {@link Deflater} is acquired from (and released to) a per-thread pool, and a handler can write another
+ * stream after {@link #finish()}.
+ * <p>
+ * Like a {@link WriteSession}, a handler must not be used by more than one thread at a time.
+ */
+public final class DeflateFlushHandler implements WriteSession.FlushHandler
+{
+
+    public static final int DEFAULT_BLOCK_SIZE = 32 * 1024;
+
+    /**
+     * Room for the varint32 size of a frame.
+     */
+    private static final int HEADER_SIZE = 5;
+
+    private static final ThreadLocal<Deflater> IDLE = new ThreadLocal<>();
+
+    private final OutputStream out;
+    private final int level;
+    private final byte[] frame;
+    private final byte[] delimiter = new byte[HEADER_SIZE];
+    private int count;
+    private Deflater deflater;
+
+    public DeflateFlushHandler(OutputStream out)
+    {
+        this(out, Deflater.DEFAULT_COMPRESSION, DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * Creates a handler that deflates with the given {@code level} and writes frames of at most {@code blockSize}
+     * deflated bytes.
+     */
+    public DeflateFlushHandler(OutputStream out, int level, int blockSize)
+    {
+        if (blockSize < 1)
+            throw new IllegalArgumentException("blockSize must be positive.");
+
+        this.out = out;
+        this.level = level;
+        frame = new byte[HEADER_SIZE + blockSize];
+    }
+
+    /**
+     * Returns the stream that the frames are written to.
+     */
+    public OutputStream getOutputStream()
+    {
+        return out;
+    }
+
+    @Override
+    public int flush(WriteSession session, byte[] buf, int offset, int len)
+            throws IOException
+    {
+        deflate(buf, offset, len, Deflater.NO_FLUSH);
+        return offset;
+    }
+
+    @Override
+    public int flush(WriteSession session, byte[] buf, int offset, int len,
+            byte[] next, int nextoffset, int nextlen) throws IOException
+    {
+        deflate(buf, offset, len, Deflater.NO_FLUSH);
+        deflate(next, nextoffset, nextlen, Deflater.NO_FLUSH);
+        return offset;
+    }
+
+    @Override
+    public int flush(WriteSession session, LinkedBuffer lb, byte[] buf, int offset,
+            int len) throws IOException
+    {
+        deflate(buf, offset, len, Deflater.NO_FLUSH);
+        return lb.start;
+    }
+
+    /**
+     * Deflates the contents of the buffers (the rest of a message) and flushes the deflate stream, writing the pending
+     * frame.
+     *
+     * @return the number of bytes deflated.
+     */
+    public int writeTo(LinkedBuffer node) throws IOException
+    {
+        int contentSize = 0, len;
+        do
+        {
+            if ((len = node.offset - node.start) > 0)
+            {
+                deflate(node.buffer, node.start, len, Deflater.NO_FLUSH);
+                contentSize += len;
+            }
+        } while ((node = node.next) != null);
+
+        deflate(delimiter, 0, 0, Deflater.SYNC_FLUSH);
+        writeFrame();
+
+        return contentSize;
+    }
+
+    /**
+     * Deflates the {@code size} (varint32) and then the contents of the buffers (the message), flushing the deflate
+     * stream.
+     *
+     * @return the size of the message.
+     */
+    public int writeDelimitedTo(LinkedBuffer node, int size) throws IOException
+    {
+        int len = 0;
+        for (int value = size;; value >>>= 7)
+        {
+            if ((value & ~0x7F) == 0)
+            {
+                delimiter[len++] = (byte) value;
+                break;
+            }
+            delimiter[len++] = (byte) ((value & 0x7F) | 0x80);
+        }
+
+        deflate(delimiter, 0, len, Deflater.NO_FLUSH);
+        writeTo(node);
+
+        return size;
+    }
+
+    /**
+     * Writes the pending frame and the end of the stream, and releases the deflater. The handler can be used for
+     * another stream afterwards.
+     */
+    public void finish() throws IOException
+    {
+        if (deflater != null)
+        {
+            deflate(delimiter, 0, 0, Deflater.SYNC_FLUSH);
+            writeFrame();
+            release(deflater);
+            deflater = null;
+        }
+
+        out.write(0);
+    }
+
+    private void deflate(byte[] buf, int offset, int len, int flush) throws IOException
+    {
+        Deflater deflater = this.deflater;
+        if (deflater == null)
+            this.deflater = deflater = acquire(level);
+
+        deflater.setInput(buf, offset, len);
+        for (final int limit = frame.length - HEADER_SIZE;;)
+        {
+            count += deflater.deflate(frame, HEADER_SIZE + count, limit - count, flush);
+            if (count == limit)
+                writeFrame();
+            else if (deflater.needsInput())
+                break;
+        }
+    }
+
+    private void writeFrame() throws IOException
+    {
+        if (count == 0)
+            return;
+
+        // the varint32 size right before the deflated bytes
+        int start = HEADER_SIZE - 1;
+        for (int value = count; value > 0x7F; value >>>= 7)
+            start--;
+
+        for (int i = start, value = count;; value >>>= 7)
+        {
+            if ((value & ~0x7F) == 0)
+            {
+                frame[i] = (byte) value;
+                break;
+            }
+            frame[i++] = (byte) ((value & 0x7F) | 0x80);
+        }
+
+        out.write(frame, start, HEADER_SIZE - start + count);
+        count = 0;
+    }
+
+    static Deflater acquire(int level)
+    {
+        final Deflater deflater = IDLE.get();
+        if (deflater == null)
+            return new Deflater(level, true);
+
+        IDLE.set(null);
+        deflater.setLevel(level);
+        return deflater;
+    }
+
+    static void release(Deflater deflater)
+    {
+        deflater.reset();
+        if (IDLE.get() == null)
+            IDLE.set(deflater);
+        else
+            deflater.end();
+    }
+}
@@ -0,0 +1,448 @@
+package io.protostuff;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+
+import io.protostuff.StringSerializer.STRING;
+
+/**
+ * Caches the encoded field names (tokens) of each {@link Schema} instance, so that the text outputs do not encode the
+ * same names on every message. The tokens are keyed by the identity of the schema (not its class), so that the
+ * filtered and view schemas of a type have their own tokens. A schema is only weakly referenced.
+ * <p>
+ * The {@link Table} of a schema is looked up once (e.g. when the output switches schemas), then its tokens are read
+ * without locking. A table also indexes the field numbers by name (for the text inputs), matching the names by
+ * reference first since the parsers usually return canonical (interned) names. The names can also be matched as utf8
+ * bytes, so that an input does not decode the known names to strings.
+ */
+public abstract class FieldNameTokens<V>
+{
+
+    /**
+     * The field numbers above this are encoded on every use (not cached).
+     */
+    static final int MAX_CACHED_FIELD_NUMBER = 4096;
+
+    /**
+     * The names indexed by a table, at most (the unknown ones are never indexed).
+     */
+    static final int MAX_INDEXED_NAMES = 1024;
+
+    /**
+     * An immutable open-addressing index of the field numbers by name.
+     */
+    static final class NameIndex
+    {
+        static final NameIndex EMPTY = new NameIndex(new String[0], new int[0], 0);
+
+        final String[] names;
+        final int[] numbers;
+        final int size;
+
+        NameIndex(String[] names, int[] numbers, int size)
+        {
+            this.names = names;
+            this.numbers = numbers;
+            this.size = size;
+        }
+
+        /**
+         * Returns the field number or -1 if the name is not indexed.
+         */
+        int get(String name)
+        {
+            final String[] names = this.names;
+            if (names.length == 0)
+                return -1;
+
+            final int mask = names.length - 1;
+            for (int i = hash(name) & mask;; i = (i + 1) & mask)
+            {
+                final String n = names[i];
+                if (n == null)
+                    return -1;
+
+                if (n == name || n.equals(name))
+                    return numbers[i];
+            }
+        }
+
+        /**
+         * Returns a copy with the name added.
+         */
+        NameIndex add(String name, int number)
+        {
+            // load factor of 1/2
+            int capacity = Math.max(16, names.length);
+            while (size + 1 > capacity >>> 1)
+                capacity <<= 1;
+
+            final String[] newNames = new String[capacity];
+            final int[] newNumbers = new int[capacity];
+            for (int i = 0; i < names.length; i++)
+            {
+                if (names[i] != null)
+                    put(newNames, newNumbers, names[i], numbers[i]);
+            }
+            put(newNames, newNumbers, name, number);
+
+            return new NameIndex(newNames, newNumbers, size + 1);
+        }
+
+        private static void put(String[] names, int[] numbers, String name, int number)
+        {
+            final int mask = names.length - 1;
+            int i = hash(name) & mask;
+            while (names[i] != null)
+                i = (i + 1) & mask;
+
+            names[i] = name;
+            numbers[i] = number;
+        }
+
+        private static int hash(String name)
+        {
+            final int h = name.hashCode();
+            return h ^ (h >>> 16);
+        }
+    }
+
+    /**
+     * An immutable open-addressing index of the field numbers by utf8 name.
+     */
+    static final class Utf8NameIndex
+    {
+        static final Utf8NameIndex EMPTY = new Utf8NameIndex(new byte[0][], new int[0], 0);
+
+        final byte[][] names;
+        final int[] numbers;
+        final int size;
+
+        Utf8NameIndex(byte[][] names, int[] numbers, int size)
+        {
+            this.names = names;
+            this.numbers = numbers;
+            this.size = size;
+        }
+
+        /**
+         * Returns the field number or -1 if the name is not indexed.
+         */
+        int get(byte[] name, int offset, int len)
+        {
+            final byte[][] names = this.names;
+            if (names.length == 0)
+                return -1;
+
+            final int mask = names.length - 1;
+            for (int i = hash(name, offset, len) & mask;; i = (i + 1) & mask)
+            {
+                final byte[] n = names[i];
+                if (n == null)
+                    return -1;
+
+                if (equals(n, name, offset, len))
+                    return numbers[i];
+            }
+        }
+
+        /**
+         * Returns a copy with the name added.
+         */
+        Utf8NameIndex add(byte[] name, int number)
+        {
+            // load factor of 1/2
+            int capacity = Math.max(16, names.length);
+            while (size + 1 > capacity >>> 1)
+                capacity <<= 1;
+
+            final byte[][] newNames = new byte[capacity][];
+            final int[] newNumbers = new int[capacity];
+            for (int i = 0; i < names.length; i++)
+            {
+                if (names[i] != null)
+                    put(newNames, newNumbers, names[i], numbers[i]);
+            }
+            put(newNames, newNumbers, name, number);
+
+            return new Utf8NameIndex(newNames, newNumbers, size + 1);
+        }
+
+        private static void put(byte[][] names, int[] numbers, byte[] name, int number)
+        {
+            final int mask = names.length - 1;
+            int i = hash(name, 0, name.length) & mask;
+            while (names[i] != null)
+                i = (i + 1) & mask;
+
+            names[i] = name;
+            numbers[i] = number;
+        }
+
+        private static boolean equals(byte[] n, byte[] name, int offset, int len)
+        {
+            if (n.length != len)
+                return false;
+
+            for (int i = 0; i < len; i++)
+            {
+                if (n[i] != name[offset + i])
+                    return false;
+            }
+
+            return true;
+        }
+
+        private static int hash(byte[] name, int offset, int len)
+        {
+            int h = 0;
+            for (int i = offset, limit = offset + len; i < limit; i++)
+                h = 31 * h + name[i];
+
+            return h ^ (h >>> 16);
+        }
+    }
+
+    /**
+     * The tokens of a schema, filled lazily.
+     */
+    public static final class Table<V> extends WeakReference<Schema<?>>
+    {
+        private static final Object[] EMPTY = new Object[0];
+
+        final int hash;
+        final FieldNameTokens<V> owner;
+        volatile Table<V> next;
+        private volatile Object[] tokens = EMPTY;
+        volatile NameIndex names = NameIndex.EMPTY;
+        volatile Utf8NameIndex utf8Names = Utf8NameIndex.EMPTY;
+
+        Table(Schema<?> schema, ReferenceQueue<Schema<?>> queue, int hash,
+                FieldNameTokens<V> owner, Table<V> next)
+        {
+            super(schema, queue);
+            this.hash = hash;
+            this.owner = owner;
+            this.next = next;
+        }
+
+        /**
+         * Returns the token of the field.
+         */
+        @SuppressWarnings("unchecked")
+        public V get(int fieldNumber)
+        {
+            final Object[] tokens = this.tokens;
+            if (fieldNumber < tokens.length)
+            {
+                final Object token = tokens[fieldNumber];
+                if (token != null)
+                    return (V) token;
+            }
+
+            return fill(fieldNumber);
+        }
+
+        @SuppressWarnings("unchecked")
+        private synchronized V fill(int fieldNumber)
+        {
+            Object[] tokens = this.tokens;
+            if (fieldNumber < tokens.length && tokens[fieldNumber] != null)
+                return (V) tokens[fieldNumber];
+
+            final V token = owner.encode(schema().getFieldName(fieldNumber));
+            if (fieldNumber > MAX_CACHED_FIELD_NUMBER)
+                return token;
+
+            // copy on write
+            tokens = Arrays.copyOf(tokens, Math.max(tokens.length, fieldNumber + 1));
+            tokens[fieldNumber] = token;
+            this.tokens = tokens;
+
+            return token;
+        }
+
+        /**
+         * Returns the field number mapped to the {@code name} (0 if unknown), like {@link Schema#getFieldNumber}.
+         */
+        public int getFieldNumber(String name)
+        {
+            int number = names.get(name);
+            if (number != -1)
+                return number;
+
+            // the misses are looked up without locking, and not indexed (the input decides the names)
+            number = schema().getFieldNumber(name);
+            if (number != 0 && names.size < MAX_INDEXED_NAMES)
+                index(name, number);
+
+            return number;
+        }
+
+        private synchronized void index(String name, int number)
+        {
+            final NameIndex names = this.names;
+            if (names.size < MAX_INDEXED_NAMES && names.get(name) == -1)
+                this.names = names.add(name, number);
+        }
+
+        /**
+         * Returns the field number mapped to the utf8 {@code name} (0 if unknown). The name is only decoded the first
+         * time it is looked up.
+         */
+        public int getFieldNumber(byte[] name, int offset, int len)
+        {
+            int number = utf8Names.get(name, offset, len);
+            if (number != -1)
+                return number;
+
+            // not through the string index, which only holds the names looked up as strings
+            number = schema().getFieldNumber(STRING.deser(name, offset, len));
+            if (number != 0 && utf8Names.size < MAX_INDEXED_NAMES)
+                index(name, offset, len, number);
+
+            return number;
+        }
+
+        private synchronized void index(byte[] name, int offset, int len, int number)
+        {
+            final Utf8NameIndex utf8Names = this.utf8Names;
+            if (utf8Names.size < MAX_INDEXED_NAMES && utf8Names.get(name, offset, len) == -1)
+            {
+                this.utf8Names = utf8Names.add(Arrays.copyOfRange(name, offset, offset + len),
+                        number);
+            }
+        }
+
+        private Schema<?> schema()
+        {
+            final Schema<?> schema = get();
+            if (schema == null)
+                throw new IllegalStateException("The schema was garbage collected.");
+
+            return schema;
+        }
+    }
+
+    private final ReferenceQueue<Schema<?>> queue = new ReferenceQueue<>();
+    private volatile Table<V>[] tables = newTables(16);
+    private int count;
+
+    /**
+     * Encodes the name of a field.
+     */
+    protected abstract V encode(String fieldName);
+
+    /**
+     * Encodes the {@code name} like {@link WriteSink#writeStrAscii} does, i.e the low byte of each char (the field
+     * names are expected to be ascii).
+     */
+    public static byte[] ascii(String name)
+    {
+        final byte[] bytes = new byte[name.length()];
+        StringSerializer.copyAscii(name, 0, bytes.length, bytes, 0);
+        return bytes;
+    }
+
+    /**
+     * Returns the tokens of the {@code schema}.
+     */
+    public final Table<V> getTable(Schema<?> schema)
+    {
+        final int hash = System.identityHashCode(schema);
+        final Table<V>[] tables = this.tables;
+        for (Table<V> t = tables[hash & (tables.length - 1)]; t != null; t = t.next)
+        {
+            if (t.get() == schema)
+                return t;
+        }
+
+        return add(schema, hash);
+    }
+
+    /**
+     * Returns the token of the field of the {@code schema}.
+     */
+    public final V get(Schema<?> schema, int fieldNumber)
+    {
+        return getTable(schema).get(fieldNumber);
+    }
+
+    private synchronized Table<V> add(Schema<?> schema, int hash)
+    {
+        expunge();
+
+        Table<V>[] tables = this.tables;
+        for (Table<V> t = tables[hash & (tables.length - 1)]; t != null; t = t.next)
+        {
+            if (t.get() == schema)
+                return t;
+        }
+
+        if (count >= tables.length - (tables.length >>> 2))
+            tables = resize(tables);
+
+        final int i = hash & (tables.length - 1);
+        final Table<V> table = new Table<>(schema, queue, hash, this, tables[i]);
+        tables[i] = table;
+        count++;
+
+        // publish
+        this.tables = tables;
+
+        return table;
+    }
+
+    private Table<V>[] resize(Table<V>[] tables)
+    {
+        final Table<V>[] newTables = newTables(tables.length * 2);
+        for (Table<V> t : tables)
+        {
+            while (t != null)
+            {
+                final Table<V> next = t.next;
+                final int i = t.hash & (newTables.length - 1);
+                t.next = newTables[i];
+                newTables[i] = t;
+                t = next;
+            }
+        }
+
+        return newTables;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void expunge()
+    {
+        final Table<V>[] tables = this.tables;
+        for (Object stale; (stale = queue.poll()) != null;)
+        {
+            final Table<V> table = (Table<V>) stale;
+            final int i = table.hash & (tables.length - 1);
+            if (tables[i] == table)
+            {
+                tables[i] = table.next;
+                count--;
+                continue;
+            }
+
+            for (Table<V> t = tables[i]; t != null; t = t.next)
+            {
+                if (t.next == table)
+                {
+                    t.next = table.next;
+                    count--;
+                    break;
+                }
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> Table<V>[] newTables(int size)
+    {
+        return new Table[size];
+    }
+
+}
@@ -17,6 +17,9 @@ package io.protostuff;
 import java.io.DataOutput;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.IllegalBlockingModeException;
 
 /**
  * A buffer that wraps a byte array and has a reference to the next buffer for dynamic increase.
@@ -135,6 +138,134 @@ public final class LinkedBuffer
         return contentSize;
     }
 
+    /**
+     * Writes the contents of the {@link LinkedBuffer} into the (blocking) {@link GatheringByteChannel}, with a single
+     * gathering write for all the buffers (unless the channel writes partially). For a non-blocking channel, use
+     * {@link #tryWriteTo(GatheringByteChannel, LinkedBuffer)} instead.
+     * 
+     * @return the total content size of the buffer.
+     * @throws IllegalBlockingModeException
+     *             if the channel does not accept any byte (i.e it is non-blocking).
+     */
+    public static int writeTo(final GatheringByteChannel channel, LinkedBuffer node)
+            throws IOException
+    {
+        final ByteBuffer[] buffers = toByteBuffers(node);
+        int contentSize = 0;
+        for (ByteBuffer b : buffers)
+            contentSize += b.remaining();
+
+        writeFully(channel, buffers);
+
+        return contentSize;
+    }
+
+    /**
+     * Writes the contents of the {@link LinkedBuffer} into the (non-blocking) {@link GatheringByteChannel}, as much as
+     * it accepts now.
+     * <p>
+     * If the channel does not accept all the bytes, the remaining buffers are returned: wait until the channel is
+     * writable again (e.g {@code OP_WRITE}) and resume with {@link #writeTo(GatheringByteChannel, ByteBuffer[])}. The
+     * buffers wrap the arrays of the {@link LinkedBuffer}, which must not be reused meanwhile.
+     * 
+     * @return null if all the bytes were written, otherwise the buffers still pending.
+     */
+    public static ByteBuffer[] tryWriteTo(final GatheringByteChannel channel, LinkedBuffer node)
+            throws IOException
+    {
+        final ByteBuffer[] buffers = toByteBuffers(node);
+        return writeTo(channel, buffers) ? null : buffers;
+    }
+
+    /**
+     * Writes the remaining bytes of the {@code buffers} into the {@link GatheringByteChannel} until they are all
+     * written, or until the channel does not accept more (e.g a non-blocking socket whose send buffer is full).
+     * <p>
+     * The positions of the buffers are advanced, so that the same array can be written again (e.g when the channel is
+     * writable again) after a partial write.
+     * 
+     * @return true if all the bytes were written.
+     */
+    public static boolean writeTo(final GatheringByteChannel channel, final ByteBuffer[] buffers)
+            throws IOException
+    {
+        for (int i = 0; i < buffers.length;)
+        {
+            if (!buffers[i].hasRemaining())
+            {
+                // skip the ones fully written
+                i++;
+                continue;
+            }
+
+            if (channel.write(buffers, i, buffers.length - i) == 0)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Writes all the remaining bytes of the {@code buffers} into the blocking {@code channel}, which (unless otherwise
+     * specified) returns only after writing some bytes.
+     * 
+     * @throws IllegalBlockingModeException
+     *             if a write does not accept any byte (i.e the channel is non-blocking), instead of spinning.
+     */
+    static void writeFully(final GatheringByteChannel channel, final ByteBuffer[] buffers)
+            throws IOException
+    {
+        if (!writeTo(channel, buffers))
+            throw new IllegalBlockingModeException();
+    }
+
+    /**
+     * Returns the contents of the {@link LinkedBuffer}, prefixed with their (varint32) {@code size}, as byte buffers
+     * that wrap the arrays (no copy). The result can be written with
+     * {@link #writeTo(GatheringByteChannel, ByteBuffer[])}, as many times as the channel needs.
+     */
+    public static ByteBuffer[] toDelimitedByteBuffers(LinkedBuffer node, int size)
+    {
+        final ByteBuffer delimiter = ByteBuffer.allocate(5);
+        for (int value = size;; value >>>= 7)
+        {
+            if ((value & ~0x7F) == 0)
+            {
+                delimiter.put((byte) value);
+                break;
+            }
+            delimiter.put((byte) ((value & 0x7F) | 0x80));
+        }
+        delimiter.flip();
+
+        final ByteBuffer[] contents = toByteBuffers(node);
+        final ByteBuffer[] buffers = new ByteBuffer[contents.length + 1];
+        buffers[0] = delimiter;
+        System.arraycopy(contents, 0, buffers, 1, contents.length);
+        return buffers;
+    }
+
+    /**
+     * Returns the contents of the {@link LinkedBuffer} as byte buffers that wrap the arrays (no copy).
+     */
+    public static ByteBuffer[] toByteBuffers(LinkedBuffer node)
+    {
+        int count = 0;
+        for (LinkedBuffer lb = node; lb != null; lb = lb.next)
+        {
+            if (lb.offset != lb.start)
+                count++;
+        }
+
+        final ByteBuffer[] buffers = new ByteBuffer[count];
+        count = 0;
+        for (LinkedBuffer lb = node; lb != null; lb = lb.next)
+        {
+            if (lb.offset != lb.start)
+                buffers[count++] = ByteBuffer.wrap(lb.buffer, lb.start, lb.offset - lb.start);
+        }
+        return buffers;
+    }
+
     final byte[] buffer;
 
     final int start;
@@ -143,6 +274,11 @@ public final class LinkedBuffer
 
     LinkedBuffer next;
 
+    /**
+     * Whether the buffer was acquired from a {@link LinkedBufferPool} (and not released yet).
+     */
+    boolean pooled;
+
     /**
      * Creates a buffer with the specified {@code size}.
      */
@@ -0,0 +1,356 @@
+package io.protostuff;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A thread-safe pool of {@link LinkedBuffer}s, so that the head and the overflow buffers of a {@link WriteSession} can
+ * be reused instead of being left to the gc.
+ * <p>
+ * The buffer sizes are rounded up to size classes (powers of 2 from {@link LinkedBuffer#MIN_BUFFER_SIZE} to the
+ * configured max). Released buffers are cached per thread first, then in free lists shared by all threads (striped to
+ * limit contention). Larger buffers are not pooled.
+ * <p>
+ * Buffers must be released explicitly via {@link #release(LinkedBuffer)}, after which neither the buffer nor the
+ * buffers linked to it may be used.
+ */
+public final class LinkedBufferPool
+{
+
+    /**
+     * The largest buffer size pooled by default.
+     */
+    public static final int DEFAULT_MAX_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The default number of buffers (per size class) cached by each thread.
+     */
+    public static final int DEFAULT_LOCAL_CAPACITY = 8;
+
+    /**
+     * The default number of buffers (per size class) in each of the shared free lists.
+     */
+    public static final int DEFAULT_SHARED_CAPACITY = 64;
+
+    private static final int MIN_SHIFT = Integer.numberOfTrailingZeros(LinkedBuffer.MIN_BUFFER_SIZE);
+
+    // the counters of a stripe are padded to a cache line (to avoid false sharing)
+    private static final int ACQUIRED = 0, LOCAL_HITS = 1, SHARED_HITS = 2, ALLOCATED = 3,
+            RELEASED = 4, DROPPED = 5, COUNTERS_PADDING = 16;
+
+    /**
+     * A bounded stack of byte arrays shared by the threads.
+     */
+    static final class FreeList
+    {
+        private final byte[][] arrays;
+        private int count;
+
+        FreeList(int capacity)
+        {
+            arrays = new byte[capacity][];
+        }
+
+        synchronized byte[] poll()
+        {
+            if (count == 0)
+                return null;
+
+            final byte[] array = arrays[--count];
+            arrays[count] = null;
+            return array;
+        }
+
+        synchronized boolean offer(byte[] array)
+        {
+            if (count == arrays.length)
+                return false;
+
+            arrays[count++] = array;
+            return true;
+        }
+    }
+
+    /**
+     * The buffers cached by a thread.
+     */
+    static final class LocalCache
+    {
+        final byte[][][] arrays;
+        final int[] counts;
+        final int stripe;
+
+        LocalCache(int sizeClasses, int capacity, int stripe)
+        {
+            arrays = new byte[sizeClasses][capacity][];
+            counts = new int[sizeClasses];
+            this.stripe = stripe;
+        }
+    }
+
+    /**
+     * A snapshot of the pool statistics.
+     */
+    public static final class Stats
+    {
+        /**
+         * The number of buffers acquired (including the ones too large to be pooled).
+         */
+        public final long acquired;
+
+        /**
+         * The number of acquired buffers that came from the cache of the thread.
+         */
+        public final long localHits;
+
+        /**
+         * The number of acquired buffers that came from the shared free lists.
+         */
+        public final long sharedHits;
+
+        /**
+         * The number of buffers allocated because none was available (or were too large to be pooled).
+         */
+        public final long allocated;
+
+        /**
+         * The number of buffers released.
+         */
+        public final long released;
+
+        /**
+         * The number of released buffers left to the gc because the pool was full (or they were not poolable).
+         */
+        public final long dropped;
+
+        Stats(long acquired, long localHits, long sharedHits, long allocated,
+                long released, long dropped)
+        {
+            this.acquired = acquired;
+            this.localHits = localHits;
+            this.sharedHits = sharedHits;
+            this.allocated = allocated;
+            this.released = released;
+            this.dropped = dropped;
+        }
+
+        @Override
+        public String toString()
+        {
+            return "acquired=" + acquired + ", localHits=" + localHits
+                    + ", sharedHits=" + sharedHits + ", allocated=" + allocated
+                    + ", released=" + released + ", dropped=" + dropped;
+        }
+    }
+
+    private final int maxBufferSize, localCapacity, stripeMask;
+
+    private final FreeList[][] freeLists;
+
+    private final AtomicLongArray counters;
+
+    private final ThreadLocal<LocalCache> localCache = new ThreadLocal<LocalCache>()
+    {
+        @Override
+        protected LocalCache initialValue()
+        {
+            return new LocalCache(freeLists.length, localCapacity,
+                    (int) Thread.currentThread().getId() & stripeMask);
+        }
+    };
+
+    public LinkedBufferPool()
+    {
+        this(DEFAULT_MAX_BUFFER_SIZE, DEFAULT_LOCAL_CAPACITY, DEFAULT_SHARED_CAPACITY);
+    }
+
+    /**
+     * Creates a pool for buffers up to {@code maxBufferSize} (rounded up to a power of 2).
+     *
+     * @param localCapacity
+     *            the number of buffers (per size class) cached by each thread.
+     * @param sharedCapacity
+     *            the number of buffers (per size class) in each of the shared free lists.
+     */
+    public LinkedBufferPool(int maxBufferSize, int localCapacity, int sharedCapacity)
+    {
+        if (maxBufferSize < LinkedBuffer.MIN_BUFFER_SIZE)
+            throw new IllegalArgumentException(LinkedBuffer.MIN_BUFFER_SIZE + " is the minimum buffer size.");
+
+        if (maxBufferSize > (1 << 30))
+            throw new IllegalArgumentException((1 << 30) + " is the maximum buffer size.");
+
+        if (localCapacity < 0 || sharedCapacity < 0)
+            throw new IllegalArgumentException("Capacity must not be negative.");
+
+        final int sizeClasses = sizeClass(maxBufferSize) + 1;
+        this.maxBufferSize = classSize(sizeClasses - 1);
+        this.localCapacity = localCapacity;
+
+        final int stripes = Integer.highestOneBit(
+                Runtime.getRuntime().availableProcessors() * 2 - 1);
+        stripeMask = stripes - 1;
+
+        freeLists = new FreeList[sizeClasses][stripes];
+        for (FreeList[] classFreeLists : freeLists)
+        {
+            for (int i = 0; i < stripes; i++)
+                classFreeLists[i] = new FreeList(sharedCapacity);
+        }
+
+        counters = new AtomicLongArray(stripes * COUNTERS_PADDING);
+    }
+
+    static int sizeClass(int size)
+    {
+        if (size <= LinkedBuffer.MIN_BUFFER_SIZE)
+            return 0;
+
+        return 32 - Integer.numberOfLeadingZeros(size - 1) - MIN_SHIFT;
+    }
+
+    static int classSize(int sizeClass)
+    {
+        return 1 << (sizeClass + MIN_SHIFT);
+    }
+
+    /**
+     * Returns the largest buffer size that is pooled.
+     */
+    public int getMaxBufferSize()
+    {
+        return maxBufferSize;
+    }
+
+    private void count(LocalCache cache, int counter)
+    {
+        counters.incrementAndGet(cache.stripe * COUNTERS_PADDING + counter);
+    }
+
+    /**
+     * Acquires a buffer with the default size.
+     */
+    public LinkedBuffer acquire()
+    {
+        return acquire(LinkedBuffer.DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Acquires a buffer with at least {@code size} bytes.
+     */
+    public LinkedBuffer acquire(int size)
+    {
+        final LinkedBuffer lb = new LinkedBuffer(acquireArray(size), 0, 0);
+        lb.pooled = true;
+        return lb;
+    }
+
+    /**
+     * Acquires a buffer with at least {@code size} bytes and appends it to the {@code previous} buffer.
+     */
+    public LinkedBuffer acquire(int size, LinkedBuffer previous)
+    {
+        final LinkedBuffer lb = new LinkedBuffer(acquireArray(size), 0, 0, previous);
+        lb.pooled = true;
+        return lb;
+    }
+
+    private byte[] acquireArray(int size)
+    {
+        final LocalCache cache = localCache.get();
+        count(cache, ACQUIRED);
+
+        if (size > maxBufferSize)
+        {
+            count(cache, ALLOCATED);
+            return new byte[size];
+        }
+
+        final int sizeClass = sizeClass(size);
+        int count = cache.counts[sizeClass];
+        if (count != 0)
+        {
+            count(cache, LOCAL_HITS);
+            final byte[][] arrays = cache.arrays[sizeClass];
+            final byte[] array = arrays[--count];
+            arrays[count] = null;
+            cache.counts[sizeClass] = count;
+            return array;
+        }
+
+        // try our stripe first, then the others
+        final FreeList[] classFreeLists = freeLists[sizeClass];
+        for (int i = 0, stripe = cache.stripe; i < classFreeLists.length; i++)
+        {
+            final byte[] array = classFreeLists[(stripe + i) & stripeMask].poll();
+            if (array != null)
+            {
+                count(cache, SHARED_HITS);
+                return array;
+            }
+        }
+
+        count(cache, ALLOCATED);
+        return new byte[classSize(sizeClass)];
+    }
+
+    /**
+     * Releases the pooled buffers of the chain that starts with {@code lb}. Buffers that were not acquired from a pool
+     * (e.g wrapped arrays) are ignored.
+     */
+    public void release(LinkedBuffer lb)
+    {
+        LocalCache cache = null;
+        for (LinkedBuffer next; lb != null; lb = next)
+        {
+            next = lb.next;
+            lb.next = null;
+            if (!lb.pooled)
+                continue;
+
+            lb.pooled = false;
+            if (cache == null)
+                cache = localCache.get();
+
+            releaseArray(lb.buffer, cache);
+        }
+    }
+
+    private void releaseArray(byte[] array, LocalCache cache)
+    {
+        count(cache, RELEASED);
+
+        final int sizeClass = sizeClass(array.length);
+        if (array.length > maxBufferSize || classSize(sizeClass) != array.length)
+        {
+            count(cache, DROPPED);
+            return;
+        }
+
+        final int count = cache.counts[sizeClass];
+        if (count != localCapacity)
+        {
+            cache.arrays[sizeClass][count] = array;
+            cache.counts[sizeClass] = count + 1;
+            return;
+        }
+
+        if (!freeLists[sizeClass][cache.stripe].offer(array))
+            count(cache, DROPPED);
+    }
+
+    /**
+     * Returns a snapshot of the statistics of this pool.
+     */
+    public Stats getStats()
+    {
+        final long[] totals = new long[DROPPED + 1];
+        for (int i = 0, len = counters.length(); i < len; i += COUNTERS_PADDING)
+        {
+            for (int j = 0; j < totals.length; j++)
+                totals[j] += counters.get(i + j);
+        }
+
+        return new Stats(totals[ACQUIRED], totals[LOCAL_HITS], totals[SHARED_HITS],
+                totals[ALLOCATED], totals[RELEASED], totals[DROPPED]);
+    }
+}
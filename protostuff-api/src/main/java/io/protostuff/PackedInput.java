@@ -0,0 +1,16 @@
+package io.protostuff;
+
+/**
+ * An input (of the protobuf wire format) that reads packed repeated scalar fields transparently: the values of a
+ * packed field are read one at a time, each one preceded by the same field number.
+ */
+public interface PackedInput extends Input
+{
+
+    /**
+     * Returns true if the last value read was not the last value of a packed field (the next one can be read without
+     * reading the field number).
+     */
+    public boolean isCurrentFieldPacked();
+
+}
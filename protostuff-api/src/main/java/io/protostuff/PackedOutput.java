@@ -0,0 +1,33 @@
+package io.protostuff;
+
+import java.io.IOException;
+
+/**
+ * An output of the protobuf wire format, which can write packed repeated scalar fields: the caller writes the tag and
+ * the byte length of the field via {@link #writePackedLength(int, int)}, then each value, whose encoded sizes must add
+ * up to that length. The values are written directly, without being encoded into an intermediate array.
+ */
+public interface PackedOutput extends Output
+{
+
+    /**
+     * Writes the tag and the length of a packed field, whose values are written next.
+     */
+    void writePackedLength(int fieldNumber, int length) throws IOException;
+
+    /**
+     * Writes a value of a packed field as a varint (the int32 values are sign-extended).
+     */
+    void writePackedVarInt64(long value) throws IOException;
+
+    /**
+     * Writes a value of a packed field as a little-endian fixed32 (e.g. the bits of a float).
+     */
+    void writePackedFixed32(int value) throws IOException;
+
+    /**
+     * Writes a value of a packed field as a little-endian fixed64 (e.g. the bits of a double).
+     */
+    void writePackedFixed64(long value) throws IOException;
+
+}
@@ -0,0 +1,131 @@
+package io.protostuff;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Serializes the messages of a list in chunks, concurrently on a {@link ForkJoinPool}, with each chunk written into its
+ * own buffered {@link WriteSession}. The chunks are written to the stream in list order, so the output is the same as
+ * when the messages are serialized one after the other.
+ * <p>
+ * At most twice the pool's parallelism of chunks are in flight, so the memory used is bounded by the size of those
+ * chunks rather than the size of the list. The schema must be safe to use from several threads (like the generated and
+ * the runtime schemas).
+ */
+public final class ParallelListWriter
+{
+
+    /**
+     * The default number of messages per chunk.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 1024;
+
+    /**
+     * The size of the buffers that a chunk is written into.
+     */
+    public static final int CHUNK_BUFFER_SIZE = 8192;
+
+    /**
+     * Serializes the messages from {@code from} (inclusive) to {@code to} (exclusive) into a new buffered session.
+     */
+    public interface ChunkWriter<T>
+    {
+        WriteSession writeChunk(List<T> messages, int from, int to) throws IOException;
+    }
+
+    static final class ChunkTask<T> extends RecursiveTask<WriteSession>
+    {
+        private static final long serialVersionUID = 1L;
+
+        final List<T> messages;
+        final ChunkWriter<T> writer;
+        final int from, to;
+        IOException failure;
+
+        ChunkTask(List<T> messages, ChunkWriter<T> writer, int from, int to)
+        {
+            this.messages = messages;
+            this.writer = writer;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected WriteSession compute()
+        {
+            try
+            {
+                return writer.writeChunk(messages, from, to);
+            }
+            catch (IOException e)
+            {
+                failure = e;
+                return null;
+            }
+        }
+
+        WriteSession joinChunk() throws IOException
+        {
+            final WriteSession session = join();
+            if (failure != null)
+                throw failure;
+
+            return session;
+        }
+    }
+
+    private ParallelListWriter()
+    {
+    }
+
+    /**
+     * Serializes the {@code messages} in chunks of {@code chunkSize} on the {@code executor} and writes the chunks to
+     * the {@link OutputStream} in order.
+     *
+     * @return the total size of the chunks.
+     */
+    public static <T> int writeTo(final OutputStream out, final List<T> messages,
+            final ChunkWriter<T> writer, final ForkJoinPool executor, final int chunkSize)
+            throws IOException
+    {
+        if (chunkSize < 1)
+            throw new IllegalArgumentException("chunkSize must be positive.");
+
+        final int size = messages.size();
+        final int window = 2 * executor.getParallelism();
+        final ArrayDeque<ChunkTask<T>> pending = new ArrayDeque<>(window);
+
+        int next = 0, totalSize = 0;
+        try
+        {
+            while (next < size || !pending.isEmpty())
+            {
+                while (next < size && pending.size() < window)
+                {
+                    final int to = (int) Math.min((long) next + chunkSize, size);
+                    final ChunkTask<T> task = new ChunkTask<>(messages, writer, next, to);
+                    executor.execute(task);
+                    pending.addLast(task);
+                    next = to;
+                }
+
+                final WriteSession session = pending.removeFirst().joinChunk();
+                LinkedBuffer.writeTo(out, session.head);
+                totalSize += session.getSize();
+            }
+        }
+        finally
+        {
+            // the chunks after a failure are not needed
+            for (ChunkTask<T> task : pending)
+                task.cancel(false);
+        }
+
+        return totalSize;
+    }
+
+}
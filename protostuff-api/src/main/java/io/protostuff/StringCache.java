@@ -0,0 +1,176 @@
+package io.protostuff;
+
+import java.nio.ByteBuffer;
+
+import io.protostuff.StringSerializer.STRING;
+
+/**
+ * A bounded cache of the strings decoded from utf8 bytes, keyed by the bytes. A string read again (e.g a country code
+ * or a status) is returned without being decoded or allocated.
+ * <p>
+ * The cache is direct-mapped (a string replaces the one with the same slot), so its size never exceeds its capacity.
+ * Only the strings up to a max length are cached. It is thread-safe (entries are immutable, and a lost update only
+ * costs a cache miss).
+ */
+public final class StringCache
+{
+
+    /**
+     * The default number of entries.
+     */
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    /**
+     * The default max utf8 length of the strings cached.
+     */
+    public static final int DEFAULT_MAX_LENGTH = 64;
+
+    static final class Entry
+    {
+        final int hash;
+        final byte[] bytes;
+        final String value;
+
+        Entry(int hash, byte[] bytes, String value)
+        {
+            this.hash = hash;
+            this.bytes = bytes;
+            this.value = value;
+        }
+    }
+
+    private final Entry[] entries;
+    private final int mask, maxLength;
+
+    public StringCache()
+    {
+        this(DEFAULT_CAPACITY, DEFAULT_MAX_LENGTH);
+    }
+
+    /**
+     * Creates a cache with {@code capacity} entries (rounded up to a power of 2).
+     *
+     * @param maxLength
+     *            the max utf8 length of the strings cached (the longer ones are decoded every time).
+     */
+    public StringCache(int capacity, int maxLength)
+    {
+        if (capacity < 1 || capacity > (1 << 30))
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+
+        final int size = Integer.highestOneBit(capacity - 1) << 1;
+        entries = new Entry[size == 0 ? 1 : size];
+        mask = entries.length - 1;
+        this.maxLength = maxLength;
+    }
+
+    /**
+     * Returns the number of entries.
+     */
+    public int getCapacity()
+    {
+        return entries.length;
+    }
+
+    /**
+     * Returns the max utf8 length of the strings cached.
+     */
+    public int getMaxLength()
+    {
+        return maxLength;
+    }
+
+    /**
+     * Removes all the entries.
+     */
+    public void clear()
+    {
+        for (int i = 0; i < entries.length; i++)
+            entries[i] = null;
+    }
+
+    private static int slot(int hash)
+    {
+        // spread the bits of the hash since the low ones select the slot
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Returns the string of the utf8 bytes.
+     */
+    public String getString(byte[] buf, int offset, int len)
+    {
+        if (len > maxLength)
+            return STRING.deser(buf, offset, len);
+
+        int hash = 1;
+        for (int i = offset, end = offset + len; i < end; i++)
+            hash = 31 * hash + buf[i];
+
+        final int index = slot(hash) & mask;
+        final Entry entry = entries[index];
+        if (entry != null && entry.hash == hash && equals(entry.bytes, buf, offset, len))
+            return entry.value;
+
+        final byte[] bytes = new byte[len];
+        System.arraycopy(buf, offset, bytes, 0, len);
+        final String value = STRING.deser(bytes);
+        entries[index] = new Entry(hash, bytes, value);
+        return value;
+    }
+
+    /**
+     * Returns the string of the utf8 bytes of the {@code buffer} (absolute index, its position is not modified).
+     */
+    public String getString(ByteBuffer buffer, int index, int len)
+    {
+        if (buffer.hasArray())
+            return getString(buffer.array(), buffer.arrayOffset() + index, len);
+
+        if (len > maxLength)
+        {
+            final byte[] bytes = new byte[len];
+            for (int i = 0; i < len; i++)
+                bytes[i] = buffer.get(index + i);
+
+            return STRING.deser(bytes);
+        }
+
+        int hash = 1;
+        for (int i = index, end = index + len; i < end; i++)
+            hash = 31 * hash + buffer.get(i);
+
+        final int slot = slot(hash) & mask;
+        final Entry entry = entries[slot];
+        if (entry != null && entry.hash == hash && entry.bytes.length == len)
+        {
+            boolean equal = true;
+            for (int i = 0; i < len && equal; i++)
+                equal = entry.bytes[i] == buffer.get(index + i);
+
+            if (equal)
+                return entry.value;
+        }
+
+        final byte[] bytes = new byte[len];
+        for (int i = 0; i < len; i++)
+            bytes[i] = buffer.get(index + i);
+
+        final String value = STRING.deser(bytes);
+        entries[slot] = new Entry(hash, bytes, value);
+        return value;
+    }
+
+    private static boolean equals(byte[] bytes, byte[] buf, int offset, int len)
+    {
+        if (bytes.length != len)
+            return false;
+
+        for (int i = 0; i < len; i++)
+        {
+            if (bytes[i] != buf[offset + i])
+                return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,17 @@
+package io.protostuff;
+
+import java.io.IOException;
+
+/**
+ * An input that can read a string through a {@link StringCache}, so that the strings that repeat are neither decoded
+ * nor allocated again.
+ */
+public interface StringCacheInput extends Input
+{
+
+    /**
+     * Reads a string (the same as {@link #readString()}) through the {@code cache}.
+     */
+    public String readString(StringCache cache) throws IOException;
+
+}
@@ -2,7 +2,7 @@ package io.protostuff;
 
 import java.io.IOException;
 import java.io.UTFDataFormatException;
-import java.io.UnsupportedEncodingException;
+import java.nio.charset.Charset;
 
 /**
  * UTF-8 String serialization
@@ -223,7 +223,7 @@ public final class StringSerializer
             if (lb.offset + valueLen > lb.buffer.length)
             {
                 // not enough size
-                lb = new LinkedBuffer(session.nextBufferSize, lb);
+                lb = session.newBuffer(lb);
             }
 
             System.arraycopy(INT_MIN_VALUE, 0, lb.buffer, lb.offset, valueLen);
@@ -239,7 +239,7 @@ public final class StringSerializer
         if (lb.offset + size > lb.buffer.length)
         {
             // not enough size
-            lb = new LinkedBuffer(session.nextBufferSize, lb);
+            lb = session.newBuffer(lb);
         }
 
         putBytesFromInt(value, lb.offset, size, lb.buffer);
@@ -263,7 +263,7 @@ public final class StringSerializer
             {
                 // TODO space efficiency (slower path)
                 // not enough size
-                lb = new LinkedBuffer(session.nextBufferSize, lb);
+                lb = session.newBuffer(lb);
             }
 
             System.arraycopy(LONG_MIN_VALUE, 0, lb.buffer, lb.offset, valueLen);
@@ -280,7 +280,7 @@ public final class StringSerializer
         {
             // TODO space efficiency (slower path)
             // not enough size
-            lb = new LinkedBuffer(session.nextBufferSize, lb);
+            lb = session.newBuffer(lb);
         }
 
         putBytesFromLong(value, lb.offset, size, lb.buffer);
@@ -311,6 +311,63 @@ public final class StringSerializer
         return writeAscii(Double.toString(value), session, lb);
     }
 
+    /**
+     * Returns the index of the first non-ascii char of the string from {@code index} to {@code end} (or {@code end} if
+     * all are ascii). Checks 4 chars at a time.
+     */
+    static int asciiEnd(final String str, int index, final int end)
+    {
+        for (final int limit = end - 3; index < limit; index += 4)
+        {
+            if ((str.charAt(index) | str.charAt(index + 1) | str.charAt(index + 2)
+                    | str.charAt(index + 3)) >= 0x0080)
+            {
+                break;
+            }
+        }
+
+        while (index < end && str.charAt(index) < 0x0080)
+            index++;
+
+        return index;
+    }
+
+    /**
+     * Returns true if the bytes are all ascii. Checks 8 bytes at a time.
+     */
+    static boolean isAscii(final byte[] buffer, int offset, final int len)
+    {
+        final int end = offset + len;
+        for (final int limit = end - 7; offset < limit; offset += 8)
+        {
+            if ((buffer[offset] | buffer[offset + 1] | buffer[offset + 2] | buffer[offset + 3]
+                    | buffer[offset + 4] | buffer[offset + 5] | buffer[offset + 6]
+                    | buffer[offset + 7]) < 0)
+            {
+                return false;
+            }
+        }
+
+        for (; offset < end; offset++)
+        {
+            if (buffer[offset] < 0)
+                return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Copies the ascii chars of the string from {@code index} to {@code end} into the {@code buffer}.
+     */
+    @SuppressWarnings("deprecation")
+    static void copyAscii(final String str, final int index, final int end,
+            final byte[] buffer, final int offset)
+    {
+        // a bulk copy of the (compact) string's bytes on jdk9+
+        str.getBytes(index, end, buffer, offset);
+    }
+
     /**
      * Computes the size of the utf8 string beginning at the specified {@code index} with the specified {@code length}.
      */
@@ -334,7 +391,17 @@ public final class StringSerializer
     /**
      * Slow path. It checks the limit before every write. Shared with StreamedStringSerializer.
      */
-    static LinkedBuffer writeUTF8(final String str, int i, final int len,
+    static LinkedBuffer writeUTF8(final String str, final int i, final int len,
+            final byte[] buffer, final int offset, final int limit,
+            final WriteSession session, final LinkedBuffer lb)
+    {
+        // the leading ascii chars that fit are bulk-copied, the rest char by char
+        final int ascii = asciiEnd(str, i, Math.min(len, i + limit - offset));
+        copyAscii(str, i, ascii, buffer, offset);
+        return writeUTF8Slow(str, ascii, len, buffer, offset + ascii - i, limit, session, lb);
+    }
+
+    private static LinkedBuffer writeUTF8Slow(final String str, int i, final int len,
             byte[] buffer, int offset, int limit,
             final WriteSession session, LinkedBuffer lb)
     {
@@ -360,10 +427,10 @@ public final class StringSerializer
                 {
                     // reset
                     offset = 0;
-                    limit = session.nextBufferSize;
-                    buffer = new byte[limit];
                     // grow
-                    lb = new LinkedBuffer(buffer, 0, lb);
+                    lb = session.newBuffer(lb);
+                    buffer = lb.buffer;
+                    limit = buffer.length;
                 }
                 else
                 {
@@ -391,10 +458,10 @@ public final class StringSerializer
                     {
                         // reset
                         offset = 0;
-                        limit = session.nextBufferSize;
-                        buffer = new byte[limit];
                         // grow
-                        lb = new LinkedBuffer(buffer, 0, lb);
+                        lb = session.newBuffer(lb);
+                        buffer = lb.buffer;
+                        limit = buffer.length;
                     }
                     else
                     {
@@ -420,10 +487,10 @@ public final class StringSerializer
                     {
                         // reset
                         offset = 0;
-                        limit = session.nextBufferSize;
-                        buffer = new byte[limit];
                         // grow
-                        lb = new LinkedBuffer(buffer, 0, lb);
+                        lb = session.newBuffer(lb);
+                        buffer = lb.buffer;
+                        limit = buffer.length;
                     }
                     else
                     {
@@ -452,10 +519,10 @@ public final class StringSerializer
                     {
                         // reset
                         offset = 0;
-                        limit = session.nextBufferSize;
-                        buffer = new byte[limit];
                         // grow
-                        lb = new LinkedBuffer(buffer, 0, lb);
+                        lb = session.newBuffer(lb);
+                        buffer = lb.buffer;
+                        limit = buffer.length;
                     }
                     else
                     {
@@ -483,10 +550,10 @@ public final class StringSerializer
                     {
                         // reset
                         offset = 0;
-                        limit = session.nextBufferSize;
-                        buffer = new byte[limit];
                         // grow
-                        lb = new LinkedBuffer(buffer, 0, lb);
+                        lb = session.newBuffer(lb);
+                        buffer = lb.buffer;
+                        limit = buffer.length;
                     }
                     else
                     {
@@ -512,10 +579,10 @@ public final class StringSerializer
                     {
                         // reset
                         offset = 0;
-                        limit = session.nextBufferSize;
-                        buffer = new byte[limit];
                         // grow
-                        lb = new LinkedBuffer(buffer, 0, lb);
+                        lb = session.newBuffer(lb);
+                        buffer = lb.buffer;
+                        limit = buffer.length;
                     }
                     else
                     {
@@ -541,10 +608,10 @@ public final class StringSerializer
                     {
                         // reset
                         offset = 0;
-                        limit = session.nextBufferSize;
-                        buffer = new byte[limit];
                         // grow
-                        lb = new LinkedBuffer(buffer, 0, lb);
+                        lb = session.newBuffer(lb);
+                        buffer = lb.buffer;
+                        limit = buffer.length;
                     }
                     else
                     {
@@ -574,10 +641,10 @@ public final class StringSerializer
                     {
                         // reset
                         offset = 0;
-                        limit = session.nextBufferSize;
-                        buffer = new byte[limit];
                         // grow
-                        lb = new LinkedBuffer(buffer, 0, lb);
+                        lb = session.newBuffer(lb);
+                        buffer = lb.buffer;
+                        limit = buffer.length;
                     }
                     else
                     {
@@ -603,10 +670,10 @@ public final class StringSerializer
                     {
                         // reset
                         offset = 0;
-                        limit = session.nextBufferSize;
-                        buffer = new byte[limit];
                         // grow
-                        lb = new LinkedBuffer(buffer, 0, lb);
+                        lb = session.newBuffer(lb);
+                        buffer = lb.buffer;
+                        limit = buffer.length;
                     }
                     else
                     {
@@ -632,10 +699,10 @@ public final class StringSerializer
                     {
                         // reset
                         offset = 0;
-                        limit = session.nextBufferSize;
-                        buffer = new byte[limit];
                         // grow
-                        lb = new LinkedBuffer(buffer, 0, lb);
+                        lb = session.newBuffer(lb);
+                        buffer = lb.buffer;
+                        limit = buffer.length;
                     }
                     else
                     {
@@ -661,7 +728,15 @@ public final class StringSerializer
             final WriteSession session, final LinkedBuffer lb)
     {
         final byte[] buffer = lb.buffer;
-        for (int c = 0, offset = lb.offset, adjustableLimit = offset + len;; c = 0)
+        final int start = lb.offset;
+
+        // the leading ascii chars are bulk-copied, the rest char by char
+        final int ascii = asciiEnd(str, i, len);
+        copyAscii(str, i, ascii, buffer, start);
+        int offset = start + ascii - i;
+        i = ascii;
+
+        for (int c = 0, adjustableLimit = start + len;; c = 0)
         {
             while (i != len && (c = str.charAt(i++)) < 0x0080)
                 buffer[offset++] = (byte) c;
@@ -764,10 +839,10 @@ public final class StringSerializer
                     lb.offset = offset;
                     // reset
                     offset = 0;
-                    limit = session.nextBufferSize;
-                    buffer = new byte[limit];
                     // grow
-                    lb = new LinkedBuffer(buffer, 0, lb);
+                    lb = session.newBuffer(lb);
+                    buffer = lb.buffer;
+                    limit = buffer.length;
                 }
                 buffer[offset++] = (byte) str.charAt(i);
             }
@@ -775,8 +850,8 @@ public final class StringSerializer
         else
         {
             // fast path
-            for (int i = 0; i < len; i++)
-                buffer[offset++] = (byte) str.charAt(i);
+            copyAscii(str, 0, len, buffer, offset);
+            offset += len;
         }
 
         lb.offset = offset;
@@ -821,8 +896,7 @@ public final class StringSerializer
         {
             // not enough space for int (2 bytes).
             // create a new buffer.
-            lb = new LinkedBuffer(len + 2 > session.nextBufferSize ? len + 2 : session.nextBufferSize,
-                    lb);
+            lb = session.newBuffer(Math.max(len + 2, session.nextBufferSize), lb);
 
             lb.offset = 2;
 
@@ -894,8 +968,7 @@ public final class StringSerializer
         if (lb.offset == lb.buffer.length)
         {
             // create a new buffer.
-            lb = new LinkedBuffer(len + 1 > session.nextBufferSize ? len + 1 : session.nextBufferSize,
-                    lb);
+            lb = session.newBuffer(Math.max(len + 1, session.nextBufferSize), lb);
 
             lb.offset = 1;
 
@@ -953,9 +1026,7 @@ public final class StringSerializer
         {
             // not enough space for the varint.
             // create a new buffer.
-            lb = new LinkedBuffer(len + expectedSize > session.nextBufferSize ? len + expectedSize
-                    : session.nextBufferSize,
-                    lb);
+            lb = session.newBuffer(Math.max(len + expectedSize, session.nextBufferSize), lb);
             offset = lb.start;
             lb.offset = withIntOffset = offset + expectedSize;
 
@@ -1057,7 +1128,7 @@ public final class StringSerializer
             if (lb.offset == lb.buffer.length)
             {
                 // buffer full
-                lb = new LinkedBuffer(session.nextBufferSize, lb);
+                lb = session.newBuffer(lb);
             }
 
             // write zero
@@ -1102,6 +1173,15 @@ public final class StringSerializer
     {
         static final boolean CESU8_COMPAT = Boolean.getBoolean("io.protostuff.cesu8_compat");
 
+        static final Charset UTF8 = Charset.forName("UTF-8");
+
+        /**
+         * Whether ascii bytes are decoded without the charset. Only before jdk9, whose compact strings (and their
+         * intrinsics) already make the charset faster for those.
+         */
+        static final boolean ASCII_FAST_PATH = System.getProperty(
+                "java.specification.version", "").startsWith("1.");
+
         private STRING()
         {
         }
@@ -1111,69 +1191,70 @@ public final class StringSerializer
             return deser(nonNullValue, 0, nonNullValue.length);
         }
 
+        @SuppressWarnings("deprecation")
         public static String deser(byte[] nonNullValue, int offset, int len)
         {
+            if (ASCII_FAST_PATH && isAscii(nonNullValue, offset, len))
+            {
+                // no decoder and a single copy
+                return new String(nonNullValue, 0, offset, len);
+            }
+
             final String result;
-            try
+
+            // Try to use the built in deserialization first, since we expect
+            // that the most likely case is a valid UTF-8 encoded byte array.
+            // Additionally, the built in serialization method has one less
+            // char[] copy than readUTF.
+            //
+            // If, however, there are invalid/malformed characters, i.e. 3-byte
+            // surrogates / 3-byte surrogate pairs, we should fall back to the
+            // readUTF method as it should be able to properly handle 3-byte surrogates
+            // (and therefore 6-byte surrogate pairs) in Java 8+.
+            //
+            // While Protostuff and many other applications, still use 3-byte surrogates
+            // / 6-byte surrogate pairs, the standard 'forbids' their use, and Java 8
+            // has started to enforce the standard, resulting in 'corrupted' data in
+            // strings when decoding using new String(nonNullValue, "UTF-8");
+            //
+            // While the readUTF should be able to handle both Standard Unicode
+            // (i.e. new String().getBytes("UTF-8") and the Legacy Unicode
+            // (with 3-byte surrogates, used in CESU-8 and Modified UTF-8),
+            // we don't want to introduce an unexpected loss of data due to
+            // some unforseen bug. As a result, a fallback mechanism is in
+            // place such that the worst case scenario results in the previous
+            // implementation's behaviour.
+            //
+            // For the Java 8 change, see: https://bugs.openjdk.java.net/browse/JDK-7096080
+
+            result = new String(nonNullValue, offset, len, UTF8);
+
+            // Check if we should scan the string to make sure there were no
+            // corrupt characters caused by 3-byte / 6-byte surrogate pairs.
+            //
+            // In general, this *should* only be required for systems reading
+            // data stored using legacy protostuff. Moving forward, the data
+            // should be readable by new String("UTF-8"), so the scan is unnecessary.
+            if (CESU8_COMPAT)
             {
-                // Try to use the built in deserialization first, since we expect
-                // that the most likely case is a valid UTF-8 encoded byte array.
-                // Additionally, the built in serialization method has one less
-                // char[] copy than readUTF.
-                //
-                // If, however, there are invalid/malformed characters, i.e. 3-byte
-                // surrogates / 3-byte surrogate pairs, we should fall back to the
-                // readUTF method as it should be able to properly handle 3-byte surrogates
-                // (and therefore 6-byte surrogate pairs) in Java 8+.
-                //
-                // While Protostuff and many other applications, still use 3-byte surrogates
-                // / 6-byte surrogate pairs, the standard 'forbids' their use, and Java 8
-                // has started to enforce the standard, resulting in 'corrupted' data in
-                // strings when decoding using new String(nonNullValue, "UTF-8");
-                //
-                // While the readUTF should be able to handle both Standard Unicode
-                // (i.e. new String().getBytes("UTF-8") and the Legacy Unicode
-                // (with 3-byte surrogates, used in CESU-8 and Modified UTF-8),
-                // we don't want to introduce an unexpected loss of data due to
-                // some unforseen bug. As a result, a fallback mechanism is in
-                // place such that the worst case scenario results in the previous
-                // implementation's behaviour.
-                //
-                // For the Java 8 change, see: https://bugs.openjdk.java.net/browse/JDK-7096080
-
-                result = new String(nonNullValue, offset, len, "UTF-8");
-
-                // Check if we should scan the string to make sure there were no
-                // corrupt characters caused by 3-byte / 6-byte surrogate pairs.
-                //
-                // In general, this *should* only be required for systems reading
-                // data stored using legacy protostuff. Moving forward, the data
-                // should be readable by new String("UTF-8"), so the scan is unnecessary.
-                if (CESU8_COMPAT)
+                // If it contains the REPLACEMENT character, then there's a strong
+                // possibility of it containing 3-byte surrogates / 6-byte surrogate
+                // pairs, and we should try decoding using readUTF to handle it.
+                if (result.indexOf(0xfffd) != -1)
                 {
-                    // If it contains the REPLACEMENT character, then there's a strong
-                    // possibility of it containing 3-byte surrogates / 6-byte surrogate
-                    // pairs, and we should try decoding using readUTF to handle it.
-                    if (result.indexOf(0xfffd) != -1)
+                    try
+                    {
+                        return readUTF(nonNullValue, offset, len);
+                    }
+                    catch (UTFDataFormatException e)
                     {
-                        try
-                        {
-                            return readUTF(nonNullValue, offset, len);
-                        }
-                        catch (UTFDataFormatException e)
-                        {
-                            // Unexpected, but most systems previously using
-                            // Protostuff don't expect error to occur from
-                            // String deserialization, so we use this just in case.
-                            return result;
-                        }
+                        // Unexpected, but most systems previously using
+                        // Protostuff don't expect error to occur from
+                        // String deserialization, so we use this just in case.
+                        return result;
                     }
                 }
             }
-            catch (UnsupportedEncodingException e)
-            {
-                throw new RuntimeException(e);
-            }
 
             return result;
         }
@@ -1200,14 +1281,7 @@ public final class StringSerializer
 
         public static byte[] ser(String nonNullValue)
         {
-            try
-            {
-                return nonNullValue.getBytes("UTF-8");
-            }
-            catch (UnsupportedEncodingException e)
-            {
-                throw new RuntimeException(e);
-            }
+            return nonNullValue.getBytes(UTF8);
         }
 
         /**
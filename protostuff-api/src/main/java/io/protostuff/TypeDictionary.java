@@ -0,0 +1,115 @@
+package io.protostuff;
+
+import java.io.IOException;
+import java.util.HashMap;
+
+/**
+ * Assigns ints to the type names written by the polymorphic fields of a stream, so that a type name is written once and
+ * referenced by its int afterwards. The writer and the reader must use a dictionary for the whole stream (e.g. for
+ * every delimited message of it), and {@link #clear() clear} it (or use a new one) for another stream.
+ * <p>
+ * The first occurrence of a type name is written as {@code id:name} and the next ones as {@code id}, the id being the
+ * decimal string of the int, which is never a type name since a java identifier does not start with a digit. Since
+ * every name carries its id, the reader can skip fields (e.g. removed ones, or the ones excluded by a view) without
+ * shifting the ids of the names it reads afterwards. The reader cannot however resolve an id whose name was only
+ * written in a skipped field, and fails with an "Unknown type id" {@link ProtostuffException} rather than resolve
+ * another type.
+ */
+public final class TypeDictionary
+{
+
+    // name -> id when writing, id -> name when reading
+    private final HashMap<String, String> ids = new HashMap<>();
+
+    /**
+     * Forgets the type names written or read, for another stream.
+     */
+    public void clear()
+    {
+        ids.clear();
+    }
+
+    void write(Output output, int fieldNumber, String name) throws IOException
+    {
+        final String id = ids.get(name);
+        if (id != null)
+        {
+            output.writeString(fieldNumber, id, false);
+            return;
+        }
+
+        final String newId = Integer.toString(ids.size());
+        ids.put(name, newId);
+        output.writeString(fieldNumber, newId + ':' + name, false);
+    }
+
+    String read(Input input) throws IOException
+    {
+        final String value = input.readString();
+        if (value.isEmpty() || !Character.isDigit(value.charAt(0)))
+        {
+            // written without a dictionary
+            return value;
+        }
+
+        final int colon = value.indexOf(':');
+        if (colon == -1)
+        {
+            final String name = ids.get(value);
+            if (name == null)
+                throw new ProtostuffException("Unknown type id: " + value);
+
+            return name;
+        }
+
+        final String name = value.substring(colon + 1);
+        ids.put(value.substring(0, colon), name);
+        return name;
+    }
+
+    /**
+     * Writes the type name, through the dictionary of the {@code output} if it has one.
+     */
+    public static void writeTypeName(Output output, int fieldNumber, String name)
+            throws IOException
+    {
+        final TypeDictionary dictionary = output instanceof TypeDictionaryOutput ? ((TypeDictionaryOutput) output)
+                .getTypeDictionary() : null;
+
+        if (dictionary == null)
+            output.writeString(fieldNumber, name, false);
+        else
+            dictionary.write(output, fieldNumber, name);
+    }
+
+    /**
+     * Reads a type name, through the dictionary of the {@code input} if it has one.
+     */
+    public static String readTypeName(Input input) throws IOException
+    {
+        final TypeDictionary dictionary = input instanceof TypeDictionaryInput ? ((TypeDictionaryInput) input)
+                .getTypeDictionary() : null;
+
+        return dictionary == null ? input.readString() : dictionary.read(input);
+    }
+
+    /**
+     * Transfers a type name from the {@code input} to the {@code output}, copying its bytes if neither has a
+     * dictionary.
+     */
+    public static void transferTypeName(Input input, Output output, int fieldNumber)
+            throws IOException
+    {
+        if ((input instanceof TypeDictionaryInput && ((TypeDictionaryInput) input).getTypeDictionary() != null)
+                || (output instanceof TypeDictionaryOutput && ((TypeDictionaryOutput) output)
+                        .getTypeDictionary() != null))
+        {
+            writeTypeName(output, fieldNumber, readTypeName(input));
+        }
+        else
+        {
+            input.transferByteRangeTo(output, true, fieldNumber, false);
+        }
+    }
+
+}
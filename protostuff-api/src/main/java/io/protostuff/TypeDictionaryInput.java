@@ -0,0 +1,14 @@
+package io.protostuff;
+
+/**
+ * An input that can read the type names of a stream through a {@link TypeDictionary}.
+ */
+public interface TypeDictionaryInput extends Input
+{
+
+    /**
+     * Returns the dictionary of the stream, or null if the type names are read in full.
+     */
+    public TypeDictionary getTypeDictionary();
+
+}
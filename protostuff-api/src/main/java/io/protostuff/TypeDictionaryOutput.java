@@ -0,0 +1,14 @@
+package io.protostuff;
+
+/**
+ * An output that can write the type names of a stream through a {@link TypeDictionary}.
+ */
+public interface TypeDictionaryOutput extends Output
+{
+
+    /**
+     * Returns the dictionary of the stream, or null if the type names are written in full.
+     */
+    public TypeDictionary getTypeDictionary();
+
+}
@@ -73,18 +73,33 @@ public class WriteSession
      */
     public final WriteSink sink;
 
+    /**
+     * The pool of the overflow buffers (null if not pooled).
+     */
+    public final LinkedBufferPool pool;
+
     public WriteSession(LinkedBuffer head)
     {
         this(head, LinkedBuffer.DEFAULT_BUFFER_SIZE);
     }
 
     public WriteSession(LinkedBuffer head, int nextBufferSize)
+    {
+        this(head, nextBufferSize, null);
+    }
+
+    /**
+     * Creates a buffered session that acquires the overflow buffers from the {@code pool}. They are released back to the
+     * pool on {@link #clear()}.
+     */
+    public WriteSession(LinkedBuffer head, int nextBufferSize, LinkedBufferPool pool)
     {
         tail = head;
         this.head = head;
         this.nextBufferSize = nextBufferSize;
         out = null;
         flushHandler = null;
+        this.pool = pool;
 
         sink = WriteSink.BUFFERED;
     }
@@ -97,6 +112,7 @@ public class WriteSession
         this.nextBufferSize = nextBufferSize;
         this.out = out;
         this.flushHandler = flushHandler;
+        pool = null;
 
         sink = WriteSink.STREAMED;
 
@@ -121,6 +137,9 @@ public class WriteSession
      */
     public WriteSession clear()
     {
+        if (pool != null)
+            pool.release(head.next);
+
         tail = head.clear();
         size = 0;
         return this;
@@ -154,6 +173,23 @@ public class WriteSession
         return buf;
     }
 
+    /**
+     * Allocates a buffer of {@link #nextBufferSize} (from the pool if any) and appends it to {@code appendTarget}.
+     */
+    final LinkedBuffer newBuffer(LinkedBuffer appendTarget)
+    {
+        return newBuffer(nextBufferSize, appendTarget);
+    }
+
+    /**
+     * Allocates a buffer of at least {@code size} (from the pool if any) and appends it to {@code appendTarget}.
+     */
+    final LinkedBuffer newBuffer(int size, LinkedBuffer appendTarget)
+    {
+        return pool == null ? new LinkedBuffer(size, appendTarget) : pool.acquire(size,
+                appendTarget);
+    }
+
     protected int flush(byte[] buf, int offset, int len) throws IOException
     {
         if (flushHandler != null)
@@ -31,7 +31,7 @@ public enum WriteSink
                 final LinkedBuffer lb) throws IOException
         {
             // grow
-            return new LinkedBuffer(session.nextBufferSize, lb);
+            return session.newBuffer(lb);
         }
 
         @Override
@@ -61,7 +61,7 @@ public enum WriteSink
                     if (available == 0)
                     {
                         // buffer was actually full ... return a fresh buffer
-                        return new LinkedBuffer(session.nextBufferSize,
+                        return session.newBuffer(
                                 new LinkedBuffer(value, offset, offset + valueLen, lb));
                     }
 
@@ -76,7 +76,7 @@ public enum WriteSink
                 lb.offset += available;
 
                 // grow
-                lb = new LinkedBuffer(session.nextBufferSize, lb);
+                lb = session.newBuffer(lb);
 
                 final int leftover = valueLen - available;
 
@@ -105,7 +105,7 @@ public enum WriteSink
             if (lb.offset == lb.buffer.length)
             {
                 // grow
-                lb = new LinkedBuffer(session.nextBufferSize, lb);
+                lb = session.newBuffer(lb);
             }
             lb.buffer[lb.offset++] = value;
 
@@ -121,7 +121,7 @@ public enum WriteSink
             if (lb.offset + 2 > lb.buffer.length)
             {
                 // grow
-                lb = new LinkedBuffer(session.nextBufferSize, lb);
+                lb = session.newBuffer(lb);
             }
 
             IntSerializer.writeInt16(value, lb.buffer, lb.offset);
@@ -139,7 +139,7 @@ public enum WriteSink
             if (lb.offset + 2 > lb.buffer.length)
             {
                 // grow
-                lb = new LinkedBuffer(session.nextBufferSize, lb);
+                lb = session.newBuffer(lb);
             }
 
             IntSerializer.writeInt16LE(value, lb.buffer, lb.offset);
@@ -157,7 +157,7 @@ public enum WriteSink
             if (lb.offset + 4 > lb.buffer.length)
             {
                 // grow
-                lb = new LinkedBuffer(session.nextBufferSize, lb);
+                lb = session.newBuffer(lb);
             }
 
             IntSerializer.writeInt32(value, lb.buffer, lb.offset);
@@ -175,7 +175,7 @@ public enum WriteSink
             if (lb.offset + 8 > lb.buffer.length)
             {
                 // grow
-                lb = new LinkedBuffer(session.nextBufferSize, lb);
+                lb = session.newBuffer(lb);
             }
 
             IntSerializer.writeInt64(value, lb.buffer, lb.offset);
@@ -193,7 +193,7 @@ public enum WriteSink
             if (lb.offset + 4 > lb.buffer.length)
             {
                 // grow
-                lb = new LinkedBuffer(session.nextBufferSize, lb);
+                lb = session.newBuffer(lb);
             }
 
             IntSerializer.writeInt32LE(value, lb.buffer, lb.offset);
@@ -211,7 +211,7 @@ public enum WriteSink
             if (lb.offset + 8 > lb.buffer.length)
             {
                 // grow
-                lb = new LinkedBuffer(session.nextBufferSize, lb);
+                lb = session.newBuffer(lb);
             }
 
             IntSerializer.writeInt64LE(value, lb.buffer, lb.offset);
@@ -230,7 +230,7 @@ public enum WriteSink
                 if (lb.offset == lb.buffer.length)
                 {
                     // grow
-                    lb = new LinkedBuffer(session.nextBufferSize, lb);
+                    lb = session.newBuffer(lb);
                 }
 
                 if ((value & ~0x7F) == 0)
@@ -254,7 +254,7 @@ public enum WriteSink
                 if (lb.offset == lb.buffer.length)
                 {
                     // grow
-                    lb = new LinkedBuffer(session.nextBufferSize, lb);
+                    lb = session.newBuffer(lb);
                 }
 
                 if ((value & ~0x7FL) == 0)
@@ -0,0 +1,122 @@
+package io.protostuff;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for {@link LinkedBufferPool}.
+ */
+public class LinkedBufferPoolTest extends TestCase
+{
+
+    public void testSizeClasses()
+    {
+        assertEquals(0, LinkedBufferPool.sizeClass(1));
+        assertEquals(0, LinkedBufferPool.sizeClass(256));
+        assertEquals(1, LinkedBufferPool.sizeClass(257));
+        assertEquals(1, LinkedBufferPool.sizeClass(512));
+        assertEquals(2, LinkedBufferPool.sizeClass(513));
+        assertEquals(1024, LinkedBufferPool.classSize(2));
+
+        final LinkedBufferPool pool = new LinkedBufferPool(5000, 1, 1);
+        assertEquals(8192, pool.getMaxBufferSize());
+        assertEquals(512, pool.acquire().buffer.length);
+        assertEquals(1024, pool.acquire(600).buffer.length);
+        assertEquals(8193, pool.acquire(8193).buffer.length);
+    }
+
+    public void testReuse()
+    {
+        final LinkedBufferPool pool = new LinkedBufferPool(1024, 1, 1);
+
+        final LinkedBuffer head = pool.acquire(300);
+        final LinkedBuffer next = pool.acquire(300, head);
+        // not pooled
+        final byte[] wrapped = new byte[512];
+        new LinkedBuffer(wrapped, 0, 0, next);
+        assertSame(next, head.next);
+
+        pool.release(head);
+        assertNull(head.next);
+        assertNull(next.next);
+
+        // released twice (ignored)
+        pool.release(head);
+
+        // from the thread cache, then from the shared free list
+        final byte[] b1 = pool.acquire(512).buffer, b2 = pool.acquire(512).buffer;
+        assertTrue(b1 == head.buffer || b1 == next.buffer);
+        assertTrue(b2 == head.buffer || b2 == next.buffer);
+        assertNotSame(b1, b2);
+        assertNotSame(wrapped, pool.acquire(512).buffer);
+
+        final LinkedBufferPool.Stats stats = pool.getStats();
+        assertEquals(5, stats.acquired);
+        assertEquals(1, stats.localHits);
+        assertEquals(1, stats.sharedHits);
+        assertEquals(3, stats.allocated);
+        assertEquals(2, stats.released);
+        assertEquals(0, stats.dropped);
+    }
+
+    public void testDropped()
+    {
+        final LinkedBufferPool pool = new LinkedBufferPool(1024, 0, 1);
+        final LinkedBuffer lb = pool.acquire(2000);
+        pool.acquire(256, pool.acquire(256, lb));
+        pool.release(lb);
+
+        final LinkedBufferPool.Stats stats = pool.getStats();
+        assertEquals(3, stats.released);
+        // too large, and the free list only has room for one
+        assertEquals(2, stats.dropped);
+    }
+
+    public void testOtherThread() throws Exception
+    {
+        final LinkedBufferPool pool = new LinkedBufferPool();
+        final AtomicReference<byte[]> released = new AtomicReference<byte[]>();
+        // fill the thread cache, so that the next one goes to the shared free list
+        final Thread t = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                final LinkedBuffer[] buffers = new LinkedBuffer[LinkedBufferPool.DEFAULT_LOCAL_CAPACITY + 1];
+                for (int i = 0; i < buffers.length; i++)
+                    buffers[i] = pool.acquire();
+                for (LinkedBuffer lb : buffers)
+                    pool.release(lb);
+                released.set(buffers[buffers.length - 1].buffer);
+            }
+        };
+        t.start();
+        t.join();
+
+        assertSame(released.get(), pool.acquire().buffer);
+        assertEquals(1, pool.getStats().sharedHits);
+    }
+
+    public void testWriteSession() throws Exception
+    {
+        final LinkedBufferPool pool = new LinkedBufferPool();
+        final byte[] expected = new byte[2000];
+        Arrays.fill(expected, (byte) 'a');
+        final String str = new String(expected, "ASCII");
+
+        final LinkedBuffer head = pool.acquire(256);
+        final WriteSession session = new WriteSession(head, 256, pool);
+        session.tail = session.sink.writeStrAscii(str, session, session.tail);
+        assertNotNull(head.next);
+        assertTrue(Arrays.equals(expected, session.toByteArray()));
+
+        final LinkedBuffer overflow = head.next;
+        session.clear();
+        assertNull(head.next);
+        assertFalse(overflow.pooled);
+        assertTrue(head.pooled);
+        assertEquals(pool.getStats().allocated - 1, pool.getStats().released);
+    }
+}
@@ -549,6 +549,35 @@ public class StringSerializerTest extends TestCase
         assertEquals(bigString, STRING.deserCustomOnly(buffered));
     }
 
+    public void testAsciiRuns() throws Exception
+    {
+        // ascii runs of every length around the 4-char/8-byte checks, before/after/between the non-ascii
+        for (int i = 0; i < 20; i++)
+        {
+            final String run = repeatChar('a', i);
+            for (String str : new String[] { run, run + "\u00e9", "\u20ac" + run,
+                    run + "\u00e9" + run + "\u20ac" + run, run + surrogatePairs + run })
+            {
+                final byte[] builtin = str.getBytes(StandardCharsets.UTF_8);
+                for (int size : new int[] { 1, 3, 512 })
+                {
+                    // a leading byte so that the string starts at an offset
+                    LinkedBuffer lb = new LinkedBuffer(size);
+                    WriteSession session = new WriteSession(lb);
+                    lb = session.sink.writeByte((byte) 1, session, lb);
+                    StringSerializer.writeUTF8(str, session, lb);
+
+                    final byte[] buffered = session.toByteArray();
+                    assertEquals(builtin, Arrays.copyOfRange(buffered, 1, buffered.length));
+                    assertEquals(str, STRING.deser(buffered, 1, builtin.length));
+                }
+
+                assertEquals(builtin, STRING.ser(str));
+                assertEquals(i == str.length(), StringSerializer.isAscii(builtin, 0, builtin.length));
+            }
+        }
+    }
+
     static void checkVarDelimited(String str, int size, int stringLen) throws Exception
     {
         LinkedBuffer lb = new LinkedBuffer(512);
@@ -0,0 +1,23 @@
+package io.protostuff.benchmarks;
+
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Same as {@link RuntimeSchemaBenchmark}, with runtime-generated schema dispatch enabled.
+ */
+@Fork(value = 1, jvmArgsAppend = "-Dprotostuff.runtime.use_generated_schema=true")
+public class GeneratedRuntimeSchemaBenchmark extends RuntimeSchemaBenchmark
+{
+
+    public static void main(String[] args) throws RunnerException
+    {
+        Options opt = new OptionsBuilder()
+                .include(GeneratedRuntimeSchemaBenchmark.class.getSimpleName())
+                .build();
+        new Runner(opt).run();
+    }
+}
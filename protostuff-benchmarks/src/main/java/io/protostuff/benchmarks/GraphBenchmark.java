@@ -0,0 +1,140 @@
+package io.protostuff.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import io.protostuff.GraphIOUtil;
+import io.protostuff.GraphSession;
+import io.protostuff.LinkedBuffer;
+import io.protostuff.Schema;
+import io.protostuff.runtime.RuntimeSchema;
+
+/**
+ * Graph ser/deser of a tree whose nodes reference their parent, with and without a reused {@link GraphSession}.
+ */
+@Fork(1)
+@State(Scope.Thread)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class GraphBenchmark
+{
+
+    @Param({ "1000", "100000" })
+    private int nodes;
+
+    private Schema<Node> schema;
+    private Node root;
+    private byte[] data;
+    private LinkedBuffer buffer;
+    private GraphSession session;
+
+    public static void main(String[] args) throws RunnerException
+    {
+        Options opt = new OptionsBuilder()
+                .include(GraphBenchmark.class.getSimpleName())
+                .build();
+        new Runner(opt).run();
+    }
+
+    @Setup
+    public void prepare()
+    {
+        schema = RuntimeSchema.getSchema(Node.class);
+        buffer = LinkedBuffer.allocate();
+        session = new GraphSession();
+
+        // a root with ~sqrt(n) children, each with ~sqrt(n) children
+        final int fanout = (int) Math.sqrt(nodes);
+        root = new Node(null, 0);
+        int id = 1;
+        for (int i = 0; i < fanout && id < nodes; i++)
+        {
+            final Node child = new Node(root, id++);
+            for (int j = 0; j < fanout && id < nodes; j++)
+                new Node(child, id++);
+        }
+
+        data = serialize();
+    }
+
+    @Benchmark
+    public byte[] serialize()
+    {
+        try
+        {
+            return GraphIOUtil.toByteArray(root, schema, buffer);
+        }
+        finally
+        {
+            buffer.clear();
+        }
+    }
+
+    @Benchmark
+    public byte[] serializeReusedSession()
+    {
+        try
+        {
+            return GraphIOUtil.toByteArray(root, schema, buffer, session);
+        }
+        finally
+        {
+            buffer.clear();
+        }
+    }
+
+    @Benchmark
+    public Node deserialize()
+    {
+        final Node node = schema.newMessage();
+        GraphIOUtil.mergeFrom(data, node, schema);
+        return node;
+    }
+
+    @Benchmark
+    public Node deserializeReusedSession()
+    {
+        final Node node = schema.newMessage();
+        GraphIOUtil.mergeFrom(data, node, schema, session);
+        return node;
+    }
+
+    public static final class Node
+    {
+        int id;
+        Node parent;
+        List<Node> children;
+
+        Node(Node parent, int id)
+        {
+            this.id = id;
+            this.parent = parent;
+            if (parent != null)
+            {
+                if (parent.children == null)
+                    parent.children = new ArrayList<>();
+
+                parent.children.add(this);
+            }
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package io.protostuff.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import io.protostuff.JsonIOUtil;
+import io.protostuff.LinkedBuffer;
+import io.protostuff.Schema;
+import io.protostuff.SmileIOUtil;
+
+/**
+ * The per-message overhead of the json and smile formats on small messages. The {@code json_serialize} benchmark
+ * reuses the generator of the thread, while {@code json_serialize_unpooled} creates one per message.
+ */
+@Fork(1)
+@State(Scope.Thread)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class JsonBenchmark
+{
+
+    private Schema<GeneratedInt10> schema;
+    private GeneratedInt10 message;
+    private LinkedBuffer buffer;
+    private byte[] json;
+    private byte[] smile;
+
+    public static void main(String[] args) throws RunnerException
+    {
+        Options opt = new OptionsBuilder()
+                .include(JsonBenchmark.class.getSimpleName())
+                .build();
+        new Runner(opt).run();
+    }
+
+    @Setup
+    public void prepare() throws IOException
+    {
+        schema = GeneratedInt10.getSchema();
+        message = new GeneratedInt10();
+        message.setA0(1);
+        message.setA1(2);
+        message.setA2(3);
+        message.setA3(4);
+        message.setA4(5);
+        message.setA5(6);
+        message.setA6(7);
+        message.setA7(8);
+        message.setA8(9);
+        message.setA9(10);
+        buffer = LinkedBuffer.allocate();
+
+        json = JsonIOUtil.toByteArray(message, schema, false);
+        smile = SmileIOUtil.toByteArray(message, schema, false);
+    }
+
+    @Benchmark
+    public byte[] json_serialize()
+    {
+        return JsonIOUtil.toByteArray(message, schema, false);
+    }
+
+    @Benchmark
+    public byte[] json_serialize_unpooled()
+    {
+        return JsonIOUtil.toByteArray(message, schema, false, buffer);
+    }
+
+    @Benchmark
+    public GeneratedInt10 json_deserialize() throws IOException
+    {
+        final GeneratedInt10 parsed = new GeneratedInt10();
+        JsonIOUtil.mergeFrom(json, parsed, schema, false);
+        return parsed;
+    }
+
+    @Benchmark
+    public byte[] smile_serialize()
+    {
+        return SmileIOUtil.toByteArray(message, schema, false);
+    }
+
+    @Benchmark
+    public GeneratedInt10 smile_deserialize() throws IOException
+    {
+        final GeneratedInt10 parsed = new GeneratedInt10();
+        SmileIOUtil.mergeFrom(smile, parsed, schema, false);
+        return parsed;
+    }
+}
@@ -0,0 +1,23 @@
+package io.protostuff.benchmarks;
+
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Same as {@link RuntimeSchemaBenchmark}, with the fields accessed via method handles (the default on jdk9+).
+ */
+@Fork(value = 1, jvmArgsAppend = "-Dprotostuff.runtime.use_method_handles=true")
+public class MethodHandleRuntimeSchemaBenchmark extends RuntimeSchemaBenchmark
+{
+
+    public static void main(String[] args) throws RunnerException
+    {
+        Options opt = new OptionsBuilder()
+                .include(MethodHandleRuntimeSchemaBenchmark.class.getSimpleName())
+                .build();
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,25 @@
+package io.protostuff.benchmarks;
+
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Same as {@link RuntimeSchemaBenchmark}, with the fields accessed via plain reflection instead of method handles or
+ * sun.misc.Unsafe.
+ */
+@Fork(value = 1, jvmArgsAppend = { "-Dprotostuff.runtime.use_method_handles=false",
+        "-Dprotostuff.runtime.use_sun_misc_unsafe=false" })
+public class ReflectionRuntimeSchemaBenchmark extends RuntimeSchemaBenchmark
+{
+
+    public static void main(String[] args) throws RunnerException
+    {
+        Options opt = new OptionsBuilder()
+                .include(ReflectionRuntimeSchemaBenchmark.class.getSimpleName())
+                .build();
+        new Runner(opt).run();
+    }
+}
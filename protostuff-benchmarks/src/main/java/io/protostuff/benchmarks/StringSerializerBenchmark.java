@@ -35,7 +35,15 @@ public class StringSerializerBenchmark
     @Param({ "1", "10", "100", "1000", "10000", "100000" })
     private int stringLength;
 
+    /**
+     * The chars of the string: ascii, latin1 (one 2-byte char every 8 chars) or utf16 (one 3-byte char every 8
+     * chars).
+     */
+    @Param({ "ascii", "latin1", "utf16" })
+    private String chars;
+
     private String s;
+    private byte[] utf8;
     private LinkedBuffer sharedBuffer;
     private WriteSession sharedSession;
 
@@ -52,12 +60,14 @@ public class StringSerializerBenchmark
     {
         sharedBuffer = LinkedBuffer.allocate(512);
         sharedSession = new WriteSession(sharedBuffer);
+        final char other = "latin1".equals(chars) ? '\u00e9' : "utf16".equals(chars) ? '\u20ac' : '.';
         StringBuilder sb = new StringBuilder();
         for (int i = 0; i < stringLength; i++)
         {
-            sb.append('.');
+            sb.append(i % 8 == 7 ? other : '.');
         }
         s = sb.toString();
+        utf8 = s.getBytes(StandardCharsets.UTF_8);
     }
 
     @Benchmark
@@ -96,4 +106,22 @@ public class StringSerializerBenchmark
         }
     }
 
+    @Benchmark
+    public byte[] stringSerializer()
+    {
+        return StringSerializer.STRING.ser(s);
+    }
+
+    @Benchmark
+    public String builtInDeserializer()
+    {
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public String stringDeserializer()
+    {
+        return StringSerializer.STRING.deser(utf8);
+    }
+
 }
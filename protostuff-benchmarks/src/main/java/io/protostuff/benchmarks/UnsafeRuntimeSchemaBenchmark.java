@@ -0,0 +1,23 @@
+package io.protostuff.benchmarks;
+
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Same as {@link RuntimeSchemaBenchmark}, with the fields accessed via sun.misc.Unsafe instead of method handles.
+ */
+@Fork(value = 1, jvmArgsAppend = "-Dprotostuff.runtime.use_method_handles=false")
+public class UnsafeRuntimeSchemaBenchmark extends RuntimeSchemaBenchmark
+{
+
+    public static void main(String[] args) throws RunnerException
+    {
+        Options opt = new OptionsBuilder()
+                .include(UnsafeRuntimeSchemaBenchmark.class.getSimpleName())
+                .build();
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,127 @@
+package io.protostuff.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import io.protostuff.ByteArrayInput;
+import io.protostuff.ByteBufferInput;
+import io.protostuff.CodedInput;
+
+/**
+ * Decodes {@value #COUNT} varints of the same (or random) length with each input.
+ */
+@Fork(1)
+@State(Scope.Thread)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class VarintDecodingBenchmark
+{
+
+    static final int COUNT = 4096;
+
+    /**
+     * The length of the varints (0 for random lengths from 1 to 10).
+     */
+    @Param({ "0", "2", "5", "8", "10" })
+    private int varintLength;
+
+    private byte[] data;
+    private ByteBuffer directData;
+
+    public static void main(String[] args) throws RunnerException
+    {
+        Options opt = new OptionsBuilder()
+                .include(VarintDecodingBenchmark.class.getSimpleName())
+                .build();
+        new Runner(opt).run();
+    }
+
+    @Setup
+    public void prepare() throws IOException
+    {
+        final Random random = new Random(1);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < COUNT; i++)
+        {
+            // exactly varintLength bytes
+            final int bits = 7 * (varintLength == 0 ? 1 + random.nextInt(10) : varintLength);
+            long value = bits >= 64 ? random.nextLong() | Long.MIN_VALUE
+                    : random.nextLong() & ((1L << bits) - 1) | (1L << (bits - 1));
+            while ((value & ~0x7FL) != 0)
+            {
+                out.write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            out.write((int) value);
+        }
+        data = out.toByteArray();
+        directData = ByteBuffer.allocateDirect(data.length);
+        directData.put(data).flip();
+    }
+
+    long byteArrayInput() throws IOException
+    {
+        final ByteArrayInput input = new ByteArrayInput(data, false);
+        long sum = 0;
+        for (int i = 0; i < COUNT; i++)
+            sum += input.readRawVarint64();
+        return sum;
+    }
+
+    long directByteBufferInput() throws IOException
+    {
+        final ByteBufferInput input = new ByteBufferInput(directData, false);
+        long sum = 0;
+        for (int i = 0; i < COUNT; i++)
+            sum += input.readRawVarint64();
+        return sum;
+    }
+
+    long codedInput() throws IOException
+    {
+        final CodedInput input = CodedInput.newInstance(data);
+        long sum = 0;
+        for (int i = 0; i < COUNT; i++)
+            sum += input.readRawVarint64();
+        return sum;
+    }
+
+    @Benchmark
+    public long byteArrayInput_varint64() throws IOException
+    {
+        return byteArrayInput();
+    }
+
+    @Benchmark
+    public long directByteBufferInput_varint64() throws IOException
+    {
+        return directByteBufferInput();
+    }
+
+    @Benchmark
+    public long codedInput_varint64() throws IOException
+    {
+        return codedInput();
+    }
+}
@@ -40,12 +40,13 @@ import io.protostuff.StringSerializer.STRING;
  * @author David Yu
  * @created Jun 22, 2010
  */
-public final class ByteArrayInput implements Input
+public final class ByteArrayInput implements PackedInput, StringCacheInput, TypeDictionaryInput
 {
 
     private final byte[] buffer;
     private int offset, limit, lastTag = 0;
     private int packedLimit = 0;
+    private TypeDictionary typeDictionary;
 
     /**
      * If true, the nested messages are group-encoded
@@ -90,6 +91,21 @@ public final class ByteArrayInput implements Input
         return this;
     }
 
+    /**
+     * Reads the type names through the {@code typeDictionary} (null to read them in full).
+     */
+    public ByteArrayInput setTypeDictionary(TypeDictionary typeDictionary)
+    {
+        this.typeDictionary = typeDictionary;
+        return this;
+    }
+
+    @Override
+    public TypeDictionary getTypeDictionary()
+    {
+        return typeDictionary;
+    }
+
     /**
      * Returns the current offset (the position).
      */
@@ -109,6 +125,7 @@ public final class ByteArrayInput implements Input
     /**
      * Return true if currently reading packed field
      */
+    @Override
     public boolean isCurrentFieldPacked()
     {
         return packedLimit != 0 && packedLimit != offset;
@@ -444,6 +461,23 @@ public final class ByteArrayInput implements Input
         return STRING.deser(buffer, offset, length);
     }
 
+    @Override
+    public String readString(StringCache cache) throws IOException
+    {
+        final int length = readRawVarint32();
+        if (length < 0)
+            throw ProtobufException.negativeSize();
+
+        if (offset + length > limit)
+            throw ProtobufException.misreportedSize();
+
+        final int offset = this.offset;
+
+        this.offset += length;
+
+        return cache.getString(buffer, offset, length);
+    }
+
     @Override
     public ByteString readBytes() throws IOException
     {
@@ -509,9 +543,62 @@ public final class ByteArrayInput implements Input
     }
 
     /**
-     * Reads a var int 32 from the internal byte buffer.
+     * Reads a var int 32 from the internal byte buffer. If larger than 32 bits, the upper bits are discarded.
+     * <p>
+     * If at least 10 bytes remain, the bytes are xor-ed into place without checking each continuation bit, and the
+     * continuation bits are cleared at the end (like protobuf-java). Otherwise the varint is read one byte at a time.
      */
     public int readRawVarint32() throws IOException
+    {
+        final byte[] buffer = this.buffer;
+        int offset = this.offset;
+        if (offset == limit)
+            return readRawVarint32SlowPath();
+
+        int x = buffer[offset++];
+        if (x >= 0)
+        {
+            this.offset = offset;
+            return x;
+        }
+
+        if (limit - offset < 9)
+            return readRawVarint32SlowPath();
+
+        if ((x ^= buffer[offset++] << 7) < 0)
+        {
+            x ^= ~0 << 7;
+        }
+        else if ((x ^= buffer[offset++] << 14) >= 0)
+        {
+            x ^= (~0 << 7) ^ (~0 << 14);
+        }
+        else if ((x ^= buffer[offset++] << 21) < 0)
+        {
+            x ^= (~0 << 7) ^ (~0 << 14) ^ (~0 << 21);
+        }
+        else
+        {
+            final int y = buffer[offset++];
+            x ^= y << 28;
+            x ^= (~0 << 7) ^ (~0 << 14) ^ (~0 << 21) ^ (~0 << 28);
+            // the upper bits are discarded, but at most 10 bytes are read
+            if (y < 0 && buffer[offset++] < 0 && buffer[offset++] < 0
+                    && buffer[offset++] < 0 && buffer[offset++] < 0 && buffer[offset++] < 0)
+            {
+                // malformed, thrown by the slow path
+                return readRawVarint32SlowPath();
+            }
+        }
+
+        this.offset = offset;
+        return x;
+    }
+
+    /**
+     * Reads a var int 32 one byte at a time.
+     */
+    private int readRawVarint32SlowPath() throws IOException
     {
         byte tmp = buffer[offset++];
         if (tmp >= 0)
@@ -560,9 +647,77 @@ public final class ByteArrayInput implements Input
     }
 
     /**
-     * Reads a var int 64 from the internal byte buffer.
+     * Reads a var int 64 from the internal byte buffer, like {@link #readRawVarint32()}.
      */
     public long readRawVarint64() throws IOException
+    {
+        final byte[] buffer = this.buffer;
+        int offset = this.offset;
+        if (offset == limit)
+            return readRawVarint64SlowPath();
+
+        int y = buffer[offset++];
+        if (y >= 0)
+        {
+            this.offset = offset;
+            return y;
+        }
+
+        if (limit - offset < 9)
+            return readRawVarint64SlowPath();
+
+        long x;
+        if ((y ^= buffer[offset++] << 7) < 0)
+        {
+            x = y ^ (~0 << 7);
+        }
+        else if ((y ^= buffer[offset++] << 14) >= 0)
+        {
+            x = y ^ ((~0 << 7) ^ (~0 << 14));
+        }
+        else if ((y ^= buffer[offset++] << 21) < 0)
+        {
+            x = y ^ ((~0 << 7) ^ (~0 << 14) ^ (~0 << 21));
+        }
+        else if ((x = y ^ ((long) buffer[offset++] << 28)) >= 0L)
+        {
+            x ^= (~0L << 7) ^ (~0L << 14) ^ (~0L << 21) ^ (~0L << 28);
+        }
+        else if ((x ^= (long) buffer[offset++] << 35) < 0L)
+        {
+            x ^= (~0L << 7) ^ (~0L << 14) ^ (~0L << 21) ^ (~0L << 28) ^ (~0L << 35);
+        }
+        else if ((x ^= (long) buffer[offset++] << 42) >= 0L)
+        {
+            x ^= (~0L << 7) ^ (~0L << 14) ^ (~0L << 21) ^ (~0L << 28) ^ (~0L << 35)
+                    ^ (~0L << 42);
+        }
+        else if ((x ^= (long) buffer[offset++] << 49) < 0L)
+        {
+            x ^= (~0L << 7) ^ (~0L << 14) ^ (~0L << 21) ^ (~0L << 28) ^ (~0L << 35)
+                    ^ (~0L << 42) ^ (~0L << 49);
+        }
+        else
+        {
+            x ^= (long) buffer[offset++] << 56;
+            x ^= (~0L << 7) ^ (~0L << 14) ^ (~0L << 21) ^ (~0L << 28) ^ (~0L << 35)
+                    ^ (~0L << 42) ^ (~0L << 49) ^ (~0L << 56);
+            // the 10th byte must be the last
+            if (x < 0L && buffer[offset++] < 0)
+            {
+                // malformed, thrown by the slow path
+                return readRawVarint64SlowPath();
+            }
+        }
+
+        this.offset = offset;
+        return x;
+    }
+
+    /**
+     * Reads a var int 64 one byte at a time.
+     */
+    private long readRawVarint64SlowPath() throws IOException
     {
         final byte[] buffer = this.buffer;
         int offset = this.offset;
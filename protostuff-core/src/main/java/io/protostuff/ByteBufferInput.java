@@ -40,7 +40,7 @@ import io.protostuff.StringSerializer.STRING;
  * @author David Yu
  * @created Jun 22, 2010
  */
-public final class ByteBufferInput implements Input
+public final class ByteBufferInput implements PackedInput, StringCacheInput
 {
 
     private final ByteBuffer buffer;
@@ -97,6 +97,7 @@ public final class ByteBufferInput implements Input
     /**
      * Return true if currently reading packed field
      */
+    @Override
     public boolean isCurrentFieldPacked()
     {
         return packedLimit != 0 && packedLimit != buffer.position();
@@ -450,6 +451,21 @@ public final class ByteBufferInput implements Input
         // return STRING.deser(buffer, offset, length);
     }
 
+    @Override
+    public String readString(StringCache cache) throws IOException
+    {
+        final int length = readRawVarint32();
+        if (length < 0)
+            throw ProtobufException.negativeSize();
+
+        if (buffer.remaining() < length)
+            throw ProtobufException.misreportedSize();
+
+        final int currPosition = buffer.position();
+        buffer.position(currPosition + length);
+        return cache.getString(buffer, currPosition, length);
+    }
+
     @Override
     public ByteString readBytes() throws IOException
     {
@@ -522,9 +538,57 @@ public final class ByteBufferInput implements Input
     }
 
     /**
-     * Reads a var int 32 from the internal byte buffer.
+     * Reads a var int 32 from the internal byte buffer. If larger than 32 bits, the upper bits are discarded.
+     * <p>
+     * If at least 10 bytes remain, the bytes are xor-ed into place without checking each continuation bit, and the
+     * continuation bits are cleared at the end (like protobuf-java). Otherwise the varint is read one byte at a time.
+     * The relative gets are kept, since the absolute ones are slower on direct buffers.
      */
     public int readRawVarint32() throws IOException
+    {
+        final ByteBuffer buffer = this.buffer;
+        final int start = buffer.position();
+        if (buffer.limit() - start < 10)
+            return readRawVarint32SlowPath();
+
+        int x = buffer.get();
+        if (x >= 0)
+            return x;
+
+        if ((x ^= buffer.get() << 7) < 0)
+        {
+            x ^= ~0 << 7;
+        }
+        else if ((x ^= buffer.get() << 14) >= 0)
+        {
+            x ^= (~0 << 7) ^ (~0 << 14);
+        }
+        else if ((x ^= buffer.get() << 21) < 0)
+        {
+            x ^= (~0 << 7) ^ (~0 << 14) ^ (~0 << 21);
+        }
+        else
+        {
+            final int y = buffer.get();
+            x ^= y << 28;
+            x ^= (~0 << 7) ^ (~0 << 14) ^ (~0 << 21) ^ (~0 << 28);
+            // the upper bits are discarded, but at most 10 bytes are read
+            if (y < 0 && buffer.get() < 0 && buffer.get() < 0
+                    && buffer.get() < 0 && buffer.get() < 0 && buffer.get() < 0)
+            {
+                // malformed, thrown by the slow path
+                buffer.position(start);
+                return readRawVarint32SlowPath();
+            }
+        }
+
+        return x;
+    }
+
+    /**
+     * Reads a var int 32 one byte at a time.
+     */
+    private int readRawVarint32SlowPath() throws IOException
     {
         byte tmp = buffer.get();
         if (tmp >= 0)
@@ -573,9 +637,71 @@ public final class ByteBufferInput implements Input
     }
 
     /**
-     * Reads a var int 64 from the internal byte buffer.
+     * Reads a var int 64 from the internal byte buffer, like {@link #readRawVarint32()}.
      */
     public long readRawVarint64() throws IOException
+    {
+        final ByteBuffer buffer = this.buffer;
+        final int start = buffer.position();
+        if (buffer.limit() - start < 10)
+            return readRawVarint64SlowPath();
+
+        int y = buffer.get();
+        if (y >= 0)
+            return y;
+
+        long x;
+        if ((y ^= buffer.get() << 7) < 0)
+        {
+            x = y ^ (~0 << 7);
+        }
+        else if ((y ^= buffer.get() << 14) >= 0)
+        {
+            x = y ^ ((~0 << 7) ^ (~0 << 14));
+        }
+        else if ((y ^= buffer.get() << 21) < 0)
+        {
+            x = y ^ ((~0 << 7) ^ (~0 << 14) ^ (~0 << 21));
+        }
+        else if ((x = y ^ ((long) buffer.get() << 28)) >= 0L)
+        {
+            x ^= (~0L << 7) ^ (~0L << 14) ^ (~0L << 21) ^ (~0L << 28);
+        }
+        else if ((x ^= (long) buffer.get() << 35) < 0L)
+        {
+            x ^= (~0L << 7) ^ (~0L << 14) ^ (~0L << 21) ^ (~0L << 28) ^ (~0L << 35);
+        }
+        else if ((x ^= (long) buffer.get() << 42) >= 0L)
+        {
+            x ^= (~0L << 7) ^ (~0L << 14) ^ (~0L << 21) ^ (~0L << 28) ^ (~0L << 35)
+                    ^ (~0L << 42);
+        }
+        else if ((x ^= (long) buffer.get() << 49) < 0L)
+        {
+            x ^= (~0L << 7) ^ (~0L << 14) ^ (~0L << 21) ^ (~0L << 28) ^ (~0L << 35)
+                    ^ (~0L << 42) ^ (~0L << 49);
+        }
+        else
+        {
+            x ^= (long) buffer.get() << 56;
+            x ^= (~0L << 7) ^ (~0L << 14) ^ (~0L << 21) ^ (~0L << 28) ^ (~0L << 35)
+                    ^ (~0L << 42) ^ (~0L << 49) ^ (~0L << 56);
+            // the 10th byte must be the last
+            if (x < 0L && buffer.get() < 0)
+            {
+                // malformed, thrown by the slow path
+                buffer.position(start);
+                return readRawVarint64SlowPath();
+            }
+        }
+
+        return x;
+    }
+
+    /**
+     * Reads a var int 64 one byte at a time.
+     */
+    private long readRawVarint64SlowPath() throws IOException
     {
         // final byte[] buffer = this.buffer;
         // int offset = this.offset;
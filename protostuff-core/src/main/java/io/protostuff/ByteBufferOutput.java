@@ -0,0 +1,562 @@
+package io.protostuff;
+
+import static io.protostuff.ProtobufOutput.computeRawVarint32Size;
+import static io.protostuff.ProtobufOutput.computeRawVarint64Size;
+import static io.protostuff.ProtobufOutput.encodeZigZag32;
+import static io.protostuff.ProtobufOutput.encodeZigZag64;
+import static io.protostuff.WireFormat.WIRETYPE_FIXED32;
+import static io.protostuff.WireFormat.WIRETYPE_FIXED64;
+import static io.protostuff.WireFormat.WIRETYPE_LENGTH_DELIMITED;
+import static io.protostuff.WireFormat.WIRETYPE_VARINT;
+import static io.protostuff.WireFormat.makeTag;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Serializes directly into {@link ByteBuffer}s (typically direct buffers), so that the result can be written to a
+ * channel without copying from the heap.
+ * <p>
+ * Writes into a single caller-supplied buffer (its position is advanced, a {@link BufferOverflowException} is thrown
+ * if it is too small), or into a chain of buffers obtained from an {@link Allocator}, which {@link #getBuffers()}
+ * returns ready for a gathering write.
+ * <p>
+ * The scalar encoding is shared by both formats, see {@link ByteBufferProtostuffOutput} and
+ * {@link ByteBufferProtobufOutput}.
+ */
+public abstract class ByteBufferOutput implements PackedOutput
+{
+
+    /**
+     * Supplies (and takes back) the buffers of a chain.
+     */
+    public interface Allocator
+    {
+        /**
+         * Returns a buffer with at least {@code minCapacity} bytes remaining.
+         */
+        ByteBuffer allocate(int minCapacity);
+
+        /**
+         * Called on {@link ByteBufferOutput#clear()} for every buffer previously allocated.
+         */
+        void release(ByteBuffer buffer);
+    }
+
+    public static final int DEFAULT_BUFFER_SIZE = 4096;
+
+    /**
+     * Allocates direct buffers of {@link #DEFAULT_BUFFER_SIZE} (or larger if needed), left to the gc on release.
+     */
+    public static final Allocator DIRECT = new Allocator()
+    {
+        @Override
+        public ByteBuffer allocate(int minCapacity)
+        {
+            return ByteBuffer.allocateDirect(Math.max(minCapacity,
+                    DEFAULT_BUFFER_SIZE));
+        }
+
+        @Override
+        public void release(ByteBuffer buffer)
+        {
+            // gc
+        }
+    };
+
+    /**
+     * The completed segments of the chain, readable (position to limit). Empty segments are kept so that the index of
+     * a segment never changes.
+     */
+    final ArrayList<ByteBuffer> segments = new ArrayList<>();
+
+    /**
+     * The buffers obtained from the allocator.
+     */
+    final ArrayList<ByteBuffer> allocated = new ArrayList<>();
+
+    final Allocator allocator;
+
+    final ByteBuffer head;
+
+    /**
+     * The position and limit of the head buffer as given, restored on {@link #clear()}.
+     */
+    final int headPosition, headLimit;
+
+    /**
+     * The buffer being written, and the start of its segment.
+     */
+    ByteBuffer current;
+    int segmentStart;
+
+    boolean littleEndian;
+
+    int size;
+
+    /**
+     * Writes into the given {@code buffer} only.
+     */
+    public ByteBufferOutput(ByteBuffer buffer)
+    {
+        this(buffer, null);
+    }
+
+    /**
+     * Writes into the given {@code buffer} first, then into the buffers of the {@code allocator} (null to write into the
+     * given buffer only).
+     */
+    public ByteBufferOutput(ByteBuffer buffer, Allocator allocator)
+    {
+        this.head = buffer;
+        this.allocator = allocator;
+        headPosition = buffer.position();
+        headLimit = buffer.limit();
+        reset(buffer);
+    }
+
+    /**
+     * Writes into a chain of buffers obtained from the {@code allocator}.
+     */
+    public ByteBufferOutput(Allocator allocator)
+    {
+        this(allocator.allocate(1), allocator);
+        allocated.add(head);
+    }
+
+    private void reset(ByteBuffer buffer)
+    {
+        current = buffer;
+        segmentStart = buffer.position();
+        littleEndian = buffer.order() == ByteOrder.LITTLE_ENDIAN;
+    }
+
+    /**
+     * Returns the number of bytes written.
+     */
+    public final int getSize()
+    {
+        return size;
+    }
+
+    /**
+     * Resets this output for re-use. The buffers obtained from the allocator (other than the first) are released, and
+     * the first buffer gets back the position and limit it had when this output was created.
+     */
+    public ByteBufferOutput clear()
+    {
+        if (allocator != null)
+        {
+            for (int i = allocated.size(); i-- > 0;)
+            {
+                final ByteBuffer buffer = allocated.get(i);
+                if (buffer != head)
+                {
+                    allocator.release(buffer);
+                    allocated.remove(i);
+                }
+            }
+        }
+
+        segments.clear();
+        head.limit(headLimit);
+        head.position(headPosition);
+        reset(head);
+        size = 0;
+        return this;
+    }
+
+    /**
+     * Returns the written bytes as a list of readable buffers (sharing the content of the underlying buffers), e.g
+     * for {@link java.nio.channels.GatheringByteChannel#write(ByteBuffer[])}.
+     */
+    public final List<ByteBuffer> getBuffers()
+    {
+        final ArrayList<ByteBuffer> buffers = new ArrayList<>(segments.size() + 1);
+        for (ByteBuffer segment : segments)
+        {
+            if (segment.hasRemaining())
+                buffers.add(segment.duplicate());
+        }
+
+        if (current.position() != segmentStart)
+            buffers.add(segment(current, segmentStart, current.position()));
+
+        return buffers;
+    }
+
+    /**
+     * Copies the written bytes into a new byte array.
+     */
+    public final byte[] toByteArray()
+    {
+        final byte[] data = new byte[size];
+        int offset = 0;
+        for (ByteBuffer b : getBuffers())
+        {
+            final int len = b.remaining();
+            b.get(data, offset, len);
+            offset += len;
+        }
+        return data;
+    }
+
+    static ByteBuffer segment(ByteBuffer buffer, int start, int end)
+    {
+        final ByteBuffer segment = buffer.duplicate();
+        segment.limit(end);
+        segment.position(start);
+        return segment;
+    }
+
+    /**
+     * Makes sure the current buffer has room for {@code n} bytes, moving to the next buffer of the chain if needed.
+     */
+    final void ensure(int n)
+    {
+        if (current.remaining() >= n)
+            return;
+
+        if (allocator == null)
+            throw new BufferOverflowException();
+
+        segments.add(segment(current, segmentStart, current.position()));
+
+        final ByteBuffer next = allocator.allocate(n);
+        allocated.add(next);
+        reset(next);
+    }
+
+    final void writeRawVarInt32(int value)
+    {
+        final int len = computeRawVarint32Size(value);
+        ensure(len);
+        size += len;
+        final ByteBuffer buffer = current;
+        while ((value & ~0x7F) != 0)
+        {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    final void writeRawVarInt64(long value)
+    {
+        final int len = computeRawVarint64Size(value);
+        ensure(len);
+        size += len;
+        final ByteBuffer buffer = current;
+        while ((value & ~0x7FL) != 0)
+        {
+            buffer.put((byte) (((int) value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    final void writeRawLittleEndian32(int value)
+    {
+        ensure(4);
+        size += 4;
+        current.putInt(littleEndian ? value : Integer.reverseBytes(value));
+    }
+
+    final void writeRawLittleEndian64(long value)
+    {
+        ensure(8);
+        size += 8;
+        current.putLong(littleEndian ? value : Long.reverseBytes(value));
+    }
+
+    /**
+     * Copies the bytes, spanning several buffers if needed.
+     */
+    final void writeRawBytes(byte[] value, int offset, int len)
+    {
+        final int total = len;
+        while (current.remaining() < len)
+        {
+            final int remaining = current.remaining();
+            if (allocator == null)
+                throw new BufferOverflowException();
+
+            current.put(value, offset, remaining);
+            offset += remaining;
+            len -= remaining;
+            ensure(1);
+        }
+        current.put(value, offset, len);
+        size += total;
+    }
+
+    final void writeRawBytes(ByteBuffer value)
+    {
+        final ByteBuffer src = value.duplicate();
+        final int total = src.remaining();
+        while (current.remaining() < src.remaining())
+        {
+            if (allocator == null)
+                throw new BufferOverflowException();
+
+            final int limit = src.limit();
+            src.limit(src.position() + current.remaining());
+            current.put(src);
+            src.limit(limit);
+            ensure(1);
+        }
+        current.put(src);
+        size += total;
+    }
+
+    /**
+     * Computes the size of the string encoded the same way as {@link StringSerializer} (4 bytes for a surrogate pair,
+     * 3 bytes for an unpaired surrogate).
+     */
+    static int computeUTF8Size(String value)
+    {
+        final int len = value.length();
+        int size = len;
+        for (int i = 0; i < len; i++)
+        {
+            final char c = value.charAt(i);
+            if (c < 0x0080)
+                continue;
+
+            if (c < 0x0800)
+                size++;
+            else if (Character.isHighSurrogate(c) && i + 1 < len
+                    && Character.isLowSurrogate(value.charAt(i + 1)))
+            {
+                // 2 chars, 4 bytes
+                size += 2;
+                i++;
+            }
+            else
+                size += 2;
+        }
+        return size;
+    }
+
+    final void writeUTF8(String value, int utf8Size)
+    {
+        if (current.remaining() < utf8Size)
+        {
+            // spans buffers
+            final byte[] data = new byte[utf8Size];
+            writeUTF8(value, ByteBuffer.wrap(data));
+            writeRawBytes(data, 0, utf8Size);
+            return;
+        }
+
+        size += utf8Size;
+        if (utf8Size == value.length())
+        {
+            // ascii
+            final ByteBuffer buffer = current;
+            for (int i = 0, len = value.length(); i < len; i++)
+                buffer.put((byte) value.charAt(i));
+        }
+        else
+            writeUTF8(value, current);
+    }
+
+    static void writeUTF8(String value, ByteBuffer buffer)
+    {
+        for (int i = 0, len = value.length(); i < len; i++)
+        {
+            final char c = value.charAt(i);
+            if (c < 0x0080)
+                buffer.put((byte) c);
+            else if (c < 0x0800)
+            {
+                buffer.put((byte) (0xC0 | ((c >> 6) & 0x1F)));
+                buffer.put((byte) (0x80 | ((c >> 0) & 0x3F)));
+            }
+            else if (Character.isHighSurrogate(c) && i + 1 < len
+                    && Character.isLowSurrogate(value.charAt(i + 1)))
+            {
+                final int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                buffer.put((byte) (0xF0 | ((codePoint >> 18) & 0x07)));
+                buffer.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+                buffer.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | ((codePoint >> 0) & 0x3F)));
+            }
+            else
+            {
+                buffer.put((byte) (0xE0 | ((c >> 12) & 0x0F)));
+                buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | ((c >> 0) & 0x3F)));
+            }
+        }
+    }
+
+    @Override
+    public void writeInt32(int fieldNumber, int value, boolean repeated) throws IOException
+    {
+        writeRawVarInt32(makeTag(fieldNumber, WIRETYPE_VARINT));
+        if (value < 0)
+            writeRawVarInt64(value);
+        else
+            writeRawVarInt32(value);
+    }
+
+    @Override
+    public void writeUInt32(int fieldNumber, int value, boolean repeated) throws IOException
+    {
+        writeRawVarInt32(makeTag(fieldNumber, WIRETYPE_VARINT));
+        writeRawVarInt32(value);
+    }
+
+    @Override
+    public void writeSInt32(int fieldNumber, int value, boolean repeated) throws IOException
+    {
+        writeRawVarInt32(makeTag(fieldNumber, WIRETYPE_VARINT));
+        writeRawVarInt32(encodeZigZag32(value));
+    }
+
+    @Override
+    public void writeFixed32(int fieldNumber, int value, boolean repeated) throws IOException
+    {
+        writeRawVarInt32(makeTag(fieldNumber, WIRETYPE_FIXED32));
+        writeRawLittleEndian32(value);
+    }
+
+    @Override
+    public void writeSFixed32(int fieldNumber, int value, boolean repeated) throws IOException
+    {
+        writeRawVarInt32(makeTag(fieldNumber, WIRETYPE_FIXED32));
+        writeRawLittleEndian32(value);
+    }
+
+    @Override
+    public void writeInt64(int fieldNumber, long value, boolean repeated) throws IOException
+    {
+        writeRawVarInt32(makeTag(fieldNumber, WIRETYPE_VARINT));
+        writeRawVarInt64(value);
+    }
+
+    @Override
+    public void writeUInt64(int fieldNumber, long value, boolean repeated) throws IOException
+    {
+        writeRawVarInt32(makeTag(fieldNumber, WIRETYPE_VARINT));
+        writeRawVarInt64(value);
+    }
+
+    @Override
+    public void writeSInt64(int fieldNumber, long value, boolean repeated) throws IOException
+    {
+        writeRawVarInt32(makeTag(fieldNumber, WIRETYPE_VARINT));
+        writeRawVarInt64(encodeZigZag64(value));
+    }
+
+    @Override
+    public void writeFixed64(int fieldNumber, long value, boolean repeated) throws IOException
+    {
+        writeRawVarInt32(makeTag(fieldNumber, WIRETYPE_FIXED64));
+        writeRawLittleEndian64(value);
+    }
+
+    @Override
+    public void writeSFixed64(int fieldNumber, long value, boolean repeated) throws IOException
+    {
+        writeRawVarInt32(makeTag(fieldNumber, WIRETYPE_FIXED64));
+        writeRawLittleEndian64(value);
+    }
+
+    @Override
+    public void writeFloat(int fieldNumber, float value, boolean repeated) throws IOException
+    {
+        writeRawVarInt32(makeTag(fieldNumber, WIRETYPE_FIXED32));
+        writeRawLittleEndian32(Float.floatToRawIntBits(value));
+    }
+
+    @Override
+    public void writeDouble(int fieldNumber, double value, boolean repeated) throws IOException
+    {
+        writeRawVarInt32(makeTag(fieldNumber, WIRETYPE_FIXED64));
+        writeRawLittleEndian64(Double.doubleToRawLongBits(value));
+    }
+
+    @Override
+    public void writeBool(int fieldNumber, boolean value, boolean repeated) throws IOException
+    {
+        writeRawVarInt32(makeTag(fieldNumber, WIRETYPE_VARINT));
+        ensure(1);
+        size++;
+        current.put(value ? (byte) 0x01 : 0x00);
+    }
+
+    @Override
+    public void writeEnum(int fieldNumber, int number, boolean repeated) throws IOException
+    {
+        writeInt32(fieldNumber, number, repeated);
+    }
+
+    @Override
+    public void writeString(int fieldNumber, String value, boolean repeated) throws IOException
+    {
+        final int utf8Size = computeUTF8Size(value);
+        writeRawVarInt32(makeTag(fieldNumber, WIRETYPE_LENGTH_DELIMITED));
+        writeRawVarInt32(utf8Size);
+        writeUTF8(value, utf8Size);
+    }
+
+    @Override
+    public void writeBytes(int fieldNumber, ByteString value, boolean repeated) throws IOException
+    {
+        writeByteArray(fieldNumber, value.getBytes(), repeated);
+    }
+
+    @Override
+    public void writeByteArray(int fieldNumber, byte[] bytes, boolean repeated) throws IOException
+    {
+        writeByteRange(false, fieldNumber, bytes, 0, bytes.length, repeated);
+    }
+
+    @Override
+    public void writeByteRange(boolean utf8String, int fieldNumber, byte[] value,
+            int offset, int length, boolean repeated) throws IOException
+    {
+        writeRawVarInt32(makeTag(fieldNumber, WIRETYPE_LENGTH_DELIMITED));
+        writeRawVarInt32(length);
+        writeRawBytes(value, offset, length);
+    }
+
+    @Override
+    public void writePackedLength(int fieldNumber, int length) throws IOException
+    {
+        writeRawVarInt32(makeTag(fieldNumber, WIRETYPE_LENGTH_DELIMITED));
+        writeRawVarInt32(length);
+    }
+
+    @Override
+    public void writePackedVarInt64(long value) throws IOException
+    {
+        writeRawVarInt64(value);
+    }
+
+    @Override
+    public void writePackedFixed32(int value) throws IOException
+    {
+        writeRawLittleEndian32(value);
+    }
+
+    @Override
+    public void writePackedFixed64(long value) throws IOException
+    {
+        writeRawLittleEndian64(value);
+    }
+
+    @Override
+    public void writeBytes(int fieldNumber, ByteBuffer value, boolean repeated) throws IOException
+    {
+        writeRawVarInt32(makeTag(fieldNumber, WIRETYPE_LENGTH_DELIMITED));
+        writeRawVarInt32(value.remaining());
+        writeRawBytes(value);
+    }
+}
@@ -0,0 +1,172 @@
+package io.protostuff;
+
+import static io.protostuff.ProtobufOutput.computeRawVarint32Size;
+import static io.protostuff.WireFormat.WIRETYPE_LENGTH_DELIMITED;
+import static io.protostuff.WireFormat.makeTag;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Serializes in the protobuf format directly into {@link ByteBuffer}s.
+ * <p>
+ * A nested message is written after a 1-byte placeholder for its length. If the length needs more bytes, the
+ * already-written content is shifted when writing into a single buffer, otherwise the length is spliced into the chain
+ * as a separate segment (no copy).
+ * <p>
+ * When created with a {@link SizeComputingOutput} (that computed the size of the same message beforehand), the length
+ * of the nested messages is written up front instead.
+ */
+public final class ByteBufferProtobufOutput extends ByteBufferOutput
+{
+
+    private final SizeComputingOutput computed;
+    private int nextNested;
+
+    /**
+     * Writes into the given {@code buffer} only.
+     */
+    public ByteBufferProtobufOutput(ByteBuffer buffer)
+    {
+        super(buffer);
+        computed = null;
+    }
+
+    /**
+     * Writes into the given {@code buffer} first, then into the buffers of the {@code allocator}.
+     */
+    public ByteBufferProtobufOutput(ByteBuffer buffer, Allocator allocator)
+    {
+        super(buffer, allocator);
+        computed = null;
+    }
+
+    /**
+     * Writes into a chain of buffers obtained from the {@code allocator}.
+     */
+    public ByteBufferProtobufOutput(Allocator allocator)
+    {
+        super(allocator);
+        computed = null;
+    }
+
+    /**
+     * Writes into the given {@code buffer} only, using the sizes {@code computed} beforehand for the length of the nested
+     * messages.
+     */
+    public ByteBufferProtobufOutput(ByteBuffer buffer, SizeComputingOutput computed)
+    {
+        super(buffer);
+        this.computed = computed;
+    }
+
+    @Override
+    public ByteBufferProtobufOutput clear()
+    {
+        super.clear();
+        nextNested = 0;
+        return this;
+    }
+
+    @Override
+    public <T> void writeObject(final int fieldNumber, final T value, final Schema<T> schema,
+            final boolean repeated) throws IOException
+    {
+        writeRawVarInt32(makeTag(fieldNumber, WIRETYPE_LENGTH_DELIMITED));
+
+        if (computed != null)
+        {
+            writeObjectWithComputedSize(value, schema);
+            return;
+        }
+
+        ensure(1);
+        final ByteBuffer buffer = current;
+        final int segmentIndex = segments.size(), reserved = buffer.position(),
+                lastSize = size;
+
+        // the 1-byte delim
+        buffer.put((byte) 0);
+        size++;
+
+        schema.writeTo(this, value);
+
+        final int msgSize = size - lastSize - 1;
+
+        if (msgSize < 128)
+        {
+            // fits (the segments share the content of the buffer)
+            buffer.put(reserved, (byte) msgSize);
+            return;
+        }
+
+        final byte[] delimited = new byte[computeRawVarint32Size(msgSize)];
+        ProtobufOutput.writeRawVarInt32(msgSize, delimited, 0);
+
+        // add the difference
+        size += (delimited.length - 1);
+
+        if (segmentIndex != segments.size())
+        {
+            // split the segment that contains the placeholder
+            final ByteBuffer segment = segments.get(segmentIndex);
+            segments.set(segmentIndex, segment(buffer, segment.position(), reserved));
+            segments.add(segmentIndex + 1, ByteBuffer.wrap(delimited));
+            segments.add(segmentIndex + 2, segment(buffer, reserved + 1, segment.limit()));
+        }
+        else if (allocator != null)
+        {
+            segments.add(segment(buffer, segmentStart, reserved));
+            segments.add(ByteBuffer.wrap(delimited));
+            segmentStart = reserved + 1;
+        }
+        else
+        {
+            // single buffer, shift the message contents
+            final int extra = delimited.length - 1, start = reserved + 1,
+                    end = buffer.position();
+            if (buffer.remaining() < extra)
+                throw new BufferOverflowException();
+
+            if (buffer.hasArray())
+            {
+                final byte[] array = buffer.array();
+                final int offset = buffer.arrayOffset();
+                System.arraycopy(array, offset + start, array, offset + start + extra,
+                        msgSize);
+            }
+            else
+            {
+                final byte[] contents = new byte[msgSize];
+                segment(buffer, start, end).get(contents);
+                buffer.position(start + extra);
+                buffer.put(contents);
+            }
+
+            buffer.position(end + extra);
+            for (int i = 0; i < delimited.length; i++)
+                buffer.put(reserved + i, delimited[i]);
+        }
+    }
+
+    private <T> void writeObjectWithComputedSize(final T value, final Schema<T> schema)
+            throws IOException
+    {
+        if (nextNested == computed.nestedCount)
+            throw new IllegalStateException("More nested messages than computed.");
+
+        final int msgSize = computed.nestedSizes[nextNested++];
+        writeRawVarInt32(msgSize);
+
+        final int lastSize = size;
+
+        schema.writeTo(this, value);
+
+        if (size - lastSize != msgSize)
+        {
+            throw new IllegalStateException("The size of the nested message " +
+                    schema.messageFullName() + " changed since it was computed.");
+        }
+    }
+}
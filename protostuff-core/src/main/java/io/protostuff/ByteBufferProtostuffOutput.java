@@ -0,0 +1,51 @@
+package io.protostuff;
+
+import static io.protostuff.WireFormat.WIRETYPE_END_GROUP;
+import static io.protostuff.WireFormat.WIRETYPE_START_GROUP;
+import static io.protostuff.WireFormat.makeTag;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Serializes in the protostuff format directly into {@link ByteBuffer}s. Nested messages are encoded as groups, so the
+ * data is written strictly sequentially.
+ */
+public final class ByteBufferProtostuffOutput extends ByteBufferOutput
+{
+
+    /**
+     * Writes into the given {@code buffer} only.
+     */
+    public ByteBufferProtostuffOutput(ByteBuffer buffer)
+    {
+        super(buffer);
+    }
+
+    /**
+     * Writes into the given {@code buffer} first, then into the buffers of the {@code allocator}.
+     */
+    public ByteBufferProtostuffOutput(ByteBuffer buffer, Allocator allocator)
+    {
+        super(buffer, allocator);
+    }
+
+    /**
+     * Writes into a chain of buffers obtained from the {@code allocator}.
+     */
+    public ByteBufferProtostuffOutput(Allocator allocator)
+    {
+        super(allocator);
+    }
+
+    @Override
+    public <T> void writeObject(final int fieldNumber, final T value, final Schema<T> schema,
+            final boolean repeated) throws IOException
+    {
+        writeRawVarInt32(makeTag(fieldNumber, WIRETYPE_START_GROUP));
+
+        schema.writeTo(this, value);
+
+        writeRawVarInt32(makeTag(fieldNumber, WIRETYPE_END_GROUP));
+    }
+}
@@ -70,7 +70,7 @@ import io.protostuff.StringSerializer.STRING;
  * @author kenton@google.com Kenton Varda
  * @author David Yu
  */
-public final class CodedInput implements Input
+public final class CodedInput implements PackedInput, StringCacheInput, TypeDictionaryInput
 {
     /**
      * Create a new CodedInput wrapping the given InputStream.
@@ -291,6 +291,24 @@ public final class CodedInput implements Input
         }
     }
 
+    @Override
+    public String readString(StringCache cache) throws IOException
+    {
+        final int size = readRawVarint32();
+        if (size <= (bufferSize - bufferPos) && size > 0)
+        {
+            final String result = cache.getString(buffer, bufferPos, size);
+            bufferPos += size;
+            return result;
+        }
+        else
+        {
+            // the bytes span a refill, cached only if small enough
+            final byte[] bytes = readRawBytes(size);
+            return cache.getString(bytes, 0, bytes.length);
+        }
+    }
+
     @Override
     public <T> T mergeObject(T value, final Schema<T> schema) throws IOException
     {
@@ -448,9 +466,62 @@ public final class CodedInput implements Input
     // =================================================================
 
     /**
-     * Read a raw Varint from the stream. If larger than 32 bits, discard the upper bits.
+     * Reads a var int 32 from the stream. If larger than 32 bits, the upper bits are discarded.
+     * <p>
+     * If at least 10 bytes remain, the bytes are xor-ed into place without checking each continuation bit, and the
+     * continuation bits are cleared at the end (like protobuf-java). Otherwise the varint is read one byte at a time.
      */
     public int readRawVarint32() throws IOException
+    {
+        final byte[] buffer = this.buffer;
+        int pos = bufferPos;
+        if (pos == bufferSize)
+            return readRawVarint32SlowPath();
+
+        int x = buffer[pos++];
+        if (x >= 0)
+        {
+            bufferPos = pos;
+            return x;
+        }
+
+        if (bufferSize - pos < 9)
+            return readRawVarint32SlowPath();
+
+        if ((x ^= buffer[pos++] << 7) < 0)
+        {
+            x ^= ~0 << 7;
+        }
+        else if ((x ^= buffer[pos++] << 14) >= 0)
+        {
+            x ^= (~0 << 7) ^ (~0 << 14);
+        }
+        else if ((x ^= buffer[pos++] << 21) < 0)
+        {
+            x ^= (~0 << 7) ^ (~0 << 14) ^ (~0 << 21);
+        }
+        else
+        {
+            final int y = buffer[pos++];
+            x ^= y << 28;
+            x ^= (~0 << 7) ^ (~0 << 14) ^ (~0 << 21) ^ (~0 << 28);
+            // the upper bits are discarded, but at most 10 bytes are read
+            if (y < 0 && buffer[pos++] < 0 && buffer[pos++] < 0
+                    && buffer[pos++] < 0 && buffer[pos++] < 0 && buffer[pos++] < 0)
+            {
+                // malformed, thrown by the slow path
+                return readRawVarint32SlowPath();
+            }
+        }
+
+        bufferPos = pos;
+        return x;
+    }
+
+    /**
+     * Reads a var int 32 one byte at a time, refilling the buffer as needed.
+     */
+    private int readRawVarint32SlowPath() throws IOException
     {
         byte tmp = readRawByte();
         if (tmp >= 0)
@@ -586,9 +657,77 @@ public final class CodedInput implements Input
     }
 
     /**
-     * Read a raw Varint from the stream.
+     * Reads a var int 64 from the stream, like {@link #readRawVarint32()}.
      */
     public long readRawVarint64() throws IOException
+    {
+        final byte[] buffer = this.buffer;
+        int pos = bufferPos;
+        if (pos == bufferSize)
+            return readRawVarint64SlowPath();
+
+        int y = buffer[pos++];
+        if (y >= 0)
+        {
+            bufferPos = pos;
+            return y;
+        }
+
+        if (bufferSize - pos < 9)
+            return readRawVarint64SlowPath();
+
+        long x;
+        if ((y ^= buffer[pos++] << 7) < 0)
+        {
+            x = y ^ (~0 << 7);
+        }
+        else if ((y ^= buffer[pos++] << 14) >= 0)
+        {
+            x = y ^ ((~0 << 7) ^ (~0 << 14));
+        }
+        else if ((y ^= buffer[pos++] << 21) < 0)
+        {
+            x = y ^ ((~0 << 7) ^ (~0 << 14) ^ (~0 << 21));
+        }
+        else if ((x = y ^ ((long) buffer[pos++] << 28)) >= 0L)
+        {
+            x ^= (~0L << 7) ^ (~0L << 14) ^ (~0L << 21) ^ (~0L << 28);
+        }
+        else if ((x ^= (long) buffer[pos++] << 35) < 0L)
+        {
+            x ^= (~0L << 7) ^ (~0L << 14) ^ (~0L << 21) ^ (~0L << 28) ^ (~0L << 35);
+        }
+        else if ((x ^= (long) buffer[pos++] << 42) >= 0L)
+        {
+            x ^= (~0L << 7) ^ (~0L << 14) ^ (~0L << 21) ^ (~0L << 28) ^ (~0L << 35)
+                    ^ (~0L << 42);
+        }
+        else if ((x ^= (long) buffer[pos++] << 49) < 0L)
+        {
+            x ^= (~0L << 7) ^ (~0L << 14) ^ (~0L << 21) ^ (~0L << 28) ^ (~0L << 35)
+                    ^ (~0L << 42) ^ (~0L << 49);
+        }
+        else
+        {
+            x ^= (long) buffer[pos++] << 56;
+            x ^= (~0L << 7) ^ (~0L << 14) ^ (~0L << 21) ^ (~0L << 28) ^ (~0L << 35)
+                    ^ (~0L << 42) ^ (~0L << 49) ^ (~0L << 56);
+            // the 10th byte must be the last
+            if (x < 0L && buffer[pos++] < 0)
+            {
+                // malformed, thrown by the slow path
+                return readRawVarint64SlowPath();
+            }
+        }
+
+        bufferPos = pos;
+        return x;
+    }
+
+    /**
+     * Reads a var int 64 one byte at a time, refilling the buffer as needed.
+     */
+    private long readRawVarint64SlowPath() throws IOException
     {
         int shift = 0;
         long result = 0;
@@ -680,6 +819,7 @@ public final class CodedInput implements Input
     private final InputStream input;
     private int lastTag;
     private int packedLimit = 0;
+    private TypeDictionary typeDictionary;
 
     /**
      * The total number of bytes read before the current buffer. The total bytes read up to the current position can be
@@ -744,6 +884,21 @@ public final class CodedInput implements Input
         this.decodeNestedMessageAsGroup = decodeNestedMessageAsGroup;
     }
 
+    /**
+     * Reads the type names through the {@code typeDictionary} (null to read them in full).
+     */
+    public CodedInput setTypeDictionary(TypeDictionary typeDictionary)
+    {
+        this.typeDictionary = typeDictionary;
+        return this;
+    }
+
+    @Override
+    public TypeDictionary getTypeDictionary()
+    {
+        return typeDictionary;
+    }
+
     /*
      * Set the maximum message recursion depth. In order to prevent malicious messages from causing stack overflows,
      * {@code CodedInput} limits how deeply messages may be nested. The default limit is 64.
@@ -860,6 +1015,7 @@ public final class CodedInput implements Input
     /**
      * Return true if currently reading packed field
      */
+    @Override
     public boolean isCurrentFieldPacked()
     {
         return packedLimit != 0 && packedLimit != getTotalBytesRead();
@@ -0,0 +1,241 @@
+package io.protostuff;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.List;
+
+/**
+ * A non-blocking decoder of a stream of length-delimited messages (written with {@code writeDelimitedTo} in either
+ * protostuff or protobuf format), fed with chunks of bytes as they arrive (e.g from a non-blocking
+ * {@link ReadableByteChannel} in a selector loop).
+ * <p>
+ * The messages that are complete are decoded right from the chunk (no copy). The bytes of a message that spans
+ * several chunks are accumulated in a reassembly buffer, which is bounded by the max message size.
+ * <p>
+ * A decoder keeps the state of a single stream and is not thread-safe.
+ */
+public final class DelimitedMessageDecoder<T>
+{
+
+    private final Schema<T> schema;
+    private final boolean protostuffMessage;
+    private final int maxMessageSize;
+
+    // the size of the current message (-1 if its delimiter is not read yet)
+    private int size = -1;
+
+    // the delimiter being read
+    private int delimiter, delimiterShift;
+
+    // the reassembly buffer
+    private byte[] pending;
+    private int pendingCount;
+
+    /**
+     * Creates a decoder with a max message size of 64MB.
+     */
+    public DelimitedMessageDecoder(Schema<T> schema, boolean protostuffMessage)
+    {
+        this(schema, protostuffMessage, CodedInput.DEFAULT_SIZE_LIMIT);
+    }
+
+    /**
+     * Creates a decoder.
+     *
+     * @param protostuffMessage
+     *            if we are parsing protostuff (true) or protobuf (false) messages
+     * @param maxMessageSize
+     *            the size of a message that is too large (a ProtobufException is thrown)
+     */
+    public DelimitedMessageDecoder(Schema<T> schema, boolean protostuffMessage,
+            int maxMessageSize)
+    {
+        if (maxMessageSize < 0)
+            throw new IllegalArgumentException("maxMessageSize must not be negative.");
+
+        this.schema = schema;
+        this.protostuffMessage = protostuffMessage;
+        this.maxMessageSize = maxMessageSize;
+    }
+
+    /**
+     * Returns true if the bytes of a message (or its delimiter) were received but the message is not complete.
+     */
+    public boolean isPartial()
+    {
+        return size != -1 || delimiterShift != 0;
+    }
+
+    /**
+     * Returns the number of bytes kept in the reassembly buffer.
+     */
+    public int getPendingCount()
+    {
+        return pendingCount;
+    }
+
+    /**
+     * Decodes the remaining bytes of the {@code chunk} (all consumed) and adds the complete messages to the
+     * {@code messages}.
+     *
+     * @return the number of messages added.
+     */
+    public int decode(ByteBuffer chunk, List<? super T> messages) throws IOException
+    {
+        int count = 0;
+        while (chunk.hasRemaining())
+        {
+            if (size == -1 && !readDelimiter(chunk))
+                break;
+
+            final T message;
+            if (pendingCount == 0 && chunk.remaining() >= size)
+            {
+                // the whole message is in the chunk
+                message = parse(chunk, size);
+                chunk.position(chunk.position() + size);
+            }
+            else
+            {
+                final int length = Math.min(chunk.remaining(), size - pendingCount);
+                if (pending == null || pending.length < size)
+                    pending = grow(pending, size, pendingCount, maxMessageSize);
+
+                chunk.get(pending, pendingCount, length);
+                pendingCount += length;
+                if (pendingCount != size)
+                    break;
+
+                message = parse(pending, 0, size);
+                pendingCount = 0;
+            }
+
+            size = -1;
+            messages.add(message);
+            count++;
+        }
+
+        return count;
+    }
+
+    /**
+     * Reads once from the {@code channel} into the {@code buffer} (cleared first), and decodes what was read.
+     *
+     * @return the number of messages added, or -1 if the end of the stream was reached (between 2 messages).
+     * @throws ProtobufException
+     *             if the stream ended in the middle of a message.
+     */
+    public int readFrom(ReadableByteChannel channel, ByteBuffer buffer,
+            List<? super T> messages) throws IOException
+    {
+        buffer.clear();
+        final int read = channel.read(buffer);
+        if (read == -1)
+        {
+            if (isPartial())
+                throw ProtobufException.truncatedMessage();
+
+            return -1;
+        }
+
+        buffer.flip();
+        return decode(buffer, messages);
+    }
+
+    /**
+     * Discards the state of the current message (e.g to reuse the decoder for another stream).
+     */
+    public void reset()
+    {
+        size = -1;
+        delimiter = 0;
+        delimiterShift = 0;
+        pendingCount = 0;
+    }
+
+    private static byte[] grow(byte[] pending, int size, int count, int max)
+    {
+        final byte[] grown = new byte[pending == null ? size
+                : Math.max(size, (int) Math.min(pending.length * 2L, max))];
+        if (count != 0)
+            System.arraycopy(pending, 0, grown, 0, count);
+
+        return grown;
+    }
+
+    /**
+     * Reads the (raw varint32) delimiter, which may span several chunks.
+     */
+    private boolean readDelimiter(ByteBuffer chunk) throws ProtobufException
+    {
+        while (chunk.hasRemaining())
+        {
+            final byte b = chunk.get();
+            delimiter |= (b & 0x7f) << delimiterShift;
+            if (b >= 0)
+            {
+                final int len = delimiter;
+                delimiter = 0;
+                delimiterShift = 0;
+
+                if (len < 0)
+                    throw ProtobufException.negativeSize();
+
+                if (len > maxMessageSize)
+                {
+                    throw new ProtobufException("size limit exceeded. " +
+                            len + " > " + maxMessageSize);
+                }
+
+                size = len;
+                return true;
+            }
+
+            delimiterShift += 7;
+            if (delimiterShift == 35)
+                throw ProtobufException.malformedVarint();
+        }
+        return false;
+    }
+
+    private T parse(ByteBuffer chunk, int len) throws IOException
+    {
+        if (chunk.hasArray())
+            return parse(chunk.array(), chunk.arrayOffset() + chunk.position(), len);
+
+        final ByteBuffer slice = chunk.duplicate();
+        slice.limit(slice.position() + len);
+
+        final T message = schema.newMessage();
+        final ByteBufferInput input = new ByteBufferInput(slice, protostuffMessage);
+        try
+        {
+            schema.mergeFrom(input, message);
+        }
+        catch (BufferUnderflowException e)
+        {
+            throw ProtobufException.truncatedMessage(e);
+        }
+        input.checkLastTagWas(0);
+        return message;
+    }
+
+    private T parse(byte[] data, int offset, int len) throws IOException
+    {
+        final T message = schema.newMessage();
+        final ByteArrayInput input = new ByteArrayInput(data, offset, len,
+                protostuffMessage);
+        try
+        {
+            schema.mergeFrom(input, message);
+        }
+        catch (ArrayIndexOutOfBoundsException e)
+        {
+            throw ProtobufException.truncatedMessage(e);
+        }
+        input.checkLastTagWas(0);
+        return message;
+    }
+}
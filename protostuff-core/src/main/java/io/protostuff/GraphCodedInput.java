@@ -26,7 +26,8 @@ import java.util.ArrayList;
  * @created Jan 17, 2011
  */
 public final class GraphCodedInput extends FilterInput<CodedInput>
-        implements GraphInput, Schema<Object>
+        implements GraphInput, PackedInput, StringCacheInput, TypeDictionaryInput,
+        Schema<Object>
 {
 
     private final ArrayList<Object> references;
@@ -55,6 +56,20 @@ public final class GraphCodedInput extends FilterInput<CodedInput>
         references = new ArrayList<>(initialCapacity);
     }
 
+    /**
+     * Tracks the references with the (cleared) list of the {@code session}.
+     */
+    public GraphCodedInput(CodedInput input, GraphSession session)
+    {
+        super(input);
+
+        // protostuff format only.
+        assert input.decodeNestedMessageAsGroup;
+
+        references = session.objects;
+        references.clear();
+    }
+
     @Override
     public void updateLast(Object morphedMessage, Object lastMessage)
     {
@@ -72,6 +87,24 @@ public final class GraphCodedInput extends FilterInput<CodedInput>
         return messageReference;
     }
 
+    @Override
+    public boolean isCurrentFieldPacked()
+    {
+        return input.isCurrentFieldPacked();
+    }
+
+    @Override
+    public String readString(StringCache cache) throws IOException
+    {
+        return input.readString(cache);
+    }
+
+    @Override
+    public TypeDictionary getTypeDictionary()
+    {
+        return input.getTypeDictionary();
+    }
+
     @Override
     public <T> int readFieldNumber(Schema<T> schema) throws IOException
     {
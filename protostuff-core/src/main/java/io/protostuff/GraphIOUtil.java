@@ -65,6 +65,67 @@ public final class GraphIOUtil
         }
     }
 
+    /**
+     * Merges the {@code message} with the byte array using the given {@code schema}, tracking the references with the
+     * {@code session}.
+     */
+    public static <T> void mergeFrom(byte[] data, T message, Schema<T> schema,
+            GraphSession session)
+    {
+        mergeFrom(data, 0, data.length, message, schema, session);
+    }
+
+    /**
+     * Merges the {@code message} with the byte array using the given {@code schema}, tracking the references with the
+     * {@code session}.
+     */
+    public static <T> void mergeFrom(byte[] data, int offset, int length, T message,
+            Schema<T> schema, GraphSession session)
+    {
+        try
+        {
+            final ByteArrayInput input = new ByteArrayInput(data, offset, length, true);
+            final GraphByteArrayInput graphInput = new GraphByteArrayInput(input, session);
+            schema.mergeFrom(graphInput, message);
+            input.checkLastTagWas(0);
+        }
+        catch (ArrayIndexOutOfBoundsException ae)
+        {
+            throw new RuntimeException("Truncated.", ProtobufException.truncatedMessage(ae));
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException("Reading from a byte array threw an IOException (should " +
+                    "never happen).", e);
+        }
+    }
+
+    /**
+     * Merges the {@code message} with the byte array using the given {@code schema}, reading the type names through
+     * the {@code typeDictionary} of the stream.
+     */
+    public static <T> void mergeFrom(byte[] data, T message, Schema<T> schema,
+            TypeDictionary typeDictionary)
+    {
+        try
+        {
+            final ByteArrayInput input = new ByteArrayInput(data, 0, data.length, true)
+                    .setTypeDictionary(typeDictionary);
+            final GraphByteArrayInput graphInput = new GraphByteArrayInput(input);
+            schema.mergeFrom(graphInput, message);
+            input.checkLastTagWas(0);
+        }
+        catch (ArrayIndexOutOfBoundsException ae)
+        {
+            throw new RuntimeException("Truncated.", ProtobufException.truncatedMessage(ae));
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException("Reading from a byte array threw an IOException (should " +
+                    "never happen).", e);
+        }
+    }
+
     /**
      * Merges the {@code message} from the {@link InputStream} using the given {@code schema}.
      */
@@ -91,6 +152,21 @@ public final class GraphIOUtil
         input.checkLastTagWas(0);
     }
 
+    /**
+     * Merges the {@code message} from the {@link InputStream} using the given {@code schema}, tracking the references
+     * with the {@code session}.
+     * <p>
+     * The {@code buffer}'s internal byte array will be used for reading the message.
+     */
+    public static <T> void mergeFrom(InputStream in, T message, Schema<T> schema,
+            LinkedBuffer buffer, GraphSession session) throws IOException
+    {
+        final CodedInput input = new CodedInput(in, buffer.buffer, true);
+        final GraphCodedInput graphInput = new GraphCodedInput(input, session);
+        schema.mergeFrom(graphInput, message);
+        input.checkLastTagWas(0);
+    }
+
     /**
      * Merges the {@code message} (delimited) from the {@link InputStream} using the given {@code schema}.
      * 
@@ -151,6 +227,21 @@ public final class GraphIOUtil
      */
     public static <T> int mergeDelimitedFrom(InputStream in, T message, Schema<T> schema,
             LinkedBuffer buffer) throws IOException
+    {
+        return mergeDelimitedFrom(in, message, schema, buffer, null);
+    }
+
+    /**
+     * Merges the {@code message} (delimited) from the {@link InputStream} using the given {@code schema}, reading the
+     * type names through the {@code typeDictionary} of the stream.
+     * <p>
+     * The delimited message size must not be larger than the {@code buffer}'s size/capacity. {@link ProtobufException}
+     * "size limit exceeded" is thrown otherwise.
+     * 
+     * @return the size of the message
+     */
+    public static <T> int mergeDelimitedFrom(InputStream in, T message, Schema<T> schema,
+            LinkedBuffer buffer, TypeDictionary typeDictionary) throws IOException
     {
         final int size = in.read();
         if (size == -1)
@@ -175,7 +266,7 @@ public final class GraphIOUtil
 
             IOUtil.fillBufferFrom(in, buf, 0, len);
             final ByteArrayInput input = new ByteArrayInput(buf, 0, len,
-                    true);
+                    true).setTypeDictionary(typeDictionary);
             final GraphByteArrayInput graphInput = new GraphByteArrayInput(input);
             try
             {
@@ -250,11 +341,24 @@ public final class GraphIOUtil
      * @return the byte array containing the data.
      */
     public static <T> byte[] toByteArray(T message, Schema<T> schema, LinkedBuffer buffer)
+    {
+        return toByteArray(message, schema, buffer, (TypeDictionary) null);
+    }
+
+    /**
+     * Serializes the {@code message} into a byte array using the given schema, writing the type names through the
+     * {@code typeDictionary} of the stream.
+     * 
+     * @return the byte array containing the data.
+     */
+    public static <T> byte[] toByteArray(T message, Schema<T> schema, LinkedBuffer buffer,
+            TypeDictionary typeDictionary)
     {
         if (buffer.start != buffer.offset)
             throw new IllegalArgumentException("Buffer previously used and had not been reset.");
 
-        final ProtostuffOutput output = new ProtostuffOutput(buffer);
+        final ProtostuffOutput output = new ProtostuffOutput(buffer)
+                .setTypeDictionary(typeDictionary);
         final GraphProtostuffOutput graphOutput = new GraphProtostuffOutput(output);
         try
         {
@@ -269,6 +373,33 @@ public final class GraphIOUtil
         return output.toByteArray();
     }
 
+    /**
+     * Serializes the {@code message} into a byte array using the given schema, tracking the references with the
+     * {@code session}.
+     * 
+     * @return the byte array containing the data.
+     */
+    public static <T> byte[] toByteArray(T message, Schema<T> schema, LinkedBuffer buffer,
+            GraphSession session)
+    {
+        if (buffer.start != buffer.offset)
+            throw new IllegalArgumentException("Buffer previously used and had not been reset.");
+
+        final ProtostuffOutput output = new ProtostuffOutput(buffer);
+        final GraphProtostuffOutput graphOutput = new GraphProtostuffOutput(output, session);
+        try
+        {
+            schema.writeTo(graphOutput, message);
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException("Serializing to a byte array threw an IOException " +
+                    "(should never happen).", e);
+        }
+
+        return output.toByteArray();
+    }
+
     /**
      * Writes the {@code message} into the {@link LinkedBuffer} using the given schema.
      * 
@@ -294,6 +425,33 @@ public final class GraphIOUtil
         return output.getSize();
     }
 
+    /**
+     * Writes the {@code message} into the {@link LinkedBuffer} using the given schema, tracking the references with the
+     * {@code session}.
+     * 
+     * @return the size of the message
+     */
+    public static <T> int writeTo(LinkedBuffer buffer, T message, Schema<T> schema,
+            GraphSession session)
+    {
+        if (buffer.start != buffer.offset)
+            throw new IllegalArgumentException("Buffer previously used and had not been reset.");
+
+        final ProtostuffOutput output = new ProtostuffOutput(buffer);
+        final GraphProtostuffOutput graphOutput = new GraphProtostuffOutput(output, session);
+        try
+        {
+            schema.writeTo(graphOutput, message);
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException("Serializing to a LinkedBuffer threw an IOException " +
+                    "(should never happen).", e);
+        }
+
+        return output.getSize();
+    }
+
     /**
      * Serializes the {@code message} into an {@link OutputStream} using the given schema.
      * 
@@ -312,6 +470,26 @@ public final class GraphIOUtil
         return output.size;
     }
 
+    /**
+     * Serializes the {@code message} into an {@link OutputStream} using the given schema, tracking the references with
+     * the {@code session}.
+     * 
+     * @return the size of the message
+     */
+    public static <T> int writeTo(final OutputStream out, final T message,
+            final Schema<T> schema, final LinkedBuffer buffer, final GraphSession session)
+            throws IOException
+    {
+        if (buffer.start != buffer.offset)
+            throw new IllegalArgumentException("Buffer previously used and had not been reset.");
+
+        final ProtostuffOutput output = new ProtostuffOutput(buffer, out);
+        final GraphProtostuffOutput graphOutput = new GraphProtostuffOutput(output, session);
+        schema.writeTo(graphOutput, message);
+        LinkedBuffer.writeTo(out, buffer);
+        return output.size;
+    }
+
     /**
      * Serializes the {@code message}, prefixed with its length, into an {@link OutputStream}.
      * 
@@ -319,11 +497,25 @@ public final class GraphIOUtil
      */
     public static <T> int writeDelimitedTo(final OutputStream out, final T message,
             final Schema<T> schema, final LinkedBuffer buffer) throws IOException
+    {
+        return writeDelimitedTo(out, message, schema, buffer, null);
+    }
+
+    /**
+     * Serializes the {@code message}, prefixed with its length, into an {@link OutputStream}, writing the type names
+     * through the {@code typeDictionary} of the stream.
+     * 
+     * @return the size of the message
+     */
+    public static <T> int writeDelimitedTo(final OutputStream out, final T message,
+            final Schema<T> schema, final LinkedBuffer buffer,
+            final TypeDictionary typeDictionary) throws IOException
     {
         if (buffer.start != buffer.offset)
             throw new IllegalArgumentException("Buffer previously used and had not been reset.");
 
-        final ProtostuffOutput output = new ProtostuffOutput(buffer);
+        final ProtostuffOutput output = new ProtostuffOutput(buffer)
+                .setTypeDictionary(typeDictionary);
         final GraphProtostuffOutput graphOutput = new GraphProtostuffOutput(output);
         schema.writeTo(graphOutput, message);
         ProtobufOutput.writeRawVarInt32Bytes(out, output.size);
@@ -0,0 +1,42 @@
+package io.protostuff;
+
+import java.util.ArrayList;
+
+/**
+ * The references tracked by graph serialization (see {@link GraphIOUtil}), kept across calls so that serializing or
+ * deserializing large graphs does not allocate (and grow) them every time. Like a {@link LinkedBuffer}, a session must
+ * not be used by more than one call at a time.
+ * <p>
+ * A call starts by resetting the session, in constant time for serialization. The objects of the previous calls are not
+ * reachable through the session but may stay referenced by it until {@link #clear()}.
+ */
+public final class GraphSession
+{
+
+    final IdentityMap references;
+    final ArrayList<Object> objects;
+
+    public GraphSession()
+    {
+        references = new IdentityMap();
+        objects = new ArrayList<>();
+    }
+
+    /**
+     * Creates a session sized for the expected number of objects in a graph.
+     */
+    public GraphSession(int expectedSize)
+    {
+        references = new IdentityMap(expectedSize);
+        objects = new ArrayList<>(expectedSize);
+    }
+
+    /**
+     * Releases the objects of the previous calls.
+     */
+    public void clear()
+    {
+        references.clear();
+        objects.clear();
+    }
+}
@@ -18,6 +18,7 @@ import java.io.DataInput;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.GatheringByteChannel;
 
 /**
  * Common io utils for the supported formats.
@@ -37,11 +38,22 @@ final class IOUtil
      */
     static <T> void mergeFrom(byte[] data, int offset, int length, T message,
             Schema<T> schema, boolean decodeNestedMessageAsGroup)
+    {
+        mergeFrom(data, offset, length, message, schema, decodeNestedMessageAsGroup, null);
+    }
+
+    /**
+     * Merges the {@code message} with the byte array using the given {@code schema}, reading the type names through
+     * the {@code typeDictionary} (if not null).
+     */
+    static <T> void mergeFrom(byte[] data, int offset, int length, T message,
+            Schema<T> schema, boolean decodeNestedMessageAsGroup,
+            TypeDictionary typeDictionary)
     {
         try
         {
             final ByteArrayInput input = new ByteArrayInput(data, offset, length,
-                    decodeNestedMessageAsGroup);
+                    decodeNestedMessageAsGroup).setTypeDictionary(typeDictionary);
             schema.mergeFrom(input, message);
             input.checkLastTagWas(0);
         }
@@ -56,6 +68,20 @@ final class IOUtil
         }
     }
 
+    /**
+     * Writes the contents of the {@link LinkedBuffer}, prefixed with their (varint32) {@code size}, into the (blocking)
+     * channel with a single gathering write.
+     * 
+     * @throws java.nio.channels.IllegalBlockingModeException
+     *             if the channel does not accept any byte (i.e it is non-blocking).
+     */
+    static int writeDelimitedTo(GatheringByteChannel channel, LinkedBuffer node, int size)
+            throws IOException
+    {
+        LinkedBuffer.writeFully(channel, LinkedBuffer.toDelimitedByteBuffers(node, size));
+        return size;
+    }
+
     /**
      * Merges the {@code message} from the {@link InputStream} with the supplied {@code buf} to use.
      */
@@ -84,6 +110,17 @@ final class IOUtil
      */
     static <T> int mergeDelimitedFrom(InputStream in, byte[] buf, T message,
             Schema<T> schema, boolean decodeNestedMessageAsGroup) throws IOException
+    {
+        return mergeDelimitedFrom(in, buf, message, schema, decodeNestedMessageAsGroup, null);
+    }
+
+    /**
+     * Same as {@link #mergeDelimitedFrom(InputStream, byte[], Object, Schema, boolean)}, reading the type names through
+     * the {@code typeDictionary} (if not null).
+     */
+    static <T> int mergeDelimitedFrom(InputStream in, byte[] buf, T message,
+            Schema<T> schema, boolean decodeNestedMessageAsGroup,
+            TypeDictionary typeDictionary) throws IOException
     {
         final int size = in.read();
         if (size == -1)
@@ -106,7 +143,7 @@ final class IOUtil
 
             fillBufferFrom(in, buf, 0, len);
             final ByteArrayInput input = new ByteArrayInput(buf, 0, len,
-                    decodeNestedMessageAsGroup);
+                    decodeNestedMessageAsGroup).setTypeDictionary(typeDictionary);
             try
             {
                 schema.mergeFrom(input, message);
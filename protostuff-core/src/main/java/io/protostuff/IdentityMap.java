@@ -0,0 +1,175 @@
+package io.protostuff;
+
+import java.util.Arrays;
+
+/**
+ * An open-addressing (linear probing) identity map of objects to the ints of graph serialization, with a
+ * {@link #reset() constant-time reset}.
+ * <p>
+ * A slot is used only if its stamp (interleaved with its value) is the current generation, so a reset only bumps the
+ * generation. The keys of the previous generations are not reachable through the map, but stay referenced until their
+ * slot is reused (or the map is {@link #clear() cleared}).
+ */
+final class IdentityMap
+{
+
+    /**
+     * The initial capacity used by the no-args constructor (an expected maximum size of 21, given a load factor of
+     * 2/3).
+     */
+    static final int DEFAULT_CAPACITY = 32;
+
+    static final int MINIMUM_CAPACITY = 4;
+
+    static final int MAXIMUM_CAPACITY = 1 << 29;
+
+    /**
+     * Returned by {@link #putIfAbsent(Object, int)} when the key was not mapped.
+     */
+    static final int ABSENT = -1;
+
+    Object[] keys;
+    /**
+     * The stamp and value of each slot.
+     */
+    int[] entries;
+
+    private int generation = 1;
+    private int size;
+    private int threshold;
+
+    IdentityMap()
+    {
+        init(DEFAULT_CAPACITY);
+    }
+
+    IdentityMap(int expectedMaxSize)
+    {
+        if (expectedMaxSize < 0)
+            throw new IllegalArgumentException("expectedMaxSize is negative: " + expectedMaxSize);
+
+        init(capacity(expectedMaxSize));
+    }
+
+    /**
+     * Returns the smallest power of two (between the min and max capacity) that is greater than 3/2 of the
+     * {@code expectedMaxSize}.
+     */
+    static int capacity(int expectedMaxSize)
+    {
+        final long minCapacity = (3L * expectedMaxSize) / 2;
+        if (minCapacity > MAXIMUM_CAPACITY)
+            return MAXIMUM_CAPACITY;
+
+        int result = MINIMUM_CAPACITY;
+        while (result < minCapacity)
+            result <<= 1;
+
+        return result;
+    }
+
+    private void init(int capacity)
+    {
+        threshold = (capacity * 2) / 3;
+        keys = new Object[capacity];
+        entries = new int[capacity << 1];
+    }
+
+    static int hash(Object key, int mask)
+    {
+        final int h = System.identityHashCode(key) * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    int size()
+    {
+        return size;
+    }
+
+    /**
+     * Returns the value mapped to the {@code key}, or {@link #ABSENT} after mapping it to the {@code value}.
+     */
+    int putIfAbsent(Object key, int value)
+    {
+        final Object[] keys = this.keys;
+        final int[] entries = this.entries;
+        final int generation = this.generation, mask = keys.length - 1;
+
+        int i = hash(key, mask);
+        while (entries[i << 1] == generation)
+        {
+            if (keys[i] == key)
+                return entries[(i << 1) + 1];
+
+            i = (i + 1) & mask;
+        }
+
+        keys[i] = key;
+        entries[i << 1] = generation;
+        entries[(i << 1) + 1] = value;
+        if (++size >= threshold)
+            resize();
+
+        return ABSENT;
+    }
+
+    /**
+     * Removes all the mappings in constant time (see the class doc).
+     */
+    void reset()
+    {
+        size = 0;
+        if (++generation == 0)
+        {
+            // wrapped around, the old stamps could match again
+            Arrays.fill(entries, 0);
+            generation = 1;
+        }
+    }
+
+    /**
+     * Removes all the mappings and releases the keys.
+     */
+    void clear()
+    {
+        Arrays.fill(keys, null);
+        Arrays.fill(entries, 0);
+        generation = 1;
+        size = 0;
+    }
+
+    private void resize()
+    {
+        final Object[] oldKeys = keys;
+        final int[] oldEntries = entries;
+        final int oldCapacity = oldKeys.length;
+        if (oldCapacity == MAXIMUM_CAPACITY)
+        {
+            if (size == MAXIMUM_CAPACITY - 1)
+                throw new IllegalStateException("Capacity exhausted.");
+
+            threshold = MAXIMUM_CAPACITY - 1;
+            return;
+        }
+
+        init(oldCapacity << 1);
+
+        final Object[] keys = this.keys;
+        final int[] entries = this.entries;
+        final int generation = this.generation, mask = keys.length - 1;
+        for (int j = 0; j < oldCapacity; j++)
+        {
+            if (oldEntries[j << 1] != generation)
+                continue;
+
+            final Object key = oldKeys[j];
+            int i = hash(key, mask);
+            while (entries[i << 1] == generation)
+                i = (i + 1) & mask;
+
+            keys[i] = key;
+            entries[i << 1] = generation;
+            entries[(i << 1) + 1] = oldEntries[(j << 1) + 1];
+        }
+    }
+}
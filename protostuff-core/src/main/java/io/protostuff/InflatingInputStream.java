@@ -0,0 +1,137 @@
+package io.protostuff;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Inflates the frames written by a {@link DeflateFlushHandler}, so that a {@link CodedInput} (or the delimited
+ * {@code mergeDelimitedFrom} methods of the io utils) can read a compressed stream. The end of the stream is the frame
+ * of size zero (or the end of the underlying stream between frames).
+ * <p>
+ * The {@link Inflater} is acquired from (and released to) a per-thread pool.
+ */
+public final class InflatingInputStream extends InputStream
+{
+
+    private static final ThreadLocal<Inflater> IDLE = new ThreadLocal<>();
+
+    private final InputStream in;
+    private final byte[] single = new byte[1];
+    private byte[] frame = new byte[512];
+    private Inflater inflater;
+    private boolean ended;
+
+    public InflatingInputStream(InputStream in)
+    {
+        this.in = in;
+    }
+
+    @Override
+    public int read() throws IOException
+    {
+        return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException
+    {
+        if (len == 0)
+            return 0;
+
+        while (!ended)
+        {
+            Inflater inflater = this.inflater;
+            if (inflater == null)
+                this.inflater = inflater = acquire();
+
+            if (!inflater.needsInput())
+            {
+                final int n;
+                try
+                {
+                    n = inflater.inflate(b, off, len);
+                }
+                catch (DataFormatException e)
+                {
+                    throw new ProtobufException("Invalid deflated data.", e);
+                }
+
+                if (n != 0)
+                    return n;
+
+                if (!inflater.needsInput())
+                    throw new ProtobufException("Invalid deflated data.");
+            }
+
+            if (!readFrame())
+                end();
+        }
+
+        return -1;
+    }
+
+    /**
+     * Returns false if there are no more frames.
+     */
+    private boolean readFrame() throws IOException
+    {
+        final int firstByte = in.read();
+        if (firstByte == -1)
+            return false;
+
+        final int size = firstByte < 0x80 ? firstByte : CodedInput.readRawVarint32(in, firstByte);
+        if (size == 0)
+            return false;
+
+        if (size < 0)
+            throw ProtobufException.negativeSize();
+
+        if (size > frame.length)
+            frame = new byte[size];
+
+        IOUtil.fillBufferFrom(in, frame, 0, size);
+        inflater.setInput(frame, 0, size);
+        return true;
+    }
+
+    private void end()
+    {
+        ended = true;
+        if (inflater != null)
+        {
+            release(inflater);
+            inflater = null;
+        }
+    }
+
+    /**
+     * Releases the inflater and closes the underlying stream.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        end();
+        in.close();
+    }
+
+    static Inflater acquire()
+    {
+        final Inflater inflater = IDLE.get();
+        if (inflater == null)
+            return new Inflater(true);
+
+        IDLE.set(null);
+        return inflater;
+    }
+
+    static void release(Inflater inflater)
+    {
+        inflater.reset();
+        if (IDLE.get() == null)
+            IDLE.set(inflater);
+        else
+            inflater.end();
+    }
+}
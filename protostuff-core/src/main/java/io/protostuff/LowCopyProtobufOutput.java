@@ -19,7 +19,7 @@ import java.util.List;
  *
  * @author Ryan Rawson
  */
-public final class LowCopyProtobufOutput implements Output
+public final class LowCopyProtobufOutput implements PackedOutput
 {
 
     public LinkBuffer buffer;
@@ -168,6 +168,31 @@ public final class LowCopyProtobufOutput implements Output
         buffer.writeByteArray(value, offset, length);
     }
 
+    @Override
+    public void writePackedLength(int fieldNumber, int length) throws IOException
+    {
+        buffer.writeVarInt32(makeTag(fieldNumber, WIRETYPE_LENGTH_DELIMITED));
+        buffer.writeVarInt32(length);
+    }
+
+    @Override
+    public void writePackedVarInt64(long value) throws IOException
+    {
+        buffer.writeVarInt64(value);
+    }
+
+    @Override
+    public void writePackedFixed32(int value) throws IOException
+    {
+        buffer.writeInt32LE(value);
+    }
+
+    @Override
+    public void writePackedFixed64(long value) throws IOException
+    {
+        buffer.writeInt64LE(value);
+    }
+
     @Override
     public <T> void writeObject(final int fieldNumber, final T value, final Schema<T> schema,
             final boolean repeated) throws IOException
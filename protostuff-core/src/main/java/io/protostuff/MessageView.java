@@ -0,0 +1,510 @@
+package io.protostuff;
+
+import static io.protostuff.WireFormat.WIRETYPE_END_GROUP;
+import static io.protostuff.WireFormat.WIRETYPE_FIXED32;
+import static io.protostuff.WireFormat.WIRETYPE_FIXED64;
+import static io.protostuff.WireFormat.WIRETYPE_LENGTH_DELIMITED;
+import static io.protostuff.WireFormat.WIRETYPE_START_GROUP;
+import static io.protostuff.WireFormat.WIRETYPE_VARINT;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.protostuff.StringSerializer.STRING;
+
+/**
+ * A lazy, read-only view of a serialized message (protobuf or protostuff format) that decodes only the fields that
+ * are accessed.
+ * <p>
+ * The offsets of the fields are indexed on first access (a single pass over the top-level fields). Nested messages
+ * are exposed as views over the same bytes (no copy), and can still be materialized with a {@link Schema}. Scalar
+ * getters return the last occurrence of the field (like a merge would) or the default value if absent.
+ * <p>
+ * Packed repeated fields are not decoded by the scalar getters (use {@link #getByteBuffer(int)}). A view is not
+ * thread-safe.
+ */
+public final class MessageView
+{
+
+    private static final int[] EMPTY = new int[0];
+
+    // the bytes, with absolute indexes (the array is null if not available)
+    private final ByteBuffer buffer;
+    private final byte[] array;
+    private final int arrayOffset;
+
+    private final int start, end;
+    private final boolean protostuffMessage;
+
+    // 3 ints per field: tag, start and end of the value
+    private int[] fields = EMPTY;
+    private int fieldCount = -1;
+
+    private int cursor;
+
+    private MessageView(ByteBuffer buffer, byte[] array, int arrayOffset, int start,
+            int end, boolean protostuffMessage)
+    {
+        this.buffer = buffer;
+        this.array = array;
+        this.arrayOffset = arrayOffset;
+        this.start = start;
+        this.end = end;
+        this.protostuffMessage = protostuffMessage;
+    }
+
+    /**
+     * Creates a view of the message serialized in {@code data}.
+     */
+    public static MessageView wrap(byte[] data, boolean protostuffMessage)
+    {
+        return wrap(data, 0, data.length, protostuffMessage);
+    }
+
+    /**
+     * Creates a view of the message serialized in {@code data}, from {@code offset} to {@code offset + length}.
+     */
+    public static MessageView wrap(byte[] data, int offset, int length,
+            boolean protostuffMessage)
+    {
+        if (offset < 0 || length < 0 || offset + length > data.length)
+            throw new IndexOutOfBoundsException();
+
+        return new MessageView(ByteBuffer.wrap(data), data, 0, offset,
+                offset + length, protostuffMessage);
+    }
+
+    /**
+     * Creates a view of the message serialized in the remaining bytes of the {@code buffer} (its position is not
+     * modified).
+     */
+    public static MessageView wrap(ByteBuffer buffer, boolean protostuffMessage)
+    {
+        return new MessageView(buffer, buffer.hasArray() ? buffer.array() : null,
+                buffer.hasArray() ? buffer.arrayOffset() : 0,
+                buffer.position(), buffer.limit(), protostuffMessage);
+    }
+
+    /**
+     * Returns the number of bytes of the message.
+     */
+    public int getSize()
+    {
+        return end - start;
+    }
+
+    /**
+     * Returns true if the field is present.
+     */
+    public boolean has(int fieldNumber) throws IOException
+    {
+        return find(fieldNumber) != -1;
+    }
+
+    /**
+     * Returns the number of occurrences of the field (more than one if repeated).
+     */
+    public int count(int fieldNumber) throws IOException
+    {
+        index();
+        int count = 0;
+        for (int i = 0, len = fieldCount * 3; i < len; i += 3)
+        {
+            if (fields[i] >>> 3 == fieldNumber)
+                count++;
+        }
+        return count;
+    }
+
+    /**
+     * Returns the numbers of the fields present (in order of occurrence, repeated fields included once per value).
+     */
+    public int[] getFieldNumbers() throws IOException
+    {
+        index();
+        final int[] numbers = new int[fieldCount];
+        for (int i = 0; i < fieldCount; i++)
+            numbers[i] = fields[i * 3] >>> 3;
+
+        return numbers;
+    }
+
+    public int getInt32(int fieldNumber) throws IOException
+    {
+        final int i = find(fieldNumber, WIRETYPE_VARINT);
+        return i == -1 ? 0 : (int) varint(i);
+    }
+
+    public int getUInt32(int fieldNumber) throws IOException
+    {
+        return getInt32(fieldNumber);
+    }
+
+    public int getSInt32(int fieldNumber) throws IOException
+    {
+        final int n = getInt32(fieldNumber);
+        return (n >>> 1) ^ -(n & 1);
+    }
+
+    public int getFixed32(int fieldNumber) throws IOException
+    {
+        final int i = find(fieldNumber, WIRETYPE_FIXED32);
+        return i == -1 ? 0 : fixed32(fields[i + 1]);
+    }
+
+    public int getSFixed32(int fieldNumber) throws IOException
+    {
+        return getFixed32(fieldNumber);
+    }
+
+    public long getInt64(int fieldNumber) throws IOException
+    {
+        final int i = find(fieldNumber, WIRETYPE_VARINT);
+        return i == -1 ? 0 : varint(i);
+    }
+
+    public long getUInt64(int fieldNumber) throws IOException
+    {
+        return getInt64(fieldNumber);
+    }
+
+    public long getSInt64(int fieldNumber) throws IOException
+    {
+        final long n = getInt64(fieldNumber);
+        return (n >>> 1) ^ -(n & 1);
+    }
+
+    public long getFixed64(int fieldNumber) throws IOException
+    {
+        final int i = find(fieldNumber, WIRETYPE_FIXED64);
+        if (i == -1)
+            return 0;
+
+        final int offset = fields[i + 1];
+        return (fixed32(offset) & 0xFFFFFFFFL) | ((long) fixed32(offset + 4) << 32);
+    }
+
+    public long getSFixed64(int fieldNumber) throws IOException
+    {
+        return getFixed64(fieldNumber);
+    }
+
+    public float getFloat(int fieldNumber) throws IOException
+    {
+        return Float.intBitsToFloat(getFixed32(fieldNumber));
+    }
+
+    public double getDouble(int fieldNumber) throws IOException
+    {
+        return Double.longBitsToDouble(getFixed64(fieldNumber));
+    }
+
+    public boolean getBool(int fieldNumber) throws IOException
+    {
+        return getInt64(fieldNumber) != 0;
+    }
+
+    /**
+     * Returns the number of the enum.
+     */
+    public int getEnum(int fieldNumber) throws IOException
+    {
+        return getInt32(fieldNumber);
+    }
+
+    /**
+     * Returns the string, or null if absent.
+     */
+    public String getString(int fieldNumber) throws IOException
+    {
+        final int i = find(fieldNumber, WIRETYPE_LENGTH_DELIMITED);
+        if (i == -1)
+            return null;
+
+        final int offset = fields[i + 1], length = fields[i + 2] - offset;
+        if (array != null)
+            return STRING.deser(array, arrayOffset + offset, length);
+
+        return STRING.deser(copy(offset, length));
+    }
+
+    /**
+     * Returns a copy of the bytes, or null if absent.
+     */
+    public byte[] getByteArray(int fieldNumber) throws IOException
+    {
+        final int i = find(fieldNumber, WIRETYPE_LENGTH_DELIMITED);
+        return i == -1 ? null : copy(fields[i + 1], fields[i + 2] - fields[i + 1]);
+    }
+
+    /**
+     * Returns a copy of the bytes, or null if absent.
+     */
+    public ByteString getBytes(int fieldNumber) throws IOException
+    {
+        final byte[] bytes = getByteArray(fieldNumber);
+        return bytes == null ? null : ByteString.wrap(bytes);
+    }
+
+    /**
+     * Returns a read-only buffer over the bytes of a length-delimited field (no copy), or null if absent.
+     */
+    public ByteBuffer getByteBuffer(int fieldNumber) throws IOException
+    {
+        final int i = find(fieldNumber, WIRETYPE_LENGTH_DELIMITED);
+        return i == -1 ? null : slice(fields[i + 1], fields[i + 2]);
+    }
+
+    /**
+     * Returns a view of the nested message (no copy), or null if absent.
+     */
+    public MessageView getMessage(int fieldNumber) throws IOException
+    {
+        final int i = find(fieldNumber, nestedWireType());
+        return i == -1 ? null : new MessageView(buffer, array, arrayOffset,
+                fields[i + 1], fields[i + 2], protostuffMessage);
+    }
+
+    /**
+     * Returns the views of the nested messages (of a repeated field).
+     */
+    public List<MessageView> getMessages(int fieldNumber) throws IOException
+    {
+        index();
+        final int wireType = nestedWireType();
+        final ArrayList<MessageView> views = new ArrayList<>();
+        for (int i = 0, len = fieldCount * 3; i < len; i += 3)
+        {
+            if (fields[i] >>> 3 != fieldNumber)
+                continue;
+
+            if ((fields[i] & 7) != wireType)
+                throw ProtobufException.invalidWireType();
+
+            views.add(new MessageView(buffer, array, arrayOffset, fields[i + 1],
+                    fields[i + 2], protostuffMessage));
+        }
+        return views;
+    }
+
+    /**
+     * Deserializes the nested message with the {@code schema}, or returns null if absent.
+     */
+    public <T> T getMessage(int fieldNumber, Schema<T> schema) throws IOException
+    {
+        final MessageView view = getMessage(fieldNumber);
+        if (view == null)
+            return null;
+
+        final T message = schema.newMessage();
+        view.mergeInto(message, schema);
+        return message;
+    }
+
+    /**
+     * Merges the whole message into {@code message}.
+     */
+    public <T> void mergeInto(T message, Schema<T> schema) throws IOException
+    {
+        final Input input = array != null ? new ByteArrayInput(array,
+                arrayOffset + start, end - start, protostuffMessage)
+                : new ByteBufferInput(slice(start, end), protostuffMessage);
+
+        schema.mergeFrom(input, message);
+    }
+
+    private int nestedWireType()
+    {
+        return protostuffMessage ? WIRETYPE_START_GROUP : WIRETYPE_LENGTH_DELIMITED;
+    }
+
+    private ByteBuffer slice(int from, int to)
+    {
+        final ByteBuffer slice = buffer.duplicate();
+        slice.limit(to).position(from);
+        return slice.slice().asReadOnlyBuffer();
+    }
+
+    private byte[] copy(int offset, int length)
+    {
+        final byte[] bytes = new byte[length];
+        if (array != null)
+            System.arraycopy(array, arrayOffset + offset, bytes, 0, length);
+        else
+        {
+            for (int i = 0; i < length; i++)
+                bytes[i] = buffer.get(offset + i);
+        }
+        return bytes;
+    }
+
+    private byte byteAt(int offset)
+    {
+        return array != null ? array[arrayOffset + offset] : buffer.get(offset);
+    }
+
+    private int fixed32(int offset)
+    {
+        return (byteAt(offset) & 0xFF)
+                | ((byteAt(offset + 1) & 0xFF) << 8)
+                | ((byteAt(offset + 2) & 0xFF) << 16)
+                | ((byteAt(offset + 3) & 0xFF) << 24);
+    }
+
+    private long varint(int i) throws IOException
+    {
+        cursor = fields[i + 1];
+        return readVarint(fields[i + 2]);
+    }
+
+    /**
+     * Reads the varint at the cursor (which is advanced).
+     */
+    private long readVarint(int limit) throws IOException
+    {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7)
+        {
+            if (cursor == limit)
+                throw ProtobufException.truncatedMessage();
+
+            final byte b = byteAt(cursor++);
+            result |= (long) (b & 0x7F) << shift;
+            if (b >= 0)
+                return result;
+        }
+        throw ProtobufException.malformedVarint();
+    }
+
+    private int find(int fieldNumber) throws IOException
+    {
+        index();
+        // the last one wins
+        for (int i = (fieldCount - 1) * 3; i >= 0; i -= 3)
+        {
+            if (fields[i] >>> 3 == fieldNumber)
+                return i;
+        }
+        return -1;
+    }
+
+    private int find(int fieldNumber, int wireType) throws IOException
+    {
+        final int i = find(fieldNumber);
+        if (i != -1 && (fields[i] & 7) != wireType)
+            throw ProtobufException.invalidWireType();
+
+        return i;
+    }
+
+    private void index() throws IOException
+    {
+        if (fieldCount != -1)
+            return;
+
+        int count = 0;
+        cursor = start;
+        while (cursor != end)
+        {
+            final int tag = (int) readVarint(end);
+            if (tag >>> 3 == 0)
+                throw ProtobufException.invalidTag();
+
+            final int valueStart, valueEnd;
+            switch (tag & 7)
+            {
+                case WIRETYPE_VARINT:
+                    valueStart = cursor;
+                    readVarint(end);
+                    valueEnd = cursor;
+                    break;
+                case WIRETYPE_FIXED64:
+                    valueStart = cursor;
+                    valueEnd = skip(8);
+                    break;
+                case WIRETYPE_FIXED32:
+                    valueStart = cursor;
+                    valueEnd = skip(4);
+                    break;
+                case WIRETYPE_LENGTH_DELIMITED:
+                    final int length = (int) readVarint(end);
+                    if (length < 0)
+                        throw ProtobufException.negativeSize();
+
+                    valueStart = cursor;
+                    valueEnd = skip(length);
+                    break;
+                case WIRETYPE_START_GROUP:
+                    valueStart = cursor;
+                    valueEnd = skipGroup(tag >>> 3);
+                    break;
+                default:
+                    throw ProtobufException.invalidWireType();
+            }
+
+            if (count * 3 == fields.length)
+            {
+                final int[] grown = new int[Math.max(24, fields.length * 2)];
+                System.arraycopy(fields, 0, grown, 0, fields.length);
+                fields = grown;
+            }
+
+            fields[count * 3] = tag;
+            fields[count * 3 + 1] = valueStart;
+            fields[count * 3 + 2] = valueEnd;
+            count++;
+        }
+        fieldCount = count;
+    }
+
+    private int skip(int length) throws IOException
+    {
+        if (length > end - cursor)
+            throw ProtobufException.truncatedMessage();
+
+        return cursor += length;
+    }
+
+    /**
+     * Skips the fields of the group and its end tag, and returns the offset of the end tag.
+     */
+    private int skipGroup(int fieldNumber) throws IOException
+    {
+        while (true)
+        {
+            final int tagStart = cursor;
+            final int tag = (int) readVarint(end);
+            switch (tag & 7)
+            {
+                case WIRETYPE_VARINT:
+                    readVarint(end);
+                    break;
+                case WIRETYPE_FIXED64:
+                    skip(8);
+                    break;
+                case WIRETYPE_FIXED32:
+                    skip(4);
+                    break;
+                case WIRETYPE_LENGTH_DELIMITED:
+                    final int length = (int) readVarint(end);
+                    if (length < 0)
+                        throw ProtobufException.negativeSize();
+
+                    skip(length);
+                    break;
+                case WIRETYPE_START_GROUP:
+                    skipGroup(tag >>> 3);
+                    break;
+                case WIRETYPE_END_GROUP:
+                    if (tag >>> 3 != fieldNumber)
+                        throw ProtobufException.invalidEndTag();
+
+                    return tagStart;
+                default:
+                    throw ProtobufException.invalidWireType();
+            }
+        }
+    }
+}
@@ -0,0 +1,285 @@
+package io.protostuff;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Parses the messages of a buffer (or a file) written with {@code writeDelimitedTo}, concurrently on a
+ * {@link ForkJoinPool}. The varint size prefixes are scanned first to index the frames, then the frames are parsed in
+ * chunks (with a {@link ByteArrayInput} for heap buffers and a {@link ByteBufferInput} for direct and mapped buffers).
+ * The messages are returned in the order they were written.
+ * <p>
+ * A file is mapped in regions of at most 2GB (a frame never spans two regions), so files larger than that can be read
+ * as well. The schema must be safe to use from several threads (like the generated and the runtime schemas).
+ */
+public final class ParallelListReader
+{
+
+    /**
+     * The default number of messages per chunk.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 1024;
+
+    static final int MAX_REGION_SIZE = Integer.MAX_VALUE;
+
+    /**
+     * The offsets and sizes of the frames of a buffer.
+     */
+    static final class FrameIndex
+    {
+        int count;
+        int[] offsets = new int[64];
+        int[] sizes = new int[64];
+
+        void add(int offset, int size)
+        {
+            if (count == offsets.length)
+            {
+                offsets = Arrays.copyOf(offsets, count * 2);
+                sizes = Arrays.copyOf(sizes, count * 2);
+            }
+
+            offsets[count] = offset;
+            sizes[count++] = size;
+        }
+    }
+
+    /**
+     * The state shared by the tasks that parse the frames of a buffer.
+     */
+    static final class Frames<T>
+    {
+        final ByteBuffer buffer;
+        final FrameIndex index;
+        final Schema<T> schema;
+        final boolean protostuff;
+        final Object[] messages;
+        final int chunkSize;
+        volatile IOException failure;
+
+        Frames(ByteBuffer buffer, FrameIndex index, Schema<T> schema, boolean protostuff,
+                int chunkSize)
+        {
+            this.buffer = buffer;
+            this.index = index;
+            this.schema = schema;
+            this.protostuff = protostuff;
+            this.chunkSize = chunkSize;
+            messages = new Object[index.count];
+        }
+    }
+
+    static final class ParseTask<T> extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        final Frames<T> frames;
+        final int from, to;
+
+        ParseTask(Frames<T> frames, int from, int to)
+        {
+            this.frames = frames;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (to - from > frames.chunkSize)
+            {
+                final int mid = (from + to) >>> 1;
+                invokeAll(new ParseTask<>(frames, from, mid), new ParseTask<>(frames, mid, to));
+                return;
+            }
+
+            final FrameIndex index = frames.index;
+            try
+            {
+                for (int i = from; i < to && frames.failure == null; i++)
+                {
+                    frames.messages[i] = parseFrame(frames.buffer, index.offsets[i],
+                            index.sizes[i], frames.schema, frames.protostuff);
+                }
+            }
+            catch (IOException e)
+            {
+                frames.failure = e;
+            }
+        }
+    }
+
+    private ParallelListReader()
+    {
+    }
+
+    /**
+     * Parses the delimited messages from the {@code buffer} (from its position to its limit).
+     *
+     * @param protostuff
+     *            if the messages are protostuff (true) or protobuf (false) messages
+     */
+    public static <T> List<T> parseListFrom(ByteBuffer buffer, Schema<T> schema,
+            boolean protostuff, ForkJoinPool executor, int chunkSize) throws IOException
+    {
+        if (chunkSize < 1)
+            throw new IllegalArgumentException("chunkSize must be positive.");
+
+        final ByteBuffer slice = buffer.slice();
+        final FrameIndex index = new FrameIndex();
+        if (indexFrames(slice, index) != slice.limit())
+            throw ProtobufException.truncatedMessage();
+
+        final ArrayList<T> list = new ArrayList<>(index.count);
+        parseFrames(slice, index, schema, protostuff, executor, chunkSize, list);
+        return list;
+    }
+
+    /**
+     * Parses the delimited messages from the file (from its current position to its end). The file is mapped
+     * (read-only).
+     *
+     * @param protostuff
+     *            if the messages are protostuff (true) or protobuf (false) messages
+     */
+    public static <T> List<T> parseListFrom(FileChannel channel, Schema<T> schema,
+            boolean protostuff, ForkJoinPool executor, int chunkSize) throws IOException
+    {
+        return parseListFrom(channel, schema, protostuff, executor, chunkSize,
+                MAX_REGION_SIZE);
+    }
+
+    static <T> List<T> parseListFrom(FileChannel channel, Schema<T> schema,
+            boolean protostuff, ForkJoinPool executor, int chunkSize, int maxRegionSize)
+            throws IOException
+    {
+        if (chunkSize < 1)
+            throw new IllegalArgumentException("chunkSize must be positive.");
+
+        final ArrayList<T> list = new ArrayList<>();
+        final long end = channel.size();
+        for (long position = channel.position(); position < end;)
+        {
+            final int regionSize = (int) Math.min(end - position, maxRegionSize);
+            final ByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                    regionSize);
+
+            final FrameIndex index = new FrameIndex();
+            final int indexed = indexFrames(region, index);
+            if (index.count == 0)
+            {
+                // the frame does not fit a region (or the file is truncated)
+                throw position + regionSize == end ? ProtobufException.truncatedMessage()
+                        : ProtobufException.sizeLimitExceeded();
+            }
+
+            if (indexed != regionSize && position + regionSize == end)
+                throw ProtobufException.truncatedMessage();
+
+            parseFrames(region, index, schema, protostuff, executor, chunkSize, list);
+            position += indexed;
+        }
+
+        return list;
+    }
+
+    /**
+     * Indexes the complete frames of the {@code buffer} (from index 0 to its limit).
+     *
+     * @return the end of the last complete frame.
+     */
+    static int indexFrames(ByteBuffer buffer, FrameIndex index) throws ProtobufException
+    {
+        final int limit = buffer.limit();
+        int offset = 0;
+        while (offset < limit)
+        {
+            int i = offset, size = 0;
+            for (int shift = 0;; shift += 7)
+            {
+                if (i == limit)
+                    return offset;
+
+                if (shift == 35)
+                    throw ProtobufException.malformedVarint();
+
+                final byte b = buffer.get(i++);
+                size |= (b & 0x7F) << shift;
+                if (b >= 0)
+                    break;
+            }
+
+            if (size < 0)
+                throw ProtobufException.negativeSize();
+
+            if (size > limit - i)
+                return offset;
+
+            index.add(i, size);
+            offset = i + size;
+        }
+
+        return offset;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> void parseFrames(ByteBuffer buffer, FrameIndex index, Schema<T> schema,
+            boolean protostuff, ForkJoinPool executor, int chunkSize, List<T> list)
+            throws IOException
+    {
+        final Frames<T> frames = new Frames<>(buffer, index, schema, protostuff, chunkSize);
+        executor.invoke(new ParseTask<>(frames, 0, index.count));
+        if (frames.failure != null)
+            throw frames.failure;
+
+        for (Object message : frames.messages)
+            list.add((T) message);
+    }
+
+    static <T> T parseFrame(ByteBuffer buffer, int offset, int size, Schema<T> schema,
+            boolean protostuff) throws IOException
+    {
+        final T message = schema.newMessage();
+        if (size == 0)
+            return message;
+
+        if (buffer.hasArray())
+        {
+            final ByteArrayInput input = new ByteArrayInput(buffer.array(),
+                    buffer.arrayOffset() + offset, size, protostuff);
+            try
+            {
+                schema.mergeFrom(input, message);
+            }
+            catch (ArrayIndexOutOfBoundsException e)
+            {
+                throw ProtobufException.truncatedMessage(e);
+            }
+            input.checkLastTagWas(0);
+            return message;
+        }
+
+        final ByteBuffer frame = buffer.duplicate();
+        frame.limit(offset + size);
+        frame.position(offset);
+        final ByteBufferInput input = new ByteBufferInput(frame, protostuff);
+        try
+        {
+            schema.mergeFrom(input, message);
+        }
+        catch (BufferUnderflowException e)
+        {
+            throw ProtobufException.truncatedMessage(e);
+        }
+        input.checkLastTagWas(0);
+        return message;
+    }
+
+}
@@ -19,8 +19,12 @@ import java.io.DataOutput;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.GatheringByteChannel;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Protobuf ser/deser util for messages/objects.
@@ -193,6 +197,61 @@ public final class ProtobufIOUtil
         return output.toByteArray();
     }
 
+    /**
+     * Serializes the {@code message} into a byte array of the exact size, using the given schema. The size of the
+     * message and of its nested messages is computed first (see {@link SizeComputingOutput}), so that every byte is
+     * written only once (no buffer growth or copying of the nested messages).
+     * 
+     * @return the byte array containing the data.
+     */
+    public static <T> byte[] toByteArray(T message, Schema<T> schema)
+    {
+        final SizeComputingOutput computed = new SizeComputingOutput();
+        final byte[] data;
+        try
+        {
+            schema.writeTo(computed, message);
+            data = new byte[computed.getSize()];
+            final ByteBufferProtobufOutput output = new ByteBufferProtobufOutput(
+                    ByteBuffer.wrap(data), computed);
+            schema.writeTo(output, message);
+            if (output.getSize() != data.length)
+                throw new IllegalStateException("The size of the message changed since it was computed.");
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException("Serializing to a byte array threw an IOException " +
+                    "(should never happen).", e);
+        }
+
+        return data;
+    }
+
+    /**
+     * Serializes the {@code message} into a byte array using the given schema, with buffers acquired from (and released
+     * to) the {@code pool}.
+     * 
+     * @return the byte array containing the data.
+     */
+    public static <T> byte[] toByteArray(T message, Schema<T> schema, LinkedBufferPool pool)
+    {
+        final ProtobufOutput output = new ProtobufOutput(pool.acquire(), pool);
+        try
+        {
+            schema.writeTo(output, message);
+            return output.toByteArray();
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException("Serializing to a byte array threw an IOException " +
+                    "(should never happen).", e);
+        }
+        finally
+        {
+            pool.release(output.head);
+        }
+    }
+
     /**
      * Writes the {@code message} into the {@link LinkedBuffer} using the given schema.
      * 
@@ -217,6 +276,30 @@ public final class ProtobufIOUtil
         return output.getSize();
     }
 
+    /**
+     * Writes the {@code message} into the {@link ByteBuffer} (heap or direct) using the given schema, starting at its
+     * position (which is advanced).
+     * 
+     * @return the size of the message
+     * @throws java.nio.BufferOverflowException
+     *             if the message does not fit in the remaining bytes of the buffer.
+     */
+    public static <T> int writeTo(ByteBuffer buffer, T message, Schema<T> schema)
+    {
+        final ByteBufferProtobufOutput output = new ByteBufferProtobufOutput(buffer);
+        try
+        {
+            schema.writeTo(output, message);
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException("Serializing to a ByteBuffer threw an IOException " +
+                    "(should never happen).", e);
+        }
+
+        return output.getSize();
+    }
+
     /**
      * Serializes the {@code message} into an {@link OutputStream} using the given schema.
      * 
@@ -233,6 +316,27 @@ public final class ProtobufIOUtil
         return LinkedBuffer.writeTo(out, buffer);
     }
 
+    /**
+     * Serializes the {@code message} into an {@link OutputStream} using the given schema, with buffers acquired from
+     * (and released to) the {@code pool}.
+     * 
+     * @return the size of the message
+     */
+    public static <T> int writeTo(OutputStream out, T message, Schema<T> schema,
+            LinkedBufferPool pool) throws IOException
+    {
+        final ProtobufOutput output = new ProtobufOutput(pool.acquire(), pool);
+        try
+        {
+            schema.writeTo(output, message);
+            return LinkedBuffer.writeTo(out, output.head);
+        }
+        finally
+        {
+            pool.release(output.head);
+        }
+    }
+
     /**
      * Serializes the {@code message}, prefixed with its length, into an {@link OutputStream}.
      * 
@@ -255,6 +359,74 @@ public final class ProtobufIOUtil
         return size;
     }
 
+    /**
+     * Serializes the {@code message} using the given schema, then deflates the buffers into the stream of the
+     * {@code handler}.
+     * 
+     * @return the size of the message (not deflated)
+     */
+    public static <T> int writeTo(DeflateFlushHandler handler, T message, Schema<T> schema,
+            LinkedBuffer buffer) throws IOException
+    {
+        if (buffer.start != buffer.offset)
+            throw new IllegalArgumentException("Buffer previously used and had not been reset.");
+
+        final ProtobufOutput output = new ProtobufOutput(buffer);
+        schema.writeTo(output, message);
+        return handler.writeTo(buffer);
+    }
+
+    /**
+     * Serializes the {@code message}, prefixed with its length, then deflates them into the stream of the
+     * {@code handler}.
+     * 
+     * @return the size of the message (not deflated)
+     */
+    public static <T> int writeDelimitedTo(DeflateFlushHandler handler, T message,
+            Schema<T> schema, LinkedBuffer buffer) throws IOException
+    {
+        if (buffer.start != buffer.offset)
+            throw new IllegalArgumentException("Buffer previously used and had not been reset.");
+
+        final ProtobufOutput output = new ProtobufOutput(buffer);
+        schema.writeTo(output, message);
+        return handler.writeDelimitedTo(buffer, output.getSize());
+    }
+
+    /**
+     * Serializes the {@code message} into the (blocking) {@link GatheringByteChannel} using the given schema. All the
+     * buffers are written with a single gathering write.
+     * 
+     * @return the size of the message
+     */
+    public static <T> int writeTo(GatheringByteChannel channel, T message, Schema<T> schema,
+            LinkedBuffer buffer) throws IOException
+    {
+        if (buffer.start != buffer.offset)
+            throw new IllegalArgumentException("Buffer previously used and had not been reset.");
+
+        final ProtobufOutput output = new ProtobufOutput(buffer);
+        schema.writeTo(output, message);
+        return LinkedBuffer.writeTo(channel, buffer);
+    }
+
+    /**
+     * Serializes the {@code message}, prefixed with its length, into the (blocking) {@link GatheringByteChannel}. The
+     * length and the buffers are written with a single gathering write.
+     * 
+     * @return the size of the message
+     */
+    public static <T> int writeDelimitedTo(GatheringByteChannel channel, T message,
+            Schema<T> schema, LinkedBuffer buffer) throws IOException
+    {
+        if (buffer.start != buffer.offset)
+            throw new IllegalArgumentException("Buffer previously used and had not been reset.");
+
+        final ProtobufOutput output = new ProtobufOutput(buffer);
+        schema.writeTo(output, message);
+        return IOUtil.writeDelimitedTo(channel, buffer, output.getSize());
+    }
+
     /**
      * Used by the code generated messages that implement {@link java.io.Externalizable}. Writes to the
      * {@link DataOutput} .
@@ -305,6 +477,82 @@ public final class ProtobufIOUtil
         return totalSize;
     }
 
+    /**
+     * Serializes the {@code messages} (delimited) into an {@link OutputStream} using the given schema, in chunks of
+     * {@code chunkSize} messages that are serialized concurrently on the {@code executor}. The output is the same as
+     * {@link #writeListTo(OutputStream, List, Schema, LinkedBuffer)}.
+     * 
+     * @return the total size of the messages (excluding the length prefix varint)
+     * @see ParallelListWriter
+     */
+    public static <T> int writeListTo(final OutputStream out, final List<T> messages,
+            final Schema<T> schema, final ForkJoinPool executor, final int chunkSize)
+            throws IOException
+    {
+        return ParallelListWriter.writeTo(out, messages, new ParallelListWriter.ChunkWriter<T>()
+        {
+            @Override
+            public WriteSession writeChunk(List<T> messages, int from, int to)
+                    throws IOException
+            {
+                final ProtobufOutput chunk = new ProtobufOutput(
+                        LinkedBuffer.allocate(ParallelListWriter.CHUNK_BUFFER_SIZE),
+                        ParallelListWriter.CHUNK_BUFFER_SIZE);
+                final ProtobufOutput output = new ProtobufOutput(
+                        LinkedBuffer.allocate(ParallelListWriter.CHUNK_BUFFER_SIZE));
+
+                for (T m : messages.subList(from, to))
+                {
+                    schema.writeTo(output, m);
+                    final int size = output.getSize();
+                    chunk.tail = chunk.sink.writeVarInt32(size, chunk, chunk.tail);
+                    // the prefixes are not counted (like above)
+                    chunk.size -= ProtobufOutput.computeRawVarint32Size(size);
+
+                    // a single buffer (not larger than the next buffer size of the chunk) is
+                    // copied, never wrapped, so it can be reused for the next message.
+                    if (output.head.next == null)
+                    {
+                        chunk.tail = chunk.sink.writeByteArray(output.head.buffer,
+                                output.head.start, size, chunk, chunk.tail);
+                    }
+                    else
+                    {
+                        chunk.tail = chunk.sink.writeByteArray(output.toByteArray(), 0,
+                                size, chunk, chunk.tail);
+                    }
+
+                    output.clear();
+                }
+
+                return chunk;
+            }
+        }, executor, chunkSize);
+    }
+
+    /**
+     * Serializes the {@code messages} (delimited) into the (blocking) {@link GatheringByteChannel} using the given
+     * schema, with a single gathering write per message.
+     * 
+     * @return the total size of the messages (excluding the length prefix varint)
+     */
+    public static <T> int writeListTo(GatheringByteChannel channel, List<T> messages,
+            Schema<T> schema, LinkedBuffer buffer) throws IOException
+    {
+        if (buffer.start != buffer.offset)
+            throw new IllegalArgumentException("Buffer previously used and had not been reset.");
+
+        final ProtobufOutput output = new ProtobufOutput(buffer);
+        int totalSize = 0;
+        for (T m : messages)
+        {
+            schema.writeTo(output, m);
+            totalSize += IOUtil.writeDelimitedTo(channel, buffer, output.getSize());
+            output.clear();
+        }
+        return totalSize;
+    }
+
     /**
      * Parses the {@code messages} (delimited) from the {@link InputStream} using the given {@code schema}.
      * 
@@ -358,6 +606,20 @@ public final class ProtobufIOUtil
         return list;
     }
 
+    /**
+     * Parses the {@code messages} (delimited) from the file (from its current position to its end) using the given
+     * {@code schema}. The file is mapped and the messages are parsed in chunks of {@code chunkSize} concurrently on the
+     * {@code executor}.
+     * 
+     * @return the list containing the messages.
+     * @see ParallelListReader
+     */
+    public static <T> List<T> parseListFrom(FileChannel channel, Schema<T> schema,
+            ForkJoinPool executor, int chunkSize) throws IOException
+    {
+        return ParallelListReader.parseListFrom(channel, schema, false, executor, chunkSize);
+    }
+
     /**
      * Optimal/Optional mergeDelimitedFrom - If the message does not fit the buffer, no merge is done and this method
      * will return false.
@@ -33,7 +33,7 @@ import java.nio.ByteBuffer;
  * @author David Yu
  * @created May 18, 2010
  */
-public final class ProtobufOutput extends WriteSession implements Output
+public final class ProtobufOutput extends WriteSession implements PackedOutput
 {
 
     public static final int LITTLE_ENDIAN_32_SIZE = 4, LITTLE_ENDIAN_64_SIZE = 8;
@@ -48,6 +48,14 @@ public final class ProtobufOutput extends WriteSession implements Output
         super(buffer, nextBufferSize);
     }
 
+    /**
+     * Creates an output that acquires its overflow buffers from the {@code pool}.
+     */
+    public ProtobufOutput(LinkedBuffer buffer, LinkedBufferPool pool)
+    {
+        super(buffer, LinkedBuffer.DEFAULT_BUFFER_SIZE, pool);
+    }
+
     /**
      * Resets this output for re-use.
      */
@@ -241,6 +249,36 @@ public final class ProtobufOutput extends WriteSession implements Output
                 tail);
     }
 
+    @Override
+    public void writePackedLength(int fieldNumber, int length) throws IOException
+    {
+        tail = sink.writeVarInt32(
+                length,
+                this,
+                sink.writeVarInt32(
+                        makeTag(fieldNumber, WIRETYPE_LENGTH_DELIMITED),
+                        this,
+                        tail));
+    }
+
+    @Override
+    public void writePackedVarInt64(long value) throws IOException
+    {
+        tail = sink.writeVarInt64(value, this, tail);
+    }
+
+    @Override
+    public void writePackedFixed32(int value) throws IOException
+    {
+        tail = sink.writeInt32LE(value, this, tail);
+    }
+
+    @Override
+    public void writePackedFixed64(long value) throws IOException
+    {
+        tail = sink.writeInt64LE(value, this, tail);
+    }
+
     @Override
     public <T> void writeObject(final int fieldNumber, final T value, final Schema<T> schema,
             final boolean repeated) throws IOException
@@ -308,7 +346,8 @@ public final class ProtobufOutput extends WriteSession implements Output
         }
 
         // not enough size for the 1-byte delimiter
-        final LinkedBuffer nextBuffer = new LinkedBuffer(nextBufferSize);
+        final LinkedBuffer nextBuffer = pool == null ? new LinkedBuffer(nextBufferSize)
+                : pool.acquire(nextBufferSize);
         // new buffer for the content
         tail = nextBuffer;
 
@@ -347,7 +386,7 @@ public final class ProtobufOutput extends WriteSession implements Output
         final int size = computeRawVarint32Size(value);
 
         if (lb.offset + size > lb.buffer.length)
-            lb = new LinkedBuffer(session.nextBufferSize, lb);
+            lb = session.newBuffer(lb);
 
         final byte[] buffer = lb.buffer;
         int offset = lb.offset;
@@ -386,7 +425,7 @@ public final class ProtobufOutput extends WriteSession implements Output
 
         final int remaining = lb.buffer.length - lb.offset;
         // if all filled up, return a fresh buffer.
-        return remaining == 0 ? new LinkedBuffer(session.nextBufferSize, buffer) :
+        return remaining == 0 ? session.newBuffer(buffer) :
                 new LinkedBuffer(lb, buffer);
     }
 
@@ -416,7 +455,7 @@ public final class ProtobufOutput extends WriteSession implements Output
                 if (available == 0)
                 {
                     // buffer was actually full ... return a fresh buffer
-                    return new LinkedBuffer(session.nextBufferSize,
+                    return session.newBuffer(
                             new LinkedBuffer(value, offset, offset + valueLen, lb));
                 }
 
@@ -431,7 +470,7 @@ public final class ProtobufOutput extends WriteSession implements Output
             lb.offset += available;
 
             // grow
-            lb = new LinkedBuffer(session.nextBufferSize, lb);
+            lb = session.newBuffer(lb);
 
             final int leftover = valueLen - available;
 
@@ -462,7 +501,7 @@ public final class ProtobufOutput extends WriteSession implements Output
         final int totalSize = tagSize + size;
 
         if (lb.offset + totalSize > lb.buffer.length)
-            lb = new LinkedBuffer(session.nextBufferSize, lb);
+            lb = session.newBuffer(lb);
 
         final byte[] buffer = lb.buffer;
         int offset = lb.offset;
@@ -503,7 +542,7 @@ public final class ProtobufOutput extends WriteSession implements Output
         final int totalSize = tagSize + size;
 
         if (lb.offset + totalSize > lb.buffer.length)
-            lb = new LinkedBuffer(session.nextBufferSize, lb);
+            lb = session.newBuffer(lb);
 
         final byte[] buffer = lb.buffer;
         int offset = lb.offset;
@@ -543,7 +582,7 @@ public final class ProtobufOutput extends WriteSession implements Output
         final int totalSize = tagSize + LITTLE_ENDIAN_32_SIZE;
 
         if (lb.offset + totalSize > lb.buffer.length)
-            lb = new LinkedBuffer(session.nextBufferSize, lb);
+            lb = session.newBuffer(lb);
 
         final byte[] buffer = lb.buffer;
         int offset = lb.offset;
@@ -575,7 +614,7 @@ public final class ProtobufOutput extends WriteSession implements Output
         final int totalSize = tagSize + LITTLE_ENDIAN_64_SIZE;
 
         if (lb.offset + totalSize > lb.buffer.length)
-            lb = new LinkedBuffer(session.nextBufferSize, lb);
+            lb = session.newBuffer(lb);
 
         final byte[] buffer = lb.buffer;
         int offset = lb.offset;
@@ -19,9 +19,13 @@ import java.io.DataOutput;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.GatheringByteChannel;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Protostuff ser/deser util for messages/objects.
@@ -113,6 +117,16 @@ public final class ProtostuffIOUtil
         IOUtil.mergeFrom(data, offset, length, message, schema, true);
     }
 
+    /**
+     * Merges the {@code message} with the byte array using the given {@code schema}, reading the type names through
+     * the {@code typeDictionary} of the stream.
+     */
+    public static <T> void mergeFrom(byte[] data, T message, Schema<T> schema,
+            TypeDictionary typeDictionary)
+    {
+        IOUtil.mergeFrom(data, 0, data.length, message, schema, true, typeDictionary);
+    }
+
     /**
      * Merges the {@code message} from the {@link InputStream} using the given {@code schema}.
      */
@@ -158,6 +172,22 @@ public final class ProtostuffIOUtil
         return IOUtil.mergeDelimitedFrom(in, buffer.buffer, message, schema, true);
     }
 
+    /**
+     * Merges the {@code message} (delimited) from the {@link InputStream} using the given {@code schema}, reading the
+     * type names through the {@code typeDictionary} of the stream.
+     * <p>
+     * The delimited message size must not be larger than the {@code buffer}'s size/capacity. {@link ProtobufException}
+     * "size limit exceeded" is thrown otherwise.
+     * 
+     * @return the size of the message
+     */
+    public static <T> int mergeDelimitedFrom(InputStream in, T message, Schema<T> schema,
+            LinkedBuffer buffer, TypeDictionary typeDictionary) throws IOException
+    {
+        return IOUtil.mergeDelimitedFrom(in, buffer.buffer, message, schema, true,
+                typeDictionary);
+    }
+
     /**
      * Used by the code generated messages that implement {@link java.io.Externalizable}. Merges from the
      * {@link DataInput}.
@@ -194,6 +224,58 @@ public final class ProtostuffIOUtil
         return output.toByteArray();
     }
 
+    /**
+     * Serializes the {@code message} into a byte array using the given schema, writing the type names through the
+     * {@code typeDictionary} of the stream.
+     * 
+     * @return the byte array containing the data.
+     */
+    public static <T> byte[] toByteArray(T message, Schema<T> schema, LinkedBuffer buffer,
+            TypeDictionary typeDictionary)
+    {
+        if (buffer.start != buffer.offset)
+            throw new IllegalArgumentException("Buffer previously used and had not been reset.");
+
+        final ProtostuffOutput output = new ProtostuffOutput(buffer)
+                .setTypeDictionary(typeDictionary);
+        try
+        {
+            schema.writeTo(output, message);
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException("Serializing to a byte array threw an IOException " +
+                    "(should never happen).", e);
+        }
+
+        return output.toByteArray();
+    }
+
+    /**
+     * Serializes the {@code message} into a byte array using the given schema, with buffers acquired from (and released
+     * to) the {@code pool}.
+     * 
+     * @return the byte array containing the data.
+     */
+    public static <T> byte[] toByteArray(T message, Schema<T> schema, LinkedBufferPool pool)
+    {
+        final ProtostuffOutput output = new ProtostuffOutput(pool.acquire(), pool);
+        try
+        {
+            schema.writeTo(output, message);
+            return output.toByteArray();
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException("Serializing to a byte array threw an IOException " +
+                    "(should never happen).", e);
+        }
+        finally
+        {
+            pool.release(output.head);
+        }
+    }
+
     /**
      * Writes the {@code message} into the {@link LinkedBuffer} using the given schema.
      * 
@@ -218,6 +300,30 @@ public final class ProtostuffIOUtil
         return output.getSize();
     }
 
+    /**
+     * Writes the {@code message} into the {@link ByteBuffer} (heap or direct) using the given schema, starting at its
+     * position (which is advanced).
+     * 
+     * @return the size of the message
+     * @throws java.nio.BufferOverflowException
+     *             if the message does not fit in the remaining bytes of the buffer.
+     */
+    public static <T> int writeTo(ByteBuffer buffer, T message, Schema<T> schema)
+    {
+        final ByteBufferProtostuffOutput output = new ByteBufferProtostuffOutput(buffer);
+        try
+        {
+            schema.writeTo(output, message);
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException("Serializing to a ByteBuffer threw an IOException " +
+                    "(should never happen).", e);
+        }
+
+        return output.getSize();
+    }
+
     /**
      * Serializes the {@code message} into an {@link OutputStream} using the given schema.
      * 
@@ -235,6 +341,26 @@ public final class ProtostuffIOUtil
         return output.size;
     }
 
+    /**
+     * Serializes the {@code message} into an {@link OutputStream} using the given schema, with a buffer acquired from
+     * (and released to) the {@code pool}.
+     * 
+     * @return the size of the message
+     */
+    public static <T> int writeTo(OutputStream out, T message, Schema<T> schema,
+            LinkedBufferPool pool) throws IOException
+    {
+        final LinkedBuffer buffer = pool.acquire();
+        try
+        {
+            return writeTo(out, message, schema, buffer);
+        }
+        finally
+        {
+            pool.release(buffer);
+        }
+    }
+
     /**
      * Serializes the {@code message}, prefixed with its length, into an {@link OutputStream}.
      * 
@@ -253,6 +379,117 @@ public final class ProtostuffIOUtil
         return output.size;
     }
 
+    /**
+     * Serializes the {@code message} using the given schema, deflating the bytes into the stream of the
+     * {@code handler} as the {@code buffer} is flushed.
+     * 
+     * @return the size of the message (not deflated)
+     */
+    public static <T> int writeTo(DeflateFlushHandler handler, T message, Schema<T> schema,
+            LinkedBuffer buffer) throws IOException
+    {
+        if (buffer.start != buffer.offset)
+            throw new IllegalArgumentException("Buffer previously used and had not been reset.");
+
+        final ProtostuffOutput output = new ProtostuffOutput(buffer,
+                handler.getOutputStream(), handler, LinkedBuffer.DEFAULT_BUFFER_SIZE);
+        schema.writeTo(output, message);
+        handler.writeTo(buffer);
+        return output.size;
+    }
+
+    /**
+     * Serializes the {@code message}, prefixed with its length, deflating the bytes into the stream of the
+     * {@code handler}.
+     * 
+     * @return the size of the message (not deflated)
+     */
+    public static <T> int writeDelimitedTo(DeflateFlushHandler handler, T message,
+            Schema<T> schema, LinkedBuffer buffer) throws IOException
+    {
+        if (buffer.start != buffer.offset)
+            throw new IllegalArgumentException("Buffer previously used and had not been reset.");
+
+        final ProtostuffOutput output = new ProtostuffOutput(buffer);
+        schema.writeTo(output, message);
+        return handler.writeDelimitedTo(buffer, output.size);
+    }
+
+    /**
+     * Serializes the {@code message}, prefixed with its length, into an {@link OutputStream}, writing the type names
+     * through the {@code typeDictionary} of the stream.
+     * 
+     * @return the size of the message
+     */
+    public static <T> int writeDelimitedTo(final OutputStream out, final T message,
+            final Schema<T> schema, final LinkedBuffer buffer,
+            final TypeDictionary typeDictionary) throws IOException
+    {
+        if (buffer.start != buffer.offset)
+            throw new IllegalArgumentException("Buffer previously used and had not been reset.");
+
+        final ProtostuffOutput output = new ProtostuffOutput(buffer)
+                .setTypeDictionary(typeDictionary);
+        schema.writeTo(output, message);
+        ProtobufOutput.writeRawVarInt32Bytes(out, output.size);
+        LinkedBuffer.writeTo(out, buffer);
+        return output.size;
+    }
+
+    /**
+     * Serializes the {@code message} into the (blocking) {@link GatheringByteChannel} using the given schema. The
+     * message is buffered fully, then all the buffers are written with a single gathering write.
+     * 
+     * @return the size of the message
+     */
+    public static <T> int writeTo(GatheringByteChannel channel, T message, Schema<T> schema,
+            LinkedBuffer buffer) throws IOException
+    {
+        if (buffer.start != buffer.offset)
+            throw new IllegalArgumentException("Buffer previously used and had not been reset.");
+
+        final ProtostuffOutput output = new ProtostuffOutput(buffer);
+        schema.writeTo(output, message);
+        LinkedBuffer.writeTo(channel, buffer);
+        return output.size;
+    }
+
+    /**
+     * Serializes the {@code message} into the (blocking) channel of the {@code handler} using the given schema,
+     * flushing the {@code buffer} into it as it fills up (the message is not buffered fully).
+     * 
+     * @return the size of the message
+     */
+    public static <T> int writeTo(ChannelFlushHandler handler, T message, Schema<T> schema,
+            LinkedBuffer buffer) throws IOException
+    {
+        if (buffer.start != buffer.offset)
+            throw new IllegalArgumentException("Buffer previously used and had not been reset.");
+
+        final ProtostuffOutput output = new ProtostuffOutput(buffer,
+                handler.getOutputStream(), handler, LinkedBuffer.DEFAULT_BUFFER_SIZE);
+        schema.writeTo(output, message);
+        handler.writeTo(buffer);
+        return output.size;
+    }
+
+    /**
+     * Serializes the {@code message}, prefixed with its length, into the (blocking) {@link GatheringByteChannel}. The
+     * length and the buffers are written with a single gathering write.
+     * 
+     * @return the size of the message
+     */
+    public static <T> int writeDelimitedTo(GatheringByteChannel channel, T message,
+            Schema<T> schema, LinkedBuffer buffer) throws IOException
+    {
+        if (buffer.start != buffer.offset)
+            throw new IllegalArgumentException("Buffer previously used and had not been reset.");
+
+        final ProtostuffOutput output = new ProtostuffOutput(buffer);
+        schema.writeTo(output, message);
+        return IOUtil.writeDelimitedTo(channel, buffer, output.size);
+    }
+
     /**
      * Used by the code generated messages that implement {@link java.io.Externalizable}. Writes to the
      * {@link DataOutput} .
@@ -300,6 +537,77 @@ public final class ProtostuffIOUtil
         return output.size;
     }
 
+    /**
+     * Serializes the {@code messages} (delimited) into an {@link OutputStream} using the given schema, in chunks of
+     * {@code chunkSize} messages that are serialized concurrently on the {@code executor}. The output is the same as
+     * {@link #writeListTo(OutputStream, List, Schema, LinkedBuffer)}.
+     * 
+     * @return the bytes written
+     * @see ParallelListWriter
+     */
+    public static <T> int writeListTo(final OutputStream out, final List<T> messages,
+            final Schema<T> schema, final ForkJoinPool executor, final int chunkSize)
+            throws IOException
+    {
+        final int size = messages.size();
+        if (size == 0)
+            return 0;
+
+        ProtobufOutput.writeRawVarInt32Bytes(out, size);
+
+        return ProtobufOutput.computeRawVarint32Size(size) + ParallelListWriter.writeTo(out,
+                messages, new ParallelListWriter.ChunkWriter<T>()
+                {
+                    @Override
+                    public WriteSession writeChunk(List<T> messages, int from, int to)
+                            throws IOException
+                    {
+                        final ProtostuffOutput output = new ProtostuffOutput(
+                                LinkedBuffer.allocate(ParallelListWriter.CHUNK_BUFFER_SIZE),
+                                ParallelListWriter.CHUNK_BUFFER_SIZE);
+
+                        for (T m : messages.subList(from, to))
+                        {
+                            schema.writeTo(output, m);
+                            output.tail = output.sink.writeByte(
+                                    (byte) WireFormat.WIRETYPE_TAIL_DELIMITER, output,
+                                    output.tail);
+                        }
+
+                        return output;
+                    }
+                }, executor, chunkSize);
+    }
+
+    /**
+     * Serializes the {@code messages} (delimited) into the (blocking) {@link GatheringByteChannel} using the given
+     * schema. The messages are buffered fully, then all the buffers are written with a single gathering write.
+     * 
+     * @return the size of the messages
+     */
+    public static <T> int writeListTo(GatheringByteChannel channel, List<T> messages,
+            Schema<T> schema, LinkedBuffer buffer) throws IOException
+    {
+        if (buffer.start != buffer.offset)
+            throw new IllegalArgumentException("Buffer previously used and had not been reset.");
+
+        final int size = messages.size();
+        if (size == 0)
+            return 0;
+
+        final ProtostuffOutput output = new ProtostuffOutput(buffer);
+        output.tail = output.sink.writeVarInt32(size, output, output.tail);
+        for (T m : messages)
+        {
+            schema.writeTo(output, m);
+            output.tail = output.sink.writeByte((byte) WireFormat.WIRETYPE_TAIL_DELIMITER,
+                    output, output.tail);
+        }
+
+        LinkedBuffer.writeTo(channel, buffer);
+        return output.size;
+    }
+
     /**
      * Parses the {@code messages} (delimited) from the {@link InputStream} using the given {@code schema}.
      * 
@@ -330,6 +638,20 @@ public final class ProtostuffIOUtil
         return list;
     }
 
+    /**
+     * Parses the messages written with {@code writeDelimitedTo} from the file (from its current position to its end)
+     * using the given {@code schema}. The file is mapped and the messages are parsed in chunks of {@code chunkSize}
+     * concurrently on the {@code executor}.
+     * 
+     * @return the list containing the messages.
+     * @see ParallelListReader
+     */
+    public static <T> List<T> parseDelimitedListFrom(FileChannel channel, Schema<T> schema,
+            ForkJoinPool executor, int chunkSize) throws IOException
+    {
+        return ParallelListReader.parseListFrom(channel, schema, true, executor, chunkSize);
+    }
+
     /**
      * Optimal/Optional mergeDelimitedFrom - If the message does not fit the buffer, no merge is done and this method
      * will return false.
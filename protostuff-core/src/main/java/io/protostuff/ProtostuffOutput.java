@@ -34,14 +34,30 @@ import java.nio.ByteBuffer;
  * @author David Yu
  * @created Sep 19, 2010
  */
-public final class ProtostuffOutput extends WriteSession implements Output
+public final class ProtostuffOutput extends WriteSession implements PackedOutput,
+        TypeDictionaryOutput
 {
 
+    private TypeDictionary typeDictionary;
+
     public ProtostuffOutput(LinkedBuffer buffer)
     {
         super(buffer);
     }
 
+    public ProtostuffOutput(LinkedBuffer buffer, int nextBufferSize)
+    {
+        super(buffer, nextBufferSize);
+    }
+
+    /**
+     * Creates an output that acquires its overflow buffers from the {@code pool}.
+     */
+    public ProtostuffOutput(LinkedBuffer buffer, LinkedBufferPool pool)
+    {
+        super(buffer, LinkedBuffer.DEFAULT_BUFFER_SIZE, pool);
+    }
+
     public ProtostuffOutput(LinkedBuffer buffer, OutputStream out)
     {
         super(buffer, out);
@@ -63,6 +79,21 @@ public final class ProtostuffOutput extends WriteSession implements Output
         return this;
     }
 
+    /**
+     * Writes the type names through the {@code typeDictionary} (null to write them in full).
+     */
+    public ProtostuffOutput setTypeDictionary(TypeDictionary typeDictionary)
+    {
+        this.typeDictionary = typeDictionary;
+        return this;
+    }
+
+    @Override
+    public TypeDictionary getTypeDictionary()
+    {
+        return typeDictionary;
+    }
+
     @Override
     public void writeInt32(int fieldNumber, int value, boolean repeated) throws IOException
     {
@@ -351,6 +382,36 @@ public final class ProtostuffOutput extends WriteSession implements Output
                                 tail)));
     }
 
+    @Override
+    public void writePackedLength(int fieldNumber, int length) throws IOException
+    {
+        tail = sink.writeVarInt32(
+                length,
+                this,
+                sink.writeVarInt32(
+                        makeTag(fieldNumber, WIRETYPE_LENGTH_DELIMITED),
+                        this,
+                        tail));
+    }
+
+    @Override
+    public void writePackedVarInt64(long value) throws IOException
+    {
+        tail = sink.writeVarInt64(value, this, tail);
+    }
+
+    @Override
+    public void writePackedFixed32(int value) throws IOException
+    {
+        tail = sink.writeInt32LE(value, this, tail);
+    }
+
+    @Override
+    public void writePackedFixed64(long value) throws IOException
+    {
+        tail = sink.writeInt64LE(value, this, tail);
+    }
+
     @Override
     public <T> void writeObject(final int fieldNumber, final T value, final Schema<T> schema,
             final boolean repeated) throws IOException
@@ -0,0 +1,259 @@
+package io.protostuff;
+
+import static io.protostuff.ByteBufferOutput.computeUTF8Size;
+import static io.protostuff.ProtobufOutput.computeRawVarint32Size;
+import static io.protostuff.ProtobufOutput.computeRawVarint64Size;
+import static io.protostuff.ProtobufOutput.encodeZigZag32;
+import static io.protostuff.ProtobufOutput.encodeZigZag64;
+import static io.protostuff.WireFormat.WIRETYPE_FIXED32;
+import static io.protostuff.WireFormat.WIRETYPE_FIXED64;
+import static io.protostuff.WireFormat.WIRETYPE_LENGTH_DELIMITED;
+import static io.protostuff.WireFormat.WIRETYPE_VARINT;
+import static io.protostuff.WireFormat.makeTag;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Computes the size of a message in the protobuf format, without writing it. Works with any {@link Schema} (runtime,
+ * generated or hand-written) since it only relies on {@link Schema#writeTo(Output, Object)}.
+ * <p>
+ * The sizes of the nested messages are cached (in the order they are written), so that a
+ * {@link ByteBufferProtobufOutput} created with this output can write their length prefix up front: every byte is then
+ * written exactly once into a buffer of the exact size, see {@link ProtobufIOUtil#toByteArray(Object, Schema)}.
+ * <p>
+ * Not applicable to pipes, since their input can only be read once.
+ */
+public final class SizeComputingOutput implements PackedOutput
+{
+
+    /**
+     * Computes the serialized size of the {@code message} in the protobuf format.
+     */
+    public static <T> int computeSize(T message, Schema<T> schema)
+    {
+        final SizeComputingOutput output = new SizeComputingOutput();
+        try
+        {
+            schema.writeTo(output, message);
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException("Computing the size threw an IOException " +
+                    "(should never happen).", e);
+        }
+        return output.size;
+    }
+
+    int size;
+
+    /**
+     * The sizes of the nested messages, in the order of their {@link #writeObject} call.
+     */
+    int[] nestedSizes = new int[16];
+    int nestedCount;
+
+    /**
+     * Returns the computed size.
+     */
+    public int getSize()
+    {
+        return size;
+    }
+
+    /**
+     * Returns the number of nested messages.
+     */
+    public int getNestedCount()
+    {
+        return nestedCount;
+    }
+
+    /**
+     * Resets this output for re-use.
+     */
+    public SizeComputingOutput clear()
+    {
+        size = 0;
+        nestedCount = 0;
+        return this;
+    }
+
+    private static int tagSize(int fieldNumber, int wireType)
+    {
+        return computeRawVarint32Size(makeTag(fieldNumber, wireType));
+    }
+
+    @Override
+    public void writeInt32(int fieldNumber, int value, boolean repeated) throws IOException
+    {
+        size += tagSize(fieldNumber, WIRETYPE_VARINT)
+                + (value < 0 ? 10 : computeRawVarint32Size(value));
+    }
+
+    @Override
+    public void writeUInt32(int fieldNumber, int value, boolean repeated) throws IOException
+    {
+        size += tagSize(fieldNumber, WIRETYPE_VARINT) + computeRawVarint32Size(value);
+    }
+
+    @Override
+    public void writeSInt32(int fieldNumber, int value, boolean repeated) throws IOException
+    {
+        size += tagSize(fieldNumber, WIRETYPE_VARINT)
+                + computeRawVarint32Size(encodeZigZag32(value));
+    }
+
+    @Override
+    public void writeFixed32(int fieldNumber, int value, boolean repeated) throws IOException
+    {
+        size += tagSize(fieldNumber, WIRETYPE_FIXED32) + 4;
+    }
+
+    @Override
+    public void writeSFixed32(int fieldNumber, int value, boolean repeated) throws IOException
+    {
+        size += tagSize(fieldNumber, WIRETYPE_FIXED32) + 4;
+    }
+
+    @Override
+    public void writeInt64(int fieldNumber, long value, boolean repeated) throws IOException
+    {
+        size += tagSize(fieldNumber, WIRETYPE_VARINT) + computeRawVarint64Size(value);
+    }
+
+    @Override
+    public void writeUInt64(int fieldNumber, long value, boolean repeated) throws IOException
+    {
+        size += tagSize(fieldNumber, WIRETYPE_VARINT) + computeRawVarint64Size(value);
+    }
+
+    @Override
+    public void writeSInt64(int fieldNumber, long value, boolean repeated) throws IOException
+    {
+        size += tagSize(fieldNumber, WIRETYPE_VARINT)
+                + computeRawVarint64Size(encodeZigZag64(value));
+    }
+
+    @Override
+    public void writeFixed64(int fieldNumber, long value, boolean repeated) throws IOException
+    {
+        size += tagSize(fieldNumber, WIRETYPE_FIXED64) + 8;
+    }
+
+    @Override
+    public void writeSFixed64(int fieldNumber, long value, boolean repeated) throws IOException
+    {
+        size += tagSize(fieldNumber, WIRETYPE_FIXED64) + 8;
+    }
+
+    @Override
+    public void writeFloat(int fieldNumber, float value, boolean repeated) throws IOException
+    {
+        size += tagSize(fieldNumber, WIRETYPE_FIXED32) + 4;
+    }
+
+    @Override
+    public void writeDouble(int fieldNumber, double value, boolean repeated) throws IOException
+    {
+        size += tagSize(fieldNumber, WIRETYPE_FIXED64) + 8;
+    }
+
+    @Override
+    public void writeBool(int fieldNumber, boolean value, boolean repeated) throws IOException
+    {
+        size += tagSize(fieldNumber, WIRETYPE_VARINT) + 1;
+    }
+
+    @Override
+    public void writeEnum(int fieldNumber, int number, boolean repeated) throws IOException
+    {
+        writeInt32(fieldNumber, number, repeated);
+    }
+
+    private void writeDelimited(int fieldNumber, int length)
+    {
+        size += tagSize(fieldNumber, WIRETYPE_LENGTH_DELIMITED)
+                + computeRawVarint32Size(length) + length;
+    }
+
+    @Override
+    public void writeString(int fieldNumber, String value, boolean repeated) throws IOException
+    {
+        writeDelimited(fieldNumber, computeUTF8Size(value));
+    }
+
+    @Override
+    public void writeBytes(int fieldNumber, ByteString value, boolean repeated) throws IOException
+    {
+        writeDelimited(fieldNumber, value.size());
+    }
+
+    @Override
+    public void writeByteArray(int fieldNumber, byte[] value, boolean repeated) throws IOException
+    {
+        writeDelimited(fieldNumber, value.length);
+    }
+
+    @Override
+    public void writeByteRange(boolean utf8String, int fieldNumber, byte[] value,
+            int offset, int length, boolean repeated) throws IOException
+    {
+        writeDelimited(fieldNumber, length);
+    }
+
+    @Override
+    public void writeBytes(int fieldNumber, ByteBuffer value, boolean repeated) throws IOException
+    {
+        writeDelimited(fieldNumber, value.remaining());
+    }
+
+    @Override
+    public void writePackedLength(int fieldNumber, int length) throws IOException
+    {
+        // the values are counted as they are written
+        size += tagSize(fieldNumber, WIRETYPE_LENGTH_DELIMITED) + computeRawVarint32Size(length);
+    }
+
+    @Override
+    public void writePackedVarInt64(long value) throws IOException
+    {
+        size += computeRawVarint64Size(value);
+    }
+
+    @Override
+    public void writePackedFixed32(int value) throws IOException
+    {
+        size += 4;
+    }
+
+    @Override
+    public void writePackedFixed64(long value) throws IOException
+    {
+        size += 8;
+    }
+
+    @Override
+    public <T> void writeObject(int fieldNumber, T value, Schema<T> schema,
+            boolean repeated) throws IOException
+    {
+        // reserve the slot (pre-order, same as the writes)
+        final int index = nestedCount++;
+        if (index == nestedSizes.length)
+        {
+            final int[] grown = new int[index * 2];
+            System.arraycopy(nestedSizes, 0, grown, 0, index);
+            nestedSizes = grown;
+        }
+
+        final int lastSize = size;
+        size = 0;
+
+        schema.writeTo(this, value);
+
+        final int msgSize = size;
+        nestedSizes[index] = msgSize;
+        size = lastSize;
+        writeDelimited(fieldNumber, msgSize);
+    }
+}
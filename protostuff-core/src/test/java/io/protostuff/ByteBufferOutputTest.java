@@ -0,0 +1,223 @@
+package io.protostuff;
+
+import static io.protostuff.SerializableObjects.bar;
+import static io.protostuff.SerializableObjects.foo;
+import static io.protostuff.SerializableObjects.negativeBar;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.List;
+
+import io.protostuff.Foo.EnumSample;
+
+/**
+ * Compares the {@link ByteBufferOutput}s with the {@link LinkedBuffer} based outputs.
+ */
+public class ByteBufferOutputTest extends AbstractTest
+{
+
+    static String repeat(String str, int times)
+    {
+        final StringBuilder sb = new StringBuilder(str.length() * times);
+        for (int i = 0; i < times; i++)
+            sb.append(str);
+        return sb.toString();
+    }
+
+    static Foo newLargeFoo()
+    {
+        // nested messages with sizes that need a 2 and 3-byte delimiter
+        final Baz largeBaz = new Baz(-1, repeat("été 中", 20), 1234567890123L);
+        final Bar largeBar = new Bar(1, repeat("bar", 5000), largeBaz, Bar.Status.COMPLETED,
+                ByteString.copyFrom(new byte[300]), false, 1.1f, -2.2d, 3L);
+
+        return SerializableObjects.newFoo(
+                new Integer[] { 1, -1, Integer.MAX_VALUE, Integer.MIN_VALUE },
+                new String[] { repeat("ab", 100), "", "😀" },
+                new Bar[] { bar, largeBar, negativeBar, largeBar },
+                new EnumSample[] { EnumSample.TYPE1 },
+                new ByteString[] { ByteString.copyFrom(new byte[1000]) },
+                new Boolean[] { false },
+                new Float[] { Float.NaN },
+                new Double[] { Double.MIN_VALUE },
+                new Long[] { Long.MIN_VALUE, Long.MAX_VALUE });
+    }
+
+    static final Allocator SMALL = new Allocator(16, false), SMALL_DIRECT = new Allocator(32, true);
+
+    static final class Allocator implements ByteBufferOutput.Allocator
+    {
+        final int size;
+        final boolean direct;
+        int allocated;
+
+        Allocator(int size, boolean direct)
+        {
+            this.size = size;
+            this.direct = direct;
+        }
+
+        @Override
+        public ByteBuffer allocate(int minCapacity)
+        {
+            allocated++;
+            final int capacity = Math.max(minCapacity, size);
+            return direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+        }
+
+        @Override
+        public void release(ByteBuffer buffer)
+        {
+            allocated--;
+        }
+    }
+
+    static <T> byte[] toByteArray(ByteBufferOutput output, T message, Schema<T> schema)
+            throws Exception
+    {
+        schema.writeTo(output, message);
+
+        final List<ByteBuffer> buffers = output.getBuffers();
+        int size = 0;
+        for (ByteBuffer b : buffers)
+            size += b.remaining();
+        assertEquals(output.getSize(), size);
+
+        final byte[] data = output.toByteArray();
+        // the buffers are not consumed
+        assertTrue(Arrays.equals(data, output.toByteArray()));
+        return data;
+    }
+
+    static <T> void verify(T message, Schema<T> schema) throws Exception
+    {
+        final byte[] protostuff = ProtostuffIOUtil.toByteArray(message, schema, buf());
+        final byte[] protobuf = ProtobufIOUtil.toByteArray(message, schema, buf());
+
+        for (ByteBufferOutput.Allocator allocator : new ByteBufferOutput.Allocator[] {
+                SMALL, SMALL_DIRECT, ByteBufferOutput.DIRECT })
+        {
+            assertTrue(Arrays.equals(protostuff, toByteArray(
+                    new ByteBufferProtostuffOutput(allocator), message, schema)));
+            assertTrue(Arrays.equals(protobuf, toByteArray(
+                    new ByteBufferProtobufOutput(allocator), message, schema)));
+        }
+
+        for (ByteBuffer buffer : new ByteBuffer[] {
+                ByteBuffer.allocate(protobuf.length + 10),
+                ByteBuffer.allocateDirect(protobuf.length + 10).order(ByteOrder.LITTLE_ENDIAN) })
+        {
+            buffer.position(3);
+            assertEquals(protostuff.length, ProtostuffIOUtil.writeTo(buffer, message, schema));
+            assertEquals(protostuff.length + 3, buffer.position());
+            assertTrue(Arrays.equals(protostuff, toByteArray(buffer, 3)));
+
+            buffer.clear();
+            assertEquals(protobuf.length, ProtobufIOUtil.writeTo(buffer, message, schema));
+            assertTrue(Arrays.equals(protobuf, toByteArray(buffer, 0)));
+        }
+
+        // the remaining bytes of the given buffer are used first
+        final ByteBuffer head = ByteBuffer.allocateDirect(20);
+        assertTrue(Arrays.equals(protobuf, toByteArray(
+                new ByteBufferProtobufOutput(head, SMALL), message, schema)));
+    }
+
+    static byte[] toByteArray(ByteBuffer buffer, int offset)
+    {
+        final ByteBuffer b = buffer.duplicate();
+        b.flip();
+        b.position(offset);
+        final byte[] data = new byte[b.remaining()];
+        b.get(data);
+        return data;
+    }
+
+    public void testFoo() throws Exception
+    {
+        verify(foo, foo.cachedSchema());
+    }
+
+    public void testLargeNestedMessages() throws Exception
+    {
+        final Foo largeFoo = newLargeFoo();
+        verify(largeFoo, largeFoo.cachedSchema());
+
+        final byte[] data = ProtobufIOUtil.toByteArray(largeFoo, largeFoo.cachedSchema(), buf());
+        final Foo parsed = new Foo();
+        ProtobufIOUtil.mergeFrom(data, parsed, parsed.cachedSchema());
+        assertEquals(largeFoo, parsed);
+    }
+
+    public void testOverflow() throws Exception
+    {
+        final Foo largeFoo = newLargeFoo();
+        final int size = ProtobufIOUtil.toByteArray(largeFoo, largeFoo.cachedSchema(), buf()).length;
+        try
+        {
+            ProtobufIOUtil.writeTo(ByteBuffer.allocate(size - 1), largeFoo, largeFoo.cachedSchema());
+            fail("Expected BufferOverflowException");
+        }
+        catch (BufferOverflowException e)
+        {
+            // expected
+        }
+        try
+        {
+            ProtostuffIOUtil.writeTo(ByteBuffer.allocateDirect(100), largeFoo, largeFoo.cachedSchema());
+            fail("Expected BufferOverflowException");
+        }
+        catch (BufferOverflowException e)
+        {
+            // expected
+        }
+    }
+
+    public void testClear() throws Exception
+    {
+        final Allocator allocator = new Allocator(16, true);
+        final ByteBufferProtobufOutput output = new ByteBufferProtobufOutput(allocator);
+        final byte[] data = toByteArray(output, bar, bar.cachedSchema());
+        assertTrue(allocator.allocated > 1);
+
+        output.clear();
+        assertEquals(1, allocator.allocated);
+        assertEquals(0, output.getSize());
+        assertTrue(output.getBuffers().isEmpty());
+        assertTrue(Arrays.equals(data, toByteArray(output, bar, bar.cachedSchema())));
+    }
+
+    public void testClearGivenBuffer() throws Exception
+    {
+        final ByteBuffer buffer = ByteBuffer.allocate(256);
+        buffer.limit(200).position(3);
+        final ByteBufferProtobufOutput output = new ByteBufferProtobufOutput(buffer);
+        final byte[] data = toByteArray(output, bar, bar.cachedSchema());
+
+        // the position and limit given by the caller are kept
+        output.clear();
+        assertEquals(3, buffer.position());
+        assertEquals(200, buffer.limit());
+        assertTrue(Arrays.equals(data, toByteArray(output, bar, bar.cachedSchema())));
+    }
+
+    public void testOverflowSize() throws Exception
+    {
+        final ByteBufferProtobufOutput output = new ByteBufferProtobufOutput(
+                ByteBuffer.allocate(5));
+        try
+        {
+            output.writeByteArray(1, new byte[10], false);
+            fail("Expected BufferOverflowException");
+        }
+        catch (BufferOverflowException e)
+        {
+            // expected
+        }
+        // only the tag and the length were written
+        assertEquals(2, output.getSize());
+        assertEquals(2, output.toByteArray().length);
+    }
+}
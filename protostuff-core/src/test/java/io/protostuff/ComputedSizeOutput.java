@@ -27,7 +27,7 @@ import java.nio.ByteBuffer;
  * @author David Yu
  * @created Nov 9, 2009
  */
-public final class ComputedSizeOutput implements Output
+public final class ComputedSizeOutput implements PackedOutput
 {
 
     /**
@@ -227,6 +227,32 @@ public final class ComputedSizeOutput implements Output
         size += ProtobufOutput.computeRawVarint32Size(length) + length;
     }
 
+    @Override
+    public void writePackedLength(int fieldNumber, int length) throws IOException
+    {
+        size += ProtobufOutput.computeRawVarint32Size(WireFormat.makeTag(fieldNumber,
+                WireFormat.WIRETYPE_LENGTH_DELIMITED));
+        size += ProtobufOutput.computeRawVarint32Size(length);
+    }
+
+    @Override
+    public void writePackedVarInt64(long value) throws IOException
+    {
+        size += ProtobufOutput.computeRawVarint64Size(value);
+    }
+
+    @Override
+    public void writePackedFixed32(int value) throws IOException
+    {
+        size += 4;
+    }
+
+    @Override
+    public void writePackedFixed64(long value) throws IOException
+    {
+        size += 8;
+    }
+
     @Override
     public <T> void writeObject(final int fieldNumber, final T value, final Schema<T> schema,
             final boolean repeated) throws IOException
@@ -0,0 +1,85 @@
+package io.protostuff;
+
+import static io.protostuff.SerializableObjects.foo;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.zip.Deflater;
+
+/**
+ * Tests the deflated streams written with a {@link DeflateFlushHandler} and read with an {@link InflatingInputStream}.
+ */
+public class DeflateStreamTest extends AbstractTest
+{
+
+    public void testDelimited() throws Exception
+    {
+        final Foo large = ByteBufferOutputTest.newLargeFoo();
+        final ByteArrayOutputStream plain = new ByteArrayOutputStream();
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        // small frames so that a message spans several
+        final DeflateFlushHandler handler = new DeflateFlushHandler(out,
+                Deflater.DEFAULT_COMPRESSION, 64);
+        for (int i = 0; i < 5; i++)
+        {
+            ProtostuffIOUtil.writeDelimitedTo(plain, large, Foo.getSchema(), buf());
+            ProtostuffIOUtil.writeDelimitedTo(handler, large, Foo.getSchema(), buf());
+            ProtobufIOUtil.writeDelimitedTo(handler, foo, Foo.getSchema(), buf());
+        }
+        handler.finish();
+        assertTrue(out.size() < plain.size());
+
+        final InflatingInputStream in = new InflatingInputStream(
+                new ByteArrayInputStream(out.toByteArray()));
+        for (int i = 0; i < 5; i++)
+        {
+            final Foo parsedLarge = new Foo();
+            ProtostuffIOUtil.mergeDelimitedFrom(in, parsedLarge, Foo.getSchema());
+            SerializableObjects.assertEquals(large, parsedLarge);
+
+            final Foo parsed = new Foo();
+            ProtobufIOUtil.mergeDelimitedFrom(in, parsed, Foo.getSchema());
+            SerializableObjects.assertEquals(foo, parsed);
+        }
+        assertEquals(-1, in.read());
+    }
+
+    public void testStreamedWriteTo() throws Exception
+    {
+        final Foo large = ByteBufferOutputTest.newLargeFoo();
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final DeflateFlushHandler handler = new DeflateFlushHandler(out);
+
+        final int size = ProtostuffIOUtil.writeTo(handler, large, Foo.getSchema(),
+                LinkedBuffer.allocate(256));
+        handler.finish();
+
+        final byte[] expected = ProtostuffIOUtil.toByteArray(large, Foo.getSchema(), buf());
+        assertEquals(expected.length, size);
+
+        final Foo parsed = new Foo();
+        ProtostuffIOUtil.mergeFrom(new InflatingInputStream(new ByteArrayInputStream(
+                out.toByteArray())), parsed, Foo.getSchema());
+        SerializableObjects.assertEquals(large, parsed);
+    }
+
+    public void testReuseAfterFinish() throws Exception
+    {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final DeflateFlushHandler handler = new DeflateFlushHandler(out);
+        ProtobufIOUtil.writeTo(handler, foo, Foo.getSchema(), buf());
+        handler.finish();
+        ProtobufIOUtil.writeTo(handler, foo, Foo.getSchema(), buf());
+        handler.finish();
+
+        // two streams, one after the other
+        final ByteArrayInputStream in = new ByteArrayInputStream(out.toByteArray());
+        for (int i = 0; i < 2; i++)
+        {
+            final Foo parsed = new Foo();
+            ProtobufIOUtil.mergeFrom(new InflatingInputStream(in), parsed, Foo.getSchema());
+            SerializableObjects.assertEquals(foo, parsed);
+        }
+        assertEquals(-1, in.read());
+    }
+}
@@ -0,0 +1,153 @@
+package io.protostuff;
+
+import static io.protostuff.SerializableObjects.bar;
+import static io.protostuff.SerializableObjects.negativeBar;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests the {@link DelimitedMessageDecoder} with the stream split in chunks of every size.
+ */
+public class DelimitedMessageDecoderTest extends AbstractTest
+{
+
+    static final List<Bar> BARS = Arrays.asList(bar, new Bar(), negativeBar,
+            new Bar(1, ByteBufferOutputTest.repeat("x", 300), null, null, null, false, 0f, 0d, 0L));
+
+    static byte[] writeDelimited(List<Bar> messages, boolean protostuff) throws Exception
+    {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (Bar message : messages)
+        {
+            if (protostuff)
+                ProtostuffIOUtil.writeDelimitedTo(out, message, Bar.getSchema(), buf());
+            else
+                ProtobufIOUtil.writeDelimitedTo(out, message, Bar.getSchema(), buf());
+        }
+        return out.toByteArray();
+    }
+
+    static List<Bar> decode(byte[] data, int chunkSize, boolean direct, boolean protostuff)
+            throws Exception
+    {
+        final DelimitedMessageDecoder<Bar> decoder = new DelimitedMessageDecoder<>(
+                Bar.getSchema(), protostuff);
+        final ArrayList<Bar> messages = new ArrayList<>();
+        for (int offset = 0; offset < data.length; offset += chunkSize)
+        {
+            final int len = Math.min(chunkSize, data.length - offset);
+            final ByteBuffer chunk = direct ? ByteBuffer.allocateDirect(len)
+                    : ByteBuffer.allocate(len + 2);
+            if (!direct)
+                chunk.position(2);
+
+            chunk.put(data, offset, len).flip();
+            if (!direct)
+                chunk.position(2);
+
+            decoder.decode(chunk, messages);
+            assertFalse(chunk.hasRemaining());
+        }
+        assertFalse(decoder.isPartial());
+        assertEquals(0, decoder.getPendingCount());
+        return messages;
+    }
+
+    public void testChunks() throws Exception
+    {
+        for (boolean protostuff : new boolean[] { false, true })
+        {
+            final byte[] data = writeDelimited(BARS, protostuff);
+            for (int chunkSize = 1; chunkSize <= data.length; chunkSize++)
+            {
+                assertEquals(BARS, decode(data, chunkSize, false, protostuff));
+                assertEquals(BARS, decode(data, chunkSize, true, protostuff));
+            }
+        }
+    }
+
+    public void testChannel() throws Exception
+    {
+        final byte[] data = writeDelimited(BARS, true);
+        final ReadableByteChannel channel = Channels.newChannel(
+                new ByteArrayInputStream(data));
+        final DelimitedMessageDecoder<Bar> decoder = new DelimitedMessageDecoder<>(
+                Bar.getSchema(), true);
+        final ByteBuffer buffer = ByteBuffer.allocate(7);
+        final ArrayList<Bar> messages = new ArrayList<>();
+
+        while (decoder.readFrom(channel, buffer, messages) != -1)
+            ;
+
+        assertEquals(BARS, messages);
+    }
+
+    public void testTruncated() throws Exception
+    {
+        final byte[] data = writeDelimited(BARS, false);
+        final ReadableByteChannel channel = Channels.newChannel(
+                new ByteArrayInputStream(Arrays.copyOf(data, data.length - 1)));
+        final DelimitedMessageDecoder<Bar> decoder = new DelimitedMessageDecoder<>(
+                Bar.getSchema(), false);
+        final ArrayList<Bar> messages = new ArrayList<>();
+        try
+        {
+            while (decoder.readFrom(channel, ByteBuffer.allocate(16), messages) != -1)
+                ;
+
+            fail("Expected ProtobufException");
+        }
+        catch (ProtobufException e)
+        {
+            // expected
+        }
+        assertEquals(BARS.subList(0, 3), messages);
+    }
+
+    public void testTruncatedWithinMessage() throws Exception
+    {
+        // a complete frame whose message ends in the middle of a varint
+        final byte[] data = new byte[] { 2, 8, (byte) 0x80 };
+        for (boolean direct : new boolean[] { false, true })
+        {
+            final ByteBuffer chunk = direct ? ByteBuffer.allocateDirect(data.length)
+                    : ByteBuffer.allocate(data.length);
+            chunk.put(data).flip();
+            try
+            {
+                new DelimitedMessageDecoder<>(Bar.getSchema(), false).decode(chunk,
+                        new ArrayList<Bar>());
+                fail("Expected ProtobufException");
+            }
+            catch (ProtobufException e)
+            {
+                // expected
+            }
+        }
+    }
+
+    public void testTooLarge() throws Exception
+    {
+        final byte[] data = writeDelimited(BARS, false);
+        final DelimitedMessageDecoder<Bar> decoder = new DelimitedMessageDecoder<>(
+                Bar.getSchema(), false, 100);
+        final ArrayList<Bar> messages = new ArrayList<>();
+        try
+        {
+            decoder.decode(ByteBuffer.wrap(data), messages);
+            fail("Expected ProtobufException");
+        }
+        catch (ProtobufException e)
+        {
+            // expected
+        }
+        assertEquals(BARS.subList(0, 3), messages);
+    }
+}
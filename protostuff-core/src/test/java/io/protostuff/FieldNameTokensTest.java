@@ -0,0 +1,172 @@
+package io.protostuff;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the per-schema caching of {@link FieldNameTokens}.
+ */
+public class FieldNameTokensTest extends TestCase
+{
+
+    static final FieldNameTokens<String> QUOTED = new FieldNameTokens<String>()
+    {
+        @Override
+        protected String encode(String fieldName)
+        {
+            return '"' + fieldName + '"';
+        }
+    };
+
+    /**
+     * A view of {@link Foo} with upper case field names.
+     */
+    static Schema<Foo> newUpperCaseView()
+    {
+        return new CustomSchema<Foo>(Foo.getSchema())
+        {
+            @Override
+            public String getFieldName(int number)
+            {
+                return super.getFieldName(number).toUpperCase();
+            }
+
+            @Override
+            public int getFieldNumber(String name)
+            {
+                for (int number = 1; number <= 9; number++)
+                {
+                    if (getFieldName(number).equals(name))
+                        return number;
+                }
+                return 0;
+            }
+        };
+    }
+
+    public void testPerSchemaInstance()
+    {
+        final Schema<Foo> schema = Foo.getSchema();
+        final Schema<Foo> view = newUpperCaseView();
+
+        assertSame(QUOTED.getTable(schema), QUOTED.getTable(schema));
+        assertNotSame(QUOTED.getTable(schema), QUOTED.getTable(view));
+
+        for (int number = 1; number <= 9; number++)
+        {
+            assertEquals('"' + schema.getFieldName(number) + '"', QUOTED.get(schema, number));
+            assertEquals('"' + view.getFieldName(number) + '"', QUOTED.get(view, number));
+        }
+
+        // cached
+        assertSame(QUOTED.get(schema, 3), QUOTED.get(schema, 3));
+    }
+
+    public void testFieldNumber()
+    {
+        final Schema<Foo> schema = Foo.getSchema();
+        final FieldNameTokens.Table<String> table = QUOTED.getTable(schema);
+        for (int number = 1; number <= 9; number++)
+        {
+            final String name = schema.getFieldName(number);
+            assertEquals(number, table.getFieldNumber(name));
+            // equal but not the same instance
+            assertEquals(number, table.getFieldNumber(new String(name)));
+        }
+
+        assertEquals(0, table.getFieldNumber("unknown"));
+        assertEquals(0, table.getFieldNumber("unknown"));
+
+        // utf8 names within a larger buffer
+        final byte[] utf8 = StringSerializer.STRING.ser("?someLong&unknown");
+        assertEquals(9, table.getFieldNumber(utf8, 1, 8));
+        assertEquals(9, table.getFieldNumber(utf8, 1, 8));
+        assertEquals(0, table.getFieldNumber(utf8, 10, 7));
+        assertEquals(0, table.getFieldNumber(utf8, 1, 7));
+
+        final FieldNameTokens.Table<String> viewTable = QUOTED.getTable(newUpperCaseView());
+        assertEquals(1, viewTable.getFieldNumber("SOMEINT"));
+        assertEquals(0, viewTable.getFieldNumber("someInt"));
+    }
+
+    public void testUnknownNamesNotIndexed() throws Exception
+    {
+        // strongly referenced
+        final Schema<Foo> view = newUpperCaseView();
+        final FieldNameTokens.Table<String> table = QUOTED.getTable(view);
+        for (int i = 0; i < FieldNameTokens.MAX_INDEXED_NAMES; i++)
+        {
+            assertEquals(0, table.getFieldNumber("unknown" + i));
+            assertEquals(0, table.getFieldNumber(StringSerializer.STRING.ser("unknown" + i), 0,
+                    ("unknown" + i).length()));
+        }
+        assertEquals(0, table.names.size);
+        assertEquals(0, table.utf8Names.size);
+
+        assertEquals(1, table.getFieldNumber("SOMEINT"));
+        assertEquals(9, table.getFieldNumber(StringSerializer.STRING.ser("SOMELONG"), 0, 8));
+        // each index only holds the names looked up through it
+        assertEquals(1, table.names.size);
+        assertEquals(1, table.utf8Names.size);
+
+        // neither the misses nor the indexed names take the lock of the table
+        final int[] numbers = new int[3];
+        final Thread lookup = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                numbers[0] = table.getFieldNumber("SOMEINT");
+                numbers[1] = table.getFieldNumber("another");
+                numbers[2] = table.getFieldNumber(StringSerializer.STRING.ser("SOMELONG"), 0, 8);
+            }
+        };
+        synchronized (table)
+        {
+            lookup.start();
+            lookup.join(10000);
+            assertFalse(lookup.isAlive());
+        }
+
+        assertEquals(1, numbers[0]);
+        assertEquals(0, numbers[1]);
+        assertEquals(9, numbers[2]);
+        assertNotNull(view);
+    }
+
+    public void testAscii() throws Exception
+    {
+        // the same bytes as the ascii writes of the outputs, even for a non-ascii name
+        for (String name : new String[] { "someInt", "caf\u00e9", "" })
+        {
+            final LinkedBuffer buffer = LinkedBuffer.allocate(256);
+            final WriteSession session = new WriteSession(buffer);
+            session.sink.writeStrAscii(name, session, buffer);
+            assertTrue(Arrays.equals(session.toByteArray(),
+                    FieldNameTokens.ascii(name)));
+        }
+    }
+
+    public void testManySchemas()
+    {
+        final List<Schema<Foo>> views = new ArrayList<>();
+        final List<FieldNameTokens.Table<String>> tables = new ArrayList<>();
+        for (int i = 0; i < 100; i++)
+        {
+            final Schema<Foo> view = newUpperCaseView();
+            views.add(view);
+            tables.add(QUOTED.getTable(view));
+        }
+
+        // still found after the resizes
+        for (int i = 0; i < views.size(); i++)
+        {
+            assertSame(tables.get(i), QUOTED.getTable(views.get(i)));
+            assertEquals("\"SOMEINT\"", tables.get(i).get(1));
+        }
+    }
+
+}
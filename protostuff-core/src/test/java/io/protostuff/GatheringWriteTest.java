@@ -0,0 +1,225 @@
+package io.protostuff;
+
+import static io.protostuff.SerializableObjects.foo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.IllegalBlockingModeException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests the gathering writes of the {@link LinkedBuffer}s into a {@link GatheringByteChannel}.
+ */
+public class GatheringWriteTest extends AbstractTest
+{
+
+    /**
+     * Records the bytes and the number of writes, and accepts at most {@code maxWrite} bytes per write (none on every
+     * other write if {@code stall}).
+     */
+    static final class RecordingChannel implements GatheringByteChannel
+    {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final int maxWrite;
+        final boolean stall;
+        int writes;
+
+        RecordingChannel(int maxWrite, boolean stall)
+        {
+            this.maxWrite = maxWrite;
+            this.stall = stall;
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length)
+        {
+            if (stall && writes++ % 2 == 0)
+                return 0;
+
+            int written = 0;
+            for (int i = offset; i < offset + length && written < maxWrite; i++)
+            {
+                while (srcs[i].hasRemaining() && written < maxWrite)
+                {
+                    out.write(srcs[i].get());
+                    written++;
+                }
+            }
+            if (!stall)
+                writes++;
+
+            return written;
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs)
+        {
+            return write(srcs, 0, srcs.length);
+        }
+
+        @Override
+        public int write(ByteBuffer src)
+        {
+            return (int) write(new ByteBuffer[] { src });
+        }
+
+        @Override
+        public boolean isOpen()
+        {
+            return true;
+        }
+
+        @Override
+        public void close()
+        {
+        }
+    }
+
+    public void testWriteTo() throws Exception
+    {
+        final Foo message = ByteBufferOutputTest.newLargeFoo();
+
+        RecordingChannel channel = new RecordingChannel(Integer.MAX_VALUE, false);
+        final int size = ProtostuffIOUtil.writeTo(channel, message, Foo.getSchema(),
+                LinkedBuffer.allocate(256));
+        final byte[] expected = ProtostuffIOUtil.toByteArray(message, Foo.getSchema(), buf());
+        assertEquals(expected.length, size);
+        assertTrue(Arrays.equals(expected, channel.out.toByteArray()));
+        // all the buffers in one write
+        assertEquals(1, channel.writes);
+
+        channel = new RecordingChannel(Integer.MAX_VALUE, false);
+        ProtobufIOUtil.writeTo(channel, message, Foo.getSchema(), LinkedBuffer.allocate(256));
+        assertTrue(Arrays.equals(ProtobufIOUtil.toByteArray(message, Foo.getSchema(), buf()),
+                channel.out.toByteArray()));
+        assertEquals(1, channel.writes);
+    }
+
+    public void testWriteDelimitedTo() throws Exception
+    {
+        final Foo message = ByteBufferOutputTest.newLargeFoo();
+
+        RecordingChannel channel = new RecordingChannel(Integer.MAX_VALUE, false);
+        ProtostuffIOUtil.writeDelimitedTo(channel, message, Foo.getSchema(),
+                LinkedBuffer.allocate(256));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ProtostuffIOUtil.writeDelimitedTo(out, message, Foo.getSchema(), buf());
+        assertTrue(Arrays.equals(out.toByteArray(), channel.out.toByteArray()));
+        assertEquals(1, channel.writes);
+
+        channel = new RecordingChannel(Integer.MAX_VALUE, false);
+        ProtobufIOUtil.writeDelimitedTo(channel, message, Foo.getSchema(),
+                LinkedBuffer.allocate(256));
+        out = new ByteArrayOutputStream();
+        ProtobufIOUtil.writeDelimitedTo(out, message, Foo.getSchema(), buf());
+        assertTrue(Arrays.equals(out.toByteArray(), channel.out.toByteArray()));
+        assertEquals(1, channel.writes);
+    }
+
+    public void testWriteListTo() throws Exception
+    {
+        final List<Foo> messages = Arrays.asList(foo, ByteBufferOutputTest.newLargeFoo(), foo);
+
+        RecordingChannel channel = new RecordingChannel(Integer.MAX_VALUE, false);
+        ProtostuffIOUtil.writeListTo(channel, messages, Foo.getSchema(),
+                LinkedBuffer.allocate(256));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ProtostuffIOUtil.writeListTo(out, messages, Foo.getSchema(), buf());
+        assertTrue(Arrays.equals(out.toByteArray(), channel.out.toByteArray()));
+        assertEquals(1, channel.writes);
+
+        channel = new RecordingChannel(Integer.MAX_VALUE, false);
+        ProtobufIOUtil.writeListTo(channel, messages, Foo.getSchema(),
+                LinkedBuffer.allocate(256));
+        out = new ByteArrayOutputStream();
+        ProtobufIOUtil.writeListTo(out, messages, Foo.getSchema(), buf());
+        assertTrue(Arrays.equals(out.toByteArray(), channel.out.toByteArray()));
+        assertEquals(messages.size(), channel.writes);
+    }
+
+    public void testPartialWrites() throws Exception
+    {
+        final Foo message = ByteBufferOutputTest.newLargeFoo();
+        final LinkedBuffer buffer = LinkedBuffer.allocate(256);
+        ProtostuffIOUtil.writeTo(buffer, message, Foo.getSchema());
+        final ByteBuffer[] buffers = LinkedBuffer.toByteBuffers(buffer);
+        assertTrue(buffers.length > 1);
+
+        final RecordingChannel channel = new RecordingChannel(100, true);
+        int attempts = 0;
+        while (!LinkedBuffer.writeTo(channel, buffers))
+            attempts++;
+
+        assertTrue(attempts > 0);
+        assertTrue(Arrays.equals(ProtostuffIOUtil.toByteArray(message, Foo.getSchema(), buf()),
+                channel.out.toByteArray()));
+    }
+
+    public void testTryWriteTo() throws Exception
+    {
+        final Foo message = ByteBufferOutputTest.newLargeFoo();
+        final LinkedBuffer buffer = LinkedBuffer.allocate(256);
+        final int size = ProtostuffIOUtil.writeTo(buffer, message, Foo.getSchema());
+
+        // like a non-blocking channel: returns the pending buffers instead of spinning
+        final RecordingChannel channel = new RecordingChannel(100, true);
+        ByteBuffer[] pending = LinkedBuffer.tryWriteTo(channel, buffer);
+        assertNotNull(pending);
+        assertEquals(1, channel.writes);
+        while (!LinkedBuffer.writeTo(channel, pending))
+            ;
+
+        assertTrue(Arrays.equals(ProtostuffIOUtil.toByteArray(message, Foo.getSchema(), buf()),
+                channel.out.toByteArray()));
+        assertNull(LinkedBuffer.tryWriteTo(new RecordingChannel(Integer.MAX_VALUE, false), buffer));
+
+        // delimited
+        final RecordingChannel delimited = new RecordingChannel(Integer.MAX_VALUE, false);
+        assertTrue(LinkedBuffer.writeTo(delimited, LinkedBuffer.toDelimitedByteBuffers(buffer, size)));
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ProtostuffIOUtil.writeDelimitedTo(out, message, Foo.getSchema(), buf());
+        assertTrue(Arrays.equals(out.toByteArray(), delimited.out.toByteArray()));
+    }
+
+    public void testBlockingWriteToNonBlockingChannel() throws Exception
+    {
+        final Foo message = ByteBufferOutputTest.newLargeFoo();
+        try
+        {
+            ProtostuffIOUtil.writeTo(new RecordingChannel(100, true), message, Foo.getSchema(),
+                    LinkedBuffer.allocate(256));
+            fail("Expected IllegalBlockingModeException");
+        }
+        catch (IllegalBlockingModeException e)
+        {
+            // expected
+        }
+
+        try
+        {
+            ProtobufIOUtil.writeDelimitedTo(new RecordingChannel(100, true), message,
+                    Foo.getSchema(), LinkedBuffer.allocate(256));
+            fail("Expected IllegalBlockingModeException");
+        }
+        catch (IllegalBlockingModeException e)
+        {
+            // expected
+        }
+    }
+
+    public void testFlushHandler() throws IOException
+    {
+        final Foo message = ByteBufferOutputTest.newLargeFoo();
+        final RecordingChannel channel = new RecordingChannel(64, false);
+
+        final byte[] expected = ProtostuffIOUtil.toByteArray(message, Foo.getSchema(), buf());
+        final int size = ProtostuffIOUtil.writeTo(new ChannelFlushHandler(channel), message,
+                Foo.getSchema(), LinkedBuffer.allocate(256));
+
+        assertEquals(expected.length, size);
+        assertTrue(Arrays.equals(expected, channel.out.toByteArray()));
+    }
+}
@@ -18,6 +18,7 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 
 /**
  * Test ser/deser of graph objects (references and cyclic dependencies).
@@ -191,6 +192,47 @@ public class GraphTest extends AbstractTest
         checkLinks(founderFromStream);
     }
 
+    public void testSession() throws Exception
+    {
+        final GraphSession session = new GraphSession(4);
+        final Schema<ClubFounder> schema = ClubFounder.getSchema();
+        for (int i = 0; i < 3; i++)
+        {
+            // a new graph every time (the previous objects must not be seen as references)
+            ClubFounder founder = new ClubFounder();
+            founder.setName("some_glee_club_founder");
+            Club gleeClub = new Club();
+            gleeClub.setName("glee");
+            founder.setClub(gleeClub);
+            addPartnerStudentTo(gleeClub, "jake");
+            for (String name : new String[] { "john", "jane" })
+            {
+                Student student = new Student();
+                student.setName(name);
+                student.addClub(gleeClub);
+                gleeClub.addStudent(student);
+            }
+
+            byte[] data = GraphIOUtil.toByteArray(founder, schema, buf(), session);
+            assertTrue(Arrays.equals(toByteArray(founder, schema), data));
+
+            ClubFounder founderFromByteArray = new ClubFounder();
+            GraphIOUtil.mergeFrom(data, founderFromByteArray, schema, session);
+            checkLinks(founderFromByteArray);
+
+            ClubFounder founderFromStream = new ClubFounder();
+            GraphIOUtil.mergeFrom(new ByteArrayInputStream(data), founderFromStream, schema,
+                    buf(), session);
+            checkLinks(founderFromStream);
+
+            assertEquals(data.length, GraphIOUtil.writeTo(buf(), founder, schema, session));
+        }
+
+        session.clear();
+        assertEquals(0, session.references.size());
+        assertTrue(session.objects.isEmpty());
+    }
+
     static void addPartnerStudentTo(Club club, String studentName)
     {
         Student student = new Student();
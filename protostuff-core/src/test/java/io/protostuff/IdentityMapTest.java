@@ -0,0 +1,65 @@
+package io.protostuff;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for {@link IdentityMap}.
+ */
+public class IdentityMapTest extends TestCase
+{
+
+    public void testPutIfAbsent()
+    {
+        final IdentityMap map = new IdentityMap(2);
+        final Object[] keys = new Object[100];
+        for (int i = 0; i < keys.length; i++)
+        {
+            keys[i] = new Object();
+            assertEquals(IdentityMap.ABSENT, map.putIfAbsent(keys[i], i));
+        }
+        assertEquals(keys.length, map.size());
+
+        // resized, and by identity
+        for (int i = 0; i < keys.length; i++)
+            assertEquals(i, map.putIfAbsent(keys[i], -2));
+
+        assertEquals(IdentityMap.ABSENT, map.putIfAbsent(new String("a"), 0));
+        assertEquals(IdentityMap.ABSENT, map.putIfAbsent(new String("a"), 0));
+    }
+
+    public void testReset()
+    {
+        final IdentityMap map = new IdentityMap();
+        final Object a = new Object(), b = new Object();
+        assertEquals(IdentityMap.ABSENT, map.putIfAbsent(a, 1));
+        assertEquals(IdentityMap.ABSENT, map.putIfAbsent(b, 2));
+
+        final int capacity = map.keys.length;
+        map.reset();
+        assertEquals(0, map.size());
+        assertEquals(IdentityMap.ABSENT, map.putIfAbsent(b, 3));
+        assertEquals(3, map.putIfAbsent(b, 4));
+        assertEquals(IdentityMap.ABSENT, map.putIfAbsent(a, 5));
+
+        // no growth from the stale entries
+        for (int i = 0; i < 10; i++)
+        {
+            map.reset();
+            assertEquals(IdentityMap.ABSENT, map.putIfAbsent(a, i));
+            assertEquals(IdentityMap.ABSENT, map.putIfAbsent(b, i));
+        }
+        assertEquals(capacity, map.keys.length);
+
+        map.clear();
+        assertEquals(0, map.size());
+        for (Object key : map.keys)
+            assertNull(key);
+    }
+
+    public void testMaximumCapacity()
+    {
+        assertEquals(IdentityMap.MAXIMUM_CAPACITY, IdentityMap.capacity(Integer.MAX_VALUE));
+        // the stamps and values of the slots must still fit in an array
+        assertTrue((IdentityMap.MAXIMUM_CAPACITY << 1) > 0);
+    }
+}
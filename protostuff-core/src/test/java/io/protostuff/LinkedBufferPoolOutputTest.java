@@ -0,0 +1,40 @@
+package io.protostuff;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+/**
+ * Serializes with the buffers of a {@link LinkedBufferPool}.
+ */
+public class LinkedBufferPoolOutputTest extends AbstractTest
+{
+
+    public void testSameBytes() throws Exception
+    {
+        final LinkedBufferPool pool = new LinkedBufferPool();
+        final Foo foo = ByteBufferOutputTest.newLargeFoo();
+        final Schema<Foo> schema = foo.cachedSchema();
+
+        final byte[] protostuff = ProtostuffIOUtil.toByteArray(foo, schema, buf());
+        final byte[] protobuf = ProtobufIOUtil.toByteArray(foo, schema, buf());
+
+        for (int i = 0; i < 3; i++)
+        {
+            assertTrue(Arrays.equals(protostuff, ProtostuffIOUtil.toByteArray(foo, schema, pool)));
+            assertTrue(Arrays.equals(protobuf, ProtobufIOUtil.toByteArray(foo, schema, pool)));
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            assertEquals(protostuff.length, ProtostuffIOUtil.writeTo(out, foo, schema, pool));
+            assertTrue(Arrays.equals(protostuff, out.toByteArray()));
+
+            out = new ByteArrayOutputStream();
+            assertEquals(protobuf.length, ProtobufIOUtil.writeTo(out, foo, schema, pool));
+            assertTrue(Arrays.equals(protobuf, out.toByteArray()));
+        }
+
+        final LinkedBufferPool.Stats stats = pool.getStats();
+        assertEquals(stats.acquired, stats.released);
+        // the buffers of the first round are reused
+        assertTrue(stats.allocated < stats.acquired / 2);
+    }
+}
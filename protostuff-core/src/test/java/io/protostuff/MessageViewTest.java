@@ -0,0 +1,188 @@
+package io.protostuff;
+
+import static io.protostuff.SerializableObjects.bar;
+import static io.protostuff.SerializableObjects.foo;
+import static io.protostuff.SerializableObjects.negativeBar;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests the {@link MessageView} on messages serialized in both protobuf and protostuff formats.
+ */
+public class MessageViewTest extends AbstractTest
+{
+
+    static byte[] toByteArray(Object message, Schema<Object> schema, boolean protostuff)
+    {
+        return protostuff ? ProtostuffIOUtil.toByteArray(message, schema, buf())
+                : ProtobufIOUtil.toByteArray(message, schema, buf());
+    }
+
+    @SuppressWarnings("unchecked")
+    static byte[] toByteArray(Bar message, boolean protostuff)
+    {
+        return toByteArray(message, (Schema<Object>) (Schema<?>) Bar.getSchema(), protostuff);
+    }
+
+    @SuppressWarnings("unchecked")
+    static byte[] toByteArray(Foo message, boolean protostuff)
+    {
+        return toByteArray(message, (Schema<Object>) (Schema<?>) Foo.getSchema(), protostuff);
+    }
+
+    static ByteBuffer direct(byte[] data)
+    {
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(data.length + 3);
+        buffer.put(new byte[3]).put(data).flip();
+        buffer.position(3);
+        return buffer;
+    }
+
+    static void assertBar(Bar expected, MessageView view) throws Exception
+    {
+        assertEquals(expected.getSomeInt(), view.getInt32(1));
+        assertEquals(expected.getSomeString(), view.getString(2));
+        assertEquals(expected.getSomeEnum().number, view.getEnum(4));
+        assertEquals(expected.getSomeBytes(), view.getBytes(5));
+        assertEquals(expected.getSomeBoolean(), view.getBool(6));
+        assertEquals(expected.getSomeFloat(), view.getFloat(7));
+        assertEquals(expected.getSomeDouble(), view.getDouble(8));
+        assertEquals(expected.getSomeLong(), view.getInt64(9));
+
+        final MessageView baz = view.getMessage(3);
+        assertEquals(expected.getSomeBaz().getId(), baz.getInt32(1));
+        assertEquals(expected.getSomeBaz().getName(), baz.getString(2));
+        assertEquals(expected.getSomeBaz().getTimestamp(), baz.getInt64(3));
+        assertEquals(expected.getSomeBaz(), view.getMessage(3, Baz.getSchema()));
+    }
+
+    public void testScalars() throws Exception
+    {
+        for (boolean protostuff : new boolean[] { false, true })
+        {
+            for (Bar b : new Bar[] { bar, negativeBar })
+            {
+                final byte[] data = toByteArray(b, protostuff);
+                assertBar(b, MessageView.wrap(data, protostuff));
+                assertBar(b, MessageView.wrap(ByteBuffer.wrap(data), protostuff));
+                assertBar(b, MessageView.wrap(direct(data), protostuff));
+
+                // offset
+                final byte[] padded = new byte[data.length + 5];
+                System.arraycopy(data, 0, padded, 2, data.length);
+                final MessageView view = MessageView.wrap(padded, 2, data.length, protostuff);
+                assertBar(b, view);
+                assertEquals(data.length, view.getSize());
+
+                final Bar parsed = new Bar();
+                view.mergeInto(parsed, Bar.getSchema());
+                assertEquals(b, parsed);
+            }
+        }
+    }
+
+    public void testAbsent() throws Exception
+    {
+        final MessageView view = MessageView.wrap(toByteArray(new Bar(), false), false);
+        assertEquals(0, view.getSize());
+        assertFalse(view.has(1));
+        assertEquals(0, view.count(1));
+        assertEquals(0, view.getInt32(1));
+        assertEquals(0L, view.getFixed64(1));
+        assertNull(view.getString(2));
+        assertNull(view.getBytes(5));
+        assertNull(view.getByteBuffer(5));
+        assertNull(view.getMessage(3));
+        assertNull(view.getMessage(3, Baz.getSchema()));
+        assertEquals(0, view.getFieldNumbers().length);
+    }
+
+    public void testRepeated() throws Exception
+    {
+        for (boolean protostuff : new boolean[] { false, true })
+        {
+            final byte[] data = toByteArray(foo, protostuff);
+            final MessageView view = MessageView.wrap(data, protostuff);
+
+            assertEquals(3, view.count(1));
+            // the last value wins
+            assertEquals(0, view.getInt32(1));
+            assertEquals("cd", view.getString(2));
+            assertTrue(view.has(9));
+            assertFalse(view.has(10));
+
+            final List<MessageView> bars = view.getMessages(3);
+            assertEquals(2, bars.size());
+            assertBar(bar, bars.get(0));
+            assertBar(negativeBar, bars.get(1));
+            assertEquals(negativeBar, view.getMessage(3, Bar.getSchema()));
+
+            final int[] numbers = view.getFieldNumbers();
+            assertEquals(foo.getSomeInt().size() + foo.getSomeString().size()
+                    + foo.getSomeBar().size() + foo.getSomeEnum().size()
+                    + foo.getSomeBytes().size() + foo.getSomeBoolean().size()
+                    + foo.getSomeFloat().size() + foo.getSomeDouble().size()
+                    + foo.getSomeLong().size(), numbers.length);
+            assertEquals(1, numbers[0]);
+            assertEquals(9, numbers[numbers.length - 1]);
+
+            final Foo parsed = new Foo();
+            MessageView.wrap(direct(data), protostuff).mergeInto(parsed, Foo.getSchema());
+            assertEquals(foo, parsed);
+        }
+    }
+
+    public void testByteBuffer() throws Exception
+    {
+        final byte[] data = toByteArray(bar, false);
+        final ByteBuffer bytes = MessageView.wrap(data, false).getByteBuffer(5);
+        assertTrue(bytes.isReadOnly());
+        assertEquals(2, bytes.remaining());
+        assertEquals('b', bytes.get(0));
+
+        // the nested message of a protobuf message is length-delimited
+        final ByteBuffer baz = MessageView.wrap(direct(data), false).getByteBuffer(3);
+        final Baz parsed = new Baz();
+        MessageView.wrap(baz, false).mergeInto(parsed, Baz.getSchema());
+        assertEquals(SerializableObjects.baz, parsed);
+    }
+
+    public void testMalformed() throws Exception
+    {
+        final byte[] data = toByteArray(bar, false);
+        final byte[] truncated = Arrays.copyOf(data, data.length - 1);
+        try
+        {
+            MessageView.wrap(truncated, false).getInt32(1);
+            fail("Expected ProtobufException");
+        }
+        catch (ProtobufException e)
+        {
+            // expected
+        }
+
+        // reading a string field as a varint
+        try
+        {
+            MessageView.wrap(data, false).getInt32(2);
+            fail("Expected ProtobufException");
+        }
+        catch (ProtobufException e)
+        {
+            // expected
+        }
+
+        // unmatched end group
+        try
+        {
+            MessageView.wrap(new byte[] { 11, 8, 1, 20 }, true).has(1);
+            fail("Expected ProtobufException");
+        }
+        catch (ProtobufException e)
+        {
+            // expected
+        }
+    }
+}
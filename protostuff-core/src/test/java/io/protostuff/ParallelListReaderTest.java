@@ -0,0 +1,148 @@
+package io.protostuff;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Tests the delimited messages parsed in parallel chunks with a {@link ParallelListReader}.
+ */
+public class ParallelListReaderTest extends AbstractTest
+{
+
+    static List<Foo> newList(int size)
+    {
+        final List<Foo> list = ParallelListWriterTest.newList(size);
+        // empty messages
+        list.set(size / 2, new Foo());
+        return list;
+    }
+
+    static byte[] writeDelimited(List<Foo> list, boolean protostuff) throws IOException
+    {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (Foo foo : list)
+        {
+            if (protostuff)
+                ProtostuffIOUtil.writeDelimitedTo(out, foo, Foo.getSchema(), buf());
+            else
+                ProtobufIOUtil.writeDelimitedTo(out, foo, Foo.getSchema(), buf());
+        }
+
+        return out.toByteArray();
+    }
+
+    public void testBuffer() throws Exception
+    {
+        final ForkJoinPool executor = new ForkJoinPool(4);
+        try
+        {
+            for (boolean protostuff : new boolean[] { true, false })
+            {
+                final List<Foo> list = newList(50);
+                final byte[] data = writeDelimited(list, protostuff);
+
+                assertEquals(list, ParallelListReader.parseListFrom(ByteBuffer.wrap(data),
+                        Foo.getSchema(), protostuff, executor, 3));
+
+                final ByteBuffer direct = ByteBuffer.allocateDirect(data.length);
+                direct.put(data).flip();
+                assertEquals(list, ParallelListReader.parseListFrom(direct,
+                        Foo.getSchema(), protostuff, executor, 3));
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    public void testTruncated() throws Exception
+    {
+        final ForkJoinPool executor = new ForkJoinPool(2);
+        try
+        {
+            final byte[] data = writeDelimited(newList(10), true);
+            ParallelListReader.parseListFrom(ByteBuffer.wrap(data, 0, data.length - 1),
+                    Foo.getSchema(), true, executor, 3);
+            fail("Expected ProtobufException.");
+        }
+        catch (ProtobufException e)
+        {
+            // expected
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    public void testFile() throws Exception
+    {
+        final List<Foo> list = newList(50);
+        final File file = File.createTempFile("parallel-list-reader", ".bin");
+        final ForkJoinPool executor = new ForkJoinPool(4);
+        try
+        {
+            for (boolean protostuff : new boolean[] { true, false })
+            {
+                final FileOutputStream out = new FileOutputStream(file);
+                try
+                {
+                    out.write(writeDelimited(list, protostuff));
+                }
+                finally
+                {
+                    out.close();
+                }
+
+                final RandomAccessFile raf = new RandomAccessFile(file, "r");
+                try
+                {
+                    final FileChannel channel = raf.getChannel();
+                    final List<Foo> parsed = protostuff ?
+                            ProtostuffIOUtil.parseDelimitedListFrom(channel, Foo.getSchema(),
+                                    executor, 4) :
+                            ProtobufIOUtil.parseListFrom(channel, Foo.getSchema(), executor, 4);
+                    assertEquals(list, parsed);
+
+                    // small regions so that the file is mapped several times
+                    channel.position(0);
+                    assertEquals(list, ParallelListReader.parseListFrom(channel,
+                            Foo.getSchema(), protostuff, executor, 4, 64 * 1024));
+                }
+                finally
+                {
+                    raf.close();
+                }
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+            file.delete();
+        }
+    }
+
+    public void testEmpty() throws Exception
+    {
+        final ForkJoinPool executor = new ForkJoinPool(2);
+        try
+        {
+            assertEquals(new ArrayList<Foo>(), ParallelListReader.parseListFrom(
+                    ByteBuffer.allocate(0), Foo.getSchema(), true, executor, 3));
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+}
@@ -0,0 +1,117 @@
+package io.protostuff;
+
+import static io.protostuff.SerializableObjects.foo;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Tests that the lists serialized in parallel chunks are the same as the ones serialized sequentially.
+ */
+public class ParallelListWriterTest extends AbstractTest
+{
+
+    static List<Foo> newList(int size)
+    {
+        final Foo large = ByteBufferOutputTest.newLargeFoo();
+        final ArrayList<Foo> list = new ArrayList<Foo>(size);
+        for (int i = 0; i < size; i++)
+            list.add(i % 10 == 0 ? large : foo);
+
+        return list;
+    }
+
+    public void testProtostuff() throws Exception
+    {
+        final ForkJoinPool executor = new ForkJoinPool(4);
+        try
+        {
+            for (int size : new int[] { 0, 1, 7, 100 })
+            {
+                final List<Foo> list = newList(size);
+                final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+                final int expectedSize = ProtostuffIOUtil.writeListTo(expected, list,
+                        Foo.getSchema(), buf());
+
+                final ByteArrayOutputStream out = new ByteArrayOutputStream();
+                final int actualSize = ProtostuffIOUtil.writeListTo(out, list,
+                        Foo.getSchema(), executor, 3);
+
+                assertEquals(expectedSize, actualSize);
+                assertTrue(Arrays.equals(expected.toByteArray(), out.toByteArray()));
+
+                final List<Foo> parsed = ProtostuffIOUtil.parseListFrom(
+                        new ByteArrayInputStream(out.toByteArray()), Foo.getSchema());
+                assertEquals(list, parsed);
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    public void testProtobuf() throws Exception
+    {
+        final ForkJoinPool executor = new ForkJoinPool(4);
+        try
+        {
+            for (int size : new int[] { 0, 1, 7, 100 })
+            {
+                // not random access
+                final List<Foo> list = new LinkedList<Foo>(newList(size));
+                final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+                final int expectedSize = ProtobufIOUtil.writeListTo(expected, list,
+                        Foo.getSchema(), buf());
+
+                final ByteArrayOutputStream out = new ByteArrayOutputStream();
+                final int actualSize = ProtobufIOUtil.writeListTo(out, list,
+                        Foo.getSchema(), executor, 3);
+
+                assertEquals(expectedSize, actualSize);
+                assertTrue(Arrays.equals(expected.toByteArray(), out.toByteArray()));
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    public void testException() throws Exception
+    {
+        final ForkJoinPool executor = new ForkJoinPool(2);
+        try
+        {
+            ParallelListWriter.writeTo(new ByteArrayOutputStream(), newList(20),
+                    new ParallelListWriter.ChunkWriter<Foo>()
+                    {
+                        @Override
+                        public WriteSession writeChunk(List<Foo> messages, int from, int to)
+                                throws IOException
+                        {
+                            if (from != 0)
+                                throw new IOException("chunk " + from);
+
+                            return new ProtostuffOutput(buf());
+                        }
+                    }, executor, 5);
+            fail("Expected IOException.");
+        }
+        catch (IOException e)
+        {
+            assertEquals("chunk 5", e.getMessage());
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+}
@@ -0,0 +1,76 @@
+package io.protostuff;
+
+import static io.protostuff.SerializableObjects.bar;
+import static io.protostuff.SerializableObjects.foo;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Tests for {@link SizeComputingOutput} and the single-copy protobuf serialization.
+ */
+public class SizeComputingOutputTest extends AbstractTest
+{
+
+    static <T> void verify(T message, Schema<T> schema) throws Exception
+    {
+        final byte[] expected = ProtobufIOUtil.toByteArray(message, schema, buf());
+        assertEquals(expected.length, SizeComputingOutput.computeSize(message, schema));
+        assertTrue(Arrays.equals(expected, ProtobufIOUtil.toByteArray(message, schema)));
+
+        final SizeComputingOutput computed = new SizeComputingOutput();
+        schema.writeTo(computed, message);
+
+        final ByteBuffer direct = ByteBuffer.allocateDirect(computed.getSize());
+        final ByteBufferProtobufOutput output = new ByteBufferProtobufOutput(direct, computed);
+        schema.writeTo(output, message);
+        assertFalse(direct.hasRemaining());
+        assertTrue(Arrays.equals(expected, output.toByteArray()));
+
+        // re-use
+        output.clear();
+        schema.writeTo(output, message);
+        assertTrue(Arrays.equals(expected, output.toByteArray()));
+    }
+
+    public void testFoo() throws Exception
+    {
+        verify(foo, foo.cachedSchema());
+        verify(bar, bar.cachedSchema());
+        verify(new Foo(), new Foo().cachedSchema());
+    }
+
+    public void testLargeNestedMessages() throws Exception
+    {
+        final Foo largeFoo = ByteBufferOutputTest.newLargeFoo();
+        verify(largeFoo, largeFoo.cachedSchema());
+
+        final SizeComputingOutput computed = new SizeComputingOutput();
+        largeFoo.cachedSchema().writeTo(computed, largeFoo);
+        // 4 bars with 1 baz each
+        assertEquals(8, computed.getNestedCount());
+    }
+
+    public void testChangedMessage() throws Exception
+    {
+        final Foo foo = ByteBufferOutputTest.newLargeFoo();
+        final Schema<Foo> schema = foo.cachedSchema();
+        final SizeComputingOutput computed = new SizeComputingOutput();
+        schema.writeTo(computed, foo);
+
+        final ArrayList<Bar> bars = new ArrayList<Bar>(foo.getSomeBar());
+        bars.set(0, SerializableObjects.negativeBar);
+        foo.setSomeBar(bars);
+        try
+        {
+            schema.writeTo(new ByteBufferProtobufOutput(ByteBuffer.allocate(computed.getSize() + 100),
+                    computed), foo);
+            fail("Expected IllegalStateException");
+        }
+        catch (IllegalStateException e)
+        {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package io.protostuff;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Tests the strings read through a {@link StringCache}.
+ */
+public class StringCacheTest extends AbstractTest
+{
+
+    static final String[] VALUES = { "", "a", "OK", "PENDING", "résumé", "日本",
+            ByteBufferOutputTest.repeat("x", 100) };
+
+    static byte[] encode(String... values) throws IOException
+    {
+        final LinkedBuffer buffer = LinkedBuffer.allocate(256);
+        final WriteSession session = new WriteSession(buffer);
+        for (String value : values)
+        {
+            final byte[] utf8 = StringSerializer.STRING.ser(value);
+            session.tail = session.sink.writeVarInt32(utf8.length, session, session.tail);
+            session.tail = session.sink.writeByteArray(utf8, 0, utf8.length, session,
+                    session.tail);
+        }
+        return session.toByteArray();
+    }
+
+    static StringCacheInput[] inputs(byte[] data)
+    {
+        final ByteBuffer direct = ByteBuffer.allocateDirect(data.length);
+        direct.put(data).flip();
+        return new StringCacheInput[] {
+                new ByteArrayInput(data, false),
+                new ByteBufferInput(ByteBuffer.wrap(data), false),
+                new ByteBufferInput(direct, false),
+                CodedInput.newInstance(data),
+                // a tiny buffer so that the strings span the refills
+                new CodedInput(new ByteArrayInputStream(data), new byte[3], false) };
+    }
+
+    public void testReadString() throws Exception
+    {
+        final byte[] data = encode(VALUES);
+        for (StringCacheInput input : inputs(data))
+        {
+            final StringCache cache = new StringCache();
+            for (String value : VALUES)
+                assertEquals(value, input.readString(cache));
+        }
+    }
+
+    public void testSameInstance() throws Exception
+    {
+        final byte[] data = encode("OK", "日本", "OK", "日本");
+        for (StringCacheInput input : inputs(data))
+        {
+            final StringCache cache = new StringCache();
+            final String ok = input.readString(cache);
+            final String jp = input.readString(cache);
+            assertSame(ok, input.readString(cache));
+            assertSame(jp, input.readString(cache));
+        }
+    }
+
+    public void testLongStringNotCached() throws Exception
+    {
+        final String value = ByteBufferOutputTest.repeat("x", 10);
+        final byte[] data = encode(value, value);
+        for (StringCacheInput input : inputs(data))
+        {
+            final StringCache cache = new StringCache(16, 9);
+            final String first = input.readString(cache);
+            final String second = input.readString(cache);
+            assertEquals(value, first);
+            assertEquals(value, second);
+            assertNotSame(first, second);
+        }
+    }
+
+    public void testBounded() throws Exception
+    {
+        final StringCache cache = new StringCache(3, 8);
+        assertEquals(4, cache.getCapacity());
+        assertEquals(1, new StringCache(1, 8).getCapacity());
+
+        final String[] values = new String[100];
+        for (int i = 0; i < values.length; i++)
+        {
+            final byte[] utf8 = StringSerializer.STRING.ser("v" + i);
+            values[i] = cache.getString(utf8, 0, utf8.length);
+        }
+
+        // at most 4 of them can still be cached
+        int cached = 0;
+        for (int i = 0; i < values.length; i++)
+        {
+            final byte[] utf8 = StringSerializer.STRING.ser("v" + i);
+            if (cache.getString(utf8, 0, utf8.length) == values[i])
+                cached++;
+        }
+        assertTrue(cached <= 4);
+
+        cache.clear();
+        final byte[] utf8 = StringSerializer.STRING.ser("v99");
+        assertEquals("v99", cache.getString(utf8, 0, utf8.length));
+
+        try
+        {
+            new StringCache(0, 8);
+            fail("Expected IllegalArgumentException");
+        }
+        catch (IllegalArgumentException e)
+        {
+            // expected
+        }
+    }
+
+    public void testGraphInput() throws Exception
+    {
+        final byte[] data = encode("OK", "OK");
+        final StringCache cache = new StringCache();
+        final GraphByteArrayInput input = new GraphByteArrayInput(new ByteArrayInput(data, true));
+        assertSame(input.readString(cache), input.readString(cache));
+    }
+}
@@ -0,0 +1,162 @@
+package io.protostuff;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Compares the varint decoding of the inputs with the encoded values, for every varint length.
+ */
+public class VarintDecodingTest extends TestCase
+{
+
+    static final long[] VALUES;
+
+    static
+    {
+        final Random random = new Random(42);
+        VALUES = new long[11 * 8];
+        int i = 0;
+        // every length from 1 to 10 bytes
+        for (int bits = 0; bits <= 70; bits += 7)
+        {
+            for (int j = 0; j < 8 && i < VALUES.length; j++)
+            {
+                final long max = bits >= 63 ? -1L : (1L << bits) - 1;
+                VALUES[i++] = bits == 0 ? j : random.nextLong() & max | (bits >= 64 ? Long.MIN_VALUE : 1L << (bits - 1));
+            }
+        }
+    }
+
+    static byte[] encode(long[] values, boolean int32) throws IOException
+    {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (long value : values)
+        {
+            if (int32)
+                writeVarint(out, (int) value < 0 ? (long) (int) value : (int) value & 0xFFFFFFFFL);
+            else
+                writeVarint(out, value);
+        }
+        return out.toByteArray();
+    }
+
+    static void writeVarint(ByteArrayOutputStream out, long value)
+    {
+        while ((value & ~0x7FL) != 0)
+        {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    static void verify(byte[] data, boolean int32) throws IOException
+    {
+        final ByteArrayInput bai = new ByteArrayInput(data, false);
+        final ByteBufferInput heap = new ByteBufferInput(ByteBuffer.wrap(data), false);
+        final ByteBuffer d = ByteBuffer.allocateDirect(data.length);
+        d.put(data).flip();
+        final ByteBufferInput direct = new ByteBufferInput(d, false);
+        final CodedInput coded = CodedInput.newInstance(data);
+        final CodedInput streamed = new CodedInput(new ByteArrayInputStream(data), new byte[13], false);
+
+        for (long value : VALUES)
+        {
+            if (int32)
+            {
+                final int expected = (int) value;
+                assertEquals(expected, bai.readRawVarint32());
+                assertEquals(expected, heap.readRawVarint32());
+                assertEquals(expected, direct.readRawVarint32());
+                assertEquals(expected, coded.readRawVarint32());
+                assertEquals(expected, streamed.readRawVarint32());
+            }
+            else
+            {
+                assertEquals(value, bai.readRawVarint64());
+                assertEquals(value, heap.readRawVarint64());
+                assertEquals(value, direct.readRawVarint64());
+                assertEquals(value, coded.readRawVarint64());
+                assertEquals(value, streamed.readRawVarint64());
+            }
+        }
+
+        assertEquals(data.length, bai.currentOffset());
+        assertTrue(coded.isAtEnd());
+        assertTrue(streamed.isAtEnd());
+    }
+
+    public void testVarint32() throws IOException
+    {
+        verify(encode(VALUES, true), true);
+    }
+
+    public void testVarint64() throws IOException
+    {
+        verify(encode(VALUES, false), false);
+    }
+
+    public void testSingle() throws IOException
+    {
+        // fewer than 10 bytes remain, except for the 10-byte varints
+        for (long value : VALUES)
+        {
+            final byte[] data = encode(new long[] { value }, false);
+            assertEquals(value, new ByteArrayInput(data, false).readRawVarint64());
+            assertEquals(value, new ByteBufferInput(ByteBuffer.wrap(data), false).readRawVarint64());
+            assertEquals(value, CodedInput.newInstance(data).readRawVarint64());
+            assertEquals((int) value, new ByteArrayInput(data, false).readRawVarint32());
+            assertEquals((int) value, new ByteBufferInput(ByteBuffer.wrap(data), false).readRawVarint32());
+            assertEquals((int) value, CodedInput.newInstance(data).readRawVarint32());
+        }
+    }
+
+    public void testMalformed() throws IOException
+    {
+        final byte[] data = new byte[16];
+        for (int i = 0; i < data.length; i++)
+            data[i] = (byte) 0x80;
+
+        try
+        {
+            new ByteArrayInput(data, false).readRawVarint32();
+            fail("Expected ProtobufException");
+        }
+        catch (ProtobufException e)
+        {
+            // expected
+        }
+        try
+        {
+            new ByteArrayInput(data, false).readRawVarint64();
+            fail("Expected ProtobufException");
+        }
+        catch (ProtobufException e)
+        {
+            // expected
+        }
+        try
+        {
+            new ByteBufferInput(ByteBuffer.wrap(data), false).readRawVarint64();
+            fail("Expected ProtobufException");
+        }
+        catch (ProtobufException e)
+        {
+            // expected
+        }
+        try
+        {
+            CodedInput.newInstance(data).readRawVarint64();
+            fail("Expected ProtobufException");
+        }
+        catch (ProtobufException e)
+        {
+            // expected
+        }
+    }
+}
@@ -349,17 +349,25 @@ public final class JsonIOUtil
      */
     public static <T> byte[] toByteArray(T message, Schema<T> schema, boolean numeric)
     {
-        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        final PooledJsonGenerator pooled = PooledJsonGenerator.acquire(null);
         try
         {
-            writeTo(baos, message, schema, numeric);
+            try
+            {
+                writeTo(pooled.generator, message, schema, numeric);
+                pooled.finish();
+                return pooled.scratch.toByteArray();
+            }
+            finally
+            {
+                pooled.release();
+            }
         }
         catch (IOException e)
         {
             throw new RuntimeException("Serializing to a byte array threw an IOException " +
                     "(should never happen).", e);
         }
-        return baos.toByteArray();
     }
 
     /**
@@ -389,22 +397,16 @@ public final class JsonIOUtil
     public static <T> void writeTo(OutputStream out, T message, Schema<T> schema,
             boolean numeric) throws IOException
     {
-        final IOContext context = new IOContext(DEFAULT_JSON_FACTORY._getBufferRecycler(),
-                out, false);
-
-        final JsonGenerator generator = newJsonGenerator(out,
-                context.allocWriteEncodingBuffer(), 0, true, context);
-
-        /*
-         * final JsonGenerator generator = DEFAULT_JSON_FACTORY.createJsonGenerator(out, JsonEncoding.UTF8);
-         */
+        // the generator (and its buffers) of the thread is reused
+        final PooledJsonGenerator pooled = PooledJsonGenerator.acquire(out);
         try
         {
-            writeTo(generator, message, schema, numeric);
+            writeTo(pooled.generator, message, schema, numeric);
+            pooled.finish();
         }
         finally
         {
-            generator.close();
+            pooled.release();
         }
     }
 
@@ -470,21 +472,15 @@ public final class JsonIOUtil
     public static <T> void writeListTo(OutputStream out, List<T> messages,
             Schema<T> schema, boolean numeric) throws IOException
     {
-        final IOContext context = new IOContext(DEFAULT_JSON_FACTORY._getBufferRecycler(),
-                out, false);
-
-        final JsonGenerator generator = newJsonGenerator(out,
-                context.allocWriteEncodingBuffer(), 0, true, context);
-        /*
-         * final JsonGenerator generator = DEFAULT_JSON_FACTORY.createJsonGenerator(out, JsonEncoding.UTF8);
-         */
+        final PooledJsonGenerator pooled = PooledJsonGenerator.acquire(out);
         try
         {
-            writeListTo(generator, messages, schema, numeric);
+            writeListTo(pooled.generator, messages, schema, numeric);
+            pooled.finish();
         }
         finally
         {
-            generator.close();
+            pooled.release();
         }
     }
 
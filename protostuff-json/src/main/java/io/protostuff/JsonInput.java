@@ -53,6 +53,9 @@ public final class JsonInput implements Input
     private String lastName;
     private int lastNumber;
 
+    private Schema<?> namesSchema;
+    private FieldNameTokens.Table<?> names;
+
     public JsonInput(JsonParser parser)
     {
         this(parser, false);
@@ -149,6 +152,20 @@ public final class JsonInput implements Input
         return readFieldNumber(schema, parser);
     }
 
+    /**
+     * Looks up the field number through the name index of the schema (shared with {@link JsonOutput}).
+     */
+    private int getFieldNumber(final Schema<?> schema, final String name)
+    {
+        if (namesSchema != schema)
+        {
+            names = JsonOutput.FIELD_NAMES.getTable(schema);
+            namesSchema = schema;
+        }
+
+        return names.getFieldNumber(name);
+    }
+
     private <T> int readFieldNumber(final Schema<T> schema, final JsonParser parser)
             throws IOException
     {
@@ -186,7 +203,7 @@ public final class JsonInput implements Input
                 }
 
                 final int number = numeric ? Integer.parseInt(name) :
-                        schema.getFieldNumber(name);
+                        getFieldNumber(schema, name);
 
                 if (number == 0)
                 {
@@ -216,7 +233,7 @@ public final class JsonInput implements Input
                 continue;
 
             final int number = numeric ? Integer.parseInt(name) :
-                    schema.getFieldNumber(name);
+                    getFieldNumber(schema, name);
 
             if (number == 0)
             {
@@ -18,6 +18,7 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 
 import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
 
 /**
  * An output used for writing data with json format.
@@ -28,12 +29,27 @@ import com.fasterxml.jackson.core.JsonGenerator;
 public final class JsonOutput implements Output, StatefulOutput
 {
 
+    /**
+     * The field names of each schema (the generator caches their encoded forms).
+     */
+    static final FieldNameTokens<SerializedString> FIELD_NAMES = new FieldNameTokens<SerializedString>()
+    {
+        @Override
+        protected SerializedString encode(String fieldName)
+        {
+            return new SerializedString(fieldName);
+        }
+    };
+
     private final JsonGenerator generator;
     private Schema<?> schema;
     private final boolean numeric;
     private boolean lastRepeated;
     private int lastNumber;
 
+    private Schema<?> tokensSchema;
+    private FieldNameTokens.Table<SerializedString> tokens;
+
     public JsonOutput(JsonGenerator generator)
     {
         this(generator, false);
@@ -51,6 +67,23 @@ public final class JsonOutput implements Output, StatefulOutput
         this.schema = schema;
     }
 
+    private void writeFieldName(int fieldNumber, Schema<?> schema) throws IOException
+    {
+        if (numeric)
+        {
+            generator.writeFieldName(Integer.toString(fieldNumber));
+            return;
+        }
+
+        if (tokensSchema != schema)
+        {
+            tokens = FIELD_NAMES.getTable(schema);
+            tokensSchema = schema;
+        }
+
+        generator.writeFieldName(tokens.get(fieldNumber));
+    }
+
     /**
      * Resets this output for re-use.
      */
@@ -119,16 +152,11 @@ public final class JsonOutput implements Output, StatefulOutput
         if (lastRepeated)
             generator.writeEndArray();
 
-        final String name = numeric ? Integer.toString(fieldNumber) :
-                schema.getFieldName(fieldNumber);
-
+        writeFieldName(fieldNumber, schema);
         if (repeated)
-        {
-            generator.writeArrayFieldStart(name);
-            generator.writeBoolean(value);
-        }
-        else
-            generator.writeBooleanField(name, value);
+            generator.writeStartArray();
+
+        generator.writeBoolean(value);
 
         lastNumber = fieldNumber;
         lastRepeated = repeated;
@@ -149,19 +177,11 @@ public final class JsonOutput implements Output, StatefulOutput
         if (lastRepeated)
             generator.writeEndArray();
 
-        final String name = numeric ? Integer.toString(fieldNumber) :
-                schema.getFieldName(fieldNumber);
-
+        writeFieldName(fieldNumber, schema);
         if (repeated)
-        {
-            generator.writeArrayFieldStart(name);
-            generator.writeBinary(value);
-        }
-        else
-        {
-            generator.writeFieldName(name);
-            generator.writeBinary(value);
-        }
+            generator.writeStartArray();
+
+        generator.writeBinary(value);
 
         lastNumber = fieldNumber;
         lastRepeated = repeated;
@@ -186,25 +206,14 @@ public final class JsonOutput implements Output, StatefulOutput
         if (lastRepeated)
             generator.writeEndArray();
 
-        final String name = numeric ? Integer.toString(fieldNumber) :
-                schema.getFieldName(fieldNumber);
-
+        writeFieldName(fieldNumber, schema);
         if (repeated)
-        {
-            generator.writeArrayFieldStart(name);
-            if (utf8String)
-                generator.writeUTF8String(value, offset, length);
-            else
-                generator.writeBinary(value, offset, length);
-        }
+            generator.writeStartArray();
+
+        if (utf8String)
+            generator.writeUTF8String(value, offset, length);
         else
-        {
-            generator.writeFieldName(name);
-            if (utf8String)
-                generator.writeUTF8String(value, offset, length);
-            else
-                generator.writeBinary(value, offset, length);
-        }
+            generator.writeBinary(value, offset, length);
 
         lastNumber = fieldNumber;
         lastRepeated = repeated;
@@ -231,16 +240,11 @@ public final class JsonOutput implements Output, StatefulOutput
         if (lastRepeated)
             generator.writeEndArray();
 
-        final String name = numeric ? Integer.toString(fieldNumber) :
-                schema.getFieldName(fieldNumber);
-
+        writeFieldName(fieldNumber, schema);
         if (repeated)
-        {
-            generator.writeArrayFieldStart(name);
-            generator.writeNumber(value);
-        }
-        else
-            generator.writeNumberField(name, value);
+            generator.writeStartArray();
+
+        generator.writeNumber(value);
 
         lastNumber = fieldNumber;
         lastRepeated = repeated;
@@ -279,16 +283,11 @@ public final class JsonOutput implements Output, StatefulOutput
         if (lastRepeated)
             generator.writeEndArray();
 
-        final String name = numeric ? Integer.toString(fieldNumber) :
-                schema.getFieldName(fieldNumber);
-
+        writeFieldName(fieldNumber, schema);
         if (repeated)
-        {
-            generator.writeArrayFieldStart(name);
-            generator.writeNumber(value);
-        }
-        else
-            generator.writeNumberField(name, value);
+            generator.writeStartArray();
+
+        generator.writeNumber(value);
 
         lastNumber = fieldNumber;
         lastRepeated = repeated;
@@ -309,16 +308,11 @@ public final class JsonOutput implements Output, StatefulOutput
         if (lastRepeated)
             generator.writeEndArray();
 
-        final String name = numeric ? Integer.toString(fieldNumber) :
-                schema.getFieldName(fieldNumber);
-
+        writeFieldName(fieldNumber, schema);
         if (repeated)
-        {
-            generator.writeArrayFieldStart(name);
-            generator.writeNumber(value);
-        }
-        else
-            generator.writeNumberField(name, value);
+            generator.writeStartArray();
+
+        generator.writeNumber(value);
 
         lastNumber = fieldNumber;
         lastRepeated = repeated;
@@ -339,16 +333,11 @@ public final class JsonOutput implements Output, StatefulOutput
         if (lastRepeated)
             generator.writeEndArray();
 
-        final String name = numeric ? Integer.toString(fieldNumber) :
-                schema.getFieldName(fieldNumber);
-
+        writeFieldName(fieldNumber, schema);
         if (repeated)
-        {
-            generator.writeArrayFieldStart(name);
-            generator.writeNumber(value);
-        }
-        else
-            generator.writeNumberField(name, value);
+            generator.writeStartArray();
+
+        generator.writeNumber(value);
 
         lastNumber = fieldNumber;
         lastRepeated = repeated;
@@ -393,16 +382,11 @@ public final class JsonOutput implements Output, StatefulOutput
         if (lastRepeated)
             generator.writeEndArray();
 
-        final String name = numeric ? Integer.toString(fieldNumber) :
-                schema.getFieldName(fieldNumber);
-
+        writeFieldName(fieldNumber, schema);
         if (repeated)
-        {
-            generator.writeArrayFieldStart(name);
-            generator.writeString(value);
-        }
-        else
-            generator.writeStringField(name, value);
+            generator.writeStartArray();
+
+        generator.writeString(value);
 
         lastNumber = fieldNumber;
         lastRepeated = repeated;
@@ -432,13 +416,9 @@ public final class JsonOutput implements Output, StatefulOutput
             if (lastRepeated)
                 generator.writeEndArray();
 
-            final String name = numeric ? Integer.toString(fieldNumber) :
-                    lastSchema.getFieldName(fieldNumber);
-
+            writeFieldName(fieldNumber, lastSchema);
             if (repeated)
-                generator.writeArrayFieldStart(name);
-            else
-                generator.writeFieldName(name);
+                generator.writeStartArray();
         }
 
         // reset
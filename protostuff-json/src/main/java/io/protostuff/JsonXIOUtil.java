@@ -17,6 +17,7 @@ package io.protostuff;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Json serialization via {@link JsonXOutput}.
@@ -214,4 +215,58 @@ public final class JsonXIOUtil
         LinkedBuffer.writeTo(out, buffer);
     }
 
+    /**
+     * Serializes the {@code messages} into an {@link OutputStream} using the given schema, in chunks of
+     * {@code chunkSize} messages that are serialized concurrently on the {@code executor}. The output is the same as
+     * {@link #writeListTo(OutputStream, List, Schema, boolean, LinkedBuffer)}.
+     * 
+     * @see ParallelListWriter
+     */
+    public static <T> void writeListTo(OutputStream out, List<T> messages,
+            final Schema<T> schema, final boolean numeric, ForkJoinPool executor,
+            int chunkSize) throws IOException
+    {
+        if (messages.isEmpty())
+        {
+            out.write(EMPTY_ARRAY);
+            return;
+        }
+
+        out.write('[');
+
+        ParallelListWriter.writeTo(out, messages, new ParallelListWriter.ChunkWriter<T>()
+        {
+            @Override
+            public WriteSession writeChunk(List<T> messages, int from, int to)
+                    throws IOException
+            {
+                final JsonXOutput output = new JsonXOutput(
+                        LinkedBuffer.allocate(ParallelListWriter.CHUNK_BUFFER_SIZE),
+                        numeric, schema);
+
+                boolean first = from == 0;
+                for (T m : messages.subList(from, to))
+                {
+                    if (first)
+                    {
+                        first = false;
+                        output.writeStartObject();
+                    }
+                    else
+                        output.writeCommaAndStartObject();
+
+                    schema.writeTo(output, m);
+                    if (output.isLastRepeated())
+                        output.writeEndArray();
+
+                    output.writeEndObject().reset();
+                }
+
+                return output;
+            }
+        }, executor, chunkSize);
+
+        out.write(']');
+    }
+
 }
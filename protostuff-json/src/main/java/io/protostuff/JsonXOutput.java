@@ -82,11 +82,30 @@ public final class JsonXOutput extends WriteSession implements Output, StatefulO
             (byte) ']', (byte) ',', (byte) '"'
     };
 
+    private static final byte[] END_ARRAY__COMMA = new byte[] {
+            (byte) ']', (byte) ','
+    };
+
+    /**
+     * The field names of each schema, encoded with the quotes and the colon ({@code "name":}).
+     */
+    static final FieldNameTokens<byte[]> FIELD_TOKENS = new FieldNameTokens<byte[]>()
+    {
+        @Override
+        protected byte[] encode(String fieldName)
+        {
+            return ascii('"' + fieldName + "\":");
+        }
+    };
+
     private Schema<?> schema;
     private final boolean numeric;
     private boolean lastRepeated;
     private int lastNumber;
 
+    private Schema<?> tokensSchema;
+    private FieldNameTokens.Table<byte[]> tokens;
+
     public JsonXOutput(LinkedBuffer head, boolean numeric, Schema<?> schema)
     {
         super(head);
@@ -247,16 +266,25 @@ public final class JsonXOutput extends WriteSession implements Output, StatefulO
                                     tail)));
         }
 
+        if (tokensSchema != schema)
+        {
+            tokens = FIELD_TOKENS.getTable(schema);
+            tokensSchema = schema;
+        }
+
+        // the token ends with the quote and the colon of the key suffix
+        final byte[] token = tokens.get(fieldNumber);
+
         if (lastRepeated)
         {
             return sink.writeByteArray(
-                    keySuffix,
+                    keySuffix, 2, keySuffix.length - 2,
                     this,
-                    sink.writeStrAscii(
-                            schema.getFieldName(fieldNumber),
+                    sink.writeByteArray(
+                            token,
                             this,
                             sink.writeByteArray(
-                                    END_ARRAY__COMMA__QUOTE,
+                                    END_ARRAY__COMMA,
                                     this,
                                     tail)));
         }
@@ -264,25 +292,22 @@ public final class JsonXOutput extends WriteSession implements Output, StatefulO
         if (lastNumber == 0)
         {
             return sink.writeByteArray(
-                    keySuffix,
+                    keySuffix, 2, keySuffix.length - 2,
                     this,
-                    sink.writeStrAscii(
-                            schema.getFieldName(fieldNumber),
+                    sink.writeByteArray(
+                            token,
                             this,
-                            sink.writeByte(
-                                    QUOTE,
-                                    this,
-                                    tail)));
+                            tail));
         }
 
         return sink.writeByteArray(
-                keySuffix,
+                keySuffix, 2, keySuffix.length - 2,
                 this,
-                sink.writeStrAscii(
-                        schema.getFieldName(fieldNumber),
+                sink.writeByteArray(
+                        token,
                         this,
-                        sink.writeByteArray(
-                                COMMA_AND_QUOTE,
+                        sink.writeByte(
+                                COMMA,
                                 this,
                                 tail)));
     }
@@ -0,0 +1,134 @@
+package io.protostuff;
+
+import static io.protostuff.JsonIOUtil.DEFAULT_JSON_FACTORY;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import com.fasterxml.jackson.core.io.IOContext;
+import com.fasterxml.jackson.core.json.UTF8JsonGenerator;
+
+/**
+ * A {@link UTF8JsonGenerator} kept by a thread and re-targeted for each message it writes, so that the generator, its
+ * io context and its buffers are not allocated per message. The generator writes the messages as consecutive root
+ * values (without a separator) into this stream, which forwards them to the current target.
+ * <p>
+ * A generator is only returned to its thread after its message was written and flushed (its write context is back at
+ * the root); otherwise it is closed like a generator that is not pooled. A generator created before the features of
+ * {@link JsonIOUtil#DEFAULT_JSON_FACTORY} were changed is not reused.
+ * <p>
+ * Jackson parsers cannot be re-targeted (a parser closes itself at the end of its input), so only the generators are
+ * pooled. Neither are the smile generators, since their back-references span the whole document.
+ */
+final class PooledJsonGenerator extends OutputStream
+{
+
+    /**
+     * The scratch buffers larger than this are not kept after a message is written.
+     */
+    static final int MAX_SCRATCH_SIZE = 64 * 1024;
+
+    private static final ThreadLocal<PooledJsonGenerator> IDLE = new ThreadLocal<>();
+
+    /**
+     * The target of {@link JsonIOUtil#toByteArray}.
+     */
+    static final class Scratch extends ByteArrayOutputStream
+    {
+        void clear()
+        {
+            if (buf.length > MAX_SCRATCH_SIZE)
+                buf = new byte[32];
+
+            reset();
+        }
+    }
+
+    final UTF8JsonGenerator generator;
+    final Scratch scratch = new Scratch();
+    private final int features;
+    private OutputStream out;
+    private boolean written;
+
+    private PooledJsonGenerator()
+    {
+        final IOContext context = new IOContext(DEFAULT_JSON_FACTORY._getBufferRecycler(),
+                this, false);
+        features = DEFAULT_JSON_FACTORY.getGeneratorFeatures();
+        generator = JsonIOUtil.newJsonGenerator(this, context.allocWriteEncodingBuffer(), 0,
+                true, context);
+        generator.setRootValueSeparator(null);
+    }
+
+    /**
+     * Returns the idle generator of the current thread (or a new one), writing to {@code out} (or to the
+     * {@link #scratch} buffer if null).
+     */
+    static PooledJsonGenerator acquire(OutputStream out)
+    {
+        PooledJsonGenerator pooled = IDLE.get();
+        if (pooled == null || pooled.features != DEFAULT_JSON_FACTORY.getGeneratorFeatures())
+            pooled = new PooledJsonGenerator();
+        else
+            IDLE.set(null);
+
+        pooled.out = out != null ? out : pooled.scratch;
+        pooled.written = false;
+        return pooled;
+    }
+
+    /**
+     * Flushes the message written by the generator to the target.
+     */
+    void finish() throws IOException
+    {
+        generator.flush();
+        written = true;
+    }
+
+    /**
+     * Returns the generator to the current thread if its message was {@link #finish() finished}, otherwise closes it.
+     */
+    void release() throws IOException
+    {
+        try
+        {
+            if (!written)
+                generator.close();
+        }
+        finally
+        {
+            out = null;
+            scratch.clear();
+        }
+
+        if (written && IDLE.get() == null)
+            IDLE.set(this);
+    }
+
+    @Override
+    public void write(int b) throws IOException
+    {
+        out.write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException
+    {
+        out.write(b, off, len);
+    }
+
+    @Override
+    public void flush() throws IOException
+    {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        out.close();
+    }
+
+}
@@ -0,0 +1,47 @@
+package io.protostuff;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import io.protostuff.StringSerializer.STRING;
+
+/**
+ * Tests that the json lists serialized in parallel chunks are the same as the ones serialized sequentially.
+ */
+public class JsonXParallelListTest extends AbstractTest
+{
+
+    public void testWriteListTo() throws Exception
+    {
+        final ForkJoinPool executor = new ForkJoinPool(4);
+        try
+        {
+            for (boolean numeric : new boolean[] { false, true })
+            {
+                for (int size : new int[] { 1, 7, 100 })
+                {
+                    final List<Foo> list = ParallelListWriterTest.newList(size);
+                    final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+                    JsonXIOUtil.writeListTo(expected, list, Foo.getSchema(), numeric, buf());
+
+                    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+                    JsonXIOUtil.writeListTo(out, list, Foo.getSchema(), numeric, executor, 3);
+
+                    assertTrue(Arrays.equals(expected.toByteArray(), out.toByteArray()));
+                }
+            }
+
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            JsonXIOUtil.writeListTo(out, ParallelListWriterTest.newList(0), Foo.getSchema(),
+                    false, executor, 3);
+            assertEquals("[]", STRING.deser(out.toByteArray()));
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+}
@@ -0,0 +1,105 @@
+package io.protostuff;
+
+import static io.protostuff.JsonCompareOutputsTest.foo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * Tests that the generators reused by a thread write the same json as the ones created per message.
+ */
+public class PooledJsonGeneratorTest extends TestCase
+{
+
+    static byte[] toByteArrayUnpooled(Foo message, boolean numeric)
+    {
+        return JsonIOUtil.toByteArray(message, Foo.getSchema(), numeric,
+                LinkedBuffer.allocate(512));
+    }
+
+    public void testReuse() throws Exception
+    {
+        for (boolean numeric : new boolean[] { false, true })
+        {
+            final byte[] expected = toByteArrayUnpooled(foo, numeric);
+            final byte[] expectedEmpty = toByteArrayUnpooled(new Foo(), numeric);
+            for (int i = 0; i < 3; i++)
+            {
+                assertTrue(Arrays.equals(expected,
+                        JsonIOUtil.toByteArray(foo, Foo.getSchema(), numeric)));
+                assertTrue(Arrays.equals(expectedEmpty,
+                        JsonIOUtil.toByteArray(new Foo(), Foo.getSchema(), numeric)));
+
+                // no separator between the messages of a stream
+                final ByteArrayOutputStream out = new ByteArrayOutputStream();
+                JsonIOUtil.writeTo(out, foo, Foo.getSchema(), numeric);
+                JsonIOUtil.writeTo(out, new Foo(), Foo.getSchema(), numeric);
+                assertEquals(str(expected) + str(expectedEmpty), str(out.toByteArray()));
+            }
+
+            final Foo parsed = new Foo();
+            JsonIOUtil.mergeFrom(JsonIOUtil.toByteArray(foo, Foo.getSchema(), numeric), parsed,
+                    Foo.getSchema(), numeric);
+            assertEquals(foo, parsed);
+        }
+    }
+
+    public void testFailedWrite() throws Exception
+    {
+        final byte[] expected = toByteArrayUnpooled(foo, false);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try
+        {
+            JsonIOUtil.writeTo(out, foo, new CustomSchema<Foo>(Foo.getSchema())
+            {
+                @Override
+                public void writeTo(Output output, Foo message) throws IOException
+                {
+                    output.writeInt32(1, 1, true);
+                    throw new IOException("failed");
+                }
+            }, false);
+            fail("Expected IOException.");
+        }
+        catch (IOException e)
+        {
+            assertEquals("failed", e.getMessage());
+        }
+
+        // the partial message is closed like before
+        assertEquals("{\"someInt\":[1]}", str(out.toByteArray()));
+
+        // the failed generator is not reused
+        assertTrue(Arrays.equals(expected, JsonIOUtil.toByteArray(foo, Foo.getSchema(), false)));
+    }
+
+    public void testFeatureChange() throws Exception
+    {
+        final byte[] before = JsonIOUtil.toByteArray(foo, Foo.getSchema(), false);
+        JsonIOUtil.DEFAULT_JSON_FACTORY.enable(JsonGenerator.Feature.ESCAPE_NON_ASCII);
+        try
+        {
+            final Foo message = new Foo();
+            message.setSomeString(Arrays.asList("\u00e9"));
+            final byte[] escaped = JsonIOUtil.toByteArray(message, Foo.getSchema(), false);
+            assertTrue(str(escaped).contains("\\u00E9"));
+        }
+        finally
+        {
+            JsonIOUtil.DEFAULT_JSON_FACTORY.disable(JsonGenerator.Feature.ESCAPE_NON_ASCII);
+        }
+
+        assertTrue(Arrays.equals(before, JsonIOUtil.toByteArray(foo, Foo.getSchema(), false)));
+    }
+
+    static String str(byte[] data)
+    {
+        return StringSerializer.STRING.deser(data);
+    }
+
+}
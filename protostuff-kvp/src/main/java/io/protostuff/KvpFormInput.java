@@ -0,0 +1,485 @@
+package io.protostuff;
+
+import static io.protostuff.NumberParser.parseInt;
+import static io.protostuff.NumberParser.parseLong;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import io.protostuff.StringSerializer.STRING;
+
+/**
+ * An input for deserializing url-encoded (application/x-www-form-urlencoded) messages, e.g.
+ * {@code id=1&name=foo+bar%21}. On the wire, a field is a key-value pair separated by '=' and the pairs are separated
+ * by '&'.
+ * <p>
+ * The keys and values are read in place, unless they are percent-encoded (or contain a '+'), in which case they are
+ * decoded into a scratch buffer that is reused for every pair. The keys are matched against the utf8 field names of
+ * the schema without being decoded to strings, and the integral values are parsed from the bytes.
+ * <p>
+ * When reading from an {@link InputStream}, only a key or a value needs to fit the buffer (the values of the unknown
+ * fields are skipped without being buffered), so that a body of any size is read with bounded memory. An input over a
+ * byte array can be {@link #reset(byte[], int, int) reset} to read the next message.
+ * <p>
+ * Like the other kvp inputs, nested messages are not supported.
+ *
+ * @see KvpInput
+ */
+public final class KvpFormInput implements Input
+{
+
+    static final int DEFAULT_BUFFER_SIZE =
+            Integer.getInteger("kvpforminput.default_buffer_size", 8192);
+
+    /**
+     * The utf8 field names of the schemas.
+     */
+    static final FieldNameTokens<byte[]> FIELD_NAMES = new FieldNameTokens<byte[]>()
+    {
+        @Override
+        protected byte[] encode(String fieldName)
+        {
+            return STRING.ser(fieldName);
+        }
+    };
+
+    private static final byte[] TRUE = STRING.ser("true"), FALSE = STRING.ser("false");
+
+    final boolean numeric;
+
+    private InputStream in;
+    private byte[] buffer;
+    private int offset, limit;
+
+    private byte[] scratch;
+
+    // the last key or value read (either in the buffer or the scratch)
+    private byte[] token;
+    private int tokenOffset, tokenLen;
+
+    // true if the last key read has no value
+    private boolean noValue;
+
+    private Schema<?> namesSchema;
+    private FieldNameTokens.Table<byte[]> names;
+
+    public KvpFormInput(byte[] data, int offset, int len, boolean numeric)
+    {
+        this.buffer = data;
+        this.offset = offset;
+        this.limit = offset + len;
+
+        this.numeric = numeric;
+    }
+
+    public KvpFormInput(InputStream in, boolean numeric)
+    {
+        this(in, new byte[DEFAULT_BUFFER_SIZE], numeric);
+    }
+
+    /**
+     * Creates an input reading from the stream. The {@code buffer} bounds the size of a key or a value.
+     */
+    public KvpFormInput(InputStream in, byte[] buffer, boolean numeric)
+    {
+        this.in = in;
+
+        this.buffer = buffer;
+
+        this.numeric = numeric;
+    }
+
+    /**
+     * Resets this input to read a message from the byte array (the scratch buffer is kept).
+     */
+    public KvpFormInput reset(byte[] data, int offset, int len)
+    {
+        in = null;
+
+        buffer = data;
+        this.offset = offset;
+        limit = offset + len;
+
+        noValue = false;
+
+        return this;
+    }
+
+    /**
+     * Moves the unread bytes to the front of the buffer, then reads more from the stream.
+     *
+     * @return false if the end of the input was reached.
+     */
+    private boolean fill() throws IOException
+    {
+        if (in == null)
+            return false;
+
+        if (offset != 0)
+        {
+            System.arraycopy(buffer, offset, buffer, 0, limit - offset);
+            limit -= offset;
+            offset = 0;
+        }
+
+        if (limit == buffer.length)
+            throw new ProtostuffException("Exceeded kvp max value size.");
+
+        final int read = in.read(buffer, limit, buffer.length - limit);
+        if (read == -1)
+        {
+            in = null;
+            return false;
+        }
+
+        limit += read;
+        return true;
+    }
+
+    /**
+     * Returns the end of the key (or value) at the offset, which is the index of its delimiter or the limit at the end
+     * of the input.
+     */
+    private int scan(boolean key) throws IOException
+    {
+        int i = offset;
+        for (;;)
+        {
+            for (final byte[] buffer = this.buffer; i < limit; i++)
+            {
+                final byte b = buffer[i];
+                if (b == '&' || (key && b == '='))
+                    return i;
+            }
+
+            final int scanned = i - offset;
+            if (!fill())
+                return limit;
+
+            i = offset + scanned;
+        }
+    }
+
+    /**
+     * Reads the key (or value) at the offset into the {@link #token}, then consumes its delimiter.
+     */
+    private void readToken(boolean key) throws IOException
+    {
+        final int end = scan(key);
+        decode(offset, end);
+
+        if (end == limit)
+        {
+            noValue = key;
+            offset = end;
+        }
+        else
+        {
+            noValue = key && buffer[end] == '&';
+            offset = end + 1;
+        }
+    }
+
+    /**
+     * Percent-decodes the bytes of the buffer from {@code start} to {@code end}.
+     */
+    private void decode(int start, int end) throws ProtostuffException
+    {
+        final byte[] buffer = this.buffer;
+        int i = start;
+        while (i < end && buffer[i] != '%' && buffer[i] != '+')
+            i++;
+
+        if (i == end)
+        {
+            // not encoded
+            token = buffer;
+            tokenOffset = start;
+            tokenLen = end - start;
+            return;
+        }
+
+        byte[] scratch = this.scratch;
+        if (scratch == null || scratch.length < end - start)
+            this.scratch = scratch = new byte[Math.max(end - start, 64)];
+
+        int size = i - start;
+        System.arraycopy(buffer, start, scratch, 0, size);
+        while (i < end)
+        {
+            final byte b = buffer[i++];
+            if (b == '+')
+            {
+                scratch[size++] = ' ';
+            }
+            else if (b != '%')
+            {
+                scratch[size++] = b;
+            }
+            else
+            {
+                final int hi = i + 1 < end ? Character.digit(buffer[i], 16) : -1;
+                final int lo = i + 1 < end ? Character.digit(buffer[i + 1], 16) : -1;
+                if (hi == -1 || lo == -1)
+                    throw new ProtostuffException("Malformed percent-encoding.");
+
+                scratch[size++] = (byte) ((hi << 4) | lo);
+                i += 2;
+            }
+        }
+
+        token = scratch;
+        tokenOffset = 0;
+        tokenLen = size;
+    }
+
+    /**
+     * Reads the value of the current field into the {@link #token}.
+     */
+    private void readValue() throws IOException
+    {
+        if (noValue)
+        {
+            noValue = false;
+            tokenLen = 0;
+            return;
+        }
+
+        readToken(false);
+    }
+
+    private int getFieldNumber(Schema<?> schema)
+    {
+        if (schema != namesSchema)
+        {
+            names = FIELD_NAMES.getTable(schema);
+            namesSchema = schema;
+        }
+
+        return names.getFieldNumber(token, tokenOffset, tokenLen);
+    }
+
+    @Override
+    public <T> int readFieldNumber(Schema<T> schema) throws IOException
+    {
+        for (;;)
+        {
+            if (offset == limit && !fill())
+                return 0;
+
+            if (buffer[offset] == '&')
+            {
+                // empty pair
+                offset++;
+                continue;
+            }
+
+            readToken(true);
+
+            final int number;
+            if (tokenLen == 0)
+                number = 0;
+            else if (numeric)
+                number = parseInt(token, tokenOffset, tokenLen, 10);
+            else
+                number = getFieldNumber(schema);
+
+            if (number != 0)
+                return number;
+
+            // skip unknown fields.
+            handleUnknownField(number, schema);
+        }
+    }
+
+    @Override
+    public <T> void handleUnknownField(int fieldNumber, Schema<T> schema) throws IOException
+    {
+        if (noValue)
+        {
+            noValue = false;
+            return;
+        }
+
+        // skipped in chunks, so that the value need not fit the buffer
+        for (;;)
+        {
+            for (int i = offset; i < limit; i++)
+            {
+                if (buffer[i] == '&')
+                {
+                    offset = i + 1;
+                    return;
+                }
+            }
+
+            offset = limit;
+            if (!fill())
+                return;
+        }
+    }
+
+    @Override
+    public <T> T mergeObject(T value, Schema<T> schema) throws IOException
+    {
+        throw new ProtostuffException("Unsupported.");
+    }
+
+    @Override
+    public boolean readBool() throws IOException
+    {
+        readValue();
+
+        if (tokenLen == 1)
+            return token[tokenOffset] != 0x30;
+
+        if (matches(TRUE))
+            return true;
+
+        if (tokenLen == 0 || matches(FALSE))
+            return false;
+
+        throw new ProtostuffException("Not a valid kvp boolean");
+    }
+
+    private boolean matches(byte[] value)
+    {
+        if (tokenLen != value.length)
+            return false;
+
+        for (int i = 0; i < value.length; i++)
+        {
+            if (token[tokenOffset + i] != value[i])
+                return false;
+        }
+
+        return true;
+    }
+
+    @Override
+    public byte[] readByteArray() throws IOException
+    {
+        readValue();
+        if (tokenLen == 0)
+            return ByteString.EMPTY_BYTE_ARRAY;
+
+        final byte[] data = new byte[tokenLen];
+        System.arraycopy(token, tokenOffset, data, 0, tokenLen);
+        return data;
+    }
+
+    @Override
+    public ByteString readBytes() throws IOException
+    {
+        return ByteString.wrap(readByteArray());
+    }
+
+    @Override
+    public double readDouble() throws IOException
+    {
+        readValue();
+        return tokenLen == 0 ? 0 : Double.parseDouble(STRING.deser(token, tokenOffset, tokenLen));
+    }
+
+    @Override
+    public float readFloat() throws IOException
+    {
+        readValue();
+        return tokenLen == 0 ? 0 : Float.parseFloat(STRING.deser(token, tokenOffset, tokenLen));
+    }
+
+    @Override
+    public int readUInt32() throws IOException
+    {
+        return readInt32();
+    }
+
+    @Override
+    public long readUInt64() throws IOException
+    {
+        return readInt64();
+    }
+
+    @Override
+    public int readInt32() throws IOException
+    {
+        readValue();
+        return tokenLen == 0 ? 0 : parseInt(token, tokenOffset, tokenLen, 10);
+    }
+
+    @Override
+    public long readInt64() throws IOException
+    {
+        readValue();
+        return tokenLen == 0 ? 0 : parseLong(token, tokenOffset, tokenLen, 10);
+    }
+
+    @Override
+    public int readEnum() throws IOException
+    {
+        return readInt32();
+    }
+
+    @Override
+    public int readFixed32() throws IOException
+    {
+        return readUInt32();
+    }
+
+    @Override
+    public long readFixed64() throws IOException
+    {
+        return readUInt64();
+    }
+
+    @Override
+    public int readSFixed32() throws IOException
+    {
+        return readInt32();
+    }
+
+    @Override
+    public long readSFixed64() throws IOException
+    {
+        return readInt64();
+    }
+
+    @Override
+    public int readSInt32() throws IOException
+    {
+        return readInt32();
+    }
+
+    @Override
+    public long readSInt64() throws IOException
+    {
+        return readInt64();
+    }
+
+    @Override
+    public String readString() throws IOException
+    {
+        readValue();
+        return tokenLen == 0 ? ByteString.EMPTY_STRING :
+                STRING.deser(token, tokenOffset, tokenLen);
+    }
+
+    @Override
+    public void transferByteRangeTo(Output output, boolean utf8String, int fieldNumber,
+            boolean repeated) throws IOException
+    {
+        readValue();
+        output.writeByteRange(utf8String, fieldNumber, token, tokenOffset, tokenLen, repeated);
+    }
+
+    /**
+     * Reads a byte array/ByteBuffer value.
+     */
+    @Override
+    public ByteBuffer readByteBuffer() throws IOException
+    {
+        return ByteBuffer.wrap(readByteArray());
+    }
+
+}
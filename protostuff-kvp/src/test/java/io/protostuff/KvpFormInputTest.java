@@ -0,0 +1,136 @@
+package io.protostuff;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import io.protostuff.Foo.EnumSample;
+import io.protostuff.StringSerializer.STRING;
+
+/**
+ * Tests the url-encoded messages read by {@link KvpFormInput}.
+ */
+public class KvpFormInputTest extends TestCase
+{
+
+    static <T> T parse(String form, Schema<T> schema, boolean numeric) throws IOException
+    {
+        final byte[] data = STRING.ser(form);
+        final T message = schema.newMessage();
+        schema.mergeFrom(new KvpFormInput(data, 0, data.length, numeric), message);
+        return message;
+    }
+
+    static <T> T parse(String form, Schema<T> schema, int bufferSize) throws IOException
+    {
+        final T message = schema.newMessage();
+        schema.mergeFrom(new KvpFormInput(new ByteArrayInputStream(STRING.ser(form)),
+                new byte[bufferSize], false), message);
+        return message;
+    }
+
+    public void testDecode() throws Exception
+    {
+        assertEquals(new Baz(1, "foo bar!", -5),
+                parse("id=1&name=foo+bar%21&timestamp=-5", Baz.getSchema(), false));
+
+        // encoded keys, utf8 values, empty pairs, unknown fields and keys without values
+        assertEquals(new Baz(2, "\u00e9&=", 0),
+                parse("&%69d=1&&unknown=x%26y&name=%C3%A9%26%3D&timestamp&flag&id=2&",
+                        Baz.getSchema(), false));
+
+        assertEquals(new Baz(3, "a=b", 7),
+                parse("1=3&2=a=b&3=7&4=unknown", Baz.getSchema(), true));
+    }
+
+    public void testRepeated() throws Exception
+    {
+        final Foo foo = parse("someInt=1&someInt=-2&someString=a+b&someEnum=2"
+                + "&someBytes=%00%FF&someBoolean=true&someBoolean=0&someBoolean="
+                + "&someFloat=1.5&someDouble=-2.25&someLong=9000000000", Foo.getSchema(), false);
+
+        assertEquals(Arrays.asList(1, -2), foo.getSomeInt());
+        assertEquals(Arrays.asList("a b"), foo.getSomeString());
+        assertEquals(Arrays.asList(EnumSample.TYPE2), foo.getSomeEnum());
+        assertEquals(Arrays.asList(ByteString.copyFrom(new byte[] { 0, (byte) 0xFF })),
+                foo.getSomeBytes());
+        assertEquals(Arrays.asList(true, false, false), foo.getSomeBoolean());
+        assertEquals(Arrays.asList(1.5f), foo.getSomeFloat());
+        assertEquals(Arrays.asList(-2.25d), foo.getSomeDouble());
+        assertEquals(Arrays.asList(9000000000L), foo.getSomeLong());
+    }
+
+    public void testReset() throws Exception
+    {
+        final byte[] first = STRING.ser("id=1&name=a%2Bb"), second = STRING.ser("id=2");
+        final KvpFormInput input = new KvpFormInput(first, 0, first.length, false);
+
+        final Baz baz = new Baz();
+        Baz.getSchema().mergeFrom(input, baz);
+        assertEquals(new Baz(1, "a+b", 0), baz);
+
+        final Baz next = new Baz();
+        Baz.getSchema().mergeFrom(input.reset(second, 0, second.length), next);
+        assertEquals(new Baz(2, null, 0), next);
+    }
+
+    public void testStream() throws Exception
+    {
+        final StringBuilder form = new StringBuilder();
+        final char[] large = new char[1000];
+        Arrays.fill(large, 'x');
+        for (int i = 0; i < 100; i++)
+        {
+            // the unknown values are larger than the buffer
+            form.append("someInt=").append(i).append("&unknown=").append(large).append('&');
+        }
+        form.append("someString=%7E%7E%7E%7E%7E");
+
+        final Foo foo = parse(form.toString(), Foo.getSchema(), 16);
+        assertEquals(100, foo.getSomeInt().size());
+        assertEquals(Integer.valueOf(99), foo.getSomeInt().get(99));
+        assertEquals(Arrays.asList("~~~~~"), foo.getSomeString());
+
+        try
+        {
+            parse("someString=" + new String(large), Foo.getSchema(), 16);
+            fail("Expected ProtostuffException.");
+        }
+        catch (ProtostuffException e)
+        {
+            // the known values must fit the buffer
+        }
+    }
+
+    public void testNestedMessage() throws Exception
+    {
+        try
+        {
+            parse("someBar=x", Foo.getSchema(), false);
+            fail("Expected ProtostuffException.");
+        }
+        catch (ProtostuffException e)
+        {
+            // nested messages are not supported
+        }
+    }
+
+    public void testMalformed() throws Exception
+    {
+        for (String form : new String[] { "name=%", "name=%2", "name=%zz" })
+        {
+            try
+            {
+                parse(form, Baz.getSchema(), false);
+                fail("Expected ProtostuffException.");
+            }
+            catch (ProtostuffException e)
+            {
+                // expected
+            }
+        }
+    }
+
+}
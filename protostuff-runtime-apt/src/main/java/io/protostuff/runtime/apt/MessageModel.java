@@ -0,0 +1,717 @@
+package io.protostuff.runtime.apt;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+
+/**
+ * The fields of a pojo, resolved at compile time with the same rules as {@code RuntimeSchema.createFrom}.
+ * <p>
+ * Only the field types whose runtime wire format can be reproduced without the {@code IdStrategy} bookkeeping are
+ * supported: scalars, enums, concrete pojos and collections of those. Anything else is reported via
+ * {@link UnsupportedException} and the pojo is left to the {@code RuntimeSchema}.
+ */
+final class MessageModel
+{
+
+    static final int MIN_TAG_VALUE = 1;
+    static final int MAX_TAG_VALUE = 536870911; // 2^29 - 1
+
+    static final String TAG = "io.protostuff.Tag";
+    static final String EXCLUDE = "io.protostuff.Exclude";
+    static final String MORPH = "io.protostuff.Morph";
+    static final String MESSAGE = "io.protostuff.Message";
+    static final String PACKED_LISTS_PACKAGE = "io.protostuff.runtime.";
+
+    /**
+     * The collection interfaces/classes from java.util which have a {@code CollectionSchema.MessageFactories}
+     * constant of the same simple name (which is what the {@code DefaultIdStrategy} uses).
+     */
+    static final Set<String> COLLECTION_FACTORIES = new HashSet<>(Arrays.asList(
+            "Collection", "List", "ArrayList", "LinkedList",
+            "CopyOnWriteArrayList", "Stack", "Vector", "Set", "HashSet",
+            "LinkedHashSet", "SortedSet", "NavigableSet", "TreeSet",
+            "ConcurrentSkipListSet", "CopyOnWriteArraySet", "Queue",
+            "BlockingQueue", "LinkedBlockingQueue", "Deque", "BlockingDeque",
+            "LinkedBlockingDeque", "ArrayBlockingQueue", "ArrayDeque",
+            "ConcurrentLinkedQueue", "ConcurrentLinkedDeque",
+            "PriorityBlockingQueue", "PriorityQueue"));
+
+    /**
+     * Scalar types, keyed by their (boxed) class name.
+     */
+    enum Scalar
+    {
+        BOOL("java.lang.Boolean", "boolean", "Bool", "input.readBool()", "%s"),
+        BYTE("java.lang.Byte", "byte", "UInt32", "(byte) input.readUInt32()", "%s"),
+        CHAR("java.lang.Character", "char", "UInt32", "(char) input.readUInt32()", "%s"),
+        SHORT("java.lang.Short", "short", "UInt32", "(short) input.readUInt32()", "%s"),
+        INT32("java.lang.Integer", "int", "Int32", "input.readInt32()", "%s"),
+        INT64("java.lang.Long", "long", "Int64", "input.readInt64()", "%s"),
+        FLOAT("java.lang.Float", "float", "Float", "input.readFloat()", "%s"),
+        DOUBLE("java.lang.Double", "double", "Double", "input.readDouble()", "%s"),
+        STRING("java.lang.String", null, "String", "input.readString()", "%s"),
+        BYTES("io.protostuff.ByteString", null, "Bytes", "input.readBytes()", "%s"),
+        BYTE_ARRAY("byte[]", null, "ByteArray", "input.readByteArray()", "%s"),
+        BIGDECIMAL("java.math.BigDecimal", null, "String",
+                "new java.math.BigDecimal(input.readString())", "%s.toString()"),
+        BIGINTEGER("java.math.BigInteger", null, "ByteArray",
+                "new java.math.BigInteger(input.readByteArray())", "%s.toByteArray()"),
+        DATE("java.util.Date", null, "Fixed64",
+                "new java.util.Date(input.readFixed64())", "%s.getTime()");
+
+        final String className, primitive, wireType, readExpr, writeValue;
+
+        Scalar(String className, String primitive, String wireType,
+                String readExpr, String writeValue)
+        {
+            this.className = className;
+            this.primitive = primitive;
+            this.wireType = wireType;
+            this.readExpr = readExpr;
+            this.writeValue = writeValue;
+        }
+
+        /**
+         * Returns the statement that writes {@code value}.
+         */
+        String write(int number, String value, boolean repeated)
+        {
+            return "output.write" + wireType + "(" + number + ", "
+                    + String.format(writeValue, value) + ", " + repeated + ");";
+        }
+
+        /**
+         * Returns the statement that transfers the value from the input to the output.
+         */
+        String transfer(int number, String repeated)
+        {
+            switch (this)
+            {
+                case STRING:
+                case BIGDECIMAL:
+                    return "input.transferByteRangeTo(output, true, " + number
+                            + ", " + repeated + ");";
+                case BYTES:
+                case BYTE_ARRAY:
+                case BIGINTEGER:
+                    return "input.transferByteRangeTo(output, false, "
+                            + number + ", " + repeated + ");";
+                default:
+                    return "output.write" + wireType + "(" + number
+                            + ", input.read" + wireType + "(), " + repeated
+                            + ");";
+            }
+        }
+
+        static Scalar get(String className)
+        {
+            for (Scalar s : values())
+            {
+                if (s.className.equals(className)
+                        || className.equals(s.primitive))
+                {
+                    return s;
+                }
+            }
+            return null;
+        }
+    }
+
+    enum Kind
+    {
+        SCALAR, ENUM, POJO
+    }
+
+    static final class FieldModel
+    {
+        final int number;
+        final String name;
+        final VariableElement element;
+
+        /**
+         * The expression that reads the field from {@code message} and the statement prefix/suffix that assigns it.
+         */
+        String getter, setterPrefix, setterSuffix;
+
+        Kind kind;
+        Scalar scalar;
+        boolean primitive;
+
+        /**
+         * The declared type of the field, without its type arguments.
+         */
+        String rawType;
+
+        /**
+         * The value type (the element type for collections).
+         */
+        String valueType;
+
+        /**
+         * Non-null for repeated (collection) fields.
+         */
+        String collectionType, newCollection;
+
+        FieldModel(int number, String name, VariableElement element)
+        {
+            this.number = number;
+            this.name = name;
+            this.element = element;
+        }
+
+        boolean isRepeated()
+        {
+            return collectionType != null;
+        }
+
+        String set(String value)
+        {
+            return setterPrefix + value + setterSuffix;
+        }
+    }
+
+    static final class UnsupportedException extends Exception
+    {
+        private static final long serialVersionUID = 1L;
+
+        final Element element;
+
+        UnsupportedException(String message, Element element)
+        {
+            super(message);
+            this.element = element;
+        }
+    }
+
+    final TypeElement type;
+    final String packageName, typeName, schemaName, binaryName;
+    final List<FieldModel> fields = new ArrayList<>();
+
+    /**
+     * The pojo types (schemas resolved from the id strategy) and enum types (one EnumIO each), in order.
+     */
+    final List<String> pojoTypes = new ArrayList<>(), enumTypes = new ArrayList<>();
+
+    /**
+     * The types that may have a delegate registered in the id strategy (the field types and the collection element
+     * types), in order.
+     */
+    final List<String> delegateTypes = new ArrayList<>();
+
+    /**
+     * Whether the schema is equivalent to the RuntimeSchema only when {@code RuntimeEnv.MORPH_NON_FINAL_POJOS} is
+     * disabled.
+     */
+    boolean dependsOnNonFinalPojos;
+
+    /**
+     * Whether the schema is equivalent to the RuntimeSchema only when
+     * {@code RuntimeEnv.COLLECTION_SCHEMA_ON_REPEATED_FIELDS} is disabled.
+     */
+    boolean dependsOnRepeatedFields;
+
+    /**
+     * True if the pojo has a no-args constructor accessible from the generated schema.
+     */
+    boolean constructorAccessible;
+
+    private final Elements elements;
+    private final Types types;
+
+    private MessageModel(TypeElement type, ProcessingEnvironment env)
+    {
+        this.type = type;
+        this.elements = env.getElementUtils();
+        this.types = env.getTypeUtils();
+
+        packageName = elements.getPackageOf(type).getQualifiedName().toString();
+        typeName = type.getQualifiedName().toString();
+        binaryName = elements.getBinaryName(type).toString();
+        schemaName = (packageName.isEmpty() ? binaryName : binaryName
+                .substring(packageName.length() + 1)).replace('$', '_')
+                + "Schema";
+    }
+
+    /**
+     * Resolves the fields of the {@code type}.
+     *
+     * @throws UnsupportedException if the schema cannot be generated for the type.
+     */
+    static MessageModel create(TypeElement type, ProcessingEnvironment env)
+            throws UnsupportedException
+    {
+        final MessageModel model = new MessageModel(type, env);
+        model.init();
+        return model;
+    }
+
+    private void init() throws UnsupportedException
+    {
+        if (type.getKind() != ElementKind.CLASS
+                || type.getModifiers().contains(Modifier.ABSTRACT))
+        {
+            throw new UnsupportedException(
+                    "the root object can neither be an abstract class nor interface",
+                    type);
+        }
+
+        if (!type.getTypeParameters().isEmpty())
+            throw new UnsupportedException("generic types are not supported", type);
+
+        if (type.getNestingKind() == NestingKind.MEMBER
+                && !type.getModifiers().contains(Modifier.STATIC))
+        {
+            throw new UnsupportedException("inner (non-static) classes are not supported",
+                    type);
+        }
+
+        if (type.getNestingKind() == NestingKind.LOCAL
+                || type.getNestingKind() == NestingKind.ANONYMOUS
+                || !isAccessible(type))
+        {
+            throw new UnsupportedException("the type is not accessible from its package",
+                    type);
+        }
+
+        if (isSubtype(type.asType(), MESSAGE))
+        {
+            throw new UnsupportedException(
+                    "the type implements io.protostuff.Message", type);
+        }
+
+        for (ExecutableElement c : ElementFilter.constructorsIn(type
+                .getEnclosedElements()))
+        {
+            if (c.getParameters().isEmpty()
+                    && !c.getModifiers().contains(Modifier.PRIVATE))
+            {
+                constructorAccessible = true;
+            }
+        }
+
+        final LinkedHashMap<String, VariableElement> fieldMap = new LinkedHashMap<>();
+        fill(fieldMap, type);
+
+        int i = 0;
+        boolean annotated = false;
+        for (VariableElement f : fieldMap.values())
+        {
+            if (getAnnotation(f, Deprecated.class.getName()) != null)
+            {
+                // preserve its field number for backward-forward compat
+                i++;
+                continue;
+            }
+
+            final AnnotationMirror tag = getAnnotation(f, TAG);
+            final int number;
+            final String name;
+            if (tag == null)
+            {
+                if (annotated)
+                {
+                    throw new UnsupportedException(
+                            "when using annotation-based mapping, all fields must be annotated with @Tag",
+                            f);
+                }
+                number = ++i;
+                name = f.getSimpleName().toString();
+            }
+            else
+            {
+                if (!annotated && !fields.isEmpty())
+                {
+                    throw new UnsupportedException(
+                            "when using annotation-based mapping, all fields must be annotated with @Tag",
+                            f);
+                }
+                annotated = true;
+                number = (Integer) getValue(tag, "value");
+                if (number < MIN_TAG_VALUE || number > MAX_TAG_VALUE)
+                {
+                    throw new UnsupportedException("invalid tag number: "
+                            + number, f);
+                }
+
+                final String alias = (String) getValue(tag, "alias");
+                name = alias == null || alias.isEmpty() ? f.getSimpleName()
+                        .toString() : alias;
+            }
+
+            for (FieldModel existing : fields)
+            {
+                if (existing.number == number || existing.name.equals(name))
+                {
+                    throw new UnsupportedException("duplicate field: "
+                            + number + " (" + name + ")", f);
+                }
+            }
+
+            final FieldModel field = new FieldModel(number, name, f);
+            resolveAccess(field);
+            resolveType(field);
+            addDelegateType(field.rawType);
+            if (field.isRepeated())
+                addDelegateType(field.valueType);
+            fields.add(field);
+        }
+
+        Collections.sort(fields, new Comparator<FieldModel>()
+        {
+            @Override
+            public int compare(FieldModel f1, FieldModel f2)
+            {
+                return f1.number < f2.number ? -1 : (f1.number == f2.number ? 0 : 1);
+            }
+        });
+    }
+
+    /**
+     * Same as {@code RuntimeSchema.fill}: super class fields first, a field hidden by a subclass keeps the position
+     * of the super class field.
+     */
+    private void fill(Map<String, VariableElement> fieldMap, TypeElement typeElement)
+    {
+        final TypeMirror superclass = typeElement.getSuperclass();
+        if (superclass.getKind() == TypeKind.DECLARED)
+        {
+            final TypeElement superElement = (TypeElement) types
+                    .asElement(superclass);
+            if (!Object.class.getName().equals(
+                    superElement.getQualifiedName().toString()))
+            {
+                fill(fieldMap, superElement);
+            }
+        }
+
+        for (VariableElement f : ElementFilter.fieldsIn(typeElement
+                .getEnclosedElements()))
+        {
+            final Set<Modifier> mods = f.getModifiers();
+            if (!mods.contains(Modifier.STATIC)
+                    && !mods.contains(Modifier.TRANSIENT)
+                    && getAnnotation(f, EXCLUDE) == null)
+            {
+                fieldMap.put(f.getSimpleName().toString(), f);
+            }
+        }
+    }
+
+    private void resolveAccess(FieldModel field) throws UnsupportedException
+    {
+        final VariableElement f = field.element;
+        final String fieldName = f.getSimpleName().toString();
+        if (isAccessible(f) && !f.getModifiers().contains(Modifier.FINAL))
+        {
+            field.getter = "message." + fieldName;
+            field.setterPrefix = "message." + fieldName + " = ";
+            field.setterSuffix = ";";
+            return;
+        }
+
+        // fallback to the java bean accessors
+        final String suffix = Character.toUpperCase(fieldName.charAt(0))
+                + fieldName.substring(1);
+        ExecutableElement getter = null, setter = null;
+        for (ExecutableElement m : ElementFilter.methodsIn(elements
+                .getAllMembers(type)))
+        {
+            if (m.getModifiers().contains(Modifier.STATIC) || !isAccessible(m))
+                continue;
+
+            final String methodName = m.getSimpleName().toString();
+            if (m.getParameters().isEmpty()
+                    && types.isSameType(m.getReturnType(), f.asType())
+                    && (methodName.equals("get" + suffix) || (methodName
+                            .equals("is" + suffix) && f.asType().getKind() == TypeKind.BOOLEAN)))
+            {
+                getter = m;
+            }
+            else if (m.getParameters().size() == 1
+                    && methodName.equals("set" + suffix)
+                    && types.isSameType(m.getParameters().get(0).asType(),
+                            f.asType()))
+            {
+                setter = m;
+            }
+        }
+
+        if (getter == null || setter == null)
+        {
+            throw new UnsupportedException("field " + fieldName
+                    + " is not accessible and has no accessible getter/setter", f);
+        }
+
+        field.getter = "message." + getter.getSimpleName() + "()";
+        field.setterPrefix = "message." + setter.getSimpleName() + "(";
+        field.setterSuffix = ");";
+    }
+
+    private void resolveType(FieldModel field) throws UnsupportedException
+    {
+        final VariableElement f = field.element;
+        final TypeMirror t = f.asType();
+        if (t.getKind().isPrimitive())
+        {
+            field.kind = Kind.SCALAR;
+            field.scalar = Scalar.get(t.toString());
+            field.primitive = true;
+            field.rawType = field.valueType = t.toString();
+            return;
+        }
+
+        if (t.getKind() == TypeKind.ARRAY)
+        {
+            if (((ArrayType) t).getComponentType().getKind() != TypeKind.BYTE)
+                throw new UnsupportedException("arrays are not supported (except byte[])", f);
+
+            field.kind = Kind.SCALAR;
+            field.scalar = Scalar.BYTE_ARRAY;
+            field.rawType = field.valueType = "byte[]";
+            return;
+        }
+
+        if (t.getKind() != TypeKind.DECLARED)
+            throw new UnsupportedException("unsupported type: " + t, f);
+
+        final DeclaredType declared = (DeclaredType) t;
+        final TypeElement element = (TypeElement) declared.asElement();
+        if (isSubtype(t, Map.class.getName()))
+            throw new UnsupportedException("maps are not supported", f);
+
+        field.rawType = element.getQualifiedName().toString();
+        if (!isSubtype(t, java.util.Collection.class.getName()))
+        {
+            resolveValue(field, t, f, false);
+            return;
+        }
+
+        // repeated field
+        if (getAnnotation(f, MORPH) != null
+                || isSubtype(t, java.util.EnumSet.class.getName()))
+        {
+            throw new UnsupportedException(
+                    "collections with @Morph or EnumSet are not supported", f);
+        }
+
+        if (declared.getTypeArguments().size() != 1
+                || declared.getTypeArguments().get(0).getKind() != TypeKind.DECLARED)
+        {
+            throw new UnsupportedException(
+                    "collections must have a single concrete type argument", f);
+        }
+
+        final String qualifiedName = element.getQualifiedName().toString();
+        final TypeMirror valueType = declared.getTypeArguments().get(0);
+        resolveValue(field, valueType, f, true);
+
+        final String collectionType = qualifiedName + "<" + field.valueType + ">";
+        if (qualifiedName.startsWith("java.util"))
+        {
+            final String simpleName = element.getSimpleName().toString();
+            if (!COLLECTION_FACTORIES.contains(simpleName))
+                throw new UnsupportedException("unsupported collection: " + qualifiedName, f);
+
+            field.newCollection = "(" + collectionType
+                    + ") io.protostuff.CollectionSchema.MessageFactories."
+                    + simpleName + ".<" + field.valueType + ">newMessage()";
+        }
+        else
+        {
+            if (element.getModifiers().contains(Modifier.ABSTRACT)
+                    || element.getKind() != ElementKind.CLASS
+                    || !isAccessible(element) || !hasAccessibleConstructor(element))
+            {
+                throw new UnsupportedException(
+                        "the collection must be a concrete type with an accessible no-args constructor",
+                        f);
+            }
+            field.newCollection = "new " + collectionType + "()";
+        }
+
+        field.collectionType = collectionType;
+        dependsOnRepeatedFields = true;
+    }
+
+    private void resolveValue(FieldModel field, TypeMirror t, VariableElement f,
+            boolean repeated) throws UnsupportedException
+    {
+        final TypeElement element = (TypeElement) types.asElement(t);
+        final String qualifiedName = element.getQualifiedName().toString();
+        final Scalar scalar = Scalar.get(qualifiedName);
+        if (scalar != null)
+        {
+            field.kind = Kind.SCALAR;
+            field.scalar = scalar;
+            field.valueType = qualifiedName;
+            return;
+        }
+
+        if (!repeated && qualifiedName.startsWith(PACKED_LISTS_PACKAGE)
+                && qualifiedName.endsWith("ArrayList"))
+        {
+            throw new UnsupportedException("packed lists are not supported: "
+                    + qualifiedName, f);
+        }
+
+        if (!isAccessible(element))
+            throw new UnsupportedException("type not accessible: " + qualifiedName, f);
+
+        if (!((DeclaredType) t).getTypeArguments().isEmpty()
+                || !element.getTypeParameters().isEmpty())
+        {
+            throw new UnsupportedException("generic pojos are not supported: "
+                    + qualifiedName, f);
+        }
+
+        field.valueType = qualifiedName;
+        if (element.getKind() == ElementKind.ENUM)
+        {
+            field.kind = Kind.ENUM;
+            if (!enumTypes.contains(qualifiedName))
+                enumTypes.add(qualifiedName);
+            return;
+        }
+
+        final Set<Modifier> mods = element.getModifiers();
+        if (isSubtype(t, MESSAGE))
+        {
+            // always serialized with its own schema
+            addPojo(field, qualifiedName);
+            return;
+        }
+
+        if (element.getKind() != ElementKind.CLASS
+                || mods.contains(Modifier.ABSTRACT)
+                || qualifiedName.equals(Object.class.getName())
+                || qualifiedName.equals(Number.class.getName())
+                || qualifiedName.equals(Class.class.getName())
+                || qualifiedName.equals(Enum.class.getName())
+                || isSubtype(t, Throwable.class.getName())
+                || qualifiedName.startsWith("java."))
+        {
+            throw new UnsupportedException("polymorphic type: "
+                    + qualifiedName, f);
+        }
+
+        if (!mods.contains(Modifier.FINAL))
+        {
+            final AnnotationMirror morph = getAnnotation(f, MORPH);
+            if (morph != null)
+            {
+                final Object value = getValue(morph, "value");
+                if (value == null || Boolean.TRUE.equals(value))
+                    throw new UnsupportedException("@Morph pojo: " + qualifiedName, f);
+            }
+            else
+                dependsOnNonFinalPojos = true;
+        }
+
+        addPojo(field, qualifiedName);
+    }
+
+    private void addDelegateType(String typeName)
+    {
+        if (!delegateTypes.contains(typeName))
+            delegateTypes.add(typeName);
+    }
+
+    private void addPojo(FieldModel field, String qualifiedName)
+    {
+        field.kind = Kind.POJO;
+        if (!pojoTypes.contains(qualifiedName))
+            pojoTypes.add(qualifiedName);
+    }
+
+    private boolean hasAccessibleConstructor(TypeElement element)
+    {
+        for (ExecutableElement c : ElementFilter.constructorsIn(element
+                .getEnclosedElements()))
+        {
+            if (c.getParameters().isEmpty() && isAccessible(c))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns true if the element can be referenced from the generated schema (which is in the same package as the
+     * pojo).
+     */
+    private boolean isAccessible(Element e)
+    {
+        for (; e != null && !(e instanceof PackageElement); e = e
+                .getEnclosingElement())
+        {
+            final Set<Modifier> mods = e.getModifiers();
+            if (mods.contains(Modifier.PRIVATE))
+                return false;
+
+            if (!mods.contains(Modifier.PUBLIC)
+                    && !packageName.equals(elements.getPackageOf(e)
+                            .getQualifiedName().toString()))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isSubtype(TypeMirror t, String className)
+    {
+        final TypeElement element = elements.getTypeElement(className);
+        return element != null
+                && types.isSubtype(types.erasure(t),
+                        types.erasure(element.asType()));
+    }
+
+    static AnnotationMirror getAnnotation(Element e, String annotationName)
+    {
+        for (AnnotationMirror am : e.getAnnotationMirrors())
+        {
+            if (annotationName.equals(((TypeElement) am.getAnnotationType()
+                    .asElement()).getQualifiedName().toString()))
+            {
+                return am;
+            }
+        }
+        return null;
+    }
+
+    static Object getValue(AnnotationMirror am, String name)
+    {
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : am
+                .getElementValues().entrySet())
+        {
+            if (entry.getKey().getSimpleName().contentEquals(name))
+                return entry.getValue().getValue();
+        }
+        return null;
+    }
+}
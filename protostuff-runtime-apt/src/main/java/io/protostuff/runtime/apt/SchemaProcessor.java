@@ -0,0 +1,190 @@
+package io.protostuff.runtime.apt;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+import io.protostuff.runtime.apt.MessageModel.UnsupportedException;
+
+/**
+ * Generates a {@code Schema} at compile time for every class that has {@code @Tag} annotated fields, with the same
+ * field numbers, names and wire format as the {@code RuntimeSchema} (so that both can read each other's data). The
+ * reflection/unsafe field access and the per-field virtual dispatch of the runtime schema are replaced by direct field
+ * (or getter/setter) access and a switch on the field number.
+ * <p>
+ * The generated schemas are listed in a {@code SchemaProvider} (META-INF/services) which the runtime registers with
+ * the default id strategy on startup. Classes with fields that cannot be mapped statically (polymorphic, maps,
+ * arrays, etc) are reported with a warning and keep using the {@code RuntimeSchema}.
+ * <p>
+ * Options:
+ * <ul>
+ * <li>{@code protostuff.provider}: the fully qualified name of the generated provider (defaults to
+ * {@code GeneratedSchemaProvider} in the package of the first pojo).</li>
+ * </ul>
+ */
+@SupportedAnnotationTypes(MessageModel.TAG)
+@SupportedOptions(SchemaProcessor.OPTION_PROVIDER)
+public final class SchemaProcessor extends AbstractProcessor
+{
+
+    static final String OPTION_PROVIDER = "protostuff.provider";
+
+    static final String SERVICE_FILE = "META-INF/services/io.protostuff.runtime.SchemaProvider";
+
+    private final Set<String> processed = new HashSet<>();
+    private final List<String> providers = new ArrayList<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion()
+    {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations,
+            RoundEnvironment roundEnv)
+    {
+        if (roundEnv.processingOver())
+        {
+            writeServiceFile();
+            return false;
+        }
+
+        // sorted for a stable provider order
+        final TreeMap<String, TypeElement> types = new TreeMap<>();
+        for (TypeElement annotation : annotations)
+        {
+            for (Element e : roundEnv.getElementsAnnotatedWith(annotation))
+            {
+                final Element enclosing = e.getEnclosingElement();
+                // @Tag is also used on enum constants
+                if (e.getKind() == ElementKind.FIELD
+                        && enclosing.getKind() == ElementKind.CLASS)
+                {
+                    final TypeElement type = (TypeElement) enclosing;
+                    if (processed.add(type.getQualifiedName().toString()))
+                        types.put(type.getQualifiedName().toString(), type);
+                }
+            }
+        }
+
+        final ArrayList<MessageModel> models = new ArrayList<>();
+        for (TypeElement type : types.values())
+        {
+            final MessageModel model;
+            try
+            {
+                model = MessageModel.create(type, processingEnv);
+            }
+            catch (UnsupportedException e)
+            {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+                        "No schema generated for " + type.getQualifiedName()
+                                + " (RuntimeSchema will be used): " + e.getMessage(),
+                        e.element);
+                continue;
+            }
+
+            final String name = model.packageName.isEmpty() ? model.schemaName
+                    : model.packageName + "." + model.schemaName;
+            try (Writer writer = processingEnv.getFiler()
+                    .createSourceFile(name, type).openWriter())
+            {
+                new SchemaWriter(new PrintWriter(writer)).writeSchema(model);
+            }
+            catch (IOException e)
+            {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                        "Could not write " + name + ": " + e.getMessage(), type);
+                continue;
+            }
+
+            models.add(model);
+        }
+
+        if (!models.isEmpty())
+            writeProvider(models);
+
+        return false;
+    }
+
+    private void writeProvider(List<MessageModel> models)
+    {
+        String provider = processingEnv.getOptions().get(OPTION_PROVIDER);
+        if (provider == null)
+        {
+            final String packageName = models.get(0).packageName;
+            provider = (packageName.isEmpty() ? "" : packageName + ".")
+                    + "GeneratedSchemaProvider";
+        }
+
+        // one provider per round
+        if (!providers.isEmpty())
+            provider = provider + (providers.size() + 1);
+
+        final int dot = provider.lastIndexOf('.');
+        final String packageName = dot == -1 ? "" : provider.substring(0, dot);
+        final String simpleName = provider.substring(dot + 1);
+
+        final Element[] originating = new Element[models.size()];
+        for (int i = 0; i < originating.length; i++)
+            originating[i] = models.get(i).type;
+
+        try (Writer writer = processingEnv.getFiler()
+                .createSourceFile(provider, originating).openWriter())
+        {
+            new SchemaWriter(new PrintWriter(writer)).writeProvider(
+                    packageName, simpleName, models);
+        }
+        catch (IOException e)
+        {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "Could not write " + provider + ": " + e.getMessage());
+            return;
+        }
+
+        providers.add(provider);
+    }
+
+    private void writeServiceFile()
+    {
+        if (providers.isEmpty())
+            return;
+
+        Collections.sort(providers);
+
+        try
+        {
+            final FileObject file = processingEnv.getFiler().createResource(
+                    StandardLocation.CLASS_OUTPUT, "", SERVICE_FILE);
+            try (PrintWriter writer = new PrintWriter(file.openWriter()))
+            {
+                for (String provider : providers)
+                    writer.println(provider);
+            }
+        }
+        catch (IOException e)
+        {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "Could not write " + SERVICE_FILE + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,448 @@
+package io.protostuff.runtime.apt;
+
+import java.io.PrintWriter;
+import java.util.List;
+
+import io.protostuff.runtime.apt.MessageModel.FieldModel;
+import io.protostuff.runtime.apt.MessageModel.Kind;
+
+/**
+ * Writes the java source of a generated schema and of the {@code SchemaProvider} that registers them.
+ */
+final class SchemaWriter
+{
+
+    private final PrintWriter out;
+    private int indent;
+
+    SchemaWriter(PrintWriter out)
+    {
+        this.out = out;
+    }
+
+    private SchemaWriter line(String line)
+    {
+        for (int i = 0; i < indent; i++)
+            out.print("    ");
+        out.println(line);
+        return this;
+    }
+
+    private SchemaWriter blank()
+    {
+        out.println();
+        return this;
+    }
+
+    private SchemaWriter open()
+    {
+        line("{");
+        indent++;
+        return this;
+    }
+
+    private SchemaWriter close()
+    {
+        indent--;
+        return line("}");
+    }
+
+    private SchemaWriter close(String suffix)
+    {
+        indent--;
+        return line("}" + suffix);
+    }
+
+    private static String hasSchema(MessageModel model, String type)
+    {
+        return "hs" + model.pojoTypes.indexOf(type);
+    }
+
+    private static String enumIO(MessageModel model, String type)
+    {
+        return "eio" + model.enumTypes.indexOf(type);
+    }
+
+    private static String delegate(MessageModel model, String type)
+    {
+        return "d" + model.delegateTypes.indexOf(type);
+    }
+
+    void writeSchema(MessageModel model)
+    {
+        final String t = model.typeName;
+        if (!model.packageName.isEmpty())
+            line("package " + model.packageName + ";").blank();
+
+        line("import java.io.IOException;");
+        line("import java.util.HashMap;").blank();
+        line("import io.protostuff.Input;");
+        line("import io.protostuff.Output;");
+        line("import io.protostuff.Pipe;");
+        line("import io.protostuff.runtime.Delegate;");
+        line("import io.protostuff.runtime.EnumIO;");
+        line("import io.protostuff.runtime.HasSchema;");
+        line("import io.protostuff.runtime.IdStrategy;");
+        line("import io.protostuff.runtime.ProvidedSchema;");
+        line("import io.protostuff.runtime.RuntimeEnv;").blank();
+
+        line("/**");
+        line(" * Schema for {@link " + t + "}, generated at compile time from its fields (same wire format as the");
+        line(" * RuntimeSchema).");
+        line(" */");
+        line("public final class " + model.schemaName + " implements ProvidedSchema<" + t + ">");
+        open();
+        blank();
+
+        line("private static final HashMap<String, Integer> __fieldMap = new HashMap<String, Integer>();");
+        line("static");
+        open();
+        for (FieldModel f : model.fields)
+            line("__fieldMap.put(\"" + f.name + "\", " + f.number + ");");
+        close().blank();
+
+        line("final IdStrategy strategy;");
+        if (!model.constructorAccessible)
+            line("final RuntimeEnv.Instantiator<" + t + "> instantiator;");
+        for (String p : model.pojoTypes)
+            line("private HasSchema<" + p + "> " + hasSchema(model, p) + ";");
+        blank();
+
+        // resolved on first use, like the fields of the RuntimeSchema, so that the delegates can be registered after
+        // the generated schemas
+        line("private volatile boolean resolved;");
+        for (String e : model.enumTypes)
+            line("private EnumIO<" + e + "> " + enumIO(model, e) + ";");
+        for (String d : model.delegateTypes)
+            line("private Delegate<Object> " + delegate(model, d) + ";");
+        blank();
+
+        line("final Pipe.Schema<" + t + "> pipeSchema = new Pipe.Schema<" + t + ">(this)");
+        open();
+        line("@Override");
+        line("protected void transfer(Pipe pipe, Input input, Output output) throws IOException");
+        open();
+        line("if (!resolved)");
+        line("    resolve();").blank();
+        line("for (int number = input.readFieldNumber(wrappedSchema); number != 0; number = input.readFieldNumber(wrappedSchema))");
+        open();
+        line("switch (number)");
+        open();
+        for (FieldModel f : model.fields)
+        {
+            indent--;
+            line("case " + f.number + ":");
+            indent++;
+            transfer(model, f);
+            line("break;");
+        }
+        indent--;
+        line("default:");
+        indent++;
+        line("input.handleUnknownField(number, wrappedSchema);");
+        close();
+        close();
+        close();
+        close(";").blank();
+
+        line("public " + model.schemaName + "(IdStrategy strategy)");
+        open();
+        line("this.strategy = strategy;");
+        if (!model.constructorAccessible)
+            line("instantiator = RuntimeEnv.newInstantiator(" + t + ".class);");
+        close().blank();
+
+        line("@SuppressWarnings(\"unchecked\")");
+        line("void resolve()");
+        open();
+        for (String e : model.enumTypes)
+            line(enumIO(model, e) + " = EnumIO.of(" + e + ".class, strategy);");
+        for (String d : model.delegateTypes)
+        {
+            line(delegate(model, d) + " = (Delegate<Object>) (Delegate<?>) strategy.getDelegate(" + d
+                    + ".class);");
+        }
+        line("resolved = true;");
+        close().blank();
+
+        for (String p : model.pojoTypes)
+        {
+            // resolved lazily so that the generated schemas can be registered in any order
+            final String hs = hasSchema(model, p);
+            line("HasSchema<" + p + "> " + hs + "()");
+            open();
+            line("HasSchema<" + p + "> hs = " + hs + ";");
+            line("if (hs == null)");
+            line("    " + hs + " = hs = strategy.getSchemaWrapper(" + p + ".class, true);");
+            line("return hs;");
+            close().blank();
+        }
+
+        line("@Override");
+        line("public Pipe.Schema<" + t + "> getPipeSchema()");
+        open().line("return pipeSchema;").close().blank();
+
+        line("@Override");
+        line("public String getFieldName(int number)");
+        open();
+        line("switch (number)");
+        line("{");
+        for (FieldModel f : model.fields)
+            line("case " + f.number + ": return \"" + f.name + "\";");
+        line("default: return null;");
+        line("}");
+        close().blank();
+
+        line("@Override");
+        line("public int getFieldNumber(String name)");
+        open();
+        line("final Integer number = __fieldMap.get(name);");
+        line("return number == null ? 0 : number.intValue();");
+        close().blank();
+
+        line("@Override");
+        line("public boolean isInitialized(" + t + " message)");
+        open().line("return true;").close().blank();
+
+        line("@Override");
+        line("public " + t + " newMessage()");
+        open();
+        line(model.constructorAccessible ? "return new " + t + "();"
+                : "return instantiator.newInstance();");
+        close().blank();
+
+        line("@Override");
+        line("public String messageName()");
+        open().line("return \"" + model.type.getSimpleName() + "\";").close().blank();
+
+        line("@Override");
+        line("public String messageFullName()");
+        open().line("return \"" + model.binaryName + "\";").close().blank();
+
+        line("@Override");
+        line("public Class<? super " + t + "> typeClass()");
+        open().line("return " + t + ".class;").close().blank();
+
+        line("@Override");
+        line("public void mergeFrom(Input input, " + t + " message) throws IOException");
+        open();
+        line("if (!resolved)");
+        line("    resolve();").blank();
+        line("for (int number = input.readFieldNumber(this);; number = input.readFieldNumber(this))");
+        open();
+        line("switch (number)");
+        open();
+        indent--;
+        line("case 0:");
+        indent++;
+        line("return;");
+        for (FieldModel f : model.fields)
+        {
+            indent--;
+            line("case " + f.number + ":");
+            indent++;
+            mergeFrom(model, f);
+            line("break;");
+        }
+        indent--;
+        line("default:");
+        indent++;
+        line("input.handleUnknownField(number, this);");
+        close();
+        close();
+        close().blank();
+
+        line("@Override");
+        line("public void writeTo(Output output, " + t + " message) throws IOException");
+        open();
+        line("if (!resolved)");
+        line("    resolve();");
+        boolean first = false;
+        for (FieldModel f : model.fields)
+        {
+            if (!first)
+                blank();
+            first = false;
+            writeTo(model, f);
+        }
+        close();
+
+        close();
+        out.flush();
+    }
+
+    private static String readValue(MessageModel model, FieldModel f, String existing)
+    {
+        if (f.kind == Kind.SCALAR)
+            return f.scalar.readExpr;
+
+        if (f.kind == Kind.ENUM)
+            return enumIO(model, f.valueType) + ".readFrom(input)";
+
+        return "input.mergeObject(" + existing + ", " + hasSchema(model, f.valueType)
+                + "().getSchema())";
+    }
+
+    private String writeValue(MessageModel model, FieldModel f, String value)
+    {
+        final boolean repeated = f.isRepeated();
+        if (f.kind == Kind.SCALAR)
+            return f.scalar.write(f.number, value, repeated);
+
+        if (f.kind == Kind.ENUM)
+        {
+            return enumIO(model, f.valueType) + ".writeTo(output, " + f.number + ", "
+                    + repeated + ", " + value + ");";
+        }
+
+        return "output.writeObject(" + f.number + ", " + value + ", "
+                + hasSchema(model, f.valueType) + "().getSchema(), " + repeated + ");";
+    }
+
+    private static String transferValue(MessageModel model, FieldModel f)
+    {
+        final String repeated = String.valueOf(f.isRepeated());
+        if (f.kind == Kind.SCALAR)
+            return f.scalar.transfer(f.number, repeated);
+
+        if (f.kind == Kind.ENUM)
+            return "EnumIO.transfer(pipe, input, output, " + f.number + ", " + repeated + ");";
+
+        return "output.writeObject(" + f.number + ", pipe, " + hasSchema(model, f.valueType)
+                + "().getPipeSchema(), " + repeated + ");";
+    }
+
+    private void transfer(MessageModel model, FieldModel f)
+    {
+        final String d = delegate(model, f.rawType);
+        line("if (" + d + " != null)");
+        line("    " + d + ".transfer(pipe, input, output, " + f.number + ", false);");
+        if (f.isRepeated())
+        {
+            final String e = delegate(model, f.valueType);
+            line("else if (" + e + " != null)");
+            line("    " + e + ".transfer(pipe, input, output, " + f.number + ", true);");
+        }
+        line("else");
+        line("    " + transferValue(model, f));
+    }
+
+    private void mergeFrom(MessageModel model, FieldModel f)
+    {
+        final String d = delegate(model, f.rawType);
+        line("if (" + d + " != null)");
+        if (!f.isRepeated())
+        {
+            line("    " + f.set("(" + (f.primitive ? f.scalar.className : f.valueType) + ") " + d
+                    + ".readFrom(input)"));
+            line("else");
+            line("    " + f.set(readValue(model, f, f.getter)));
+            return;
+        }
+
+        final String e = delegate(model, f.valueType);
+        line("    " + f.set("(" + f.collectionType + ") " + d + ".readFrom(input)"));
+        line("else");
+        open();
+        line("if (" + f.getter + " == null)");
+        line("    " + f.set(f.newCollection));
+        line("if (" + e + " != null)");
+        line("    " + f.getter + ".add((" + f.valueType + ") " + e + ".readFrom(input));");
+        line("else");
+        line("    " + f.getter + ".add(" + readValue(model, f, "null") + ");");
+        close();
+    }
+
+    private void writeTo(MessageModel model, FieldModel f)
+    {
+        final String local = "f" + f.number, d = delegate(model, f.rawType);
+        if (f.primitive)
+        {
+            line("if (" + d + " != null)");
+            line("    " + d + ".writeTo(output, " + f.number + ", " + f.getter + ", false);");
+            line("else");
+            line("    " + writeValue(model, f, f.getter));
+            return;
+        }
+
+        line("final " + (f.isRepeated() ? f.collectionType : f.valueType) + " " + local + " = "
+                + f.getter + ";");
+        line("if (" + local + " != null)");
+        open();
+        line("if (" + d + " != null)");
+        line("    " + d + ".writeTo(output, " + f.number + ", " + local + ", false);");
+        if (!f.isRepeated())
+        {
+            line("else");
+            line("    " + writeValue(model, f, local));
+            close();
+            return;
+        }
+
+        final String e = delegate(model, f.valueType);
+        line("else");
+        open();
+        line("for (" + f.valueType + " v : " + local + ")");
+        open();
+        line("if (v == null)");
+        line("    continue;");
+        line("if (" + e + " != null)");
+        line("    " + e + ".writeTo(output, " + f.number + ", v, true);");
+        line("else");
+        line("    " + writeValue(model, f, "v"));
+        close();
+        close();
+        close();
+    }
+
+    void writeProvider(String packageName, String simpleName, List<MessageModel> models)
+    {
+        if (!packageName.isEmpty())
+            line("package " + packageName + ";").blank();
+
+        line("import java.util.ArrayList;");
+        line("import java.util.List;").blank();
+        line("import io.protostuff.Schema;");
+        line("import io.protostuff.runtime.IdStrategy;");
+        line("import io.protostuff.runtime.RuntimeEnv;");
+        line("import io.protostuff.runtime.SchemaProvider;").blank();
+
+        line("/**");
+        line(" * Provides the schemas generated at compile time. Schemas that would not match the RuntimeSchema under the");
+        line(" * current RuntimeEnv settings are left out.");
+        line(" */");
+        line("public final class " + simpleName + " implements SchemaProvider");
+        open();
+        blank();
+        line("@Override");
+        line("public List<Schema<?>> getSchemas(IdStrategy strategy)");
+        open();
+        line("final ArrayList<Schema<?>> schemas = new ArrayList<Schema<?>>();");
+        for (MessageModel model : models)
+        {
+            final String add = "schemas.add(new " + (model.packageName.isEmpty() ? ""
+                    : model.packageName + ".") + model.schemaName + "(strategy));";
+            if (model.dependsOnNonFinalPojos && model.dependsOnRepeatedFields)
+            {
+                line("if (!RuntimeEnv.MORPH_NON_FINAL_POJOS && !RuntimeEnv.COLLECTION_SCHEMA_ON_REPEATED_FIELDS)");
+                line("    " + add);
+            }
+            else if (model.dependsOnNonFinalPojos)
+            {
+                line("if (!RuntimeEnv.MORPH_NON_FINAL_POJOS)");
+                line("    " + add);
+            }
+            else if (model.dependsOnRepeatedFields)
+            {
+                line("if (!RuntimeEnv.COLLECTION_SCHEMA_ON_REPEATED_FIELDS)");
+                line("    " + add);
+            }
+            else
+                line(add);
+        }
+        line("return schemas;");
+        close();
+        close();
+        out.flush();
+    }
+}
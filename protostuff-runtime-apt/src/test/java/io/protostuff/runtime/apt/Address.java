@@ -0,0 +1,41 @@
+package io.protostuff.runtime.apt;
+
+import io.protostuff.Tag;
+
+/**
+ * Final pojo with package-private fields.
+ */
+public final class Address
+{
+
+    @Tag(1)
+    String street;
+    @Tag(2)
+    int zip;
+
+    public Address()
+    {
+    }
+
+    public Address(String street, int zip)
+    {
+        this.street = street;
+        this.zip = zip;
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+        if (!(obj instanceof Address))
+            return false;
+        Address other = (Address) obj;
+        return zip == other.zip
+                && (street == null ? other.street == null : street.equals(other.street));
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return zip;
+    }
+}
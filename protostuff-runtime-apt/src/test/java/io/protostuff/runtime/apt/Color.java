@@ -0,0 +1,13 @@
+package io.protostuff.runtime.apt;
+
+import io.protostuff.Tag;
+
+public enum Color
+{
+    @Tag(value = 10, alias = "r")
+    RED,
+    @Tag(value = 20, alias = "g")
+    GREEN,
+    @Tag(value = 30, alias = "b")
+    BLUE
+}
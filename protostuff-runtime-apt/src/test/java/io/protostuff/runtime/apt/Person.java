@@ -0,0 +1,146 @@
+package io.protostuff.runtime.apt;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+import io.protostuff.ByteString;
+import io.protostuff.Tag;
+
+/**
+ * Covers every field kind supported by the generated schemas.
+ */
+public class Person
+{
+
+    @Tag(1)
+    int id;
+    @Tag(value = 2, alias = "n")
+    String name;
+    @Tag(3)
+    boolean active;
+    @Tag(4)
+    byte b;
+    @Tag(5)
+    char c;
+    @Tag(6)
+    short s;
+    @Tag(7)
+    long l;
+    @Tag(8)
+    float f;
+    @Tag(9)
+    double d;
+    @Tag(10)
+    Integer boxedInt;
+    @Tag(11)
+    Long boxedLong;
+    @Tag(12)
+    ByteString bytes;
+    @Tag(13)
+    byte[] byteArray;
+    @Tag(14)
+    BigDecimal decimal;
+    @Tag(15)
+    BigInteger integer;
+    @Tag(16)
+    Date date;
+    @Tag(17)
+    Color color;
+    @Tag(18)
+    Address address;
+    @Tag(19)
+    List<String> tags;
+    @Tag(20)
+    List<Address> addresses;
+    @Tag(21)
+    Set<Color> colors;
+    @Tag(22)
+    Person friend;
+    @Tag(1000)
+    private String secret;
+
+    @Deprecated
+    @Tag(23)
+    String deprecated;
+
+    transient int ignored;
+
+    public String getSecret()
+    {
+        return secret;
+    }
+
+    public void setSecret(String secret)
+    {
+        this.secret = secret;
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+        if (!(obj instanceof Person))
+            return false;
+        Person o = (Person) obj;
+        return id == o.id && Objects.equals(name, o.name) && active == o.active
+                && b == o.b && c == o.c && s == o.s && l == o.l && f == o.f
+                && d == o.d && Objects.equals(boxedInt, o.boxedInt)
+                && Objects.equals(boxedLong, o.boxedLong)
+                && Objects.equals(bytes, o.bytes)
+                && Arrays.equals(byteArray, o.byteArray)
+                && Objects.equals(decimal, o.decimal)
+                && Objects.equals(integer, o.integer)
+                && Objects.equals(date, o.date) && color == o.color
+                && Objects.equals(address, o.address)
+                && Objects.equals(tags, o.tags)
+                && Objects.equals(addresses, o.addresses)
+                && Objects.equals(colors, o.colors)
+                && Objects.equals(friend, o.friend)
+                && Objects.equals(secret, o.secret);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return id;
+    }
+
+    /**
+     * Nested static pojo without a no-args constructor.
+     */
+    public static final class Entry
+    {
+        @Tag(1)
+        private String key;
+        @Tag(2)
+        List<Integer> values;
+
+        public Entry(String key)
+        {
+            this.key = key;
+        }
+
+        public String getKey()
+        {
+            return key;
+        }
+
+        public void setKey(String key)
+        {
+            this.key = key;
+        }
+    }
+
+    /**
+     * Maps are not supported, the RuntimeSchema is used.
+     */
+    public static final class WithMap
+    {
+        @Tag(1)
+        java.util.Map<String, String> map;
+    }
+}
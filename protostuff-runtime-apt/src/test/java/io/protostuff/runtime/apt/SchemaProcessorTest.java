@@ -0,0 +1,266 @@
+package io.protostuff.runtime.apt;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.EnumSet;
+
+import junit.framework.TestCase;
+
+import io.protostuff.ByteString;
+import io.protostuff.Input;
+import io.protostuff.LinkedBuffer;
+import io.protostuff.Output;
+import io.protostuff.Pipe;
+import io.protostuff.ProtobufIOUtil;
+import io.protostuff.ProtostuffIOUtil;
+import io.protostuff.Schema;
+import io.protostuff.WireFormat.FieldType;
+import io.protostuff.runtime.DefaultIdStrategy;
+import io.protostuff.runtime.Delegate;
+import io.protostuff.runtime.ProvidedSchema;
+import io.protostuff.runtime.RuntimeSchema;
+
+/**
+ * Compares the schemas generated by {@link SchemaProcessor} (on the test sources) with the {@link RuntimeSchema}.
+ */
+public class SchemaProcessorTest extends TestCase
+{
+
+    public static final class Holder
+    {
+        Object value;
+    }
+
+    /**
+     * Writes the date as its string form.
+     */
+    static final class DateDelegate implements Delegate<Date>
+    {
+        @Override
+        public FieldType getFieldType()
+        {
+            return FieldType.STRING;
+        }
+
+        @Override
+        public Date readFrom(Input input) throws IOException
+        {
+            return new Date(Long.parseLong(input.readString()));
+        }
+
+        @Override
+        public void writeTo(Output output, int number, Date value, boolean repeated)
+                throws IOException
+        {
+            output.writeString(number, String.valueOf(value.getTime()), repeated);
+        }
+
+        @Override
+        public void transfer(Pipe pipe, Input input, Output output, int number,
+                boolean repeated) throws IOException
+        {
+            input.transferByteRangeTo(output, true, number, repeated);
+        }
+
+        @Override
+        public Class<?> typeClass()
+        {
+            return Date.class;
+        }
+    }
+
+    /**
+     * Writes the color as its ordinal, shifted.
+     */
+    static final class ColorDelegate implements Delegate<Color>
+    {
+        @Override
+        public FieldType getFieldType()
+        {
+            return FieldType.SINT32;
+        }
+
+        @Override
+        public Color readFrom(Input input) throws IOException
+        {
+            return Color.values()[input.readSInt32() - 100];
+        }
+
+        @Override
+        public void writeTo(Output output, int number, Color value, boolean repeated)
+                throws IOException
+        {
+            output.writeSInt32(number, value.ordinal() + 100, repeated);
+        }
+
+        @Override
+        public void transfer(Pipe pipe, Input input, Output output, int number,
+                boolean repeated) throws IOException
+        {
+            output.writeSInt32(number, input.readSInt32(), repeated);
+        }
+
+        @Override
+        public Class<?> typeClass()
+        {
+            return Color.class;
+        }
+    }
+
+    static Person newPerson()
+    {
+        Person p = new Person();
+        p.id = 1;
+        p.name = "john";
+        p.active = true;
+        p.b = -2;
+        p.c = 'c';
+        p.s = 300;
+        p.l = -4000000000L;
+        p.f = 1.5f;
+        p.d = -2.25;
+        p.boxedInt = -1;
+        p.boxedLong = 7L;
+        p.bytes = ByteString.copyFromUtf8("bytes");
+        p.byteArray = new byte[] { 1, 2, 3 };
+        p.decimal = new BigDecimal("12.345");
+        p.integer = new BigInteger("-123456789012345678901234567890");
+        p.date = new Date(1234567890L);
+        p.color = Color.GREEN;
+        p.address = new Address("main", 1000);
+        p.tags = Arrays.asList("a", "b");
+        p.addresses = Arrays.asList(new Address("x", 1), new Address(null, 2));
+        p.colors = EnumSet.of(Color.RED, Color.BLUE);
+        p.setSecret("s3cr3t");
+        p.deprecated = "not serialized";
+
+        Person friend = new Person();
+        friend.id = 2;
+        friend.name = "jane";
+        p.friend = friend;
+        return p;
+    }
+
+    static <T> byte[] toProtostuff(T message, Schema<T> schema)
+    {
+        return ProtostuffIOUtil.toByteArray(message, schema, LinkedBuffer.allocate(256));
+    }
+
+    static <T> byte[] toProtobuf(T message, Schema<T> schema)
+    {
+        return ProtobufIOUtil.toByteArray(message, schema, LinkedBuffer.allocate(256));
+    }
+
+    public void testRegistered()
+    {
+        assertTrue(RuntimeSchema.getSchema(Person.class) instanceof PersonSchema);
+        assertTrue(RuntimeSchema.getSchema(Address.class) instanceof AddressSchema);
+        assertTrue(RuntimeSchema.getSchema(Person.Entry.class) instanceof Person_EntrySchema);
+        assertTrue(RuntimeSchema.getSchema(Person.WithMap.class) instanceof RuntimeSchema);
+    }
+
+    public void testSameWireFormat() throws Exception
+    {
+        Schema<Person> generated = RuntimeSchema.getSchema(Person.class);
+        Schema<Person> runtime = RuntimeSchema.createFrom(Person.class);
+
+        Person p = newPerson();
+        byte[] data = toProtostuff(p, generated);
+        assertTrue(Arrays.equals(toProtostuff(p, runtime), data));
+        assertTrue(Arrays.equals(toProtobuf(p, runtime), toProtobuf(p, generated)));
+        assertTrue(Arrays.equals(toProtobuf(p, runtime), ProtobufIOUtil.toByteArray(p, generated)));
+
+        Person parsed = generated.newMessage();
+        ProtostuffIOUtil.mergeFrom(toProtostuff(p, runtime), parsed, generated);
+        p.deprecated = null;
+        assertEquals(p, parsed);
+
+        Person parsedByRuntime = runtime.newMessage();
+        ProtostuffIOUtil.mergeFrom(data, parsedByRuntime, runtime);
+        assertEquals(p, parsedByRuntime);
+    }
+
+    public void testPipe() throws Exception
+    {
+        Schema<Person> generated = RuntimeSchema.getSchema(Person.class);
+        Schema<Person> runtime = RuntimeSchema.createFrom(Person.class);
+        Person p = newPerson();
+        byte[] data = toProtostuff(p, runtime);
+
+        byte[] piped = ProtobufIOUtil.toByteArray(ProtostuffIOUtil.newPipe(data),
+                ((ProvidedSchema<Person>) generated).getPipeSchema(), LinkedBuffer.allocate(256));
+        assertTrue(Arrays.equals(toProtobuf(p, runtime), piped));
+
+        // the polymorphic pipe uses the pipe schema of the generated schema
+        Schema<Holder> holderSchema = RuntimeSchema.getSchema(Holder.class);
+        Holder holder = new Holder();
+        holder.value = p;
+        byte[] pipedHolder = ProtobufIOUtil.toByteArray(
+                ProtostuffIOUtil.newPipe(toProtostuff(holder, holderSchema)),
+                ((RuntimeSchema<Holder>) holderSchema).getPipeSchema(), LinkedBuffer.allocate(256));
+        assertTrue(Arrays.equals(toProtobuf(holder, holderSchema), pipedHolder));
+    }
+
+    public void testFieldNames()
+    {
+        Schema<Person> generated = RuntimeSchema.getSchema(Person.class);
+        RuntimeSchema<Person> runtime = RuntimeSchema.createFrom(Person.class);
+
+        assertEquals(runtime.messageName(), generated.messageName());
+        assertEquals(runtime.messageFullName(), generated.messageFullName());
+        for (io.protostuff.runtime.Field<Person> f : runtime.getFields())
+        {
+            assertEquals(f.name, generated.getFieldName(f.number));
+            assertEquals(f.number, generated.getFieldNumber(f.name));
+        }
+        assertEquals("n", generated.getFieldName(2));
+        assertNull(generated.getFieldName(23));
+        assertEquals(0, generated.getFieldNumber("deprecated"));
+    }
+
+    public void testNoArgsConstructor() throws Exception
+    {
+        Schema<Person.Entry> generated = RuntimeSchema.getSchema(Person.Entry.class);
+        Schema<Person.Entry> runtime = RuntimeSchema.createFrom(Person.Entry.class);
+
+        Person.Entry entry = new Person.Entry("k");
+        entry.values = Arrays.asList(1, -1, 3);
+
+        byte[] data = toProtostuff(entry, generated);
+        assertTrue(Arrays.equals(toProtostuff(entry, runtime), data));
+
+        Person.Entry parsed = generated.newMessage();
+        ProtostuffIOUtil.mergeFrom(data, parsed, generated);
+        assertEquals("k", parsed.getKey());
+        assertEquals(entry.values, parsed.values);
+    }
+
+    public void testDelegates() throws Exception
+    {
+        DefaultIdStrategy strategy = new DefaultIdStrategy();
+        assertTrue(strategy.registerDelegate(new DateDelegate()));
+        assertTrue(strategy.registerDelegate(new ColorDelegate()));
+
+        // the date field, the color field and the elements of the colors set
+        Schema<Person> generated = new PersonSchema(strategy);
+        Schema<Person> runtime = RuntimeSchema.createFrom(Person.class, strategy);
+
+        Person p = newPerson();
+        byte[] data = toProtostuff(p, generated);
+        assertTrue(Arrays.equals(toProtostuff(p, runtime), data));
+        assertTrue(Arrays.equals(toProtobuf(p, runtime), toProtobuf(p, generated)));
+        assertFalse(Arrays.equals(toProtostuff(p, RuntimeSchema.createFrom(Person.class)), data));
+
+        Person parsed = generated.newMessage();
+        ProtostuffIOUtil.mergeFrom(data, parsed, generated);
+        p.deprecated = null;
+        assertEquals(p, parsed);
+
+        byte[] piped = ProtobufIOUtil.toByteArray(ProtostuffIOUtil.newPipe(data),
+                ((ProvidedSchema<Person>) generated).getPipeSchema(), LinkedBuffer.allocate(256));
+        assertTrue(Arrays.equals(toProtobuf(p, runtime), piped));
+    }
+}
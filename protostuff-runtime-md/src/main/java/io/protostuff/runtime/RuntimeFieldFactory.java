@@ -188,6 +188,15 @@ public abstract class RuntimeFieldFactory<V> implements Delegate<V>
         __inlineValues.put(Date.class.getName(), DATE);
     }
 
+    /**
+     * Returns the accessor of the field {@code f}, which goes through reflection like the fields created by the
+     * factories above.
+     */
+    static FieldAccessor accessor(java.lang.reflect.Field f)
+    {
+        return new RuntimeReflectionFieldFactory.ReflectionFieldAccessor(f);
+    }
+
     /**
      * Gets the runtime field factory of the given {@code clazz}.
      * <p>
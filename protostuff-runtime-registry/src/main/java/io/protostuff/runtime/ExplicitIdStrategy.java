@@ -293,6 +293,27 @@ public final class ExplicitIdStrategy extends NumericIdStrategy
             return this;
         }
 
+        /**
+         * Registers the schemas supplied by the {@code provider}, assigning consecutive ids starting at
+         * {@code firstId} in the order the schemas are returned. Keep the provider's types stable (or register them
+         * individually) if the ids need to stay compatible across versions.
+         * <p>
+         * Pojo ids start at 1.
+         */
+        @SuppressWarnings("unchecked")
+        public Registry registerPojos(SchemaProvider provider, int firstId)
+        {
+            int id = firstId;
+            for (Schema<?> s : provider.getSchemas(strategy))
+            {
+                final Schema<Object> schema = (Schema<Object>) s;
+                registerPojo(schema, RuntimeSchema.resolvePipeSchema(schema,
+                        schema.typeClass(), true), id++);
+            }
+
+            return this;
+        }
+
         /**
          * If you are sure that you are only using a single implementation of your interface/abstract class, then it
          * makes sense to map it directly to its impl class to avoid writing the type.
@@ -365,6 +386,17 @@ public final class ExplicitIdStrategy extends NumericIdStrategy
 
     final ArrayList<RegisteredDelegate<?>> delegates;
 
+    // the lookups by class, so that the polymorphic writes skip the map lookup.
+    final ClassSlots pojoSlots = new ClassSlots(getClass().getClassLoader());
+
+    final ClassSlots enumSlots = new ClassSlots(getClass().getClassLoader());
+
+    final ClassSlots collectionSlots = new ClassSlots(getClass().getClassLoader());
+
+    final ClassSlots mapSlots = new ClassSlots(getClass().getClassLoader());
+
+    final ClassSlots delegateSlots = new ClassSlots(getClass().getClassLoader());
+
     public ExplicitIdStrategy(
             IdentityHashMap<Class<?>, RegisteredCollectionFactory> collectionMapping,
             ArrayList<RegisteredCollectionFactory> collections,
@@ -427,7 +459,7 @@ public final class ExplicitIdStrategy extends NumericIdStrategy
     @SuppressWarnings("unchecked")
     public <T> HasSchema<T> getSchemaWrapper(Class<T> typeClass, boolean create)
     {
-        final BaseHS<T> wrapper = (BaseHS<T>) pojoMapping.get(typeClass);
+        final BaseHS<T> wrapper = (BaseHS<T>) pojoSlots.lookup(pojoMapping, typeClass);
         if (wrapper == null && create)
             throw new UnknownTypeException("pojo: " + typeClass);
 
@@ -437,7 +469,7 @@ public final class ExplicitIdStrategy extends NumericIdStrategy
     @Override
     protected EnumIO<? extends Enum<?>> getEnumIO(Class<?> enumClass)
     {
-        final RegisteredEnumIO reio = enumMapping.get(enumClass);
+        final RegisteredEnumIO reio = enumSlots.lookup(enumMapping, enumClass);
         if (reio == null)
             throw new UnknownTypeException("enum: " + enumClass);
 
@@ -447,7 +479,7 @@ public final class ExplicitIdStrategy extends NumericIdStrategy
     @Override
     protected CollectionSchema.MessageFactory getCollectionFactory(Class<?> clazz)
     {
-        final RegisteredCollectionFactory rf = collectionMapping.get(clazz);
+        final RegisteredCollectionFactory rf = collectionSlots.lookup(collectionMapping, clazz);
         if (rf == null)
         {
             if (clazz.getName().startsWith("java.util"))
@@ -462,7 +494,7 @@ public final class ExplicitIdStrategy extends NumericIdStrategy
     @Override
     protected MapSchema.MessageFactory getMapFactory(Class<?> clazz)
     {
-        final RegisteredMapFactory rf = mapMapping.get(clazz);
+        final RegisteredMapFactory rf = mapSlots.lookup(mapMapping, clazz);
         if (rf == null)
         {
             if (clazz.getName().startsWith("java.util"))
@@ -478,7 +510,7 @@ public final class ExplicitIdStrategy extends NumericIdStrategy
     protected void writeCollectionIdTo(Output output, int fieldNumber, Class<?> clazz)
             throws IOException
     {
-        final RegisteredCollectionFactory factory = collectionMapping.get(clazz);
+        final RegisteredCollectionFactory factory = collectionSlots.lookup(collectionMapping, clazz);
         if (factory == null)
             throw new UnknownTypeException("collection: " + clazz);
 
@@ -510,7 +542,7 @@ public final class ExplicitIdStrategy extends NumericIdStrategy
     protected void writeMapIdTo(Output output, int fieldNumber, Class<?> clazz)
             throws IOException
     {
-        final RegisteredMapFactory factory = mapMapping.get(clazz);
+        final RegisteredMapFactory factory = mapSlots.lookup(mapMapping, clazz);
         if (factory == null)
             throw new UnknownTypeException("map: " + clazz);
 
@@ -541,7 +573,7 @@ public final class ExplicitIdStrategy extends NumericIdStrategy
     protected void writeEnumIdTo(Output output, int fieldNumber,
             Class<?> clazz) throws IOException
     {
-        final RegisteredEnumIO reio = enumMapping.get(clazz);
+        final RegisteredEnumIO reio = enumSlots.lookup(enumMapping, clazz);
         if (reio == null)
             throw new UnknownTypeException("enum: " + clazz);
 
@@ -577,7 +609,7 @@ public final class ExplicitIdStrategy extends NumericIdStrategy
     @SuppressWarnings("unchecked")
     public <T> Delegate<T> getDelegate(Class<? super T> typeClass)
     {
-        final RegisteredDelegate<T> rd = (RegisteredDelegate<T>) delegateMapping.get(
+        final RegisteredDelegate<T> rd = (RegisteredDelegate<T>) delegateSlots.lookup(delegateMapping,
                 typeClass);
 
         return rd == null ? null : rd.delegate;
@@ -587,7 +619,7 @@ public final class ExplicitIdStrategy extends NumericIdStrategy
     @SuppressWarnings("unchecked")
     public <T> HasDelegate<T> getDelegateWrapper(Class<? super T> typeClass)
     {
-        return (HasDelegate<T>) delegateMapping.get(typeClass);
+        return (HasDelegate<T>) delegateSlots.lookup(delegateMapping, typeClass);
     }
 
     @Override
@@ -595,7 +627,7 @@ public final class ExplicitIdStrategy extends NumericIdStrategy
     protected <T> HasDelegate<T> tryWriteDelegateIdTo(Output output, int fieldNumber,
             Class<T> clazz) throws IOException
     {
-        final RegisteredDelegate<T> rd = (RegisteredDelegate<T>) delegateMapping.get(
+        final RegisteredDelegate<T> rd = (RegisteredDelegate<T>) delegateSlots.lookup(delegateMapping,
                 clazz);
 
         if (rd == null)
@@ -642,7 +674,7 @@ public final class ExplicitIdStrategy extends NumericIdStrategy
     protected <T> HasSchema<T> writePojoIdTo(Output output, int fieldNumber, Class<T> clazz)
             throws IOException
     {
-        final BaseHS<T> wrapper = (BaseHS<T>) pojoMapping.get(clazz);
+        final BaseHS<T> wrapper = (BaseHS<T>) pojoSlots.lookup(pojoMapping, clazz);
         if (wrapper == null)
             throw new UnknownTypeException("pojo: " + clazz);
 
@@ -686,7 +718,7 @@ public final class ExplicitIdStrategy extends NumericIdStrategy
     protected <T> Schema<T> writeMessageIdTo(Output output, int fieldNumber,
             Message<T> message) throws IOException
     {
-        final BaseHS<T> wrapper = (BaseHS<T>) pojoMapping.get(message.getClass());
+        final BaseHS<T> wrapper = (BaseHS<T>) pojoSlots.lookup(pojoMapping, message.getClass());
 
         if (wrapper == null)
             throw new UnknownTypeException("pojo: " + message.getClass());
@@ -761,13 +793,13 @@ public final class ExplicitIdStrategy extends NumericIdStrategy
     @Override
     protected RegisteredDelegate<?> getRegisteredDelegate(Class<?> clazz)
     {
-        return delegateMapping.get(clazz);
+        return delegateSlots.lookup(delegateMapping, clazz);
     }
 
     @Override
     protected int getEnumId(Class<?> clazz)
     {
-        final RegisteredEnumIO reio = enumMapping.get(clazz);
+        final RegisteredEnumIO reio = enumSlots.lookup(enumMapping, clazz);
         if (reio == null)
             throw new UnknownTypeException("enum: " + clazz);
 
@@ -779,7 +811,7 @@ public final class ExplicitIdStrategy extends NumericIdStrategy
     {
         if (Message.class.isAssignableFrom(clazz))
         {
-            final BaseHS<?> wrapper = pojoMapping.get(clazz);
+            final BaseHS<?> wrapper = pojoSlots.lookup(pojoMapping, clazz);
             if (wrapper == null)
                 throw new UnknownTypeException("pojo: " + clazz);
 
@@ -792,7 +824,7 @@ public final class ExplicitIdStrategy extends NumericIdStrategy
         if (Collection.class.isAssignableFrom(clazz))
             return EnumSet.class.isAssignableFrom(clazz) ? CID_ENUM_SET : collectionId(clazz);
 
-        final BaseHS<?> wrapper = pojoMapping.get(clazz);
+        final BaseHS<?> wrapper = pojoSlots.lookup(pojoMapping, clazz);
         if (wrapper == null)
             throw new UnknownTypeException("pojo: " + clazz);
 
@@ -801,7 +833,7 @@ public final class ExplicitIdStrategy extends NumericIdStrategy
 
     private int collectionId(Class<?> clazz)
     {
-        final RegisteredCollectionFactory factory = collectionMapping.get(clazz);
+        final RegisteredCollectionFactory factory = collectionSlots.lookup(collectionMapping, clazz);
         if (factory == null)
             throw new UnknownTypeException("collection: " + clazz);
 
@@ -810,7 +842,7 @@ public final class ExplicitIdStrategy extends NumericIdStrategy
 
     private int mapId(Class<?> clazz)
     {
-        final RegisteredMapFactory factory = mapMapping.get(clazz);
+        final RegisteredMapFactory factory = mapSlots.lookup(mapMapping, clazz);
         if (factory == null)
             throw new UnknownTypeException("map: " + clazz);
 
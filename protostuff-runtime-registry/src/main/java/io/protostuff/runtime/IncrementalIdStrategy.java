@@ -369,6 +369,17 @@ public final class IncrementalIdStrategy extends NumericIdStrategy
 
     final ArrayList<RegisteredDelegate<?>> delegates;
 
+    // the lookups by class, so that the polymorphic writes skip the map lookup.
+    final ClassSlots pojoSlots = new ClassSlots(getClass().getClassLoader());
+
+    final ClassSlots enumSlots = new ClassSlots(getClass().getClassLoader());
+
+    final ClassSlots collectionSlots = new ClassSlots(getClass().getClassLoader());
+
+    final ClassSlots mapSlots = new ClassSlots(getClass().getClassLoader());
+
+    final ClassSlots delegateSlots = new ClassSlots(getClass().getClassLoader());
+
     final AtomicInteger pojoId, enumId, collectionId, mapId;
     final int pojoIdStart, enumIdStart, collectionIdStart, mapIdStart;
 
@@ -431,13 +442,13 @@ public final class IncrementalIdStrategy extends NumericIdStrategy
     @Override
     public boolean isRegistered(Class<?> typeClass)
     {
-        return pojoMapping.get(typeClass) instanceof Registered;
+        return pojoSlots.lookup(pojoMapping, typeClass) instanceof Registered;
     }
 
     @SuppressWarnings("unchecked")
     private <T> BaseHS<T> getBaseHS(Class<T> typeClass, boolean create)
     {
-        BaseHS<T> hs = (BaseHS<T>) pojoMapping.get(typeClass);
+        BaseHS<T> hs = (BaseHS<T>) pojoSlots.lookup(pojoMapping, typeClass);
         if (hs == null && create)
         {
             hs = new Lazy<>(typeClass, this);
@@ -466,7 +477,7 @@ public final class IncrementalIdStrategy extends NumericIdStrategy
 
     private RuntimeEnumIO getRuntimeEnumIO(Class<?> enumClass)
     {
-        RuntimeEnumIO reio = enumMapping.get(enumClass);
+        RuntimeEnumIO reio = enumSlots.lookup(enumMapping, enumClass);
         if (reio == null)
         {
             reio = new RuntimeEnumIO();
@@ -496,7 +507,7 @@ public final class IncrementalIdStrategy extends NumericIdStrategy
 
     private RuntimeCollectionFactory getRuntimeCollectionFactory(Class<?> clazz)
     {
-        RuntimeCollectionFactory rfactory = collectionMapping.get(clazz);
+        RuntimeCollectionFactory rfactory = collectionSlots.lookup(collectionMapping, clazz);
         if (rfactory == null)
         {
             rfactory = new RuntimeCollectionFactory();
@@ -536,7 +547,7 @@ public final class IncrementalIdStrategy extends NumericIdStrategy
 
     private RuntimeMapFactory getRuntimeMapFactory(Class<?> clazz)
     {
-        RuntimeMapFactory rfactory = mapMapping.get(clazz);
+        RuntimeMapFactory rfactory = mapSlots.lookup(mapMapping, clazz);
         if (rfactory == null)
         {
             rfactory = new RuntimeMapFactory();
@@ -686,7 +697,7 @@ public final class IncrementalIdStrategy extends NumericIdStrategy
     @SuppressWarnings("unchecked")
     public <T> Delegate<T> getDelegate(Class<? super T> typeClass)
     {
-        final RegisteredDelegate<T> rd = (RegisteredDelegate<T>) delegateMapping.get(
+        final RegisteredDelegate<T> rd = (RegisteredDelegate<T>) delegateSlots.lookup(delegateMapping,
                 typeClass);
 
         return rd == null ? null : rd.delegate;
@@ -696,7 +707,7 @@ public final class IncrementalIdStrategy extends NumericIdStrategy
     @SuppressWarnings("unchecked")
     public <T> HasDelegate<T> getDelegateWrapper(Class<? super T> typeClass)
     {
-        return (HasDelegate<T>) delegateMapping.get(typeClass);
+        return (HasDelegate<T>) delegateSlots.lookup(delegateMapping, typeClass);
     }
 
     @Override
@@ -704,7 +715,7 @@ public final class IncrementalIdStrategy extends NumericIdStrategy
     protected <T> HasDelegate<T> tryWriteDelegateIdTo(Output output, int fieldNumber,
             Class<T> clazz) throws IOException
     {
-        final RegisteredDelegate<T> rd = (RegisteredDelegate<T>) delegateMapping.get(
+        final RegisteredDelegate<T> rd = (RegisteredDelegate<T>) delegateSlots.lookup(delegateMapping,
                 clazz);
 
         if (rd == null)
@@ -860,7 +871,7 @@ public final class IncrementalIdStrategy extends NumericIdStrategy
     @Override
     protected RegisteredDelegate<?> getRegisteredDelegate(Class<?> clazz)
     {
-        return delegateMapping.get(clazz);
+        return delegateSlots.lookup(delegateMapping, clazz);
     }
 
     @Override
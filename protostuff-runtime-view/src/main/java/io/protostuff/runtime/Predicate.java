@@ -34,6 +34,14 @@ public interface Predicate
      */
     public boolean apply(Field<?> f, Object message);
 
+    /**
+     * A predicate that does not depend on the contents of the message ({@link #apply(Field, Object)} returns the same
+     * as {@link #apply(Field)}), which allows the view schemas to apply it only once.
+     */
+    public interface Static extends Predicate
+    {
+    }
+
     public interface Factory
     {
         /**
@@ -45,7 +53,7 @@ public interface Predicate
     /**
      * A predicate that includes only a single field with the provided number.
      */
-    public static final class EQ implements Predicate, Predicate.Factory
+    public static final class EQ implements Predicate.Static, Predicate.Factory
     {
         final int num;
 
@@ -77,7 +85,7 @@ public interface Predicate
     /**
      * A predicate that includes all fields except the provided number.
      */
-    public static final class NOTEQ implements Predicate, Predicate.Factory
+    public static final class NOTEQ implements Predicate.Static, Predicate.Factory
     {
         final int num;
 
@@ -109,7 +117,7 @@ public interface Predicate
     /**
      * A predicate that includes fields that are greater than the provider number.
      */
-    public static final class GT implements Predicate, Predicate.Factory
+    public static final class GT implements Predicate.Static, Predicate.Factory
     {
         final int num;
 
@@ -141,7 +149,7 @@ public interface Predicate
     /**
      * A predicate that includes fields that are lesser than the provider number.
      */
-    public static final class LT implements Predicate, Predicate.Factory
+    public static final class LT implements Predicate.Static, Predicate.Factory
     {
         final int num;
 
@@ -173,7 +181,7 @@ public interface Predicate
     /**
      * A predicate that includes fields if they are within range of the provided numbers, min and max.
      */
-    public static final class RANGE implements Predicate, Predicate.Factory
+    public static final class RANGE implements Predicate.Static, Predicate.Factory
     {
         final int min, max;
 
@@ -206,7 +214,7 @@ public interface Predicate
     /**
      * The opposite of {@link RANGE}.
      */
-    public static final class NOTRANGE implements Predicate, Predicate.Factory
+    public static final class NOTRANGE implements Predicate.Static, Predicate.Factory
     {
         final int min, max;
 
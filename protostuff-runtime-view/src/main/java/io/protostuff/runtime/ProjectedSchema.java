@@ -0,0 +1,546 @@
+package io.protostuff.runtime;
+
+import java.io.IOException;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import io.protostuff.FilterInput;
+import io.protostuff.FilterOutput;
+import io.protostuff.GraphInput;
+import io.protostuff.Input;
+import io.protostuff.Output;
+import io.protostuff.PackedInput;
+import io.protostuff.PackedOutput;
+import io.protostuff.Schema;
+import io.protostuff.StatefulOutput;
+import io.protostuff.StringCache;
+import io.protostuff.StringCacheInput;
+import io.protostuff.TypeDictionary;
+import io.protostuff.TypeDictionaryInput;
+import io.protostuff.TypeDictionaryOutput;
+import io.protostuff.WireFormat.FieldType;
+import io.protostuff.runtime.RuntimeEnv.Instantiator;
+import io.protostuff.runtime.RuntimePackedFieldFactory.ArrayField;
+import io.protostuff.runtime.RuntimePackedFieldFactory.PendingArrays;
+
+/**
+ * A view schema that includes the fields of dotted field paths (e.g "order.customer.id").
+ * <p>
+ * A field with nested paths is read and written with the projected schema of its message type (also applies to the
+ * elements of its collection/array/map), so that only the included nested fields are decoded.
+ */
+final class ProjectedSchema<T> extends RuntimeView.PostFilteredSchema<T>
+{
+
+    final RuntimeSchema<T> ms;
+
+    final RuntimeView.FieldNumberSet included;
+
+    final HashMap<String, Field<T>> fieldsByName = new HashMap<>();
+
+    // the fields with nested paths, and their projected schemas
+    final int[] nestedNumbers;
+    final ProjectedSchema<?>[] nestedSchemas;
+
+    /**
+     * The {@link ProjectingSchema}s of the (e.g collection and map) schemas whose nested messages are of this
+     * projection, copied on write. Kept so that a text output sees the same schema for each element.
+     */
+    private volatile ProjectingSchema<?>[] projecting = new ProjectingSchema<?>[0];
+
+    ProjectedSchema(RuntimeSchema<T> ms, Instantiator<T> instantiator,
+            Field<T>[] fields, int[] nestedNumbers, ProjectedSchema<?>[] nestedSchemas)
+    {
+        super(ms.typeClass(), instantiator, fields);
+        this.ms = ms;
+        this.nestedNumbers = nestedNumbers;
+        this.nestedSchemas = nestedSchemas;
+
+        included = new RuntimeView.FieldNumberSet(fields);
+        for (Field<T> field : fields)
+            fieldsByName.put(field.name, field);
+    }
+
+    /**
+     * Creates a projected schema from the paths. The schemas of the nested message types are obtained from the
+     * {@code strategy}.
+     */
+    static <T> ProjectedSchema<T> create(RuntimeSchema<T> ms, Instantiator<T> instantiator,
+            Collection<String> paths, IdStrategy strategy)
+    {
+        return create(ms, instantiator, paths, strategy,
+                new HashMap<Class<?>, Map<String, ProjectedSchema<?>>>());
+    }
+
+    /**
+     * Creates a projected schema from the paths, sharing the nested projections (of the same type and paths) created
+     * for the same root in {@code created}.
+     */
+    private static <T> ProjectedSchema<T> create(RuntimeSchema<T> ms, Instantiator<T> instantiator,
+            Collection<String> paths, IdStrategy strategy,
+            Map<Class<?>, Map<String, ProjectedSchema<?>>> created)
+    {
+        if (paths == null || paths.isEmpty())
+            throw new IllegalArgumentException("You must provide at least 1 field path to include.");
+
+        // the first name of the path, and the rest
+        final Set<String> whole = new TreeSet<>();
+        final TreeMap<String, Set<String>> nested = new TreeMap<>();
+        for (String path : paths)
+        {
+            final int dot = path.indexOf('.');
+            if (dot == -1)
+            {
+                checkName(ms, path, path);
+                whole.add(path);
+                continue;
+            }
+
+            final String name = path.substring(0, dot);
+            checkName(ms, name, path);
+
+            Set<String> rest = nested.get(name);
+            if (rest == null)
+                nested.put(name, rest = new TreeSet<>());
+
+            rest.add(path.substring(dot + 1));
+        }
+
+        final ArrayList<Field<T>> fields = new ArrayList<>();
+        final ArrayList<Field<T>> nestedFields = new ArrayList<>();
+        final ArrayList<ProjectedSchema<?>> nestedSchemas = new ArrayList<>();
+        for (Field<T> field : ms.getFields())
+        {
+            if (whole.contains(field.name))
+                fields.add(field);
+            else if (nested.containsKey(field.name))
+            {
+                fields.add(field);
+                nestedFields.add(field);
+                nestedSchemas.add(getProjection(messageTypeOf(ms.typeClass(), field),
+                        nested.get(field.name), strategy, created));
+            }
+        }
+
+        final int[] nestedNumbers = new int[nestedFields.size()];
+        for (int i = 0; i < nestedNumbers.length; i++)
+            nestedNumbers[i] = nestedFields.get(i).number;
+
+        @SuppressWarnings("unchecked")
+        final Field<T>[] array = fields.toArray((Field<T>[]) new Field<?>[fields.size()]);
+        return new ProjectedSchema<>(ms, instantiator, array, nestedNumbers,
+                nestedSchemas.toArray(new ProjectedSchema<?>[nestedSchemas.size()]));
+    }
+
+    /**
+     * Returns the projected schema of the (runtime) message type, created once per root projection (the
+     * {@code created} map is not shared).
+     */
+    static <T> ProjectedSchema<T> getProjection(Class<T> typeClass, Set<String> paths,
+            IdStrategy strategy, Map<Class<?>, Map<String, ProjectedSchema<?>>> created)
+    {
+        final Schema<T> schema = RuntimeSchema.getSchema(typeClass, strategy);
+        if (!(schema instanceof RuntimeSchema))
+        {
+            throw new IllegalArgumentException("Cannot project " + typeClass.getName()
+                    + " since its schema is not a RuntimeSchema.");
+        }
+
+        // the paths are sorted and unique, which makes a stable key
+        final String key = paths.toString();
+
+        Map<String, ProjectedSchema<?>> projections = created.get(typeClass);
+        if (projections == null)
+            created.put(typeClass, projections = new HashMap<>());
+
+        @SuppressWarnings("unchecked")
+        ProjectedSchema<T> projection = (ProjectedSchema<T>) projections.get(key);
+        if (projection == null)
+        {
+            final RuntimeSchema<T> rs = (RuntimeSchema<T>) schema;
+            projection = create(rs, rs.instantiator, paths, strategy, created);
+            projections.put(key, projection);
+        }
+        return projection;
+    }
+
+    private static void checkName(RuntimeSchema<?> ms, String name, String path)
+    {
+        if (name.isEmpty())
+            throw new IllegalArgumentException("Invalid field path: " + path);
+
+        if (ms.getFieldByName(name) == null)
+        {
+            throw new IllegalArgumentException("The field " + ms.typeClass().getName() + "."
+                    + name + " (of the path " + path + ") does not exist.");
+        }
+    }
+
+    /**
+     * Returns the message type of the field, or the type of the elements of its collection/array/map (values).
+     */
+    static Class<?> messageTypeOf(Class<?> typeClass, Field<?> field)
+    {
+        final java.lang.reflect.Field f = findField(typeClass, field.name);
+        Class<?> type = f == null ? null : f.getType();
+        if (type != null && type.isArray())
+            type = type.getComponentType();
+        else if (type != null && Collection.class.isAssignableFrom(type))
+            type = typeArgument(f, 0);
+        else if (type != null && Map.class.isAssignableFrom(type))
+            type = typeArgument(f, 1);
+
+        if (field.type != FieldType.MESSAGE || type == null || type == Object.class
+                || type.isInterface() || Modifier.isAbstract(type.getModifiers())
+                || type.isArray() || type.isEnum())
+        {
+            throw new IllegalArgumentException("The field " + typeClass.getName() + "."
+                    + field.name + " is not a (non-polymorphic) message that can be projected.");
+        }
+
+        return type;
+    }
+
+    private static java.lang.reflect.Field findField(Class<?> typeClass, String name)
+    {
+        for (Class<?> c = typeClass; c != null && c != Object.class; c = c.getSuperclass())
+        {
+            for (java.lang.reflect.Field f : c.getDeclaredFields())
+            {
+                final io.protostuff.Tag tag = f.getAnnotation(io.protostuff.Tag.class);
+                if (tag != null && !tag.alias().isEmpty() ? tag.alias().equals(name)
+                        : f.getName().equals(name))
+                {
+                    return f;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static Class<?> typeArgument(java.lang.reflect.Field f, int index)
+    {
+        final Type type = f.getGenericType();
+        if (!(type instanceof ParameterizedType))
+            return null;
+
+        final Type arg = ((ParameterizedType) type).getActualTypeArguments()[index];
+        return arg instanceof Class ? (Class<?>) arg : null;
+    }
+
+    /**
+     * Returns the {@link ProjectingSchema} of the {@code schema} whose nested messages are of this projection,
+     * created once.
+     */
+    @SuppressWarnings("unchecked")
+    <V> Schema<V> projecting(Schema<V> schema)
+    {
+        for (ProjectingSchema<?> ps : projecting)
+        {
+            if (ps.schema == schema)
+                return (Schema<V>) ps;
+        }
+        return addProjecting(schema);
+    }
+
+    @SuppressWarnings("unchecked")
+    private synchronized <V> Schema<V> addProjecting(Schema<V> schema)
+    {
+        final ProjectingSchema<?>[] projecting = this.projecting;
+        for (ProjectingSchema<?> ps : projecting)
+        {
+            if (ps.schema == schema)
+                return (Schema<V>) ps;
+        }
+
+        final ProjectingSchema<V> ps = new ProjectingSchema<>(schema, this);
+        final ProjectingSchema<?>[] copy = Arrays.copyOf(projecting, projecting.length + 1);
+        copy[projecting.length] = ps;
+        this.projecting = copy;
+        return ps;
+    }
+
+    private ProjectedSchema<?> nestedSchema(int number)
+    {
+        for (int i = 0; i < nestedNumbers.length; i++)
+        {
+            if (nestedNumbers[i] == number)
+                return nestedSchemas[i];
+        }
+        return null;
+    }
+
+    @Override
+    public int getFieldNumber(String name)
+    {
+        final Field<T> field = fieldsByName.get(name);
+        return field == null ? 0 : field.number;
+    }
+
+    @Override
+    public String getFieldName(int number)
+    {
+        // only called during writes
+        final Field<T> field = ms.getFieldByNumber(number);
+        return field == null ? null : field.name;
+    }
+
+    @Override
+    public void mergeFrom(Input input, T message) throws IOException
+    {
+        PendingArrays<T> pending = null;
+        for (int number = input.readFieldNumber(this); number != 0;
+                number = input.readFieldNumber(this))
+        {
+            if (!included.contains(number))
+            {
+                input.handleUnknownField(number, this);
+                continue;
+            }
+
+            final Field<T> field = ms.getFieldByNumber(number);
+            final ProjectedSchema<?> nested = nestedNumbers.length == 0 ? null
+                    : nestedSchema(number);
+            if (nested != null)
+                field.mergeFrom(new ProjectingInput(input, nested), message);
+            else if (field instanceof ArrayField)
+                pending = PendingArrays.mergeFrom(input, (ArrayField<T>) field, pending);
+            else
+                field.mergeFrom(input, message);
+        }
+
+        if (pending != null)
+            pending.flush(message);
+    }
+
+    @Override
+    public void writeTo(Output output, T message) throws IOException
+    {
+        for (Field<T> f : fields)
+        {
+            final ProjectedSchema<?> nested = nestedNumbers.length == 0 ? null
+                    : nestedSchema(f.number);
+            if (nested == null)
+                f.writeTo(output, message);
+            else
+                f.writeTo(ProjectingOutput.wrap(output, nested), message);
+        }
+    }
+
+    /**
+     * Reads the nested messages of the projected type with the projected schema. The other messages (e.g collections
+     * and maps) are read with a {@link ProjectingSchema} so that their own nested messages are projected.
+     */
+    static final class ProjectingInput extends FilterInput<Input>
+            implements GraphInput, PackedInput, StringCacheInput, TypeDictionaryInput
+    {
+        final ProjectedSchema<?> projected;
+
+        ProjectingInput(Input input, ProjectedSchema<?> projected)
+        {
+            super(input);
+            this.projected = projected;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <V> V mergeObject(V value, Schema<V> schema) throws IOException
+        {
+            if (schema.typeClass() == projected.typeClass)
+                return input.mergeObject(value, (Schema<V>) projected);
+
+            return input.mergeObject(value, projected.projecting(schema));
+        }
+
+        @Override
+        public void updateLast(Object morphedMessage, Object lastMessage)
+        {
+            if (input instanceof GraphInput)
+                ((GraphInput) input).updateLast(morphedMessage, lastMessage);
+        }
+
+        @Override
+        public boolean isCurrentMessageReference()
+        {
+            return input instanceof GraphInput
+                    && ((GraphInput) input).isCurrentMessageReference();
+        }
+
+        @Override
+        public boolean isCurrentFieldPacked()
+        {
+            return input instanceof PackedInput
+                    && ((PackedInput) input).isCurrentFieldPacked();
+        }
+
+        @Override
+        public String readString(StringCache cache) throws IOException
+        {
+            return input instanceof StringCacheInput ? ((StringCacheInput) input).readString(cache)
+                    : input.readString();
+        }
+
+        @Override
+        public TypeDictionary getTypeDictionary()
+        {
+            return input instanceof TypeDictionaryInput ? ((TypeDictionaryInput) input).getTypeDictionary()
+                    : null;
+        }
+    }
+
+    /**
+     * Writes the nested messages of the projected type with the projected schema.
+     */
+    static class ProjectingOutput extends FilterOutput<Output> implements StatefulOutput,
+            TypeDictionaryOutput
+    {
+        final ProjectedSchema<?> projected;
+
+        ProjectingOutput(Output output, ProjectedSchema<?> projected)
+        {
+            super(output);
+            this.projected = projected;
+        }
+
+        static Output wrap(Output output, ProjectedSchema<?> projected)
+        {
+            return output instanceof PackedOutput ? new Packed(output, projected)
+                    : new ProjectingOutput(output, projected);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <V> void writeObject(int fieldNumber, V value, Schema<V> schema,
+                boolean repeated) throws IOException
+        {
+            if (schema.typeClass() == projected.typeClass)
+                output.writeObject(fieldNumber, value, (Schema<V>) projected, repeated);
+            else
+                output.writeObject(fieldNumber, value, projected.projecting(schema), repeated);
+        }
+
+        @Override
+        public void updateLast(Schema<?> schema, Schema<?> lastSchema)
+        {
+            if (output instanceof StatefulOutput)
+                ((StatefulOutput) output).updateLast(schema, lastSchema);
+        }
+
+        @Override
+        public TypeDictionary getTypeDictionary()
+        {
+            return output instanceof TypeDictionaryOutput ? ((TypeDictionaryOutput) output).getTypeDictionary()
+                    : null;
+        }
+
+        static final class Packed extends ProjectingOutput implements PackedOutput
+        {
+            Packed(Output output, ProjectedSchema<?> projected)
+            {
+                super(output, projected);
+            }
+
+            @Override
+            public void writePackedLength(int fieldNumber, int length) throws IOException
+            {
+                ((PackedOutput) output).writePackedLength(fieldNumber, length);
+            }
+
+            @Override
+            public void writePackedVarInt64(long value) throws IOException
+            {
+                ((PackedOutput) output).writePackedVarInt64(value);
+            }
+
+            @Override
+            public void writePackedFixed32(int value) throws IOException
+            {
+                ((PackedOutput) output).writePackedFixed32(value);
+            }
+
+            @Override
+            public void writePackedFixed64(long value) throws IOException
+            {
+                ((PackedOutput) output).writePackedFixed64(value);
+            }
+        }
+    }
+
+    /**
+     * Delegates to a schema (e.g of a collection) whose nested messages are projected.
+     */
+    static final class ProjectingSchema<V> implements Schema<V>
+    {
+        final Schema<V> schema;
+        final ProjectedSchema<?> projected;
+
+        ProjectingSchema(Schema<V> schema, ProjectedSchema<?> projected)
+        {
+            this.schema = schema;
+            this.projected = projected;
+        }
+
+        @Override
+        public String getFieldName(int number)
+        {
+            return schema.getFieldName(number);
+        }
+
+        @Override
+        public int getFieldNumber(String name)
+        {
+            return schema.getFieldNumber(name);
+        }
+
+        @Override
+        public boolean isInitialized(V message)
+        {
+            return schema.isInitialized(message);
+        }
+
+        @Override
+        public V newMessage()
+        {
+            return schema.newMessage();
+        }
+
+        @Override
+        public String messageName()
+        {
+            return schema.messageName();
+        }
+
+        @Override
+        public String messageFullName()
+        {
+            return schema.messageFullName();
+        }
+
+        @Override
+        public Class<? super V> typeClass()
+        {
+            return schema.typeClass();
+        }
+
+        @Override
+        public void mergeFrom(Input input, V message) throws IOException
+        {
+            schema.mergeFrom(new ProjectingInput(input, projected), message);
+        }
+
+        @Override
+        public void writeTo(Output output, V message) throws IOException
+        {
+            schema.writeTo(ProjectingOutput.wrap(output, projected), message);
+        }
+    }
+}
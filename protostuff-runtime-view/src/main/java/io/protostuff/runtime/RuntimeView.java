@@ -15,12 +15,15 @@
 package io.protostuff.runtime;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
 
 import io.protostuff.Input;
 import io.protostuff.Output;
@@ -165,6 +168,8 @@ public final class RuntimeView
                     throw new IllegalArgumentException("Predicate.Factory arg must not be null.");
 
                 final Predicate predicate = pf.create(args);
+                if (predicate instanceof Predicate.Static)
+                    return createStatic(ms, instantiator, predicate);
 
                 return new BaseSchema<T>(ms.typeClass(), instantiator)
                 {
@@ -236,6 +241,8 @@ public final class RuntimeView
                     fields[i++] = field;
                 }
 
+                final FieldNumberSet included = new FieldNumberSet(fields);
+
                 return new PostFilteredSchema<T>(ms.typeClass(), instantiator, fields)
                 {
                     @Override
@@ -251,12 +258,10 @@ public final class RuntimeView
                         for (int number = input.readFieldNumber(this); number != 0;
                         number = input.readFieldNumber(this))
                         {
-                            final Field<T> field = ms.getFieldByNumber(number);
-
-                            if (field == null || !fieldsByName.containsKey(field.name))
+                            if (!included.contains(number))
                                 input.handleUnknownField(number, this);
                             else
-                                field.mergeFrom(input, message);
+                                ms.getFieldByNumber(number).mergeFrom(input, message);
                         }
                     }
 
@@ -313,6 +318,8 @@ public final class RuntimeView
                     fields[i++] = field;
                 }
 
+                final FieldNumberSet included = new FieldNumberSet(fields);
+
                 return new PostFilteredSchema<T>(ms.typeClass(), instantiator, fields)
                 {
                     @Override
@@ -328,12 +335,10 @@ public final class RuntimeView
                         for (int number = input.readFieldNumber(this); number != 0;
                         number = input.readFieldNumber(this))
                         {
-                            final Field<T> field = ms.getFieldByNumber(number);
-
-                            if (field == null || !fieldsByName.containsKey(field.name))
+                            if (!included.contains(number))
                                 input.handleUnknownField(number, this);
                             else
-                                field.mergeFrom(input, message);
+                                ms.getFieldByNumber(number).mergeFrom(input, message);
                         }
                     }
 
@@ -365,7 +370,159 @@ public final class RuntimeView
 			{
 				return INCLUDE.create(ms, instantiator, pf, args);
 			}
-		};
+		},
+
+        /**
+         * Include the fields of the dotted field paths (e.g "order.customer.id") for merging and writing.
+         * <p>
+         * The args param is required (the field paths to include). A field with nested paths (a message, or a
+         * collection/array/map of messages) is read and written with a projected schema of its message type, which
+         * only includes the nested fields.
+         */
+        PROJECTION
+        {
+            @Override
+            public <T> Schema<T> create(RuntimeSchema<T> ms, Instantiator<T> instantiator,
+                    Predicate.Factory pf, String[] args)
+            {
+                return ProjectedSchema.create(ms, instantiator,
+                        args == null ? null : Arrays.asList(args), RuntimeEnv.ID_STRATEGY);
+            }
+        };
+    }
+
+    /**
+     * Returns a new view schema of the {@link RuntimeSchema} of the {@code typeClass} (from the default
+     * {@link IdStrategy}) that only includes the fields of the dotted field paths (e.g "order.customer.id").
+     * 
+     * @see #getProjection(Class, IdStrategy, String...)
+     */
+    public static <T> Schema<T> getProjection(Class<T> typeClass, String... paths)
+    {
+        return getProjection(typeClass, RuntimeEnv.ID_STRATEGY, paths);
+    }
+
+    /**
+     * Returns a new view schema of the {@link RuntimeSchema} of the {@code typeClass} (and of its nested message
+     * types) from the {@code strategy}, that only includes the fields of the dotted field paths (e.g
+     * "order.customer.id").
+     * <p>
+     * The schema is not cached (like the other view schemas, the caller keeps it).
+     * 
+     * @throws IllegalArgumentException
+     *             if a path names a field that does not exist, or goes through a field that is not a message.
+     * @see Factories#PROJECTION
+     */
+    public static <T> Schema<T> getProjection(Class<T> typeClass, IdStrategy strategy,
+            String... paths)
+    {
+        if (paths == null || paths.length == 0)
+            throw new IllegalArgumentException("You must provide at least 1 field path to include.");
+
+        final TreeSet<String> sorted = new TreeSet<>();
+        Collections.addAll(sorted, paths);
+        return ProjectedSchema.getProjection(typeClass, sorted, strategy,
+                new HashMap<Class<?>, Map<String, ProjectedSchema<?>>>());
+    }
+
+    /**
+     * The numbers of the included fields (a bitset if the numbers are not too sparse).
+     */
+    static final class FieldNumberSet
+    {
+        static final int MAX_BITSET_NUMBER = 0xFFFF;
+
+        final long[] bits;
+        final int[] numbers;
+
+        FieldNumberSet(Field<?>[] fields)
+        {
+            int max = 0;
+            for (Field<?> field : fields)
+                max = Math.max(field.number, max);
+
+            if (max <= MAX_BITSET_NUMBER)
+            {
+                bits = new long[(max >>> 6) + 1];
+                numbers = null;
+                for (Field<?> field : fields)
+                    bits[field.number >>> 6] |= 1L << field.number;
+            }
+            else
+            {
+                bits = null;
+                numbers = new int[fields.length];
+                for (int i = 0; i < fields.length; i++)
+                    numbers[i] = fields[i].number;
+
+                Arrays.sort(numbers);
+            }
+        }
+
+        boolean contains(int number)
+        {
+            if (bits == null)
+                return Arrays.binarySearch(numbers, number) >= 0;
+
+            final int index = number >>> 6;
+            return index < bits.length && (bits[index] & (1L << number)) != 0;
+        }
+    }
+
+    /**
+     * Creates a view schema with the fields included by a {@link Predicate.Static}, which is applied once.
+     */
+    static <T> Schema<T> createStatic(final RuntimeSchema<T> ms, Instantiator<T> instantiator,
+            Predicate predicate)
+    {
+        final ArrayList<Field<T>> included = new ArrayList<>();
+        for (Field<T> field : ms.getFields())
+        {
+            if (predicate.apply(field))
+                included.add(field);
+        }
+
+        @SuppressWarnings("unchecked")
+        final Field<T>[] fields = included.toArray((Field<T>[]) new Field<?>[included.size()]);
+        final FieldNumberSet numbers = new FieldNumberSet(fields);
+
+        return new PostFilteredSchema<T>(ms.typeClass(), instantiator, fields)
+        {
+            @Override
+            public int getFieldNumber(String name)
+            {
+                final Field<T> field = ms.getFieldByName(name);
+                return field != null && numbers.contains(field.number) ? field.number : 0;
+            }
+
+            @Override
+            public void mergeFrom(Input input, T message) throws IOException
+            {
+                for (int number = input.readFieldNumber(this); number != 0;
+                number = input.readFieldNumber(this))
+                {
+                    if (!numbers.contains(number))
+                        input.handleUnknownField(number, this);
+                    else
+                        ms.getFieldByNumber(number).mergeFrom(input, message);
+                }
+            }
+
+            @Override
+            public String getFieldName(int number)
+            {
+                // only called during writes
+                final Field<T> field = ms.getFieldByNumber(number);
+                return field == null ? null : field.name;
+            }
+
+            @Override
+            public void writeTo(Output output, T message) throws IOException
+            {
+                for (Field<T> f : fields)
+                    f.writeTo(output, message);
+            }
+        };
     }
 
     static <T> HashMap<String, Field<T>> copyAndExclude(Class<? super T> typeClass,
@@ -14,7 +14,10 @@
 
 package io.protostuff.runtime;
 
+import java.util.Arrays;
+
 import io.protostuff.AbstractTest;
+import io.protostuff.ProtobufIOUtil;
 import io.protostuff.ProtostuffIOUtil;
 import io.protostuff.Schema;
 
@@ -209,4 +212,122 @@ public class RuntimeViewTest extends AbstractTest
         assertEquals(TIMESTAMP_LEN, len(RANGE(STR_FN_TIMESTAMP, STR_FN_TIMESTAMP)));
     }
 
+    public void testMergeStatic() throws Exception
+    {
+        final byte[] data = ser(rs());
+        final Schema<Baz> schema = RANGE(STR_FN_NAME, STR_FN_TIMESTAMP);
+        assertTrue(schema instanceof RuntimeView.PostFilteredSchema);
+
+        final Baz parsed = schema.newMessage();
+        ProtostuffIOUtil.mergeFrom(data, parsed, schema);
+        assertEquals(0, parsed.getId());
+        assertEquals(BAZ.getName(), parsed.getName());
+        assertEquals(0, schema.getFieldNumber("id"));
+        assertEquals(FN_NAME, schema.getFieldNumber("name"));
+    }
+
+    static HasHasBar newHasHasBar()
+    {
+        return new HasHasBar("hhb", new HasBar(1, "hb", SerializableObjects.bar));
+    }
+
+    public void testProjection() throws Exception
+    {
+        final Schema<HasHasBar> full = RuntimeSchema.getSchema(HasHasBar.class);
+        final byte[] data = ProtostuffIOUtil.toByteArray(newHasHasBar(), full, buf());
+
+        final Schema<HasHasBar> schema = RuntimeView.getProjection(HasHasBar.class,
+                "name", "hasBar.id", "hasBar.bar.someBaz.id");
+        // not cached
+        assertNotSame(schema, RuntimeView.getProjection(HasHasBar.class,
+                "hasBar.bar.someBaz.id", "name", "hasBar.id"));
+
+        final HasHasBar parsed = schema.newMessage();
+        ProtostuffIOUtil.mergeFrom(data, parsed, schema);
+        assertEquals("hhb", parsed.getName());
+        assertEquals(1, parsed.getHasBar().getId());
+        assertNull(parsed.getHasBar().getName());
+        assertEquals(0, parsed.getHasBar().getBar().getSomeInt());
+        assertNull(parsed.getHasBar().getBar().getSomeString());
+        assertEquals(SerializableObjects.baz.getId(),
+                parsed.getHasBar().getBar().getSomeBaz().getId());
+        assertNull(parsed.getHasBar().getBar().getSomeBaz().getName());
+
+        // writing the full message with the projection, then reading it fully
+        final HasHasBar written = full.newMessage();
+        ProtobufIOUtil.mergeFrom(ProtobufIOUtil.toByteArray(newHasHasBar(), schema, buf()),
+                written, full);
+        assertTrue(Arrays.equals(ProtostuffIOUtil.toByteArray(parsed, full, buf()),
+                ProtostuffIOUtil.toByteArray(written, full, buf())));
+    }
+
+    public void testProjectionOfCollection() throws Exception
+    {
+        final Schema<Foo> full = RuntimeSchema.getSchema(Foo.class);
+        final byte[] data = ProtobufIOUtil.toByteArray(SerializableObjects.foo, full, buf());
+
+        final Schema<Foo> schema = RuntimeView.createFrom(
+                (RuntimeSchema<Foo>) full, RuntimeView.Factories.PROJECTION, null,
+                "someInt", "someBar.someBaz.name", "someBar.someLong");
+
+        final Foo parsed = schema.newMessage();
+        ProtobufIOUtil.mergeFrom(data, parsed, schema);
+        assertEquals(SerializableObjects.foo.getSomeInt(), parsed.getSomeInt());
+        assertNull(parsed.getSomeString());
+        assertEquals(2, parsed.getSomeBar().size());
+        for (int i = 0; i < 2; i++)
+        {
+            final Bar expected = SerializableObjects.foo.getSomeBar().get(i);
+            final Bar bar = parsed.getSomeBar().get(i);
+            assertNull(bar.getSomeString());
+            assertEquals(expected.getSomeLong(), bar.getSomeLong());
+            assertEquals(0, bar.getSomeBaz().getId());
+            assertEquals(expected.getSomeBaz().getName(), bar.getSomeBaz().getName());
+        }
+
+        // the schemas of e.g the nested collections and maps are wrapped once per projection
+        final ProjectedSchema<?> nested = ((ProjectedSchema<Foo>) schema).nestedSchemas[0];
+        final Schema<Baz> other = RuntimeSchema.getSchema(Baz.class);
+        assertSame(nested.projecting(other), nested.projecting(other));
+        assertNotSame(nested.projecting(other), ((ProjectedSchema<Foo>) RuntimeView.createFrom(
+                (RuntimeSchema<Foo>) full, RuntimeView.Factories.PROJECTION, null,
+                "someBar.someLong")).nestedSchemas[0].projecting(other));
+    }
+
+    public void testInvalidProjection()
+    {
+        try
+        {
+            RuntimeView.getProjection(HasHasBar.class, "name.length");
+            fail("Expected IllegalArgumentException");
+        }
+        catch (IllegalArgumentException e)
+        {
+            // expected
+        }
+
+        try
+        {
+            RuntimeView.getProjection(HasHasBar.class, "hasBar..id");
+            fail("Expected IllegalArgumentException");
+        }
+        catch (IllegalArgumentException e)
+        {
+            // expected
+        }
+        // unknown fields
+        for (String path : new String[] { "nope", "nope.id", "hasBar.nope" })
+        {
+            try
+            {
+                RuntimeView.getProjection(HasHasBar.class, "name", path);
+                fail("Expected IllegalArgumentException for " + path);
+            }
+            catch (IllegalArgumentException e)
+            {
+                // expected
+            }
+        }
+    }
+
 }
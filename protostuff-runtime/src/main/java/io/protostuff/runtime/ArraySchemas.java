@@ -318,6 +318,21 @@ public final class ArraySchemas
 
         protected abstract Object readFrom(Input input, Object owner)
                 throws IOException;
+
+        /**
+         * Returns the array of the {@code owner}'s field (to refill) if {@link RuntimeEnv#REUSE_ON_MERGE} is enabled
+         * and it has the {@code arrayClass} and {@code len} (the merge overwrites it, whether or not it was zeroed by a
+         * {@link RuntimeSchema#clear clear}). Otherwise null.
+         */
+        protected final Object getReusable(Object owner, Class<?> arrayClass, int len)
+        {
+            if (!RuntimeEnv.REUSE_ON_MERGE || !(handler instanceof RuntimeObjectField))
+                return null;
+
+            final Object existing = ((RuntimeObjectField<?>) handler).getValue(owner);
+            return existing != null && existing.getClass() == arrayClass
+                    && Array.getLength(existing) == len ? existing : null;
+        }
     }
 
     public static class BoolArray extends Base
@@ -374,7 +389,10 @@ public final class ArraySchemas
 
             if (primitive)
             {
-                boolean[] array = new boolean[len];
+                boolean[] array = (boolean[]) getReusable(owner, boolean[].class, len);
+                if (array == null)
+                    array = new boolean[len];
+
                 if (input instanceof GraphInput)
                 {
                     // update the actual reference.
@@ -520,7 +538,10 @@ public final class ArraySchemas
 
             if (primitive)
             {
-                char[] array = new char[len];
+                char[] array = (char[]) getReusable(owner, char[].class, len);
+                if (array == null)
+                    array = new char[len];
+
                 if (input instanceof GraphInput)
                 {
                     // update the actual reference.
@@ -666,7 +687,10 @@ public final class ArraySchemas
 
             if (primitive)
             {
-                short[] array = new short[len];
+                short[] array = (short[]) getReusable(owner, short[].class, len);
+                if (array == null)
+                    array = new short[len];
+
                 if (input instanceof GraphInput)
                 {
                     // update the actual reference.
@@ -812,7 +836,10 @@ public final class ArraySchemas
 
             if (primitive)
             {
-                int[] array = new int[len];
+                int[] array = (int[]) getReusable(owner, int[].class, len);
+                if (array == null)
+                    array = new int[len];
+
                 if (input instanceof GraphInput)
                 {
                     // update the actual reference.
@@ -958,7 +985,10 @@ public final class ArraySchemas
 
             if (primitive)
             {
-                long[] array = new long[len];
+                long[] array = (long[]) getReusable(owner, long[].class, len);
+                if (array == null)
+                    array = new long[len];
+
                 if (input instanceof GraphInput)
                 {
                     // update the actual reference.
@@ -1104,7 +1134,10 @@ public final class ArraySchemas
 
             if (primitive)
             {
-                float[] array = new float[len];
+                float[] array = (float[]) getReusable(owner, float[].class, len);
+                if (array == null)
+                    array = new float[len];
+
                 if (input instanceof GraphInput)
                 {
                     // update the actual reference.
@@ -1250,7 +1283,10 @@ public final class ArraySchemas
 
             if (primitive)
             {
-                double[] array = new double[len];
+                double[] array = (double[]) getReusable(owner, double[].class, len);
+                if (array == null)
+                    array = new double[len];
+
                 if (input instanceof GraphInput)
                 {
                     // update the actual reference.
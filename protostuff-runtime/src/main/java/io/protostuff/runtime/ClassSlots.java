@@ -0,0 +1,159 @@
+package io.protostuff.runtime;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * A mutable slot per class, filled on the first lookup of the class. Used by the id strategies to skip the map lookup
+ * of the polymorphic writes.
+ * <p>
+ * The slots are held by a {@link ClassValue}, which android only has since api 34. Without it, {@link #get} returns
+ * the shared {@link #UNCACHED} slot (always empty, writes through {@link Slot#set} are ignored), so the strategies
+ * fall back to their map lookups.
+ * <p>
+ * Only the classes of the strategy's class loader (or of its descendants) get a slot. A slot is stored in its class,
+ * and references the strategy through its value: in a class of a parent loader (e.g. a jdk class), it would keep the
+ * loader of a redeployed application from being unloaded. The other classes get the {@link #UNCACHED} slot.
+ */
+final class ClassSlots
+{
+
+    /**
+     * Cached for a class that has no mapping.
+     */
+    static final Object NONE = new Object();
+
+    /**
+     * True if {@code java.lang.ClassValue} is available (checked once).
+     */
+    static final boolean CLASS_VALUE_AVAILABLE;
+
+    static
+    {
+        boolean available;
+        try
+        {
+            Class.forName("java.lang.ClassValue");
+            available = true;
+        }
+        catch (Throwable e)
+        {
+            available = false;
+        }
+
+        CLASS_VALUE_AVAILABLE = available;
+    }
+
+    static final AtomicReferenceFieldUpdater<Slot, Object> VALUE =
+            AtomicReferenceFieldUpdater.newUpdater(Slot.class, Object.class, "value");
+
+    static class Slot
+    {
+        volatile Object value;
+
+        /**
+         * Caches the value looked up, unless a registration filled the slot meanwhile. Returns the value of the slot.
+         */
+        Object cache(Object value)
+        {
+            return VALUE.compareAndSet(this, null, value) ? value : this.value;
+        }
+
+        /**
+         * Fills the slot with a registered value, replacing whatever was cached.
+         */
+        void set(Object value)
+        {
+            this.value = value;
+        }
+    }
+
+    /**
+     * The slot of every class when {@code ClassValue} is not available. Never caches anything.
+     */
+    static final Slot UNCACHED = new Slot()
+    {
+        @Override
+        Object cache(Object value)
+        {
+            return value;
+        }
+
+        @Override
+        void set(Object value)
+        {
+            // shared by every class of every strategy
+        }
+    };
+
+    static final class Slots extends ClassValue<Slot>
+    {
+        @Override
+        protected Slot computeValue(Class<?> type)
+        {
+            return new Slot();
+        }
+    }
+
+    private final Slots slots;
+
+    private final ClassLoader loader;
+
+    /**
+     * Creates the slots of a strategy loaded by the {@code loader}.
+     */
+    ClassSlots(ClassLoader loader)
+    {
+        this(CLASS_VALUE_AVAILABLE, loader);
+    }
+
+    ClassSlots(boolean useClassValue, ClassLoader loader)
+    {
+        slots = useClassValue ? new Slots() : null;
+        this.loader = loader;
+    }
+
+    /**
+     * Returns the slot of the class (or {@link #UNCACHED} if {@code ClassValue} is not available or the class is not
+     * {@link #isLocal local}).
+     */
+    Slot get(Class<?> clazz)
+    {
+        return slots == null || !isLocal(clazz) ? UNCACHED : slots.get(clazz);
+    }
+
+    /**
+     * Returns true if the class is loaded by the loader of the strategy or by one of its descendants, i.e it does not
+     * outlive the strategy's loader.
+     */
+    boolean isLocal(Class<?> clazz)
+    {
+        ClassLoader l = clazz.getClassLoader();
+        if (l == loader || loader == null)
+            return true;
+
+        while (l != null)
+        {
+            l = l.getParent();
+            if (l == loader)
+                return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns the value of the class in the {@code mapping} (or null), caching it once present. Only for a mapping
+     * whose values are never replaced; a miss is not cached, so a later registration is seen.
+     */
+    @SuppressWarnings("unchecked")
+    <V> V lookup(Map<Class<?>, V> mapping, Class<?> clazz)
+    {
+        final Slot slot = get(clazz);
+        V value = (V) slot.value;
+        if (value == null && (value = mapping.get(clazz)) != null)
+            value = (V) slot.cache(value);
+
+        return value;
+    }
+}
@@ -13,6 +13,7 @@ import java.io.IOException;
 import java.lang.reflect.Modifier;
 import java.util.Collection;
 import java.util.Map;
+import java.util.ServiceLoader;
 import java.util.concurrent.ConcurrentHashMap;
 
 import io.protostuff.CollectionSchema;
@@ -23,6 +24,7 @@ import io.protostuff.Output;
 import io.protostuff.Pipe;
 import io.protostuff.ProtostuffException;
 import io.protostuff.Schema;
+import io.protostuff.TypeDictionary;
 
 /**
  * The FQCN(fully qualified class name) will serve as the id (string). Does not need any registration in the user-code
@@ -44,14 +46,36 @@ public final class DefaultIdStrategy extends IdStrategy
 
     final ConcurrentHashMap<String, HasDelegate<?>> delegateMapping = new ConcurrentHashMap<>();
 
+    // the lookups by class, so that the polymorphic writes skip hashing the class name.
+    final ClassSlots pojoSlots;
+
+    final ClassSlots enumSlots;
+
+    final ClassSlots collectionSlots;
+
+    final ClassSlots mapSlots;
+
+    final ClassSlots delegateSlots;
+
     public DefaultIdStrategy()
     {
-        super(null, 0);
+        this(null, 0);
     }
 
     public DefaultIdStrategy(IdStrategy primaryGroup, int groupId)
+    {
+        this(primaryGroup, groupId, ClassSlots.CLASS_VALUE_AVAILABLE);
+    }
+
+    DefaultIdStrategy(IdStrategy primaryGroup, int groupId, boolean useClassValue)
     {
         super(primaryGroup, groupId);
+        final ClassLoader loader = getClass().getClassLoader();
+        pojoSlots = new ClassSlots(useClassValue, loader);
+        enumSlots = new ClassSlots(useClassValue, loader);
+        collectionSlots = new ClassSlots(useClassValue, loader);
+        mapSlots = new ClassSlots(useClassValue, loader);
+        delegateSlots = new ClassSlots(useClassValue, loader);
     }
 
     /**
@@ -69,6 +93,42 @@ public final class DefaultIdStrategy extends IdStrategy
                 || (last instanceof Registered<?> && ((Registered<?>) last).schema == schema);
     }
 
+    /**
+     * Registers the schemas supplied by the {@code provider}. Returns the number of schemas registered (a schema is
+     * skipped if its type was already registered or resolved).
+     */
+    @SuppressWarnings("unchecked")
+    public int registerPojos(SchemaProvider provider)
+    {
+        int count = 0;
+        for (Schema<?> schema : provider.getSchemas(this))
+        {
+            if (registerPojo((Class<Object>) schema.typeClass(),
+                    (Schema<Object>) schema))
+            {
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Registers the schemas of every {@link SchemaProvider} listed in META-INF/services of the given class loader.
+     * Returns the number of schemas registered. Used by {@link RuntimeEnv#REGISTER_PROVIDED_SCHEMAS}.
+     */
+    public int registerProvidedSchemas(ClassLoader loader)
+    {
+        int count = 0;
+        for (SchemaProvider provider : ServiceLoader.load(SchemaProvider.class,
+                loader))
+        {
+            count += registerPojos(provider);
+        }
+
+        return count;
+    }
+
     /**
      * Registers an enum. Returns true if registration is successful.
      */
@@ -83,8 +143,16 @@ public final class DefaultIdStrategy extends IdStrategy
      */
     public <T> boolean registerDelegate(Delegate<T> delegate)
     {
-        return null == delegateMapping.putIfAbsent(delegate.typeClass()
-                .getName(), new HasDelegate<>(delegate));
+        final HasDelegate<T> hd = new HasDelegate<>(delegate);
+        if (null != delegateMapping.putIfAbsent(delegate.typeClass()
+                .getName(), hd))
+        {
+            return false;
+        }
+
+        // the slot may have cached the absence of the delegate
+        delegateSlots.get(delegate.typeClass()).set(hd);
+        return true;
     }
 
     /**
@@ -92,8 +160,15 @@ public final class DefaultIdStrategy extends IdStrategy
      */
     public boolean registerCollection(CollectionSchema.MessageFactory factory)
     {
-        return null == collectionMapping.putIfAbsent(factory.typeClass()
-                .getName(), factory);
+        if (null != collectionMapping.putIfAbsent(factory.typeClass()
+                .getName(), factory))
+        {
+            return false;
+        }
+
+        // the slot may have cached the jdk factory
+        collectionSlots.get(factory.typeClass()).set(factory);
+        return true;
     }
 
     /**
@@ -101,8 +176,15 @@ public final class DefaultIdStrategy extends IdStrategy
      */
     public boolean registerMap(MapSchema.MessageFactory factory)
     {
-        return null == mapMapping.putIfAbsent(factory.typeClass().getName(),
-                factory);
+        if (null != mapMapping.putIfAbsent(factory.typeClass().getName(),
+                factory))
+        {
+            return false;
+        }
+
+        // the slot may have cached the jdk factory
+        mapSlots.get(factory.typeClass()).set(factory);
+        return true;
     }
 
     /**
@@ -126,32 +208,64 @@ public final class DefaultIdStrategy extends IdStrategy
                 || (last instanceof Mapped<?> && ((Mapped<?>) last).typeClass == typeClass);
     }
 
+    /**
+     * Returns the delegate of the class (or null), caching it as well as its absence since a delegate is only added
+     * through {@link #registerDelegate(Delegate)}.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> HasDelegate<T> lookupDelegate(Class<?> typeClass)
+    {
+        final ClassSlots.Slot slot = delegateSlots.get(typeClass);
+        Object value = slot.value;
+        if (value == null)
+        {
+            final HasDelegate<?> hd = delegateMapping.get(typeClass.getName());
+            value = slot.cache(hd == null ? ClassSlots.NONE : hd);
+        }
+
+        return value == ClassSlots.NONE ? null : (HasDelegate<T>) value;
+    }
+
+    /**
+     * Returns the pojo mapping of the class (or null), caching it once present since a mapping is never replaced.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> HasSchema<T> lookupPojo(Class<?> typeClass)
+    {
+        final ClassSlots.Slot slot = pojoSlots.get(typeClass);
+        HasSchema<T> hs = (HasSchema<T>) slot.value;
+        if (hs == null
+                && (hs = (HasSchema<T>) pojoMapping.get(typeClass.getName())) != null)
+        {
+            hs = (HasSchema<T>) slot.cache(hs);
+        }
+
+        return hs;
+    }
+
     @Override
     public boolean isDelegateRegistered(Class<?> typeClass)
     {
-        return delegateMapping.containsKey(typeClass.getName());
+        return lookupDelegate(typeClass) != null;
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public <T> HasDelegate<T> getDelegateWrapper(Class<? super T> typeClass)
     {
-        return (HasDelegate<T>) delegateMapping.get(typeClass.getName());
+        return lookupDelegate(typeClass);
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public <T> Delegate<T> getDelegate(Class<? super T> typeClass)
     {
-        final HasDelegate<T> last = (HasDelegate<T>) delegateMapping
-                .get(typeClass.getName());
+        final HasDelegate<T> last = lookupDelegate(typeClass);
         return last == null ? null : last.delegate;
     }
 
     @Override
     public boolean isRegistered(Class<?> typeClass)
     {
-        final HasSchema<?> last = pojoMapping.get(typeClass.getName());
+        final HasSchema<?> last = lookupPojo(typeClass);
         return last != null && !(last instanceof Lazy<?>);
     }
 
@@ -180,7 +294,7 @@ public final class DefaultIdStrategy extends IdStrategy
     @SuppressWarnings("unchecked")
     public <T> HasSchema<T> getSchemaWrapper(Class<T> typeClass, boolean create)
     {
-        HasSchema<T> hs = (HasSchema<T>) pojoMapping.get(typeClass.getName());
+        HasSchema<T> hs = lookupPojo(typeClass);
         if (hs == null && create)
         {
             hs = new Lazy<>(typeClass, this);
@@ -188,6 +302,8 @@ public final class DefaultIdStrategy extends IdStrategy
                     typeClass.getName(), hs);
             if (last != null)
                 hs = last;
+
+            hs = (HasSchema<T>) pojoSlots.get(typeClass).cache(hs);
         }
 
         return hs;
@@ -217,7 +333,12 @@ public final class DefaultIdStrategy extends IdStrategy
     @Override
     protected EnumIO<? extends Enum<?>> getEnumIO(Class<?> enumClass)
     {
-        EnumIO<?> eio = enumMapping.get(enumClass.getName());
+        final ClassSlots.Slot slot = enumSlots.get(enumClass);
+        EnumIO<?> eio = (EnumIO<?>) slot.value;
+        if (eio != null)
+            return eio;
+
+        eio = enumMapping.get(enumClass.getName());
         if (eio == null)
         {
             eio = EnumIO.newEnumIO(enumClass);
@@ -228,16 +349,20 @@ public final class DefaultIdStrategy extends IdStrategy
                 eio = existing;
         }
 
-        return eio;
+        return (EnumIO<?>) slot.cache(eio);
     }
 
     @Override
     protected CollectionSchema.MessageFactory getCollectionFactory(
             Class<?> clazz)
     {
+        final ClassSlots.Slot slot = collectionSlots.get(clazz);
+        CollectionSchema.MessageFactory factory = (CollectionSchema.MessageFactory) slot.value;
+        if (factory != null)
+            return factory;
+
         final String className = clazz.getName();
-        CollectionSchema.MessageFactory factory = collectionMapping
-                .get(className);
+        factory = collectionMapping.get(className);
         if (factory == null)
         {
             if (className.startsWith("java.util"))
@@ -255,14 +380,19 @@ public final class DefaultIdStrategy extends IdStrategy
             }
         }
 
-        return factory;
+        return (CollectionSchema.MessageFactory) slot.cache(factory);
     }
 
     @Override
     protected MapSchema.MessageFactory getMapFactory(Class<?> clazz)
     {
+        final ClassSlots.Slot slot = mapSlots.get(clazz);
+        MapSchema.MessageFactory factory = (MapSchema.MessageFactory) slot.value;
+        if (factory != null)
+            return factory;
+
         final String className = clazz.getName();
-        MapSchema.MessageFactory factory = mapMapping.get(className);
+        factory = mapMapping.get(className);
         if (factory == null)
         {
             if (className.startsWith("java.util"))
@@ -280,7 +410,7 @@ public final class DefaultIdStrategy extends IdStrategy
             }
         }
 
-        return factory;
+        return (MapSchema.MessageFactory) slot.cache(factory);
     }
 
     @Override
@@ -294,11 +424,11 @@ public final class DefaultIdStrategy extends IdStrategy
             // jdk collection
             // better not to register the jdk collection if using this strategy
             // as it saves space by not writing the full package
-            output.writeString(fieldNumber, clazz.getSimpleName(), false);
+            TypeDictionary.writeTypeName(output, fieldNumber, clazz.getSimpleName());
         }
         else
         {
-            output.writeString(fieldNumber, clazz.getName(), false);
+            TypeDictionary.writeTypeName(output, fieldNumber, clazz.getName());
         }
     }
 
@@ -306,14 +436,14 @@ public final class DefaultIdStrategy extends IdStrategy
     protected void transferCollectionId(Input input, Output output,
             int fieldNumber) throws IOException
     {
-        input.transferByteRangeTo(output, true, fieldNumber, false);
+        TypeDictionary.transferTypeName(input, output, fieldNumber);
     }
 
     @Override
     protected CollectionSchema.MessageFactory resolveCollectionFrom(Input input)
             throws IOException
     {
-        final String className = input.readString();
+        final String className = TypeDictionary.readTypeName(input);
         CollectionSchema.MessageFactory factory = collectionMapping
                 .get(className);
         if (factory == null)
@@ -346,11 +476,11 @@ public final class DefaultIdStrategy extends IdStrategy
             // jdk map
             // better not to register the jdk map if using this strategy
             // as it saves space by not writing the full package
-            output.writeString(fieldNumber, clazz.getSimpleName(), false);
+            TypeDictionary.writeTypeName(output, fieldNumber, clazz.getSimpleName());
         }
         else
         {
-            output.writeString(fieldNumber, clazz.getName(), false);
+            TypeDictionary.writeTypeName(output, fieldNumber, clazz.getName());
         }
     }
 
@@ -358,14 +488,14 @@ public final class DefaultIdStrategy extends IdStrategy
     protected void transferMapId(Input input, Output output, int fieldNumber)
             throws IOException
     {
-        input.transferByteRangeTo(output, true, fieldNumber, false);
+        TypeDictionary.transferTypeName(input, output, fieldNumber);
     }
 
     @Override
     protected MapSchema.MessageFactory resolveMapFrom(Input input)
             throws IOException
     {
-        final String className = input.readString();
+        final String className = TypeDictionary.readTypeName(input);
         MapSchema.MessageFactory factory = mapMapping.get(className);
         if (factory == null)
         {
@@ -390,33 +520,31 @@ public final class DefaultIdStrategy extends IdStrategy
     protected void writeEnumIdTo(Output output, int fieldNumber, Class<?> clazz)
             throws IOException
     {
-        output.writeString(fieldNumber, clazz.getName(), false);
+        TypeDictionary.writeTypeName(output, fieldNumber, clazz.getName());
     }
 
     @Override
     protected void transferEnumId(Input input, Output output, int fieldNumber)
             throws IOException
     {
-        input.transferByteRangeTo(output, true, fieldNumber, false);
+        TypeDictionary.transferTypeName(input, output, fieldNumber);
     }
 
     @Override
     protected EnumIO<?> resolveEnumFrom(Input input) throws IOException
     {
-        return getEnumIO(input.readString(), true);
+        return getEnumIO(TypeDictionary.readTypeName(input), true);
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     protected <T> HasDelegate<T> tryWriteDelegateIdTo(Output output,
             int fieldNumber, Class<T> clazz) throws IOException
     {
-        final HasDelegate<T> hd = (HasDelegate<T>) delegateMapping.get(clazz
-                .getName());
+        final HasDelegate<T> hd = lookupDelegate(clazz);
         if (hd == null)
             return null;
 
-        output.writeString(fieldNumber, clazz.getName(), false);
+        TypeDictionary.writeTypeName(output, fieldNumber, clazz.getName());
 
         return hd;
     }
@@ -426,7 +554,7 @@ public final class DefaultIdStrategy extends IdStrategy
     protected <T> HasDelegate<T> transferDelegateId(Input input, Output output,
             int fieldNumber) throws IOException
     {
-        final String className = input.readString();
+        final String className = TypeDictionary.readTypeName(input);
 
         final HasDelegate<T> hd = (HasDelegate<T>) delegateMapping
                 .get(className);
@@ -434,7 +562,7 @@ public final class DefaultIdStrategy extends IdStrategy
             throw new UnknownTypeException("delegate: " + className
                     + " (Outdated registry)");
 
-        output.writeString(fieldNumber, className, false);
+        TypeDictionary.writeTypeName(output, fieldNumber, className);
 
         return hd;
     }
@@ -444,7 +572,7 @@ public final class DefaultIdStrategy extends IdStrategy
     protected <T> HasDelegate<T> resolveDelegateFrom(Input input)
             throws IOException
     {
-        final String className = input.readString();
+        final String className = TypeDictionary.readTypeName(input);
 
         final HasDelegate<T> hd = (HasDelegate<T>) delegateMapping
                 .get(className);
@@ -459,7 +587,7 @@ public final class DefaultIdStrategy extends IdStrategy
     protected <T> HasSchema<T> writePojoIdTo(Output output, int fieldNumber,
             Class<T> clazz) throws IOException
     {
-        output.writeString(fieldNumber, clazz.getName(), false);
+        TypeDictionary.writeTypeName(output, fieldNumber, clazz.getName());
 
         // it is important to return the schema initialized (if it hasn't been).
         return getSchemaWrapper(clazz, true);
@@ -469,7 +597,7 @@ public final class DefaultIdStrategy extends IdStrategy
     protected <T> HasSchema<T> transferPojoId(Input input, Output output,
             int fieldNumber) throws IOException
     {
-        final String className = input.readString();
+        final String className = TypeDictionary.readTypeName(input);
 
         final HasSchema<T> wrapper = getSchemaWrapper(className,
                 RuntimeEnv.AUTO_LOAD_POLYMORPHIC_CLASSES);
@@ -479,7 +607,7 @@ public final class DefaultIdStrategy extends IdStrategy
                     + className);
         }
 
-        output.writeString(fieldNumber, className, false);
+        TypeDictionary.writeTypeName(output, fieldNumber, className);
 
         return wrapper;
     }
@@ -488,7 +616,7 @@ public final class DefaultIdStrategy extends IdStrategy
     protected <T> HasSchema<T> resolvePojoFrom(Input input, int fieldNumber)
             throws IOException
     {
-        final String className = input.readString();
+        final String className = TypeDictionary.readTypeName(input);
 
         final HasSchema<T> wrapper = getSchemaWrapper(className,
                 RuntimeEnv.AUTO_LOAD_POLYMORPHIC_CLASSES);
@@ -503,7 +631,7 @@ public final class DefaultIdStrategy extends IdStrategy
     protected <T> Schema<T> writeMessageIdTo(Output output, int fieldNumber,
             Message<T> message) throws IOException
     {
-        output.writeString(fieldNumber, message.getClass().getName(), false);
+        TypeDictionary.writeTypeName(output, fieldNumber, message.getClass().getName());
 
         return message.cachedSchema();
     }
@@ -512,22 +640,22 @@ public final class DefaultIdStrategy extends IdStrategy
     protected void writeArrayIdTo(Output output, Class<?> componentType)
             throws IOException
     {
-        output.writeString(RuntimeFieldFactory.ID_ARRAY,
-                componentType.getName(), false);
+        TypeDictionary.writeTypeName(output, RuntimeFieldFactory.ID_ARRAY,
+                componentType.getName());
     }
 
     @Override
     protected void transferArrayId(Input input, Output output, int fieldNumber,
             boolean mapped) throws IOException
     {
-        input.transferByteRangeTo(output, true, fieldNumber, false);
+        TypeDictionary.transferTypeName(input, output, fieldNumber);
     }
 
     @Override
     protected Class<?> resolveArrayComponentTypeFrom(Input input, boolean mapped)
             throws IOException
     {
-        return resolveClass(input.readString());
+        return resolveClass(TypeDictionary.readTypeName(input));
     }
 
     static Class<?> resolveClass(String className)
@@ -571,21 +699,21 @@ public final class DefaultIdStrategy extends IdStrategy
         final int id = array ? RuntimeFieldFactory.ID_CLASS_ARRAY
                 : RuntimeFieldFactory.ID_CLASS;
 
-        output.writeString(id, componentType.getName(), false);
+        TypeDictionary.writeTypeName(output, id, componentType.getName());
     }
 
     @Override
     protected void transferClassId(Input input, Output output, int fieldNumber,
             boolean mapped, boolean array) throws IOException
     {
-        input.transferByteRangeTo(output, true, fieldNumber, false);
+        TypeDictionary.transferTypeName(input, output, fieldNumber);
     }
 
     @Override
     protected Class<?> resolveClassFrom(Input input, boolean mapped,
             boolean array) throws IOException
     {
-        return resolveClass(input.readString());
+        return resolveClass(TypeDictionary.readTypeName(input));
     }
 
     static final class RuntimeCollectionFactory implements
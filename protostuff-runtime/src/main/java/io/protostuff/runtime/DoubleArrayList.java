@@ -0,0 +1,159 @@
+package io.protostuff.runtime;
+
+/**
+ * A growable list of {@code double} values (without boxing). As a field of a pojo, it is serialized as a packed repeated
+ * {@code double} field (see {@link RuntimeEnv#PACKED_PRIMITIVE_ARRAYS}).
+ */
+public final class DoubleArrayList
+{
+
+    private static final double[] EMPTY = new double[0];
+
+    double[] elements;
+    int size;
+
+    public DoubleArrayList()
+    {
+        elements = EMPTY;
+    }
+
+    public DoubleArrayList(int initialCapacity)
+    {
+        if (initialCapacity < 0)
+            throw new IllegalArgumentException("Negative capacity: " + initialCapacity);
+
+        elements = initialCapacity == 0 ? EMPTY : new double[initialCapacity];
+    }
+
+    /**
+     * Creates a list with a copy of the {@code values}.
+     */
+    public static DoubleArrayList of(double... values)
+    {
+        final DoubleArrayList list = new DoubleArrayList(values.length);
+        list.addAll(values, 0, values.length);
+        return list;
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    public double get(int index)
+    {
+        checkIndex(index);
+        return elements[index];
+    }
+
+    /**
+     * Replaces the value at the {@code index} and returns the previous one.
+     */
+    public double set(int index, double value)
+    {
+        checkIndex(index);
+        final double previous = elements[index];
+        elements[index] = value;
+        return previous;
+    }
+
+    public void add(double value)
+    {
+        if (size == elements.length)
+            grow(size + 1);
+
+        elements[size++] = value;
+    }
+
+    public void addAll(double[] values, int offset, int length)
+    {
+        if (size + length > elements.length)
+            grow(size + length);
+
+        System.arraycopy(values, offset, elements, size, length);
+        size += length;
+    }
+
+    /**
+     * Removes all the values (the capacity is kept).
+     */
+    public void clear()
+    {
+        size = 0;
+    }
+
+    public double[] toArray()
+    {
+        final double[] array = new double[size];
+        System.arraycopy(elements, 0, array, 0, size);
+        return array;
+    }
+
+    private void checkIndex(int index)
+    {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+
+    private void grow(int minCapacity)
+    {
+        int capacity = elements.length < 4 ? 8 : elements.length + (elements.length >> 1);
+        if (capacity < minCapacity)
+            capacity = minCapacity;
+
+        final double[] grown = new double[capacity];
+        System.arraycopy(elements, 0, grown, 0, size);
+        elements = grown;
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+        if (this == obj)
+            return true;
+
+        if (!(obj instanceof DoubleArrayList))
+            return false;
+
+        final DoubleArrayList other = (DoubleArrayList) obj;
+        if (size != other.size)
+            return false;
+
+        for (int i = 0; i < size; i++)
+        {
+            if (Double.doubleToLongBits(elements[i]) != Double.doubleToLongBits(other.elements[i]))
+                return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        int hash = 1;
+        for (int i = 0; i < size; i++)
+        {
+            final long v = Double.doubleToLongBits(elements[i]);
+            hash = 31 * hash + (int) (v ^ (v >>> 32));
+        }
+        return hash;
+    }
+
+    @Override
+    public String toString()
+    {
+        final StringBuilder sb = new StringBuilder().append('[');
+        for (int i = 0; i < size; i++)
+        {
+            if (i != 0)
+                sb.append(", ");
+            sb.append(elements[i]);
+        }
+        return sb.append(']').toString();
+    }
+}
@@ -118,6 +118,16 @@ public abstract class EnumIO<E extends Enum<E>> implements
         return ENUMS_BY_NAME ? new ByName(enumClass) : new ByNumber(enumClass);
     }
 
+    /**
+     * Returns the {@link EnumIO} that the {@code strategy} uses for the {@code enumClass}.
+     */
+    @SuppressWarnings("unchecked")
+    public static <E extends Enum<E>> EnumIO<E> of(Class<E> enumClass,
+            IdStrategy strategy)
+    {
+        return (EnumIO<E>) strategy.getEnumIO(enumClass);
+    }
+
     /**
      * Writes the {@link Enum} to the output.
      */
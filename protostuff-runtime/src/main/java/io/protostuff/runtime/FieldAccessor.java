@@ -0,0 +1,50 @@
+package io.protostuff.runtime;
+
+/**
+ * Reads and writes a field of a pojo, for the fields that are not created by a {@link RuntimeFieldFactory} (e.g. the
+ * packed ones). {@link RuntimeFieldFactory#accessor(java.lang.reflect.Field)} returns the subclass matching the
+ * factory in use (through method handles, Unsafe or reflection).
+ * <p>
+ * Only the get/put methods of the field's (erased) type are supported; {@code Object} is used for every non-primitive
+ * type.
+ */
+abstract class FieldAccessor
+{
+
+    abstract boolean getBoolean(Object message);
+
+    abstract void putBoolean(Object message, boolean value);
+
+    abstract byte getByte(Object message);
+
+    abstract void putByte(Object message, byte value);
+
+    abstract char getChar(Object message);
+
+    abstract void putChar(Object message, char value);
+
+    abstract short getShort(Object message);
+
+    abstract void putShort(Object message, short value);
+
+    abstract int getInt(Object message);
+
+    abstract void putInt(Object message, int value);
+
+    abstract long getLong(Object message);
+
+    abstract void putLong(Object message, long value);
+
+    abstract float getFloat(Object message);
+
+    abstract void putFloat(Object message, float value);
+
+    abstract double getDouble(Object message);
+
+    abstract void putDouble(Object message, double value);
+
+    abstract Object getObject(Object message);
+
+    abstract void putObject(Object message, Object value);
+
+}
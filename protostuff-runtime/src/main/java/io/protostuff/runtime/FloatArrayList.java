@@ -0,0 +1,158 @@
+package io.protostuff.runtime;
+
+/**
+ * A growable list of {@code float} values (without boxing). As a field of a pojo, it is serialized as a packed repeated
+ * {@code float} field (see {@link RuntimeEnv#PACKED_PRIMITIVE_ARRAYS}).
+ */
+public final class FloatArrayList
+{
+
+    private static final float[] EMPTY = new float[0];
+
+    float[] elements;
+    int size;
+
+    public FloatArrayList()
+    {
+        elements = EMPTY;
+    }
+
+    public FloatArrayList(int initialCapacity)
+    {
+        if (initialCapacity < 0)
+            throw new IllegalArgumentException("Negative capacity: " + initialCapacity);
+
+        elements = initialCapacity == 0 ? EMPTY : new float[initialCapacity];
+    }
+
+    /**
+     * Creates a list with a copy of the {@code values}.
+     */
+    public static FloatArrayList of(float... values)
+    {
+        final FloatArrayList list = new FloatArrayList(values.length);
+        list.addAll(values, 0, values.length);
+        return list;
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    public float get(int index)
+    {
+        checkIndex(index);
+        return elements[index];
+    }
+
+    /**
+     * Replaces the value at the {@code index} and returns the previous one.
+     */
+    public float set(int index, float value)
+    {
+        checkIndex(index);
+        final float previous = elements[index];
+        elements[index] = value;
+        return previous;
+    }
+
+    public void add(float value)
+    {
+        if (size == elements.length)
+            grow(size + 1);
+
+        elements[size++] = value;
+    }
+
+    public void addAll(float[] values, int offset, int length)
+    {
+        if (size + length > elements.length)
+            grow(size + length);
+
+        System.arraycopy(values, offset, elements, size, length);
+        size += length;
+    }
+
+    /**
+     * Removes all the values (the capacity is kept).
+     */
+    public void clear()
+    {
+        size = 0;
+    }
+
+    public float[] toArray()
+    {
+        final float[] array = new float[size];
+        System.arraycopy(elements, 0, array, 0, size);
+        return array;
+    }
+
+    private void checkIndex(int index)
+    {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+
+    private void grow(int minCapacity)
+    {
+        int capacity = elements.length < 4 ? 8 : elements.length + (elements.length >> 1);
+        if (capacity < minCapacity)
+            capacity = minCapacity;
+
+        final float[] grown = new float[capacity];
+        System.arraycopy(elements, 0, grown, 0, size);
+        elements = grown;
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+        if (this == obj)
+            return true;
+
+        if (!(obj instanceof FloatArrayList))
+            return false;
+
+        final FloatArrayList other = (FloatArrayList) obj;
+        if (size != other.size)
+            return false;
+
+        for (int i = 0; i < size; i++)
+        {
+            if (Float.floatToIntBits(elements[i]) != Float.floatToIntBits(other.elements[i]))
+                return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        int hash = 1;
+        for (int i = 0; i < size; i++)
+        {
+            hash = 31 * hash + Float.floatToIntBits(elements[i]);
+        }
+        return hash;
+    }
+
+    @Override
+    public String toString()
+    {
+        final StringBuilder sb = new StringBuilder().append('[');
+        for (int i = 0; i < size; i++)
+        {
+            if (i != 0)
+                sb.append(", ");
+            sb.append(elements[i]);
+        }
+        return sb.append(']').toString();
+    }
+}
@@ -0,0 +1,159 @@
+package io.protostuff.runtime;
+
+/**
+ * A growable list of {@code long} values (without boxing). As a field of a pojo, it is serialized as a packed repeated
+ * {@code int64} field (see {@link RuntimeEnv#PACKED_PRIMITIVE_ARRAYS}).
+ */
+public final class LongArrayList
+{
+
+    private static final long[] EMPTY = new long[0];
+
+    long[] elements;
+    int size;
+
+    public LongArrayList()
+    {
+        elements = EMPTY;
+    }
+
+    public LongArrayList(int initialCapacity)
+    {
+        if (initialCapacity < 0)
+            throw new IllegalArgumentException("Negative capacity: " + initialCapacity);
+
+        elements = initialCapacity == 0 ? EMPTY : new long[initialCapacity];
+    }
+
+    /**
+     * Creates a list with a copy of the {@code values}.
+     */
+    public static LongArrayList of(long... values)
+    {
+        final LongArrayList list = new LongArrayList(values.length);
+        list.addAll(values, 0, values.length);
+        return list;
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    public long get(int index)
+    {
+        checkIndex(index);
+        return elements[index];
+    }
+
+    /**
+     * Replaces the value at the {@code index} and returns the previous one.
+     */
+    public long set(int index, long value)
+    {
+        checkIndex(index);
+        final long previous = elements[index];
+        elements[index] = value;
+        return previous;
+    }
+
+    public void add(long value)
+    {
+        if (size == elements.length)
+            grow(size + 1);
+
+        elements[size++] = value;
+    }
+
+    public void addAll(long[] values, int offset, int length)
+    {
+        if (size + length > elements.length)
+            grow(size + length);
+
+        System.arraycopy(values, offset, elements, size, length);
+        size += length;
+    }
+
+    /**
+     * Removes all the values (the capacity is kept).
+     */
+    public void clear()
+    {
+        size = 0;
+    }
+
+    public long[] toArray()
+    {
+        final long[] array = new long[size];
+        System.arraycopy(elements, 0, array, 0, size);
+        return array;
+    }
+
+    private void checkIndex(int index)
+    {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+
+    private void grow(int minCapacity)
+    {
+        int capacity = elements.length < 4 ? 8 : elements.length + (elements.length >> 1);
+        if (capacity < minCapacity)
+            capacity = minCapacity;
+
+        final long[] grown = new long[capacity];
+        System.arraycopy(elements, 0, grown, 0, size);
+        elements = grown;
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+        if (this == obj)
+            return true;
+
+        if (!(obj instanceof LongArrayList))
+            return false;
+
+        final LongArrayList other = (LongArrayList) obj;
+        if (size != other.size)
+            return false;
+
+        for (int i = 0; i < size; i++)
+        {
+            if (elements[i] != other.elements[i])
+                return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        int hash = 1;
+        for (int i = 0; i < size; i++)
+        {
+            final long v = elements[i];
+            hash = 31 * hash + (int) (v ^ (v >>> 32));
+        }
+        return hash;
+    }
+
+    @Override
+    public String toString()
+    {
+        final StringBuilder sb = new StringBuilder().append('[');
+        for (int i = 0; i < size; i++)
+        {
+            if (i != 0)
+                sb.append(", ");
+            sb.append(elements[i]);
+        }
+        return sb.append(']').toString();
+    }
+}
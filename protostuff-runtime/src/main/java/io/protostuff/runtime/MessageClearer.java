@@ -0,0 +1,291 @@
+package io.protostuff.runtime;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.protostuff.ClearableSchema;
+import io.protostuff.Schema;
+import io.protostuff.Tag;
+
+/**
+ * Resets the fields of the messages of a {@link RuntimeSchema} to the values of a new message (the template), keeping
+ * what can be refilled if {@link RuntimeEnv#REUSE_ON_MERGE} is enabled.
+ * <p>
+ * The fields are accessed like the runtime fields (see {@link RuntimeFieldFactory#accessor(java.lang.reflect.Field)}),
+ * and the primitive ones are reset from their unboxed default without being read. A mutable default (e.g. a list
+ * created by the constructor) is never shared: a field that cannot keep its own value gets the one of a fresh message.
+ */
+final class MessageClearer<T>
+{
+
+    // the kind of each field, resolved once
+    static final int OBJECT = 0, BOOLEAN = 1, BYTE = 2, CHAR = 3, SHORT = 4, INT = 5,
+            LONG = 6, FLOAT = 7, DOUBLE = 8;
+
+    static final class Entry
+    {
+        final FieldAccessor accessor;
+        final Field<?> field;
+        final int kind;
+        final Object defaultValue;
+        /**
+         * The default is created per message (not shared).
+         */
+        final boolean mutableDefault;
+        /**
+         * A primitive array that the merge can refill.
+         */
+        final boolean refillable;
+
+        Entry(FieldAccessor accessor, Field<?> field, Class<?> type, Object template)
+        {
+            this.accessor = accessor;
+            this.field = field;
+            kind = kindOf(type);
+            defaultValue = kind == OBJECT ? accessor.getObject(template)
+                    : getPrimitive(accessor, kind, template);
+            mutableDefault = !isImmutable(defaultValue);
+            refillable = type.isArray() && type.getComponentType().isPrimitive()
+                    && !RuntimePackedFieldFactory.isPackedType(type);
+        }
+    }
+
+    final RuntimeSchema<T> schema;
+    final Entry[] entries;
+
+    /**
+     * Resolves the java fields of the {@code schema}'s fields (by name or {@link Tag#alias()}). The fields that are
+     * not found are left as is.
+     */
+    MessageClearer(RuntimeSchema<T> schema)
+    {
+        final HashMap<String, java.lang.reflect.Field> byName = new HashMap<>();
+        for (java.lang.reflect.Field f : RuntimeSchema.findInstanceFields(
+                schema.typeClass()).values())
+        {
+            byName.put(f.getName(), f);
+            final Tag tag = f.getAnnotation(Tag.class);
+            if (tag != null && !tag.alias().isEmpty())
+                byName.put(tag.alias(), f);
+        }
+
+        final List<Field<T>> schemaFields = schema.getFields();
+        final T template = schema.newMessage();
+        final Entry[] entries = new Entry[schemaFields.size()];
+        int size = 0;
+        for (Field<T> field : schemaFields)
+        {
+            final java.lang.reflect.Field f = byName.get(field.name);
+            if (f != null)
+            {
+                entries[size++] = new Entry(RuntimeFieldFactory.accessor(f), field,
+                        f.getType(), template);
+            }
+        }
+
+        this.schema = schema;
+        this.entries = Arrays.copyOf(entries, size);
+    }
+
+    void clear(T message)
+    {
+        // created on the first mutable default to reset
+        T fresh = null;
+        for (Entry e : entries)
+        {
+            final FieldAccessor accessor = e.accessor;
+            if (e.kind != OBJECT)
+            {
+                putPrimitive(accessor, e.kind, message, e.defaultValue);
+                continue;
+            }
+
+            final Object value = accessor.getObject(message);
+            // a mutable default is not shared, what the message has is kept (cleared) instead
+            final boolean keep = value != null
+                    && (RuntimeEnv.REUSE_ON_MERGE || e.defaultValue != null);
+            if (keep && clearValue(value))
+                continue;
+
+            if (keep && RuntimeEnv.REUSE_ON_MERGE && e.refillable && fillZeros(value))
+                continue;
+
+            if (keep && e.field instanceof RuntimeMessageField)
+            {
+                final RuntimeMessageField<?, ?> field = (RuntimeMessageField<?, ?>) e.field;
+                final Schema<?> nested = field.getSchema();
+                if (value.getClass() == field.typeClass && nested instanceof ClearableSchema)
+                {
+                    // detached while clearing it, so that a cycle back to this message ends here
+                    accessor.putObject(message, null);
+                    @SuppressWarnings("unchecked")
+                    final ClearableSchema<Object> cs = (ClearableSchema<Object>) nested;
+                    cs.clear(value);
+                    accessor.putObject(message, value);
+                    continue;
+                }
+            }
+
+            if (!e.mutableDefault)
+            {
+                accessor.putObject(message, e.defaultValue);
+                continue;
+            }
+
+            if (fresh == null)
+                fresh = schema.newMessage();
+
+            accessor.putObject(message, accessor.getObject(fresh));
+        }
+    }
+
+    /**
+     * Empties the collection, map or primitive list {@code value}, returning false if it is not one (or cannot be
+     * modified).
+     */
+    static boolean clearValue(Object value)
+    {
+        try
+        {
+            if (value instanceof Collection)
+                ((Collection<?>) value).clear();
+            else if (value instanceof Map)
+                ((Map<?, ?>) value).clear();
+            else if (value instanceof IntArrayList)
+                ((IntArrayList) value).clear();
+            else if (value instanceof LongArrayList)
+                ((LongArrayList) value).clear();
+            else if (value instanceof FloatArrayList)
+                ((FloatArrayList) value).clear();
+            else if (value instanceof DoubleArrayList)
+                ((DoubleArrayList) value).clear();
+            else
+                return false;
+        }
+        catch (UnsupportedOperationException e)
+        {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Zeroes the primitive array {@code value}, returning false if it is not one that the merge can refill.
+     */
+    static boolean fillZeros(Object value)
+    {
+        final Class<?> type = value.getClass();
+        if (type == int[].class)
+            Arrays.fill((int[]) value, 0);
+        else if (type == long[].class)
+            Arrays.fill((long[]) value, 0L);
+        else if (type == double[].class)
+            Arrays.fill((double[]) value, 0d);
+        else if (type == float[].class)
+            Arrays.fill((float[]) value, 0f);
+        else if (type == boolean[].class)
+            Arrays.fill((boolean[]) value, false);
+        else if (type == short[].class)
+            Arrays.fill((short[]) value, (short) 0);
+        else if (type == char[].class)
+            Arrays.fill((char[]) value, (char) 0);
+        else
+            return false;
+
+        return true;
+    }
+
+    static boolean isImmutable(Object value)
+    {
+        return value == null || value instanceof String || value instanceof Enum
+                || value instanceof Boolean || value instanceof Character
+                || value instanceof Integer || value instanceof Long
+                || value instanceof Short || value instanceof Byte
+                || value instanceof Float || value instanceof Double
+                || value instanceof BigDecimal || value instanceof BigInteger;
+    }
+
+    static int kindOf(Class<?> type)
+    {
+        if (!type.isPrimitive())
+            return OBJECT;
+        if (type == boolean.class)
+            return BOOLEAN;
+        if (type == byte.class)
+            return BYTE;
+        if (type == char.class)
+            return CHAR;
+        if (type == short.class)
+            return SHORT;
+        if (type == int.class)
+            return INT;
+        if (type == long.class)
+            return LONG;
+
+        return type == float.class ? FLOAT : DOUBLE;
+    }
+
+    /**
+     * Reads the primitive field of the {@code kind} (boxed once, when the clearer is created).
+     */
+    static Object getPrimitive(FieldAccessor accessor, int kind, Object message)
+    {
+        switch (kind)
+        {
+            case BOOLEAN:
+                return accessor.getBoolean(message);
+            case BYTE:
+                return accessor.getByte(message);
+            case CHAR:
+                return accessor.getChar(message);
+            case SHORT:
+                return accessor.getShort(message);
+            case INT:
+                return accessor.getInt(message);
+            case LONG:
+                return accessor.getLong(message);
+            case FLOAT:
+                return accessor.getFloat(message);
+            default:
+                return accessor.getDouble(message);
+        }
+    }
+
+    /**
+     * Writes the unboxed {@code value} to the primitive field of the {@code kind}.
+     */
+    static void putPrimitive(FieldAccessor accessor, int kind, Object message, Object value)
+    {
+        switch (kind)
+        {
+            case BOOLEAN:
+                accessor.putBoolean(message, (Boolean) value);
+                break;
+            case BYTE:
+                accessor.putByte(message, (Byte) value);
+                break;
+            case CHAR:
+                accessor.putChar(message, (Character) value);
+                break;
+            case SHORT:
+                accessor.putShort(message, (Short) value);
+                break;
+            case INT:
+                accessor.putInt(message, (Integer) value);
+                break;
+            case LONG:
+                accessor.putLong(message, (Long) value);
+                break;
+            case FLOAT:
+                accessor.putFloat(message, (Float) value);
+                break;
+            default:
+                accessor.putDouble(message, (Double) value);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package io.protostuff.runtime;
+
+import io.protostuff.Pipe;
+import io.protostuff.Schema;
+
+/**
+ * A schema generated at build time (e.g. by the protostuff-runtime-apt annotation processor) and supplied by a
+ * {@link SchemaProvider}, which exposes its pipe schema like the {@link RuntimeSchema} does.
+ */
+public interface ProvidedSchema<T> extends Schema<T>
+{
+
+    /**
+     * Returns the pipe schema of this schema.
+     */
+    Pipe.Schema<T> getPipeSchema();
+}
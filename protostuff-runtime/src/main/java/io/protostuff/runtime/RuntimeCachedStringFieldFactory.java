@@ -0,0 +1,136 @@
+package io.protostuff.runtime;
+
+import static io.protostuff.runtime.RuntimeFieldFactory.ID_STRING;
+
+import java.io.IOException;
+
+import io.protostuff.CachedString;
+import io.protostuff.Input;
+import io.protostuff.Output;
+import io.protostuff.Pipe;
+import io.protostuff.StringCache;
+import io.protostuff.StringCacheInput;
+import io.protostuff.Tag;
+import io.protostuff.WireFormat.FieldType;
+
+/**
+ * Creates the {@code String} fields annotated with {@link CachedString} (or declared in a class annotated with it),
+ * which are read through a {@link StringCache} (sized by {@link RuntimeEnv#STRING_CACHE_SIZE}) shared by all the
+ * runtime schemas, if the input is a {@link StringCacheInput}. The {@code String} keys and values of an annotated
+ * {@link java.util.Map} field are read through the cache as well (see {@link #getDelegateOrInline}), but not the
+ * elements of the collections and arrays.
+ * <p>
+ * The wire format is the same as a regular string field.
+ */
+final class RuntimeCachedStringFieldFactory
+{
+
+    private RuntimeCachedStringFieldFactory()
+    {
+    }
+
+    static final StringCache CACHE = new StringCache(RuntimeEnv.STRING_CACHE_SIZE,
+            StringCache.DEFAULT_MAX_LENGTH);
+
+    /**
+     * Returns true if the {@code String} field {@code f} is read through the {@link #CACHE}.
+     */
+    static boolean isCached(java.lang.reflect.Field f)
+    {
+        CachedString cached = f.getAnnotation(CachedString.class);
+        if (cached == null)
+            cached = f.getDeclaringClass().getAnnotation(CachedString.class);
+
+        return cached != null && cached.value();
+    }
+
+    /**
+     * Returns the delegate of the keys (or values) of type {@code clazz} of the map field {@code f}, which reads the
+     * strings through the {@link #CACHE} if the field is cached.
+     */
+    @SuppressWarnings("unchecked")
+    static <V> Delegate<V> getDelegateOrInline(java.lang.reflect.Field f, Class<V> clazz,
+            IdStrategy strategy)
+    {
+        if (clazz == String.class && !strategy.isDelegateRegistered(clazz) && isCached(f))
+            return (Delegate<V>) CACHED_STRING;
+
+        return RuntimeFieldFactory.getDelegateOrInline(clazz, strategy);
+    }
+
+    static String readString(Input input) throws IOException
+    {
+        return input instanceof StringCacheInput ? ((StringCacheInput) input).readString(CACHE)
+                : input.readString();
+    }
+
+    static final RuntimeFieldFactory<String> CACHED_STRING = new RuntimeFieldFactory<String>(
+            ID_STRING)
+    {
+        @Override
+        public <T> Field<T> create(int number, String name,
+                final java.lang.reflect.Field f, IdStrategy strategy)
+        {
+            final FieldAccessor accessor = RuntimeFieldFactory.accessor(f);
+            return new Field<T>(FieldType.STRING, number, name,
+                    f.getAnnotation(Tag.class))
+            {
+                @Override
+                public void mergeFrom(Input input, T message)
+                        throws IOException
+                {
+                    accessor.putObject(message, readString(input));
+                }
+
+                @Override
+                public void writeTo(Output output, T message)
+                        throws IOException
+                {
+                    String value = (String) accessor.getObject(message);
+                    if (value != null)
+                        output.writeString(number, value, false);
+                }
+
+                @Override
+                public void transfer(Pipe pipe, Input input, Output output,
+                        boolean repeated) throws IOException
+                {
+                    input.transferByteRangeTo(output, true, number, repeated);
+                }
+            };
+        }
+
+        @Override
+        public String readFrom(Input input) throws IOException
+        {
+            return readString(input);
+        }
+
+        @Override
+        public void writeTo(Output output, int number, String value,
+                boolean repeated) throws IOException
+        {
+            output.writeString(number, value, repeated);
+        }
+
+        @Override
+        public void transfer(Pipe pipe, Input input, Output output, int number,
+                boolean repeated) throws IOException
+        {
+            input.transferByteRangeTo(output, true, number, repeated);
+        }
+
+        @Override
+        public FieldType getFieldType()
+        {
+            return FieldType.STRING;
+        }
+
+        @Override
+        public Class<?> typeClass()
+        {
+            return String.class;
+        }
+    };
+
+}
@@ -109,6 +109,15 @@ public final class RuntimeEnv
      */
     public static final boolean USE_SUN_MISC_UNSAFE;
 
+    /**
+     * If true, the fields of the objects are accessed via method handles (a class per field, see
+     * {@link RuntimeMethodHandleFieldFactory}) instead of sun.misc.Unsafe or plain java reflections. Enabled by default
+     * on jdk9+.
+     * <p>
+     * Disable this to fall back to {@link #USE_SUN_MISC_UNSAFE}.
+     */
+    public static final boolean USE_METHOD_HANDLES;
+
     /**
      * If true, the constructor will always be obtained from {@code ReflectionFactory.newConstructorFromSerialization}.
      * <p>
@@ -122,6 +131,53 @@ public final class RuntimeEnv
      */
     public static final boolean ALWAYS_USE_SUN_REFLECTION_FACTORY;
 
+    /**
+     * Disabled by default. If true, a dedicated class with a straight-line {@code writeTo} and a switch-based
+     * {@code mergeFrom} is generated at runtime for every {@link RuntimeSchema}, so that each field access is a
+     * monomorphic call site (speed comparable to compiler-generated schemas).
+     * <p>
+     * The wire format is unchanged. If class generation is not available on the jvm, the regular field loop is used.
+     */
+    public static final boolean USE_GENERATED_SCHEMA;
+
+    /**
+     * Disabled by default. If true, the schemas supplied by every {@link SchemaProvider} found on the classpath
+     * (META-INF/services) are registered with the {@link DefaultIdStrategy} on startup, when this class is loaded.
+     * Since it runs every provider found, it is opt-in via {@code -Dprotostuff.runtime.register_provided_schemas=true}.
+     * <p>
+     * Has no effect when a custom id strategy factory is configured.
+     */
+    public static final boolean REGISTER_PROVIDED_SCHEMAS;
+
+    /**
+     * Disabled by default. If true, the {@code int[]}, {@code long[]}, {@code float[]} and {@code double[]} fields are
+     * serialized like protobuf's packed repeated fields (a single length-delimited field with the raw values) instead
+     * of a nested array message. The {@link IntArrayList}, {@link LongArrayList}, {@link FloatArrayList} and
+     * {@link DoubleArrayList} fields are always packed.
+     * <p>
+     * This changes the wire format of those fields. Empty arrays are not written, and the same array referenced twice
+     * is serialized twice (even with graph serialization).
+     */
+    public static final boolean PACKED_PRIMITIVE_ARRAYS;
+
+    /**
+     * Defaults to 4096. The number of entries of the {@link io.protostuff.StringCache} shared by the
+     * {@link io.protostuff.CachedString} fields.
+     */
+    public static final int STRING_CACHE_SIZE;
+
+    /**
+     * Disabled by default. If true, {@link RuntimeSchema#clear(Object)} keeps the nested messages (cleared), the
+     * collections and maps (emptied) and the primitive arrays (zeroed) of the message, and the merge refills them
+     * instead of allocating new ones (a primitive array is refilled if it has the same length). Otherwise they are
+     * reset like on a new message.
+     * <p>
+     * With this, decoding into the same (cleared) message does not allocate once the message has reached its size.
+     * The fields absent from the merged message are left cleared (e.g an empty list instead of null). A primitive array
+     * of the message that is referenced elsewhere is overwritten by the merge.
+     */
+    public static final boolean REUSE_ON_MERGE;
+
     static final Method newInstanceFromObjectInputStream;
 
     static final Constructor<Object> OBJECT_CONSTRUCTOR;
@@ -185,15 +241,46 @@ public final class RuntimeEnv
                 && Boolean.parseBoolean(props.getProperty(
                         "protostuff.runtime.use_sun_misc_unsafe", "true"));
 
+        // classes are defined without Unsafe on jdk9+
+        USE_METHOD_HANDLES = Boolean.parseBoolean(props.getProperty(
+                "protostuff.runtime.use_method_handles",
+                String.valueOf(SchemaDispatchGenerator.isLookupAvailable())));
+
         ALWAYS_USE_SUN_REFLECTION_FACTORY = OBJECT_CONSTRUCTOR != null
                 && Boolean.parseBoolean(props.getProperty(
                         "protostuff.runtime.always_use_sun_reflection_factory",
                         "false"));
 
+        USE_GENERATED_SCHEMA = Boolean.parseBoolean(props.getProperty(
+                "protostuff.runtime.use_generated_schema", "false"));
+
+        REGISTER_PROVIDED_SCHEMAS = Boolean.parseBoolean(props.getProperty(
+                "protostuff.runtime.register_provided_schemas", "false"));
+
+        PACKED_PRIMITIVE_ARRAYS = Boolean.parseBoolean(props.getProperty(
+                "protostuff.runtime.packed_primitive_arrays", "false"));
+
+        STRING_CACHE_SIZE = Integer.parseInt(props.getProperty(
+                "protostuff.runtime.string_cache_size", "4096"));
+
+        REUSE_ON_MERGE = Boolean.parseBoolean(props.getProperty(
+                "protostuff.runtime.reuse_on_merge", "false"));
+
         String factoryProp = props
                 .getProperty("protostuff.runtime.id_strategy_factory");
         if (factoryProp == null)
-            ID_STRATEGY = new DefaultIdStrategy();
+        {
+            final DefaultIdStrategy strategy = new DefaultIdStrategy();
+            if (REGISTER_PROVIDED_SCHEMAS)
+            {
+                ClassLoader loader = Thread.currentThread()
+                        .getContextClassLoader();
+                strategy.registerProvidedSchemas(loader != null ? loader
+                        : RuntimeEnv.class.getClassLoader());
+            }
+
+            ID_STRATEGY = strategy;
+        }
         else
         {
             final IdStrategy.Factory factory;
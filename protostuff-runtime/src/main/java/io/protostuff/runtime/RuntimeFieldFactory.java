@@ -16,6 +16,7 @@ package io.protostuff.runtime;
 
 import static io.protostuff.runtime.RuntimeEnv.COLLECTION_SCHEMA_ON_REPEATED_FIELDS;
 import static io.protostuff.runtime.RuntimeEnv.MORPH_NON_FINAL_POJOS;
+import static io.protostuff.runtime.RuntimeEnv.USE_METHOD_HANDLES;
 import static io.protostuff.runtime.RuntimeEnv.USE_SUN_MISC_UNSAFE;
 
 import java.lang.reflect.Array;
@@ -124,7 +125,31 @@ public abstract class RuntimeFieldFactory<V> implements Delegate<V>
 
     static
     {
-        if (USE_SUN_MISC_UNSAFE)
+        if (USE_METHOD_HANDLES)
+        {
+            BIGDECIMAL = RuntimeMethodHandleFieldFactory.BIGDECIMAL;
+            BIGINTEGER = RuntimeMethodHandleFieldFactory.BIGINTEGER;
+            BOOL = RuntimeMethodHandleFieldFactory.BOOL;
+            BYTE = RuntimeMethodHandleFieldFactory.BYTE;
+            BYTES = RuntimeMethodHandleFieldFactory.BYTES;
+            BYTE_ARRAY = RuntimeMethodHandleFieldFactory.BYTE_ARRAY;
+            CHAR = RuntimeMethodHandleFieldFactory.CHAR;
+            DATE = RuntimeMethodHandleFieldFactory.DATE;
+            DOUBLE = RuntimeMethodHandleFieldFactory.DOUBLE;
+            FLOAT = RuntimeMethodHandleFieldFactory.FLOAT;
+            INT32 = RuntimeMethodHandleFieldFactory.INT32;
+            INT64 = RuntimeMethodHandleFieldFactory.INT64;
+            SHORT = RuntimeMethodHandleFieldFactory.SHORT;
+            STRING = RuntimeMethodHandleFieldFactory.STRING;
+
+            ENUM = RuntimeMethodHandleFieldFactory.ENUM;
+            OBJECT = RuntimeMethodHandleFieldFactory.OBJECT;
+            POJO = RuntimeMethodHandleFieldFactory.POJO;
+            POLYMORPHIC_POJO = RuntimeMethodHandleFieldFactory.POLYMORPHIC_POJO;
+
+            DELEGATE = RuntimeMethodHandleFieldFactory.DELEGATE;
+        }
+        else if (USE_SUN_MISC_UNSAFE)
         {
             BIGDECIMAL = RuntimeUnsafeFieldFactory.BIGDECIMAL;
             BIGINTEGER = RuntimeUnsafeFieldFactory.BIGINTEGER;
@@ -200,6 +225,19 @@ public abstract class RuntimeFieldFactory<V> implements Delegate<V>
         __inlineValues.put(Date.class.getName(), DATE);
     }
 
+    /**
+     * Returns the accessor of the field {@code f}, which goes through method handles, Unsafe or reflection like the
+     * fields created by the factories above.
+     */
+    static FieldAccessor accessor(java.lang.reflect.Field f)
+    {
+        if (USE_METHOD_HANDLES)
+            return RuntimeMethodHandleFieldFactory.accessor(f);
+
+        return USE_SUN_MISC_UNSAFE ? new RuntimeUnsafeFieldFactory.UnsafeFieldAccessor(f)
+                : new RuntimeReflectionFieldFactory.ReflectionFieldAccessor(f);
+    }
+
     /**
      * Gets the runtime field factory of the given {@code clazz}.
      * <p>
@@ -1868,8 +1868,8 @@ final class RuntimeMapFieldFactory
             if (clazzV == null)
             {
                 // the value is not a simple parameterized type.
-                final Delegate<Object> inlineK = getDelegateOrInline(clazzK,
-                        strategy);
+                final Delegate<Object> inlineK = RuntimeCachedStringFieldFactory
+                        .getDelegateOrInline(f, clazzK, strategy);
                 if (inlineK != null)
                 {
                     return createMapInlineKObjectV(number, name, f,
@@ -1929,13 +1929,13 @@ final class RuntimeMapFieldFactory
                         strategy.OBJECT_ELEMENT_SCHEMA.pipeSchema, strategy);
             }
 
-            final Delegate<Object> inlineK = getDelegateOrInline(clazzK,
-                    strategy);
+            final Delegate<Object> inlineK = RuntimeCachedStringFieldFactory
+                    .getDelegateOrInline(f, clazzK, strategy);
 
             if (inlineK != null)
             {
-                final Delegate<Object> inlineV = getDelegateOrInline(clazzV,
-                        strategy);
+                final Delegate<Object> inlineV = RuntimeCachedStringFieldFactory
+                        .getDelegateOrInline(f, clazzV, strategy);
                 if (inlineV != null)
                     return createMapInlineKInlineV(number, name, f,
                             messageFactory, inlineK, inlineV);
@@ -1976,8 +1976,8 @@ final class RuntimeMapFieldFactory
 
             if (clazzK.isEnum())
             {
-                final Delegate<Object> inlineV = getDelegateOrInline(clazzV,
-                        strategy);
+                final Delegate<Object> inlineV = RuntimeCachedStringFieldFactory
+                        .getDelegateOrInline(f, clazzV, strategy);
                 if (inlineV != null)
                     return createMapEnumKInlineV(number, name, f,
                             messageFactory, clazzK, inlineV, strategy);
@@ -2028,8 +2028,8 @@ final class RuntimeMapFieldFactory
 
             if (pojo(clazzK, f.getAnnotation(Morph.class), strategy))
             {
-                final Delegate<Object> inlineV = getDelegateOrInline(clazzV,
-                        strategy);
+                final Delegate<Object> inlineV = RuntimeCachedStringFieldFactory
+                        .getDelegateOrInline(f, clazzV, strategy);
                 if (inlineV != null)
                     return createMapPojoKInlineV(number, name, f,
                             messageFactory, clazzK, inlineV, strategy);
@@ -0,0 +1,1263 @@
+package io.protostuff.runtime;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.protostuff.GraphInput;
+import io.protostuff.Input;
+import io.protostuff.Morph;
+import io.protostuff.Output;
+import io.protostuff.Pipe;
+import io.protostuff.Schema;
+import io.protostuff.Tag;
+import io.protostuff.WireFormat.FieldType;
+
+/**
+ * Field factory via {@link MethodHandle method handles}, as fast as the {@link RuntimeUnsafeFieldFactory} without
+ * sun.misc.Unsafe.
+ * <p>
+ * The jit only inlines a method handle that is a constant, i.e. held in a {@code static final} field. So every pojo
+ * field gets its own class: a copy of one of the templates below (renamed, then defined like the
+ * {@link SchemaDispatchGenerator} classes), whose {@code static final} handles read and write that field only. The
+ * copy also has its own type profile, so the calls it makes (the inline delegate, the output) are monomorphic.
+ * <p>
+ * This costs a class per field. If the class cannot be defined, the field is created by the
+ * {@link RuntimeReflectionFieldFactory}, which also provides the codec of the scalar values.
+ *
+ * @see RuntimeEnv#USE_METHOD_HANDLES
+ * @created Oct 18, 2026
+ */
+public final class RuntimeMethodHandleFieldFactory
+{
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private static final AtomicInteger COUNTER = new AtomicInteger();
+
+    /**
+     * The class file of each template, read once.
+     */
+    private static final ConcurrentHashMap<Class<?>, byte[]> TEMPLATES = new ConcurrentHashMap<>();
+
+    /**
+     * The handles of the classes being defined (by class name), taken by their static initializer.
+     */
+    private static final ConcurrentHashMap<String, MethodHandle[]> PENDING = new ConcurrentHashMap<>();
+
+    private RuntimeMethodHandleFieldFactory()
+    {
+    }
+
+    public static final RuntimeFieldFactory<Character> CHAR = new Scalar<>(
+            RuntimeReflectionFieldFactory.CHAR, CharField.class);
+
+    public static final RuntimeFieldFactory<Short> SHORT = new Scalar<>(
+            RuntimeReflectionFieldFactory.SHORT, ShortField.class);
+
+    public static final RuntimeFieldFactory<Byte> BYTE = new Scalar<>(
+            RuntimeReflectionFieldFactory.BYTE, ByteField.class);
+
+    public static final RuntimeFieldFactory<Integer> INT32 = new Scalar<>(
+            RuntimeReflectionFieldFactory.INT32, Int32Field.class);
+
+    public static final RuntimeFieldFactory<Long> INT64 = new Scalar<>(
+            RuntimeReflectionFieldFactory.INT64, Int64Field.class);
+
+    public static final RuntimeFieldFactory<Float> FLOAT = new Scalar<>(
+            RuntimeReflectionFieldFactory.FLOAT, FloatField.class);
+
+    public static final RuntimeFieldFactory<Double> DOUBLE = new Scalar<>(
+            RuntimeReflectionFieldFactory.DOUBLE, DoubleField.class);
+
+    public static final RuntimeFieldFactory<Boolean> BOOL = new Scalar<>(
+            RuntimeReflectionFieldFactory.BOOL, BoolField.class);
+
+    public static final RuntimeFieldFactory<String> STRING = new Scalar<>(
+            RuntimeReflectionFieldFactory.STRING, null);
+
+    public static final RuntimeFieldFactory<io.protostuff.ByteString> BYTES = new Scalar<>(
+            RuntimeReflectionFieldFactory.BYTES, null);
+
+    public static final RuntimeFieldFactory<byte[]> BYTE_ARRAY = new Scalar<>(
+            RuntimeReflectionFieldFactory.BYTE_ARRAY, null);
+
+    public static final RuntimeFieldFactory<java.math.BigDecimal> BIGDECIMAL = new Scalar<>(
+            RuntimeReflectionFieldFactory.BIGDECIMAL, null);
+
+    public static final RuntimeFieldFactory<java.math.BigInteger> BIGINTEGER = new Scalar<>(
+            RuntimeReflectionFieldFactory.BIGINTEGER, null);
+
+    public static final RuntimeFieldFactory<java.util.Date> DATE = new Scalar<>(
+            RuntimeReflectionFieldFactory.DATE, null);
+
+    public static final RuntimeFieldFactory<Integer> ENUM = new Factory<Integer>(
+            RuntimeReflectionFieldFactory.ENUM)
+    {
+        @Override
+        <T> Field<T> newField(int number, String name,
+                java.lang.reflect.Field f, IdStrategy strategy)
+        {
+            return newInstance(EnumField.class, f, number, name,
+                    f.getAnnotation(Tag.class), strategy.getEnumIO(f.getType()));
+        }
+    };
+
+    // NON-INLINE VALUES
+
+    static final RuntimeFieldFactory<Object> POJO = new Factory<Object>(
+            RuntimeReflectionFieldFactory.POJO)
+    {
+        @Override
+        @SuppressWarnings("unchecked")
+        <T> Field<T> newField(int number, String name,
+                java.lang.reflect.Field f, IdStrategy strategy)
+        {
+            final Class<Object> type = (Class<Object>) f.getType();
+            return newInstance(PojoField.class, f, type,
+                    strategy.getSchemaWrapper(type, true), number, name,
+                    f.getAnnotation(Tag.class));
+        }
+    };
+
+    static final RuntimeFieldFactory<Object> POLYMORPHIC_POJO = new Factory<Object>(
+            RuntimeReflectionFieldFactory.POLYMORPHIC_POJO)
+    {
+        @Override
+        <T> Field<T> newField(int number, String name,
+                java.lang.reflect.Field f, IdStrategy strategy)
+        {
+            if (RuntimeFieldFactory.pojo(f.getType(),
+                    f.getAnnotation(Morph.class), strategy))
+            {
+                return POJO.create(number, name, f, strategy);
+            }
+
+            return newInstance(DerivativeField.class, f, f.getType(), number,
+                    name, f.getAnnotation(Tag.class), strategy);
+        }
+    };
+
+    static final RuntimeFieldFactory<Object> OBJECT = new Factory<Object>(
+            RuntimeReflectionFieldFactory.OBJECT)
+    {
+        @Override
+        <T> Field<T> newField(int number, String name,
+                java.lang.reflect.Field f, IdStrategy strategy)
+        {
+            return newInstance(ObjectField.class, f, f.getType(), number, name,
+                    f.getAnnotation(Tag.class),
+                    PolymorphicSchemaFactories.getFactoryFromField(f.getType()),
+                    strategy);
+        }
+    };
+
+    public static final RuntimeFieldFactory<Object> DELEGATE = new Factory<Object>(
+            RuntimeReflectionFieldFactory.DELEGATE)
+    {
+        @Override
+        @SuppressWarnings("unchecked")
+        <T> Field<T> newField(int number, String name,
+                java.lang.reflect.Field f, IdStrategy strategy)
+        {
+            return newInstance(ValueField.class, f, FieldType.BYTES, number,
+                    name, f.getAnnotation(Tag.class),
+                    strategy.getDelegate((Class<Object>) f.getType()));
+        }
+    };
+
+    /**
+     * Returns the accessor of the field {@code f}, a copy of {@link Accessor} if it can be defined.
+     */
+    static FieldAccessor accessor(java.lang.reflect.Field f)
+    {
+        final FieldAccessor accessor = newInstance(Accessor.class, f);
+        return accessor != null ? accessor
+                : new RuntimeReflectionFieldFactory.ReflectionFieldAccessor(f);
+    }
+
+    /**
+     * Creates the fields from the templates, with the {@link RuntimeReflectionFieldFactory} as the codec of the values
+     * and as the fallback.
+     */
+    abstract static class Factory<V> extends RuntimeFieldFactory<V>
+    {
+
+        final RuntimeFieldFactory<V> base;
+
+        Factory(RuntimeFieldFactory<V> base)
+        {
+            super(base.id);
+            this.base = base;
+        }
+
+        /**
+         * Returns the field, or null if its class cannot be defined.
+         */
+        abstract <T> Field<T> newField(int number, String name,
+                java.lang.reflect.Field f, IdStrategy strategy);
+
+        @Override
+        public <T> Field<T> create(int number, String name,
+                java.lang.reflect.Field f, IdStrategy strategy)
+        {
+            final Field<T> field = newField(number, name, f, strategy);
+            return field != null ? field : base.<T> create(number, name, f,
+                    strategy);
+        }
+
+        @Override
+        public void transfer(Pipe pipe, Input input, Output output, int number,
+                boolean repeated) throws IOException
+        {
+            base.transfer(pipe, input, output, number, repeated);
+        }
+
+        @Override
+        public V readFrom(Input input) throws IOException
+        {
+            return base.readFrom(input);
+        }
+
+        @Override
+        public void writeTo(Output output, int number, V value,
+                boolean repeated) throws IOException
+        {
+            base.writeTo(output, number, value, repeated);
+        }
+
+        @Override
+        public FieldType getFieldType()
+        {
+            return base.getFieldType();
+        }
+
+        @Override
+        public Class<?> typeClass()
+        {
+            return base.typeClass();
+        }
+    }
+
+    /**
+     * A primitive (from its own template) or a value (from {@link ValueField}, with the base factory as the codec).
+     */
+    static final class Scalar<V> extends Factory<V>
+    {
+
+        final Class<?> primitiveTemplate;
+
+        Scalar(RuntimeFieldFactory<V> base, Class<?> primitiveTemplate)
+        {
+            super(base);
+            this.primitiveTemplate = primitiveTemplate;
+        }
+
+        @Override
+        <T> Field<T> newField(int number, String name,
+                java.lang.reflect.Field f, IdStrategy strategy)
+        {
+            final Tag tag = f.getAnnotation(Tag.class);
+            if (f.getType().isPrimitive())
+                return newInstance(primitiveTemplate, f, number, name, tag);
+
+            return newInstance(ValueField.class, f, base.getFieldType(),
+                    number, name, tag, base);
+        }
+    }
+
+    /**
+     * Defines a copy of the {@code template} whose handles access the field {@code f} and creates it with the
+     * {@code args} (its only constructor). Returns null if the class cannot be defined.
+     */
+    @SuppressWarnings("unchecked")
+    static <F> F newInstance(Class<?> template, java.lang.reflect.Field f,
+            Object... args)
+    {
+        if (!SchemaDispatchGenerator.isAvailable())
+            return null;
+
+        final Class<?> type = f.getType().isPrimitive() ? f.getType()
+                : Object.class;
+        final MethodHandle get, set;
+        try
+        {
+            f.setAccessible(true);
+            get = LOOKUP.unreflectGetter(f).asType(
+                    MethodType.methodType(type, Object.class));
+            set = LOOKUP.unreflectSetter(f).asType(
+                    MethodType.methodType(void.class, Object.class, type));
+        }
+        catch (IllegalAccessException | RuntimeException e)
+        {
+            return null;
+        }
+
+        final String className = SchemaDispatchGenerator.PACKAGE
+                + template.getSimpleName() + '$'
+                + f.getDeclaringClass().getName().replace('.', '_') + '$'
+                + f.getName() + '$' + COUNTER.incrementAndGet();
+
+        PENDING.put(className, new MethodHandle[] { get, set });
+        try
+        {
+            final Constructor<?> constructor = SchemaDispatchGenerator
+                    .defineClass(className,
+                            SchemaDispatchGenerator.rename(getClassFile(template),
+                                    className))
+                    .getDeclaredConstructor(
+                            template.getDeclaredConstructors()[0]
+                                    .getParameterTypes());
+            return (F) constructor.newInstance(args);
+        }
+        catch (Exception | LinkageError e)
+        {
+            // fallback to the base factory
+            return null;
+        }
+        finally
+        {
+            PENDING.remove(className);
+        }
+    }
+
+    /**
+     * Called from the static initializer of a copy of a template, returns its getter and setter.
+     */
+    static MethodHandle[] handles(Class<?> fieldClass)
+    {
+        final MethodHandle[] handles = PENDING.remove(fieldClass.getName()
+                .replace('.', '/'));
+        // the templates themselves are never created
+        return handles != null ? handles : new MethodHandle[2];
+    }
+
+    private static byte[] getClassFile(Class<?> template) throws IOException
+    {
+        byte[] classFile = TEMPLATES.get(template);
+        if (classFile != null)
+            return classFile;
+
+        final String name = template.getName();
+        try (InputStream in = template.getResourceAsStream(name.substring(name
+                .lastIndexOf('.') + 1) + ".class"))
+        {
+            if (in == null)
+                throw new IOException("Class file not found: " + name);
+
+            final ByteArrayOutputStream out = new ByteArrayOutputStream(4096);
+            final byte[] buf = new byte[4096];
+            for (int read; (read = in.read(buf)) != -1;)
+                out.write(buf, 0, read);
+
+            classFile = out.toByteArray();
+        }
+
+        TEMPLATES.put(template, classFile);
+        return classFile;
+    }
+
+    static RuntimeException rethrow(Throwable e)
+    {
+        if (e instanceof Error)
+            throw (Error) e;
+
+        return e instanceof RuntimeException ? (RuntimeException) e
+                : new RuntimeException(e);
+    }
+
+    // invoked with the constant handles of the copies (small enough to be inlined)
+
+    static boolean getBoolean(MethodHandle get, Object message)
+    {
+        try
+        {
+            return (boolean) get.invokeExact(message);
+        }
+        catch (Throwable e)
+        {
+            throw rethrow(e);
+        }
+    }
+
+    static void putBoolean(MethodHandle set, Object message, boolean value)
+    {
+        try
+        {
+            set.invokeExact(message, value);
+        }
+        catch (Throwable e)
+        {
+            throw rethrow(e);
+        }
+    }
+
+    static byte getByte(MethodHandle get, Object message)
+    {
+        try
+        {
+            return (byte) get.invokeExact(message);
+        }
+        catch (Throwable e)
+        {
+            throw rethrow(e);
+        }
+    }
+
+    static void putByte(MethodHandle set, Object message, byte value)
+    {
+        try
+        {
+            set.invokeExact(message, value);
+        }
+        catch (Throwable e)
+        {
+            throw rethrow(e);
+        }
+    }
+
+    static char getChar(MethodHandle get, Object message)
+    {
+        try
+        {
+            return (char) get.invokeExact(message);
+        }
+        catch (Throwable e)
+        {
+            throw rethrow(e);
+        }
+    }
+
+    static void putChar(MethodHandle set, Object message, char value)
+    {
+        try
+        {
+            set.invokeExact(message, value);
+        }
+        catch (Throwable e)
+        {
+            throw rethrow(e);
+        }
+    }
+
+    static short getShort(MethodHandle get, Object message)
+    {
+        try
+        {
+            return (short) get.invokeExact(message);
+        }
+        catch (Throwable e)
+        {
+            throw rethrow(e);
+        }
+    }
+
+    static void putShort(MethodHandle set, Object message, short value)
+    {
+        try
+        {
+            set.invokeExact(message, value);
+        }
+        catch (Throwable e)
+        {
+            throw rethrow(e);
+        }
+    }
+
+    static int getInt(MethodHandle get, Object message)
+    {
+        try
+        {
+            return (int) get.invokeExact(message);
+        }
+        catch (Throwable e)
+        {
+            throw rethrow(e);
+        }
+    }
+
+    static void putInt(MethodHandle set, Object message, int value)
+    {
+        try
+        {
+            set.invokeExact(message, value);
+        }
+        catch (Throwable e)
+        {
+            throw rethrow(e);
+        }
+    }
+
+    static long getLong(MethodHandle get, Object message)
+    {
+        try
+        {
+            return (long) get.invokeExact(message);
+        }
+        catch (Throwable e)
+        {
+            throw rethrow(e);
+        }
+    }
+
+    static void putLong(MethodHandle set, Object message, long value)
+    {
+        try
+        {
+            set.invokeExact(message, value);
+        }
+        catch (Throwable e)
+        {
+            throw rethrow(e);
+        }
+    }
+
+    static float getFloat(MethodHandle get, Object message)
+    {
+        try
+        {
+            return (float) get.invokeExact(message);
+        }
+        catch (Throwable e)
+        {
+            throw rethrow(e);
+        }
+    }
+
+    static void putFloat(MethodHandle set, Object message, float value)
+    {
+        try
+        {
+            set.invokeExact(message, value);
+        }
+        catch (Throwable e)
+        {
+            throw rethrow(e);
+        }
+    }
+
+    static double getDouble(MethodHandle get, Object message)
+    {
+        try
+        {
+            return (double) get.invokeExact(message);
+        }
+        catch (Throwable e)
+        {
+            throw rethrow(e);
+        }
+    }
+
+    static void putDouble(MethodHandle set, Object message, double value)
+    {
+        try
+        {
+            set.invokeExact(message, value);
+        }
+        catch (Throwable e)
+        {
+            throw rethrow(e);
+        }
+    }
+
+    static Object getObject(MethodHandle get, Object message)
+    {
+        try
+        {
+            return (Object) get.invokeExact(message);
+        }
+        catch (Throwable e)
+        {
+            throw rethrow(e);
+        }
+    }
+
+    static void putObject(MethodHandle set, Object message, Object value)
+    {
+        try
+        {
+            set.invokeExact(message, value);
+        }
+        catch (Throwable e)
+        {
+            throw rethrow(e);
+        }
+    }
+
+    // TEMPLATES (copied per field, must only refer to themselves through their class literal)
+
+    static final class BoolField<T> extends Field<T>
+    {
+        static final MethodHandle GET, SET;
+
+        static
+        {
+            final MethodHandle[] handles = handles(BoolField.class);
+            GET = handles[0];
+            SET = handles[1];
+        }
+
+        BoolField(int number, String name, Tag tag)
+        {
+            super(FieldType.BOOL, number, name, tag);
+        }
+
+        @Override
+        public void mergeFrom(Input input, T message) throws IOException
+        {
+            putBoolean(SET, message, input.readBool());
+        }
+
+        @Override
+        public void writeTo(Output output, T message) throws IOException
+        {
+            output.writeBool(number, getBoolean(GET, message), false);
+        }
+
+        @Override
+        public void transfer(Pipe pipe, Input input, Output output,
+                boolean repeated) throws IOException
+        {
+            output.writeBool(number, input.readBool(), repeated);
+        }
+    }
+
+    static final class ByteField<T> extends Field<T>
+    {
+        static final MethodHandle GET, SET;
+
+        static
+        {
+            final MethodHandle[] handles = handles(ByteField.class);
+            GET = handles[0];
+            SET = handles[1];
+        }
+
+        ByteField(int number, String name, Tag tag)
+        {
+            super(FieldType.UINT32, number, name, tag);
+        }
+
+        @Override
+        public void mergeFrom(Input input, T message) throws IOException
+        {
+            putByte(SET, message, (byte) input.readUInt32());
+        }
+
+        @Override
+        public void writeTo(Output output, T message) throws IOException
+        {
+            output.writeUInt32(number, getByte(GET, message), false);
+        }
+
+        @Override
+        public void transfer(Pipe pipe, Input input, Output output,
+                boolean repeated) throws IOException
+        {
+            output.writeUInt32(number, input.readUInt32(), repeated);
+        }
+    }
+
+    static final class CharField<T> extends Field<T>
+    {
+        static final MethodHandle GET, SET;
+
+        static
+        {
+            final MethodHandle[] handles = handles(CharField.class);
+            GET = handles[0];
+            SET = handles[1];
+        }
+
+        CharField(int number, String name, Tag tag)
+        {
+            super(FieldType.UINT32, number, name, tag);
+        }
+
+        @Override
+        public void mergeFrom(Input input, T message) throws IOException
+        {
+            putChar(SET, message, (char) input.readUInt32());
+        }
+
+        @Override
+        public void writeTo(Output output, T message) throws IOException
+        {
+            output.writeUInt32(number, getChar(GET, message), false);
+        }
+
+        @Override
+        public void transfer(Pipe pipe, Input input, Output output,
+                boolean repeated) throws IOException
+        {
+            output.writeUInt32(number, input.readUInt32(), repeated);
+        }
+    }
+
+    static final class ShortField<T> extends Field<T>
+    {
+        static final MethodHandle GET, SET;
+
+        static
+        {
+            final MethodHandle[] handles = handles(ShortField.class);
+            GET = handles[0];
+            SET = handles[1];
+        }
+
+        ShortField(int number, String name, Tag tag)
+        {
+            super(FieldType.UINT32, number, name, tag);
+        }
+
+        @Override
+        public void mergeFrom(Input input, T message) throws IOException
+        {
+            putShort(SET, message, (short) input.readUInt32());
+        }
+
+        @Override
+        public void writeTo(Output output, T message) throws IOException
+        {
+            output.writeUInt32(number, getShort(GET, message), false);
+        }
+
+        @Override
+        public void transfer(Pipe pipe, Input input, Output output,
+                boolean repeated) throws IOException
+        {
+            output.writeUInt32(number, input.readUInt32(), repeated);
+        }
+    }
+
+    static final class Int32Field<T> extends Field<T>
+    {
+        static final MethodHandle GET, SET;
+
+        static
+        {
+            final MethodHandle[] handles = handles(Int32Field.class);
+            GET = handles[0];
+            SET = handles[1];
+        }
+
+        Int32Field(int number, String name, Tag tag)
+        {
+            super(FieldType.INT32, number, name, tag);
+        }
+
+        @Override
+        public void mergeFrom(Input input, T message) throws IOException
+        {
+            putInt(SET, message, input.readInt32());
+        }
+
+        @Override
+        public void writeTo(Output output, T message) throws IOException
+        {
+            output.writeInt32(number, getInt(GET, message), false);
+        }
+
+        @Override
+        public void transfer(Pipe pipe, Input input, Output output,
+                boolean repeated) throws IOException
+        {
+            output.writeInt32(number, input.readInt32(), repeated);
+        }
+    }
+
+    static final class Int64Field<T> extends Field<T>
+    {
+        static final MethodHandle GET, SET;
+
+        static
+        {
+            final MethodHandle[] handles = handles(Int64Field.class);
+            GET = handles[0];
+            SET = handles[1];
+        }
+
+        Int64Field(int number, String name, Tag tag)
+        {
+            super(FieldType.INT64, number, name, tag);
+        }
+
+        @Override
+        public void mergeFrom(Input input, T message) throws IOException
+        {
+            putLong(SET, message, input.readInt64());
+        }
+
+        @Override
+        public void writeTo(Output output, T message) throws IOException
+        {
+            output.writeInt64(number, getLong(GET, message), false);
+        }
+
+        @Override
+        public void transfer(Pipe pipe, Input input, Output output,
+                boolean repeated) throws IOException
+        {
+            output.writeInt64(number, input.readInt64(), repeated);
+        }
+    }
+
+    static final class FloatField<T> extends Field<T>
+    {
+        static final MethodHandle GET, SET;
+
+        static
+        {
+            final MethodHandle[] handles = handles(FloatField.class);
+            GET = handles[0];
+            SET = handles[1];
+        }
+
+        FloatField(int number, String name, Tag tag)
+        {
+            super(FieldType.FLOAT, number, name, tag);
+        }
+
+        @Override
+        public void mergeFrom(Input input, T message) throws IOException
+        {
+            putFloat(SET, message, input.readFloat());
+        }
+
+        @Override
+        public void writeTo(Output output, T message) throws IOException
+        {
+            output.writeFloat(number, getFloat(GET, message), false);
+        }
+
+        @Override
+        public void transfer(Pipe pipe, Input input, Output output,
+                boolean repeated) throws IOException
+        {
+            output.writeFloat(number, input.readFloat(), repeated);
+        }
+    }
+
+    static final class DoubleField<T> extends Field<T>
+    {
+        static final MethodHandle GET, SET;
+
+        static
+        {
+            final MethodHandle[] handles = handles(DoubleField.class);
+            GET = handles[0];
+            SET = handles[1];
+        }
+
+        DoubleField(int number, String name, Tag tag)
+        {
+            super(FieldType.DOUBLE, number, name, tag);
+        }
+
+        @Override
+        public void mergeFrom(Input input, T message) throws IOException
+        {
+            putDouble(SET, message, input.readDouble());
+        }
+
+        @Override
+        public void writeTo(Output output, T message) throws IOException
+        {
+            output.writeDouble(number, getDouble(GET, message), false);
+        }
+
+        @Override
+        public void transfer(Pipe pipe, Input input, Output output,
+                boolean repeated) throws IOException
+        {
+            output.writeDouble(number, input.readDouble(), repeated);
+        }
+    }
+
+    /**
+     * A non-primitive value written via its {@link Delegate} (a boxed primitive, a scalar or a registered delegate).
+     */
+    static final class ValueField<T> extends Field<T>
+    {
+        static final MethodHandle GET, SET;
+
+        static
+        {
+            final MethodHandle[] handles = handles(ValueField.class);
+            GET = handles[0];
+            SET = handles[1];
+        }
+
+        final Delegate<Object> inline;
+
+        ValueField(FieldType type, int number, String name, Tag tag,
+                Delegate<Object> inline)
+        {
+            super(type, number, name, tag);
+            this.inline = inline;
+        }
+
+        @Override
+        public void mergeFrom(Input input, T message) throws IOException
+        {
+            putObject(SET, message, inline.readFrom(input));
+        }
+
+        @Override
+        public void writeTo(Output output, T message) throws IOException
+        {
+            final Object value = getObject(GET, message);
+            if (value != null)
+                inline.writeTo(output, number, value, false);
+        }
+
+        @Override
+        public void transfer(Pipe pipe, Input input, Output output,
+                boolean repeated) throws IOException
+        {
+            inline.transfer(pipe, input, output, number, repeated);
+        }
+    }
+
+    static final class EnumField<T> extends Field<T>
+    {
+        static final MethodHandle GET, SET;
+
+        static
+        {
+            final MethodHandle[] handles = handles(EnumField.class);
+            GET = handles[0];
+            SET = handles[1];
+        }
+
+        final EnumIO<? extends Enum<?>> eio;
+
+        EnumField(int number, String name, Tag tag,
+                EnumIO<? extends Enum<?>> eio)
+        {
+            super(FieldType.ENUM, number, name, tag);
+            this.eio = eio;
+        }
+
+        @Override
+        public void mergeFrom(Input input, T message) throws IOException
+        {
+            putObject(SET, message, eio.readFrom(input));
+        }
+
+        @Override
+        public void writeTo(Output output, T message) throws IOException
+        {
+            final Enum<?> existing = (Enum<?>) getObject(GET, message);
+            if (existing != null)
+                eio.writeTo(output, number, repeated, existing);
+        }
+
+        @Override
+        public void transfer(Pipe pipe, Input input, Output output,
+                boolean repeated) throws IOException
+        {
+            EnumIO.transfer(pipe, input, output, number, repeated);
+        }
+    }
+
+    static final class PojoField<T> extends RuntimeMessageField<T, Object>
+    {
+        static final MethodHandle GET, SET;
+
+        static
+        {
+            final MethodHandle[] handles = handles(PojoField.class);
+            GET = handles[0];
+            SET = handles[1];
+        }
+
+        PojoField(Class<Object> typeClass, HasSchema<Object> hasSchema,
+                int number, String name, Tag tag)
+        {
+            super(typeClass, hasSchema, FieldType.MESSAGE, number, name, false,
+                    tag);
+        }
+
+        @Override
+        public void mergeFrom(Input input, T message) throws IOException
+        {
+            putObject(SET, message, input.mergeObject(
+                    getObject(GET, message), getSchema()));
+        }
+
+        @Override
+        public void writeTo(Output output, T message) throws IOException
+        {
+            final Object existing = getObject(GET, message);
+            if (existing != null)
+                output.writeObject(number, existing, getSchema(), false);
+        }
+
+        @Override
+        public void transfer(Pipe pipe, Input input, Output output,
+                boolean repeated) throws IOException
+        {
+            output.writeObject(number, pipe, getPipeSchema(), repeated);
+        }
+    }
+
+    static final class DerivativeField<T> extends RuntimeDerivativeField<T>
+    {
+        static final MethodHandle GET, SET;
+
+        static
+        {
+            final MethodHandle[] handles = handles(DerivativeField.class);
+            GET = handles[0];
+            SET = handles[1];
+        }
+
+        DerivativeField(Class<Object> typeClass, int number, String name,
+                Tag tag, IdStrategy strategy)
+        {
+            super(typeClass, FieldType.MESSAGE, number, name, false, tag,
+                    strategy);
+        }
+
+        @Override
+        public void mergeFrom(Input input, T message) throws IOException
+        {
+            final Object value = input.mergeObject(message, schema);
+            if (input instanceof GraphInput
+                    && ((GraphInput) input).isCurrentMessageReference())
+            {
+                // a reference from polymorphic+cyclic graph deser
+                putObject(SET, message, value);
+            }
+        }
+
+        @Override
+        public void writeTo(Output output, T message) throws IOException
+        {
+            final Object existing = getObject(GET, message);
+            if (existing != null)
+                output.writeObject(number, existing, schema, false);
+        }
+
+        @Override
+        public void transfer(Pipe pipe, Input input, Output output,
+                boolean repeated) throws IOException
+        {
+            output.writeObject(number, pipe, schema.pipeSchema, false);
+        }
+
+        @Override
+        public void doMergeFrom(Input input, Schema<Object> schema,
+                Object message) throws IOException
+        {
+            final Object existing = getObject(GET, message);
+
+            // merge if not null and is same type.
+            final Object value = existing == null
+                    || existing.getClass() != schema.typeClass() ? schema
+                    .newMessage() : existing;
+
+            if (input instanceof GraphInput)
+            {
+                // update the actual reference.
+                ((GraphInput) input).updateLast(value, message);
+            }
+
+            schema.mergeFrom(input, value);
+
+            putObject(SET, message, value);
+        }
+    }
+
+    static final class ObjectField<T> extends RuntimeObjectField<T>
+    {
+        static final MethodHandle GET, SET;
+
+        static
+        {
+            final MethodHandle[] handles = handles(ObjectField.class);
+            GET = handles[0];
+            SET = handles[1];
+        }
+
+        ObjectField(Class<?> typeClass, int number, String name, Tag tag,
+                PolymorphicSchema.Factory factory, IdStrategy strategy)
+        {
+            super(typeClass, FieldType.MESSAGE, number, name, false, tag,
+                    factory, strategy);
+        }
+
+        @Override
+        public void mergeFrom(Input input, T message) throws IOException
+        {
+            final Object value = input.mergeObject(message, schema);
+            if (input instanceof GraphInput
+                    && ((GraphInput) input).isCurrentMessageReference())
+            {
+                // a reference from polymorphic+cyclic graph deser
+                putObject(SET, message, value);
+            }
+        }
+
+        @Override
+        public void writeTo(Output output, T message) throws IOException
+        {
+            final Object existing = getObject(GET, message);
+            if (existing != null)
+                output.writeObject(number, existing, schema, false);
+        }
+
+        @Override
+        public void transfer(Pipe pipe, Input input, Output output,
+                boolean repeated) throws IOException
+        {
+            output.writeObject(number, pipe, schema.getPipeSchema(), false);
+        }
+
+        @Override
+        public void setValue(Object value, Object message)
+        {
+            putObject(SET, message, value);
+        }
+
+        @Override
+        protected Object getValue(Object message)
+        {
+            return getObject(GET, message);
+        }
+    }
+
+    /**
+     * Only the get/put methods of the field's (erased) type can be used.
+     */
+    static final class Accessor extends FieldAccessor
+    {
+        static final MethodHandle GET, SET;
+
+        static
+        {
+            final MethodHandle[] handles = handles(Accessor.class);
+            GET = handles[0];
+            SET = handles[1];
+        }
+
+        Accessor()
+        {
+        }
+
+        @Override
+        boolean getBoolean(Object message)
+        {
+            return RuntimeMethodHandleFieldFactory.getBoolean(GET, message);
+        }
+
+        @Override
+        void putBoolean(Object message, boolean value)
+        {
+            RuntimeMethodHandleFieldFactory.putBoolean(SET, message, value);
+        }
+
+        @Override
+        byte getByte(Object message)
+        {
+            return RuntimeMethodHandleFieldFactory.getByte(GET, message);
+        }
+
+        @Override
+        void putByte(Object message, byte value)
+        {
+            RuntimeMethodHandleFieldFactory.putByte(SET, message, value);
+        }
+
+        @Override
+        char getChar(Object message)
+        {
+            return RuntimeMethodHandleFieldFactory.getChar(GET, message);
+        }
+
+        @Override
+        void putChar(Object message, char value)
+        {
+            RuntimeMethodHandleFieldFactory.putChar(SET, message, value);
+        }
+
+        @Override
+        short getShort(Object message)
+        {
+            return RuntimeMethodHandleFieldFactory.getShort(GET, message);
+        }
+
+        @Override
+        void putShort(Object message, short value)
+        {
+            RuntimeMethodHandleFieldFactory.putShort(SET, message, value);
+        }
+
+        @Override
+        int getInt(Object message)
+        {
+            return RuntimeMethodHandleFieldFactory.getInt(GET, message);
+        }
+
+        @Override
+        void putInt(Object message, int value)
+        {
+            RuntimeMethodHandleFieldFactory.putInt(SET, message, value);
+        }
+
+        @Override
+        long getLong(Object message)
+        {
+            return RuntimeMethodHandleFieldFactory.getLong(GET, message);
+        }
+
+        @Override
+        void putLong(Object message, long value)
+        {
+            RuntimeMethodHandleFieldFactory.putLong(SET, message, value);
+        }
+
+        @Override
+        float getFloat(Object message)
+        {
+            return RuntimeMethodHandleFieldFactory.getFloat(GET, message);
+        }
+
+        @Override
+        void putFloat(Object message, float value)
+        {
+            RuntimeMethodHandleFieldFactory.putFloat(SET, message, value);
+        }
+
+        @Override
+        double getDouble(Object message)
+        {
+            return RuntimeMethodHandleFieldFactory.getDouble(GET, message);
+        }
+
+        @Override
+        void putDouble(Object message, double value)
+        {
+            RuntimeMethodHandleFieldFactory.putDouble(SET, message, value);
+        }
+
+        @Override
+        Object getObject(Object message)
+        {
+            return RuntimeMethodHandleFieldFactory.getObject(GET, message);
+        }
+
+        @Override
+        void putObject(Object message, Object value)
+        {
+            RuntimeMethodHandleFieldFactory.putObject(SET, message, value);
+        }
+    }
+}
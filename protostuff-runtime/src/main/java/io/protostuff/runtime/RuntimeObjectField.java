@@ -41,4 +41,12 @@ abstract class RuntimeObjectField<T> extends Field<T> implements
         schema = factory.newSchema(typeClass, strategy, this);
     }
 
+    /**
+     * Returns the value of this field on the {@code message}, or null if not available.
+     */
+    protected Object getValue(Object message)
+    {
+        return null;
+    }
+
 }
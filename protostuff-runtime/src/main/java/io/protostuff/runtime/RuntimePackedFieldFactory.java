@@ -0,0 +1,683 @@
+package io.protostuff.runtime;
+
+import java.io.IOException;
+
+import io.protostuff.Input;
+import io.protostuff.Output;
+import io.protostuff.PackedInput;
+import io.protostuff.PackedOutput;
+import io.protostuff.Pipe;
+import io.protostuff.Tag;
+import io.protostuff.WireFormat.FieldType;
+
+/**
+ * Static utility for creating the packed repeated fields of the primitive lists ({@link IntArrayList},
+ * {@link LongArrayList}, {@link FloatArrayList} and {@link DoubleArrayList}), and of the primitive arrays if
+ * {@link RuntimeEnv#PACKED_PRIMITIVE_ARRAYS} is enabled.
+ * <p>
+ * If the output is a {@link PackedOutput}, the values are encoded in a single length-delimited field (no tag per
+ * value). Otherwise they are written like a regular repeated field. Both forms can be read.
+ */
+final class RuntimePackedFieldFactory
+{
+
+    private RuntimePackedFieldFactory()
+    {
+    }
+
+    /**
+     * Returns true if the fields of the {@code type} are packed (see {@link #create}).
+     */
+    static boolean isPackedType(Class<?> type)
+    {
+        if (type == IntArrayList.class || type == LongArrayList.class
+                || type == FloatArrayList.class || type == DoubleArrayList.class)
+        {
+            return true;
+        }
+
+        return RuntimeEnv.PACKED_PRIMITIVE_ARRAYS && (type == int[].class
+                || type == long[].class || type == float[].class || type == double[].class);
+    }
+
+    /**
+     * Creates the packed field of the pojo field {@code f}, whose type must be {@link #isPackedType packed}.
+     */
+    static <T> Field<T> create(int number, String name, java.lang.reflect.Field f)
+    {
+        final Class<?> type = f.getType();
+        if (type == IntArrayList.class || type == int[].class)
+            return createInt32(number, name, f);
+
+        if (type == LongArrayList.class || type == long[].class)
+            return createInt64(number, name, f);
+
+        if (type == FloatArrayList.class || type == float[].class)
+            return createFloat(number, name, f);
+
+        if (type == DoubleArrayList.class || type == double[].class)
+            return createDouble(number, name, f);
+
+        throw new IllegalArgumentException("Not a packed type: " + type);
+    }
+
+    /**
+     * Returns true if the next value of the current (packed) field can be read without reading the field number.
+     */
+    static boolean isPacked(Input input)
+    {
+        return input instanceof PackedInput
+                && ((PackedInput) input).isCurrentFieldPacked();
+    }
+
+    static int computeRawVarint64Size(long value)
+    {
+        int size = 1;
+        while ((value & ~0x7FL) != 0)
+        {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    /**
+     * A packed field of a primitive array.
+     * <p>
+     * Each value of an unpacked field (or of a json/xml array) is a separate field read, so the values are collected
+     * in a growable list while a message is merged (see {@link PendingArrays}) and the array is set once at the end.
+     * The values are appended to the array the message already has, like the values of the primitive lists (and like
+     * protobuf merges a repeated field).
+     */
+    static abstract class ArrayField<T> extends Field<T>
+    {
+
+        ArrayField(FieldType type, int number, String name, Tag tag)
+        {
+            super(type, number, name, true, tag);
+        }
+
+        /**
+         * Returns an empty list of the values (an {@link IntArrayList}, {@link LongArrayList}, {@link FloatArrayList}
+         * or {@link DoubleArrayList}).
+         */
+        abstract Object newValues();
+
+        /**
+         * Reads the next value(s) of the field into the {@code values}.
+         */
+        abstract void readValues(Input input, Object values) throws IOException;
+
+        /**
+         * Sets the field to its current array followed by the {@code values}.
+         */
+        abstract void appendValues(T message, Object values);
+
+        /**
+         * Reads the value(s) and sets the array right away, for the callers that do not collect the values with a
+         * {@link PendingArrays} (each call copies the array).
+         */
+        @Override
+        protected void mergeFrom(Input input, T message) throws IOException
+        {
+            final Object values = newValues();
+            readValues(input, values);
+            appendValues(message, values);
+        }
+    }
+
+    /**
+     * Returns true if one of the {@code fields} is an {@link ArrayField}.
+     */
+    static <T> boolean hasArrayField(Iterable<Field<T>> fields)
+    {
+        for (Field<T> field : fields)
+        {
+            if (field instanceof ArrayField)
+                return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * The values of the {@link ArrayField array fields} read while merging a message, which are set on the message
+     * once the merge is done. A linked list created on the first read of such a field (a pojo only has a few).
+     */
+    static final class PendingArrays<T>
+    {
+        final ArrayField<T> field;
+        final Object values;
+        final PendingArrays<T> next;
+
+        private PendingArrays(ArrayField<T> field, PendingArrays<T> next)
+        {
+            this.field = field;
+            this.values = field.newValues();
+            this.next = next;
+        }
+
+        /**
+         * Reads the value(s) of the {@code field} into its pending list. Returns the (new) head of the list.
+         */
+        static <T> PendingArrays<T> mergeFrom(Input input, ArrayField<T> field,
+                PendingArrays<T> pending) throws IOException
+        {
+            PendingArrays<T> p = pending;
+            while (p != null && p.field != field)
+                p = p.next;
+
+            if (p == null)
+                pending = p = new PendingArrays<>(field, pending);
+
+            field.readValues(input, p.values);
+            return pending;
+        }
+
+        /**
+         * Sets the collected values on the {@code message}.
+         */
+        void flush(T message)
+        {
+            for (PendingArrays<T> p = this; p != null; p = p.next)
+                p.field.appendValues(message, p.values);
+        }
+    }
+
+    static void readInt32s(Input input, IntArrayList values) throws IOException
+    {
+        do
+        {
+            values.add(input.readInt32());
+        }
+        while (isPacked(input));
+    }
+
+    static void writeInt32s(Output output, int number, int[] values, int size)
+            throws IOException
+    {
+        if (size == 0)
+            return;
+
+        if (!(output instanceof PackedOutput))
+        {
+            for (int i = 0; i < size; i++)
+                output.writeInt32(number, values[i], true);
+
+            return;
+        }
+
+        int length = 0;
+        for (int i = 0; i < size; i++)
+            length += computeRawVarint64Size(values[i]);
+
+        final PackedOutput packed = (PackedOutput) output;
+        packed.writePackedLength(number, length);
+        for (int i = 0; i < size; i++)
+            packed.writePackedVarInt64(values[i]);
+    }
+
+    static int[] toArray(int[] existing, IntArrayList values)
+    {
+        if (existing == null || existing.length == 0)
+        {
+            return values.size == values.elements.length ? values.elements
+                    : values.toArray();
+        }
+
+        final int[] array = new int[existing.length + values.size];
+        System.arraycopy(existing, 0, array, 0, existing.length);
+        System.arraycopy(values.elements, 0, array, existing.length, values.size);
+        return array;
+    }
+
+    private static <T> Field<T> createInt32(int number, String name,
+            final java.lang.reflect.Field f)
+    {
+        final FieldAccessor accessor = RuntimeFieldFactory.accessor(f);
+        if (f.getType() == int[].class)
+        {
+            return new ArrayField<T>(FieldType.INT32, number, name,
+                    f.getAnnotation(Tag.class))
+            {
+                @Override
+                Object newValues()
+                {
+                    return new IntArrayList();
+                }
+
+                @Override
+                void readValues(Input input, Object values) throws IOException
+                {
+                    readInt32s(input, (IntArrayList) values);
+                }
+
+                @Override
+                void appendValues(T message, Object values)
+                {
+                    accessor.putObject(message, toArray(
+                            (int[]) accessor.getObject(message), (IntArrayList) values));
+                }
+
+                @Override
+                protected void writeTo(Output output, T message) throws IOException
+                {
+                    final int[] value = (int[]) accessor.getObject(message);
+                    if (value != null)
+                        writeInt32s(output, number, value, value.length);
+                }
+
+                @Override
+                protected void transfer(Pipe pipe, Input input, Output output,
+                        boolean repeated) throws IOException
+                {
+                    final IntArrayList values = new IntArrayList();
+                    readInt32s(input, values);
+                    writeInt32s(output, number, values.elements, values.size);
+                }
+            };
+        }
+
+        return new Field<T>(FieldType.INT32, number, name, true,
+                f.getAnnotation(Tag.class))
+        {
+            @Override
+            protected void mergeFrom(Input input, T message) throws IOException
+            {
+                IntArrayList values = (IntArrayList) accessor.getObject(message);
+                if (values == null)
+                    accessor.putObject(message, values = new IntArrayList());
+
+                readInt32s(input, values);
+            }
+
+            @Override
+            protected void writeTo(Output output, T message) throws IOException
+            {
+                final IntArrayList values = (IntArrayList) accessor.getObject(message);
+                if (values != null)
+                    writeInt32s(output, number, values.elements, values.size);
+            }
+
+            @Override
+            protected void transfer(Pipe pipe, Input input, Output output,
+                    boolean repeated) throws IOException
+            {
+                final IntArrayList values = new IntArrayList();
+                readInt32s(input, values);
+                writeInt32s(output, number, values.elements, values.size);
+            }
+        };
+    }
+
+    static void readInt64s(Input input, LongArrayList values) throws IOException
+    {
+        do
+        {
+            values.add(input.readInt64());
+        }
+        while (isPacked(input));
+    }
+
+    static void writeInt64s(Output output, int number, long[] values, int size)
+            throws IOException
+    {
+        if (size == 0)
+            return;
+
+        if (!(output instanceof PackedOutput))
+        {
+            for (int i = 0; i < size; i++)
+                output.writeInt64(number, values[i], true);
+
+            return;
+        }
+
+        int length = 0;
+        for (int i = 0; i < size; i++)
+            length += computeRawVarint64Size(values[i]);
+
+        final PackedOutput packed = (PackedOutput) output;
+        packed.writePackedLength(number, length);
+        for (int i = 0; i < size; i++)
+            packed.writePackedVarInt64(values[i]);
+    }
+
+    static long[] toArray(long[] existing, LongArrayList values)
+    {
+        if (existing == null || existing.length == 0)
+        {
+            return values.size == values.elements.length ? values.elements
+                    : values.toArray();
+        }
+
+        final long[] array = new long[existing.length + values.size];
+        System.arraycopy(existing, 0, array, 0, existing.length);
+        System.arraycopy(values.elements, 0, array, existing.length, values.size);
+        return array;
+    }
+
+    private static <T> Field<T> createInt64(int number, String name,
+            final java.lang.reflect.Field f)
+    {
+        final FieldAccessor accessor = RuntimeFieldFactory.accessor(f);
+        if (f.getType() == long[].class)
+        {
+            return new ArrayField<T>(FieldType.INT64, number, name,
+                    f.getAnnotation(Tag.class))
+            {
+                @Override
+                Object newValues()
+                {
+                    return new LongArrayList();
+                }
+
+                @Override
+                void readValues(Input input, Object values) throws IOException
+                {
+                    readInt64s(input, (LongArrayList) values);
+                }
+
+                @Override
+                void appendValues(T message, Object values)
+                {
+                    accessor.putObject(message, toArray(
+                            (long[]) accessor.getObject(message), (LongArrayList) values));
+                }
+
+                @Override
+                protected void writeTo(Output output, T message) throws IOException
+                {
+                    final long[] value = (long[]) accessor.getObject(message);
+                    if (value != null)
+                        writeInt64s(output, number, value, value.length);
+                }
+
+                @Override
+                protected void transfer(Pipe pipe, Input input, Output output,
+                        boolean repeated) throws IOException
+                {
+                    final LongArrayList values = new LongArrayList();
+                    readInt64s(input, values);
+                    writeInt64s(output, number, values.elements, values.size);
+                }
+            };
+        }
+
+        return new Field<T>(FieldType.INT64, number, name, true,
+                f.getAnnotation(Tag.class))
+        {
+            @Override
+            protected void mergeFrom(Input input, T message) throws IOException
+            {
+                LongArrayList values = (LongArrayList) accessor.getObject(message);
+                if (values == null)
+                    accessor.putObject(message, values = new LongArrayList());
+
+                readInt64s(input, values);
+            }
+
+            @Override
+            protected void writeTo(Output output, T message) throws IOException
+            {
+                final LongArrayList values = (LongArrayList) accessor.getObject(message);
+                if (values != null)
+                    writeInt64s(output, number, values.elements, values.size);
+            }
+
+            @Override
+            protected void transfer(Pipe pipe, Input input, Output output,
+                    boolean repeated) throws IOException
+            {
+                final LongArrayList values = new LongArrayList();
+                readInt64s(input, values);
+                writeInt64s(output, number, values.elements, values.size);
+            }
+        };
+    }
+
+    static void readFloats(Input input, FloatArrayList values) throws IOException
+    {
+        do
+        {
+            values.add(input.readFloat());
+        }
+        while (isPacked(input));
+    }
+
+    static void writeFloats(Output output, int number, float[] values, int size)
+            throws IOException
+    {
+        if (size == 0)
+            return;
+
+        if (!(output instanceof PackedOutput))
+        {
+            for (int i = 0; i < size; i++)
+                output.writeFloat(number, values[i], true);
+
+            return;
+        }
+
+        final PackedOutput packed = (PackedOutput) output;
+        packed.writePackedLength(number, size * 4);
+        for (int i = 0; i < size; i++)
+            packed.writePackedFixed32(Float.floatToRawIntBits(values[i]));
+    }
+
+    static float[] toArray(float[] existing, FloatArrayList values)
+    {
+        if (existing == null || existing.length == 0)
+        {
+            return values.size == values.elements.length ? values.elements
+                    : values.toArray();
+        }
+
+        final float[] array = new float[existing.length + values.size];
+        System.arraycopy(existing, 0, array, 0, existing.length);
+        System.arraycopy(values.elements, 0, array, existing.length, values.size);
+        return array;
+    }
+
+    private static <T> Field<T> createFloat(int number, String name,
+            final java.lang.reflect.Field f)
+    {
+        final FieldAccessor accessor = RuntimeFieldFactory.accessor(f);
+        if (f.getType() == float[].class)
+        {
+            return new ArrayField<T>(FieldType.FLOAT, number, name,
+                    f.getAnnotation(Tag.class))
+            {
+                @Override
+                Object newValues()
+                {
+                    return new FloatArrayList();
+                }
+
+                @Override
+                void readValues(Input input, Object values) throws IOException
+                {
+                    readFloats(input, (FloatArrayList) values);
+                }
+
+                @Override
+                void appendValues(T message, Object values)
+                {
+                    accessor.putObject(message, toArray(
+                            (float[]) accessor.getObject(message), (FloatArrayList) values));
+                }
+
+                @Override
+                protected void writeTo(Output output, T message) throws IOException
+                {
+                    final float[] value = (float[]) accessor.getObject(message);
+                    if (value != null)
+                        writeFloats(output, number, value, value.length);
+                }
+
+                @Override
+                protected void transfer(Pipe pipe, Input input, Output output,
+                        boolean repeated) throws IOException
+                {
+                    final FloatArrayList values = new FloatArrayList();
+                    readFloats(input, values);
+                    writeFloats(output, number, values.elements, values.size);
+                }
+            };
+        }
+
+        return new Field<T>(FieldType.FLOAT, number, name, true,
+                f.getAnnotation(Tag.class))
+        {
+            @Override
+            protected void mergeFrom(Input input, T message) throws IOException
+            {
+                FloatArrayList values = (FloatArrayList) accessor.getObject(message);
+                if (values == null)
+                    accessor.putObject(message, values = new FloatArrayList());
+
+                readFloats(input, values);
+            }
+
+            @Override
+            protected void writeTo(Output output, T message) throws IOException
+            {
+                final FloatArrayList values = (FloatArrayList) accessor.getObject(message);
+                if (values != null)
+                    writeFloats(output, number, values.elements, values.size);
+            }
+
+            @Override
+            protected void transfer(Pipe pipe, Input input, Output output,
+                    boolean repeated) throws IOException
+            {
+                final FloatArrayList values = new FloatArrayList();
+                readFloats(input, values);
+                writeFloats(output, number, values.elements, values.size);
+            }
+        };
+    }
+
+    static void readDoubles(Input input, DoubleArrayList values) throws IOException
+    {
+        do
+        {
+            values.add(input.readDouble());
+        }
+        while (isPacked(input));
+    }
+
+    static void writeDoubles(Output output, int number, double[] values, int size)
+            throws IOException
+    {
+        if (size == 0)
+            return;
+
+        if (!(output instanceof PackedOutput))
+        {
+            for (int i = 0; i < size; i++)
+                output.writeDouble(number, values[i], true);
+
+            return;
+        }
+
+        final PackedOutput packed = (PackedOutput) output;
+        packed.writePackedLength(number, size * 8);
+        for (int i = 0; i < size; i++)
+            packed.writePackedFixed64(Double.doubleToRawLongBits(values[i]));
+    }
+
+    static double[] toArray(double[] existing, DoubleArrayList values)
+    {
+        if (existing == null || existing.length == 0)
+        {
+            return values.size == values.elements.length ? values.elements
+                    : values.toArray();
+        }
+
+        final double[] array = new double[existing.length + values.size];
+        System.arraycopy(existing, 0, array, 0, existing.length);
+        System.arraycopy(values.elements, 0, array, existing.length, values.size);
+        return array;
+    }
+
+    private static <T> Field<T> createDouble(int number, String name,
+            final java.lang.reflect.Field f)
+    {
+        final FieldAccessor accessor = RuntimeFieldFactory.accessor(f);
+        if (f.getType() == double[].class)
+        {
+            return new ArrayField<T>(FieldType.DOUBLE, number, name,
+                    f.getAnnotation(Tag.class))
+            {
+                @Override
+                Object newValues()
+                {
+                    return new DoubleArrayList();
+                }
+
+                @Override
+                void readValues(Input input, Object values) throws IOException
+                {
+                    readDoubles(input, (DoubleArrayList) values);
+                }
+
+                @Override
+                void appendValues(T message, Object values)
+                {
+                    accessor.putObject(message, toArray(
+                            (double[]) accessor.getObject(message), (DoubleArrayList) values));
+                }
+
+                @Override
+                protected void writeTo(Output output, T message) throws IOException
+                {
+                    final double[] value = (double[]) accessor.getObject(message);
+                    if (value != null)
+                        writeDoubles(output, number, value, value.length);
+                }
+
+                @Override
+                protected void transfer(Pipe pipe, Input input, Output output,
+                        boolean repeated) throws IOException
+                {
+                    final DoubleArrayList values = new DoubleArrayList();
+                    readDoubles(input, values);
+                    writeDoubles(output, number, values.elements, values.size);
+                }
+            };
+        }
+
+        return new Field<T>(FieldType.DOUBLE, number, name, true,
+                f.getAnnotation(Tag.class))
+        {
+            @Override
+            protected void mergeFrom(Input input, T message) throws IOException
+            {
+                DoubleArrayList values = (DoubleArrayList) accessor.getObject(message);
+                if (values == null)
+                    accessor.putObject(message, values = new DoubleArrayList());
+
+                readDoubles(input, values);
+            }
+
+            @Override
+            protected void writeTo(Output output, T message) throws IOException
+            {
+                final DoubleArrayList values = (DoubleArrayList) accessor.getObject(message);
+                if (values != null)
+                    writeDoubles(output, number, values.elements, values.size);
+            }
+
+            @Override
+            protected void transfer(Pipe pipe, Input input, Output output,
+                    boolean repeated) throws IOException
+            {
+                final DoubleArrayList values = new DoubleArrayList();
+                readDoubles(input, values);
+                writeDoubles(output, number, values.elements, values.size);
+            }
+        };
+    }
+
+}
@@ -1446,6 +1446,19 @@ public final class RuntimeReflectionFieldFactory
                         throw new RuntimeException(e);
                     }
                 }
+
+                @Override
+                protected Object getValue(Object message)
+                {
+                    try
+                    {
+                        return f.get(message);
+                    }
+                    catch (IllegalArgumentException | IllegalAccessException e)
+                    {
+                        throw new RuntimeException(e);
+                    }
+                }
             };
         }
 
@@ -1826,4 +1839,253 @@ public final class RuntimeReflectionFieldFactory
         }
     };
 
+    /**
+     * Accesses a field through reflection, for the fields not created by this factory (e.g. the packed ones).
+     */
+    static final class ReflectionFieldAccessor extends FieldAccessor
+    {
+
+        final java.lang.reflect.Field f;
+
+        ReflectionFieldAccessor(java.lang.reflect.Field f)
+        {
+            f.setAccessible(true);
+            this.f = f;
+        }
+
+        @Override
+        boolean getBoolean(Object message)
+        {
+            try
+            {
+                return f.getBoolean(message);
+            }
+            catch (IllegalArgumentException | IllegalAccessException e)
+            {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        void putBoolean(Object message, boolean value)
+        {
+            try
+            {
+                f.setBoolean(message, value);
+            }
+            catch (IllegalArgumentException | IllegalAccessException e)
+            {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        byte getByte(Object message)
+        {
+            try
+            {
+                return f.getByte(message);
+            }
+            catch (IllegalArgumentException | IllegalAccessException e)
+            {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        void putByte(Object message, byte value)
+        {
+            try
+            {
+                f.setByte(message, value);
+            }
+            catch (IllegalArgumentException | IllegalAccessException e)
+            {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        char getChar(Object message)
+        {
+            try
+            {
+                return f.getChar(message);
+            }
+            catch (IllegalArgumentException | IllegalAccessException e)
+            {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        void putChar(Object message, char value)
+        {
+            try
+            {
+                f.setChar(message, value);
+            }
+            catch (IllegalArgumentException | IllegalAccessException e)
+            {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        short getShort(Object message)
+        {
+            try
+            {
+                return f.getShort(message);
+            }
+            catch (IllegalArgumentException | IllegalAccessException e)
+            {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        void putShort(Object message, short value)
+        {
+            try
+            {
+                f.setShort(message, value);
+            }
+            catch (IllegalArgumentException | IllegalAccessException e)
+            {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        int getInt(Object message)
+        {
+            try
+            {
+                return f.getInt(message);
+            }
+            catch (IllegalArgumentException | IllegalAccessException e)
+            {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        void putInt(Object message, int value)
+        {
+            try
+            {
+                f.setInt(message, value);
+            }
+            catch (IllegalArgumentException | IllegalAccessException e)
+            {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        long getLong(Object message)
+        {
+            try
+            {
+                return f.getLong(message);
+            }
+            catch (IllegalArgumentException | IllegalAccessException e)
+            {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        void putLong(Object message, long value)
+        {
+            try
+            {
+                f.setLong(message, value);
+            }
+            catch (IllegalArgumentException | IllegalAccessException e)
+            {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        float getFloat(Object message)
+        {
+            try
+            {
+                return f.getFloat(message);
+            }
+            catch (IllegalArgumentException | IllegalAccessException e)
+            {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        void putFloat(Object message, float value)
+        {
+            try
+            {
+                f.setFloat(message, value);
+            }
+            catch (IllegalArgumentException | IllegalAccessException e)
+            {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        double getDouble(Object message)
+        {
+            try
+            {
+                return f.getDouble(message);
+            }
+            catch (IllegalArgumentException | IllegalAccessException e)
+            {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        void putDouble(Object message, double value)
+        {
+            try
+            {
+                f.setDouble(message, value);
+            }
+            catch (IllegalArgumentException | IllegalAccessException e)
+            {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        Object getObject(Object message)
+        {
+            try
+            {
+                return f.get(message);
+            }
+            catch (IllegalArgumentException | IllegalAccessException e)
+            {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        void putObject(Object message, Object value)
+        {
+            try
+            {
+                f.set(message, value);
+            }
+            catch (IllegalArgumentException | IllegalAccessException e)
+            {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
 }
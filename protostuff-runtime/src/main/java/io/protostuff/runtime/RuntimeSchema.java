@@ -28,6 +28,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import io.protostuff.CachedString;
+import io.protostuff.ClearableSchema;
 import io.protostuff.Exclude;
 import io.protostuff.Input;
 import io.protostuff.Message;
@@ -37,6 +39,8 @@ import io.protostuff.Schema;
 import io.protostuff.Tag;
 import io.protostuff.runtime.RuntimeEnv.DefaultInstantiator;
 import io.protostuff.runtime.RuntimeEnv.Instantiator;
+import io.protostuff.runtime.RuntimePackedFieldFactory.ArrayField;
+import io.protostuff.runtime.RuntimePackedFieldFactory.PendingArrays;
 
 /**
  * A schema that can be generated and cached at runtime for objects that have no schema. This is particularly useful for
@@ -44,7 +48,7 @@ import io.protostuff.runtime.RuntimeEnv.Instantiator;
  * 
  * @author David Yu
  */
-public final class RuntimeSchema<T> implements Schema<T>, FieldMap<T>
+public final class RuntimeSchema<T> implements ClearableSchema<T>, FieldMap<T>
 {
 
     public static final int MIN_TAG_VALUE = 1;
@@ -58,6 +62,9 @@ public final class RuntimeSchema<T> implements Schema<T>, FieldMap<T>
 	private final Pipe.Schema<T> pipeSchema;
 	private final FieldMap<T> fieldMap;
     private final Class<T> typeClass;
+    private final SchemaDispatch<T> dispatch;
+    private final boolean packedArrays;
+    private volatile MessageClearer<T> clearer;
 
     /**
      * Maps the {@code baseClass} to a specific non-interface/non-abstract {@code typeClass} and registers it (this must
@@ -254,9 +261,7 @@ public final class RuntimeSchema<T> implements Schema<T>, FieldMap<T>
                     name = tag.alias().isEmpty() ? f.getName() : tag.alias();
                 }
 
-                final Field<T> field = RuntimeFieldFactory.getFieldFactory(
-                        f.getType(), strategy).create(fieldMapping, name, f,
-                        strategy);
+                final Field<T> field = createField(fieldMapping, name, f, strategy);
                 fields.add(field);
             }
         }
@@ -298,15 +303,44 @@ public final class RuntimeSchema<T> implements Schema<T>, FieldMap<T>
             final int mod = f.getModifiers();
             if (!Modifier.isStatic(mod) && !Modifier.isTransient(mod) && f.getAnnotation(Exclude.class) == null)
             {
-                final Field<T> field = RuntimeFieldFactory.getFieldFactory(
-                        f.getType(), strategy).create(++i, entry.getValue(), f,
-                        strategy);
+                final Field<T> field = createField(++i, entry.getValue(), f, strategy);
                 fields.add(field);
             }
         }
         return new RuntimeSchema<>(typeClass, fields, RuntimeEnv.newInstantiator(typeClass));
     }
 
+    /**
+     * Creates the field of the pojo field {@code f}, which (unlike the values of arrays and collections) can be a
+     * packed repeated field.
+     */
+    static <T> Field<T> createField(int number, String name, java.lang.reflect.Field f,
+            IdStrategy strategy)
+    {
+        final Class<?> type = f.getType();
+        if (RuntimePackedFieldFactory.isPackedType(type) && !strategy.isDelegateRegistered(type))
+            return RuntimePackedFieldFactory.create(number, name, f);
+
+        return getFieldFactory(f, strategy).create(number, name, f, strategy);
+    }
+
+    /**
+     * Gets the runtime field factory of the pojo field {@code f}, which (unlike the values of arrays and collections)
+     * can be a {@link CachedString} field.
+     */
+    static RuntimeFieldFactory<?> getFieldFactory(java.lang.reflect.Field f,
+            IdStrategy strategy)
+    {
+        final Class<?> type = f.getType();
+        if (type == String.class && RuntimeCachedStringFieldFactory.isCached(f)
+                && !strategy.isDelegateRegistered(type))
+        {
+            return RuntimeCachedStringFieldFactory.CACHED_STRING;
+        }
+
+        return RuntimeFieldFactory.getFieldFactory(type, strategy);
+    }
+
     static Map<String, java.lang.reflect.Field> findInstanceFields(
             Class<?> typeClass)
     {
@@ -343,6 +377,10 @@ public final class RuntimeSchema<T> implements Schema<T>, FieldMap<T>
 		this.pipeSchema = new RuntimePipeSchema<>(this, fieldMap);
         this.instantiator = instantiator;
         this.typeClass = typeClass;
+        this.packedArrays = RuntimePackedFieldFactory.hasArrayField(fieldMap.getFields());
+        // the generated dispatch does not collect the values of the packed arrays
+        this.dispatch = RuntimeEnv.USE_GENERATED_SCHEMA && !packedArrays ? SchemaDispatchGenerator
+                .generate(typeClass, fieldMap.getFields()) : null;
     }
 
 	private FieldMap<T> createFieldMap(Collection<Field<T>> fields)
@@ -436,6 +474,13 @@ public final class RuntimeSchema<T> implements Schema<T>, FieldMap<T>
     @Override
     public final void mergeFrom(Input input, T message) throws IOException
     {
+        if (dispatch != null)
+        {
+            dispatch.mergeFrom(input, message, this);
+            return;
+        }
+
+        PendingArrays<T> pending = null;
         for (int n = input.readFieldNumber(this); n != 0; n = input.readFieldNumber(this))
         {
             final Field<T> field = getFieldByNumber(n);
@@ -443,20 +488,43 @@ public final class RuntimeSchema<T> implements Schema<T>, FieldMap<T>
             {
                 input.handleUnknownField(n, this);
             }
+            else if (packedArrays && field instanceof ArrayField)
+            {
+                pending = PendingArrays.mergeFrom(input, (ArrayField<T>) field, pending);
+            }
             else
             {
                 field.mergeFrom(input, message);
             }
         }
+
+        if (pending != null)
+            pending.flush(message);
     }
 
     @Override
     public final void writeTo(Output output, T message) throws IOException
     {
+        if (dispatch != null)
+        {
+            dispatch.writeTo(output, message);
+            return;
+        }
+
         for (Field<T> f : getFields())
             f.writeTo(output, message);
     }
 
+    /**
+     * Returns true if this schema uses a runtime-generated dispatch class.
+     * 
+     * @see RuntimeEnv#USE_GENERATED_SCHEMA
+     */
+    public boolean isGenerated()
+    {
+        return dispatch != null;
+    }
+
     /**
      * Always returns true, everything is optional.
      */
@@ -472,6 +540,21 @@ public final class RuntimeSchema<T> implements Schema<T>, FieldMap<T>
         return instantiator.newInstance();
     }
 
+    /**
+     * Resets the fields of the {@code message} to the values of a new message, so that it can be reused as the target
+     * of a merge. If {@link RuntimeEnv#REUSE_ON_MERGE} is enabled, its nested messages, collections, maps and primitive
+     * arrays are cleared (not replaced) so that the merge refills them.
+     */
+    @Override
+    public void clear(T message)
+    {
+        MessageClearer<T> clearer = this.clearer;
+        if (clearer == null)
+            this.clearer = clearer = new MessageClearer<>(this);
+
+        clearer.clear(message);
+    }
+
     /**
      * Invoked only when applications are having pipe io operations.
      */
@@ -496,6 +579,10 @@ public final class RuntimeSchema<T> implements Schema<T>, FieldMap<T>
         if (RuntimeSchema.class.isAssignableFrom(schema.getClass()))
             return ((RuntimeSchema<T>) schema).getPipeSchema();
 
+        // schemas generated at build time (see SchemaProvider)
+        if (schema instanceof ProvidedSchema)
+            return ((ProvidedSchema<T>) schema).getPipeSchema();
+
         if (throwIfNone)
             throw new RuntimeException("No pipe schema for: " + clazz);
 
@@ -1244,6 +1244,12 @@ public final class RuntimeUnsafeFieldFactory
                 {
                     us.putObject(message, offset, value);
                 }
+
+                @Override
+                protected Object getValue(Object message)
+                {
+                    return us.getObject(message, offset);
+                }
             };
         }
 
@@ -1565,4 +1571,127 @@ public final class RuntimeUnsafeFieldFactory
         }
     };
 
+
+    /**
+     * Accesses a field through its offset, for the fields not created by this factory (e.g. the packed ones).
+     */
+    static final class UnsafeFieldAccessor extends FieldAccessor
+    {
+
+        final long offset;
+
+        UnsafeFieldAccessor(java.lang.reflect.Field f)
+        {
+            offset = us.objectFieldOffset(f);
+        }
+
+        @Override
+        boolean getBoolean(Object message)
+        {
+            return us.getBoolean(message, offset);
+        }
+
+        @Override
+        void putBoolean(Object message, boolean value)
+        {
+            us.putBoolean(message, offset, value);
+        }
+
+        @Override
+        byte getByte(Object message)
+        {
+            return us.getByte(message, offset);
+        }
+
+        @Override
+        void putByte(Object message, byte value)
+        {
+            us.putByte(message, offset, value);
+        }
+
+        @Override
+        char getChar(Object message)
+        {
+            return us.getChar(message, offset);
+        }
+
+        @Override
+        void putChar(Object message, char value)
+        {
+            us.putChar(message, offset, value);
+        }
+
+        @Override
+        short getShort(Object message)
+        {
+            return us.getShort(message, offset);
+        }
+
+        @Override
+        void putShort(Object message, short value)
+        {
+            us.putShort(message, offset, value);
+        }
+
+        @Override
+        int getInt(Object message)
+        {
+            return us.getInt(message, offset);
+        }
+
+        @Override
+        void putInt(Object message, int value)
+        {
+            us.putInt(message, offset, value);
+        }
+
+        @Override
+        long getLong(Object message)
+        {
+            return us.getLong(message, offset);
+        }
+
+        @Override
+        void putLong(Object message, long value)
+        {
+            us.putLong(message, offset, value);
+        }
+
+        @Override
+        float getFloat(Object message)
+        {
+            return us.getFloat(message, offset);
+        }
+
+        @Override
+        void putFloat(Object message, float value)
+        {
+            us.putFloat(message, offset, value);
+        }
+
+        @Override
+        double getDouble(Object message)
+        {
+            return us.getDouble(message, offset);
+        }
+
+        @Override
+        void putDouble(Object message, double value)
+        {
+            us.putDouble(message, offset, value);
+        }
+
+        @Override
+        Object getObject(Object message)
+        {
+            return us.getObject(message, offset);
+        }
+
+        @Override
+        void putObject(Object message, Object value)
+        {
+            us.putObject(message, offset, value);
+        }
+    }
+
 }
@@ -0,0 +1,31 @@
+package io.protostuff.runtime;
+
+import java.io.IOException;
+
+import io.protostuff.Input;
+import io.protostuff.Output;
+import io.protostuff.Schema;
+
+/**
+ * Straight-line field dispatch for a {@link RuntimeSchema}, generated at runtime by {@link SchemaDispatchGenerator}.
+ * <p>
+ * Every field of the pojo gets its own call site in the generated subclass, so each {@link Field#writeTo} and
+ * {@link Field#mergeFrom} invocation is monomorphic and can be inlined by the jit (unlike the shared loop in
+ * {@link RuntimeSchema} which sees every field type of every pojo).
+ *
+ * @see RuntimeEnv#USE_GENERATED_SCHEMA
+ */
+abstract class SchemaDispatch<T>
+{
+
+    /**
+     * Writes all the fields of the {@code message} to the {@code output}.
+     */
+    abstract void writeTo(Output output, T message) throws IOException;
+
+    /**
+     * Reads the fields from the {@code input} until the end of the message, using a switch on the field number.
+     */
+    abstract void mergeFrom(Input input, T message, Schema<T> schema)
+            throws IOException;
+}
@@ -0,0 +1,726 @@
+package io.protostuff.runtime;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Generates a {@link SchemaDispatch} class per pojo at runtime, with a straight-line {@code writeTo} and a
+ * switch-based {@code mergeFrom}.
+ * <p>
+ * The class bytes are emitted directly (no bytecode library) and defined in this package via
+ * {@code MethodHandles.Lookup.defineClass} (jdk9+) or {@code sun.misc.Unsafe.defineClass} (jdk6-8). If neither is
+ * available, {@link #generate} returns null and the {@link RuntimeSchema} uses its regular field loop.
+ * <p>
+ * The generated code only invokes the {@link Field fields} created by the {@link RuntimeFieldFactory}, which means
+ * the type rules, the {@link IdStrategy} and the wire format are exactly the same as the non-generated path.
+ *
+ * @created Oct 18, 2026
+ */
+final class SchemaDispatchGenerator
+{
+
+    /**
+     * Pojos with more fields than this are not generated (keeps the methods well within the 64k code limit and the
+     * 16-bit branch offsets).
+     */
+    static final int MAX_FIELDS = 1024;
+
+    static final String PACKAGE = "io/protostuff/runtime/";
+
+    static final String FIELD = PACKAGE + "Field", DISPATCH = PACKAGE
+            + "SchemaDispatch", FIELD_DESC = "L" + FIELD + ";";
+
+    static final String INPUT = "io/protostuff/Input",
+            OUTPUT = "io/protostuff/Output", SCHEMA = "io/protostuff/Schema";
+
+    private static final AtomicInteger COUNTER = new AtomicInteger();
+
+    // jdk9+
+    private static final Method LOOKUP_DEFINE_CLASS;
+    // jdk6-8
+    private static final Object UNSAFE;
+    private static final Method UNSAFE_DEFINE_CLASS;
+
+    static
+    {
+        Method lookupDefineClass = null;
+        try
+        {
+            lookupDefineClass = MethodHandles.Lookup.class.getMethod(
+                    "defineClass", byte[].class);
+        }
+        catch (Throwable e)
+        {
+            // ignore
+        }
+
+        Object unsafe = null;
+        Method unsafeDefineClass = null;
+        if (lookupDefineClass == null)
+        {
+            try
+            {
+                Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+                java.lang.reflect.Field f = unsafeClass
+                        .getDeclaredField("theUnsafe");
+                f.setAccessible(true);
+                unsafe = f.get(null);
+                unsafeDefineClass = unsafeClass.getMethod("defineClass",
+                        String.class, byte[].class, int.class, int.class,
+                        ClassLoader.class, java.security.ProtectionDomain.class);
+            }
+            catch (Throwable e)
+            {
+                unsafe = null;
+                unsafeDefineClass = null;
+            }
+        }
+
+        LOOKUP_DEFINE_CLASS = lookupDefineClass;
+        UNSAFE = unsafe;
+        UNSAFE_DEFINE_CLASS = unsafeDefineClass;
+    }
+
+    private SchemaDispatchGenerator()
+    {
+    }
+
+    /**
+     * Returns true if classes can be generated on this jvm.
+     */
+    static boolean isAvailable()
+    {
+        return LOOKUP_DEFINE_CLASS != null || UNSAFE_DEFINE_CLASS != null;
+    }
+
+    /**
+     * Returns true if classes are defined via {@code MethodHandles.Lookup} (jdk9+), without sun.misc.Unsafe.
+     */
+    static boolean isLookupAvailable()
+    {
+        return LOOKUP_DEFINE_CLASS != null;
+    }
+
+    /**
+     * Generates the dispatch for the given fields, or returns null if class generation is not available.
+     */
+    @SuppressWarnings("unchecked")
+    static <T> SchemaDispatch<T> generate(Class<T> typeClass,
+            List<Field<T>> fields)
+    {
+        if (!isAvailable() || fields.size() > MAX_FIELDS)
+            return null;
+
+        final String className = PACKAGE + "SchemaDispatch$"
+                + typeClass.getName().replace('.', '_') + '$'
+                + COUNTER.incrementAndGet();
+
+        try
+        {
+            final Class<?> clazz = defineClass(className,
+                    emit(className, fields));
+            final Constructor<?> constructor = clazz
+                    .getDeclaredConstructor(Field[].class);
+
+            return (SchemaDispatch<T>) constructor.newInstance(
+                    (Object) fields.toArray(new Field<?>[fields.size()]));
+        }
+        catch (Exception | LinkageError e)
+        {
+            // fallback to the field loop
+            return null;
+        }
+    }
+
+    /**
+     * Defines the class in this package, with the class loader of this class.
+     */
+    static Class<?> defineClass(String className, byte[] bytes)
+            throws Exception
+    {
+        if (LOOKUP_DEFINE_CLASS != null)
+            return (Class<?>) LOOKUP_DEFINE_CLASS.invoke(MethodHandles.lookup(), bytes);
+
+        return (Class<?>) UNSAFE_DEFINE_CLASS.invoke(UNSAFE,
+                className.replace('/', '.'), bytes, 0, bytes.length,
+                SchemaDispatchGenerator.class.getClassLoader(),
+                SchemaDispatchGenerator.class.getProtectionDomain());
+    }
+
+    static <T> byte[] emit(String className, final List<Field<T>> fields)
+            throws IOException
+    {
+        final int size = fields.size();
+        final ConstantPool cp = new ConstantPool();
+        final int thisClass = cp.clazz(className), superClass = cp.clazz(DISPATCH);
+
+        final int[] fieldRefs = new int[size];
+        for (int i = 0; i < size; i++)
+            fieldRefs[i] = cp.fieldref(className, "f" + i, FIELD_DESC);
+
+        final Code init = new Code(), writeTo = new Code(), mergeFrom = new Code();
+
+        // <init>(Field[])
+        init.op(ALOAD_0).op(INVOKESPECIAL).u2(
+                cp.methodref(DISPATCH, "<init>", "()V"));
+        for (int i = 0; i < size; i++)
+        {
+            init.op(ALOAD_0).op(ALOAD_1).push(i).op(AALOAD)
+                    .op(PUTFIELD).u2(fieldRefs[i]);
+        }
+        init.op(RETURN);
+
+        // writeTo(Output, Object)
+        final int fieldWriteTo = cp.methodref(FIELD, "writeTo",
+                "(L" + OUTPUT + ";Ljava/lang/Object;)V");
+        for (int i = 0; i < size; i++)
+        {
+            writeTo.op(ALOAD_0).op(GETFIELD).u2(fieldRefs[i]).op(ALOAD_1)
+                    .op(ALOAD_2).op(INVOKEVIRTUAL).u2(fieldWriteTo);
+        }
+        writeTo.op(RETURN);
+
+        // mergeFrom(Input, Object, Schema)
+        final int readFieldNumber = cp.interfaceMethodref(INPUT,
+                "readFieldNumber", "(L" + SCHEMA + ";)I");
+        final int handleUnknownField = cp.interfaceMethodref(INPUT,
+                "handleUnknownField", "(IL" + SCHEMA + ";)V");
+        final int fieldMergeFrom = cp.methodref(FIELD, "mergeFrom",
+                "(L" + INPUT + ";Ljava/lang/Object;)V");
+
+        final ArrayList<Integer> sorted = new ArrayList<>(size);
+        for (int i = 0; i < size; i++)
+            sorted.add(i);
+        Collections.sort(sorted, new Comparator<Integer>()
+        {
+            @Override
+            public int compare(Integer a, Integer b)
+            {
+                return Integer.compare(fields.get(a).number, fields.get(b).number);
+            }
+        });
+
+        // n = input.readFieldNumber(schema)
+        mergeFrom.op(ALOAD_1).op(ALOAD_3).op(INVOKEINTERFACE)
+                .u2(readFieldNumber).u1(2).u1(0).op(ISTORE).u1(4);
+        final int loop = mergeFrom.len;
+        // while(n != 0)
+        mergeFrom.op(ILOAD).u1(4).op(IFEQ);
+        final int ifEnd = mergeFrom.len - 1;
+        mergeFrom.u2(0).op(ILOAD).u1(4);
+
+        final int min = fields.isEmpty() ? 0 : fields.get(sorted.get(0)).number,
+                max = fields.isEmpty() ? 0 : fields.get(sorted.get(size - 1)).number;
+
+        // same heuristic as javac
+        final long tableCost = 4 + ((long) max - min + 1) + 3 * 3,
+                lookupCost = 3 + 2 * (long) size + 3 * (long) size;
+
+        final boolean table = size != 0 && tableCost <= lookupCost;
+        final int switchPc = mergeFrom.len;
+        final int[] caseOffsetPositions = new int[size];
+        final int defaultOffsetPosition;
+        if (table)
+        {
+            mergeFrom.op(TABLESWITCH).align();
+            defaultOffsetPosition = mergeFrom.len;
+            mergeFrom.u4(0).u4(min).u4(max);
+            final int start = mergeFrom.len;
+            for (int n = min; n <= max; n++)
+                mergeFrom.u4(0);
+            for (int i = 0; i < size; i++)
+            {
+                caseOffsetPositions[i] = start
+                        + 4 * (fields.get(sorted.get(i)).number - min);
+            }
+        }
+        else
+        {
+            mergeFrom.op(LOOKUPSWITCH).align();
+            defaultOffsetPosition = mergeFrom.len;
+            mergeFrom.u4(0).u4(size);
+            for (int i = 0; i < size; i++)
+            {
+                mergeFrom.u4(fields.get(sorted.get(i)).number);
+                caseOffsetPositions[i] = mergeFrom.len;
+                mergeFrom.u4(0);
+            }
+        }
+
+        final int[] gotoNext = new int[size];
+        for (int i = 0; i < size; i++)
+        {
+            mergeFrom.patch4(caseOffsetPositions[i], mergeFrom.len - switchPc);
+            mergeFrom.op(ALOAD_0).op(GETFIELD).u2(fieldRefs[sorted.get(i)])
+                    .op(ALOAD_1).op(ALOAD_2).op(INVOKEVIRTUAL)
+                    .u2(fieldMergeFrom);
+            gotoNext[i] = mergeFrom.len;
+            mergeFrom.op(GOTO).u2(0);
+        }
+
+        // default: input.handleUnknownField(n, schema)
+        final int defaultPc = mergeFrom.len;
+        mergeFrom.patch4(defaultOffsetPosition, defaultPc - switchPc);
+        if (table)
+        {
+            // the gaps of the table go to the default
+            for (int n = min, start = defaultOffsetPosition + 12; n <= max; n++)
+            {
+                if (mergeFrom.get4(start + 4 * (n - min)) == 0)
+                    mergeFrom.patch4(start + 4 * (n - min), defaultPc - switchPc);
+            }
+        }
+        mergeFrom.op(ALOAD_1).op(ILOAD).u1(4).op(ALOAD_3)
+                .op(INVOKEINTERFACE).u2(handleUnknownField).u1(3).u1(0);
+
+        // n = input.readFieldNumber(schema)
+        final int next = mergeFrom.len;
+        for (int pc : gotoNext)
+            mergeFrom.patch2(pc + 1, next - pc);
+        mergeFrom.op(ALOAD_1).op(ALOAD_3).op(INVOKEINTERFACE)
+                .u2(readFieldNumber).u1(2).u1(0).op(ISTORE).u1(4);
+        mergeFrom.op(GOTO).u2(loop - mergeFrom.len + 1);
+
+        final int end = mergeFrom.len;
+        mergeFrom.patch2(ifEnd + 1, end - ifEnd);
+        mergeFrom.op(RETURN);
+
+        final int codeAttr = cp.utf8("Code");
+        final int initName = cp.utf8("<init>"), initDesc = cp.utf8("([" + FIELD_DESC + ")V");
+        final int writeToName = cp.utf8("writeTo"), writeToDesc = cp.utf8(
+                "(L" + OUTPUT + ";Ljava/lang/Object;)V");
+        final int mergeFromName = cp.utf8("mergeFrom"), mergeFromDesc = cp.utf8(
+                "(L" + INPUT + ";Ljava/lang/Object;L" + SCHEMA + ";)V");
+        final int[] fieldNames = new int[size];
+        for (int i = 0; i < size; i++)
+            fieldNames[i] = cp.utf8("f" + i);
+        final int fieldDesc = cp.utf8(FIELD_DESC);
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(
+                256 + 64 * size);
+        final DataOutputStream out = new DataOutputStream(bytes);
+
+        out.writeInt(0xCAFEBABE);
+        // java 5 class file (the type-inferencing verifier needs no stack map frames)
+        out.writeShort(0);
+        out.writeShort(49);
+        cp.writeTo(out);
+        out.writeShort(ACC_FINAL | ACC_SUPER);
+        out.writeShort(thisClass);
+        out.writeShort(superClass);
+        // interfaces
+        out.writeShort(0);
+
+        out.writeShort(size);
+        for (int i = 0; i < size; i++)
+        {
+            out.writeShort(ACC_PRIVATE | ACC_FINAL);
+            out.writeShort(fieldNames[i]);
+            out.writeShort(fieldDesc);
+            out.writeShort(0);
+        }
+
+        out.writeShort(3);
+        writeMethod(out, initName, initDesc, codeAttr, 3, 2, init);
+        writeMethod(out, writeToName, writeToDesc, codeAttr, 3, 3, writeTo);
+        writeMethod(out, mergeFromName, mergeFromDesc, codeAttr, 3, 5,
+                mergeFrom);
+
+        // class attributes
+        out.writeShort(0);
+        out.flush();
+
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Returns a copy of the class file renamed to {@code className}, without its InnerClasses, EnclosingMethod and
+     * NestHost attributes (the copy of a nested class is a top-level class).
+     * <p>
+     * Only the name of the class is replaced, so the class must not refer to itself other than through its own
+     * CONSTANT_Class (e.g. {@code Foo.class}, its own fields and methods).
+     */
+    static byte[] rename(byte[] classFile, String className) throws IOException
+    {
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(
+                classFile));
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(
+                classFile.length + className.length());
+        final DataOutputStream out = new DataOutputStream(bytes);
+
+        // magic, minor and major version
+        out.writeInt(in.readInt());
+        out.writeInt(in.readInt());
+
+        // the entries are kept until the name of this class is known
+        final int count = in.readUnsignedShort();
+        final byte[][] entries = new byte[count][];
+        final String[] utf8 = new String[count];
+        final int[] classNames = new int[count];
+        for (int i = 1; i < count; i++)
+        {
+            final int tag = in.readUnsignedByte(), size;
+            switch (tag)
+            {
+                case 1:
+                    utf8[i] = in.readUTF();
+                    entries[i] = utf8(utf8[i]);
+                    continue;
+                case 7:
+                    classNames[i] = in.readUnsignedShort();
+                    entries[i] = new byte[] { 7, (byte) (classNames[i] >>> 8),
+                            (byte) classNames[i] };
+                    continue;
+                case 8: // string
+                case 16: // method type
+                case 19: // module
+                case 20: // package
+                    size = 2;
+                    break;
+                case 15: // method handle
+                    size = 3;
+                    break;
+                case 3: // int
+                case 4: // float
+                case 9: // field ref
+                case 10: // method ref
+                case 11: // interface method ref
+                case 12: // name and type
+                case 17: // dynamic
+                case 18: // invoke dynamic
+                    size = 4;
+                    break;
+                case 5: // long
+                case 6: // double
+                    size = 8;
+                    break;
+                default:
+                    throw new IOException("Unknown constant pool tag: " + tag);
+            }
+            entries[i] = new byte[1 + size];
+            entries[i][0] = (byte) tag;
+            in.readFully(entries[i], 1, size);
+            if (tag == 5 || tag == 6)
+                i++; // takes two entries
+        }
+
+        final int access = in.readUnsignedShort(), thisClass = in
+                .readUnsignedShort();
+        entries[classNames[thisClass]] = utf8(className);
+
+        out.writeShort(count);
+        for (byte[] entry : entries)
+        {
+            if (entry != null)
+                out.write(entry);
+        }
+        out.writeShort(access);
+        out.writeShort(thisClass);
+
+        // super class
+        out.writeShort(in.readUnsignedShort());
+        final int interfaces = in.readUnsignedShort();
+        out.writeShort(interfaces);
+        for (int i = 0; i < interfaces; i++)
+            out.writeShort(in.readUnsignedShort());
+
+        // fields, then methods
+        for (int m = 0; m < 2; m++)
+        {
+            final int members = in.readUnsignedShort();
+            out.writeShort(members);
+            for (int i = 0; i < members; i++)
+            {
+                // access, name, descriptor
+                out.writeShort(in.readUnsignedShort());
+                out.writeShort(in.readUnsignedShort());
+                out.writeShort(in.readUnsignedShort());
+                final int attributes = in.readUnsignedShort();
+                out.writeShort(attributes);
+                for (int j = 0; j < attributes; j++)
+                    copyAttribute(in, out);
+            }
+        }
+
+        final ByteArrayOutputStream classAttributes = new ByteArrayOutputStream();
+        final DataOutputStream attributesOut = new DataOutputStream(
+                classAttributes);
+        int kept = 0;
+        for (int i = 0, attributes = in.readUnsignedShort(); i < attributes; i++)
+        {
+            final int name = in.readUnsignedShort();
+            if ("InnerClasses".equals(utf8[name])
+                    || "EnclosingMethod".equals(utf8[name])
+                    || "NestHost".equals(utf8[name]))
+            {
+                in.readFully(new byte[in.readInt()]);
+                continue;
+            }
+            attributesOut.writeShort(name);
+            copyAttributeBody(in, attributesOut);
+            kept++;
+        }
+        attributesOut.flush();
+        out.writeShort(kept);
+        classAttributes.writeTo(out);
+        out.flush();
+
+        return bytes.toByteArray();
+    }
+
+    private static byte[] utf8(String value) throws IOException
+    {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(
+                3 + value.length());
+        final DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(1);
+        out.writeUTF(value);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static void copyAttribute(DataInputStream in, DataOutputStream out)
+            throws IOException
+    {
+        out.writeShort(in.readUnsignedShort());
+        copyAttributeBody(in, out);
+    }
+
+    private static void copyAttributeBody(DataInputStream in,
+            DataOutputStream out) throws IOException
+    {
+        final byte[] body = new byte[in.readInt()];
+        in.readFully(body);
+        out.writeInt(body.length);
+        out.write(body);
+    }
+
+    private static void writeMethod(DataOutputStream out, int name, int desc,
+            int codeAttr, int maxStack, int maxLocals, Code code)
+            throws IOException
+    {
+        out.writeShort(0);
+        out.writeShort(name);
+        out.writeShort(desc);
+        out.writeShort(1);
+        out.writeShort(codeAttr);
+        out.writeInt(12 + code.len);
+        out.writeShort(maxStack);
+        out.writeShort(maxLocals);
+        out.writeInt(code.len);
+        out.write(code.buf, 0, code.len);
+        // exception table
+        out.writeShort(0);
+        // code attributes
+        out.writeShort(0);
+    }
+
+    static final int ACC_PRIVATE = 0x0002, ACC_FINAL = 0x0010,
+            ACC_SUPER = 0x0020;
+
+    static final int ICONST_0 = 0x03, BIPUSH = 0x10, SIPUSH = 0x11,
+            ILOAD = 0x15, ALOAD_0 = 0x2a, ALOAD_1 = 0x2b, ALOAD_2 = 0x2c,
+            ALOAD_3 = 0x2d, AALOAD = 0x32, ISTORE = 0x36, IFEQ = 0x99,
+            GOTO = 0xa7, TABLESWITCH = 0xaa, LOOKUPSWITCH = 0xab,
+            RETURN = 0xb1, GETFIELD = 0xb4, PUTFIELD = 0xb5,
+            INVOKEVIRTUAL = 0xb6, INVOKESPECIAL = 0xb7,
+            INVOKEINTERFACE = 0xb9;
+
+    /**
+     * A growable code buffer.
+     */
+    static final class Code
+    {
+        byte[] buf = new byte[256];
+        int len;
+
+        private void ensure(int size)
+        {
+            if (len + size > buf.length)
+            {
+                final byte[] b = new byte[Math.max(buf.length * 2, len + size)];
+                System.arraycopy(buf, 0, b, 0, len);
+                buf = b;
+            }
+        }
+
+        Code op(int opcode)
+        {
+            return u1(opcode);
+        }
+
+        Code u1(int value)
+        {
+            ensure(1);
+            buf[len++] = (byte) value;
+            return this;
+        }
+
+        Code u2(int value)
+        {
+            ensure(2);
+            buf[len++] = (byte) (value >>> 8);
+            buf[len++] = (byte) value;
+            return this;
+        }
+
+        Code u4(int value)
+        {
+            ensure(4);
+            buf[len++] = (byte) (value >>> 24);
+            buf[len++] = (byte) (value >>> 16);
+            buf[len++] = (byte) (value >>> 8);
+            buf[len++] = (byte) value;
+            return this;
+        }
+
+        Code push(int value)
+        {
+            if (value <= 5)
+                return op(ICONST_0 + value);
+
+            if (value <= Byte.MAX_VALUE)
+                return op(BIPUSH).u1(value);
+
+            return op(SIPUSH).u2(value);
+        }
+
+        /**
+         * Pads the switch opcode's operands to a 4-byte boundary.
+         */
+        Code align()
+        {
+            while ((len & 3) != 0)
+                u1(0);
+            return this;
+        }
+
+        void patch2(int offset, int value)
+        {
+            buf[offset] = (byte) (value >>> 8);
+            buf[offset + 1] = (byte) value;
+        }
+
+        void patch4(int offset, int value)
+        {
+            buf[offset] = (byte) (value >>> 24);
+            buf[offset + 1] = (byte) (value >>> 16);
+            buf[offset + 2] = (byte) (value >>> 8);
+            buf[offset + 3] = (byte) value;
+        }
+
+        int get4(int offset)
+        {
+            return (buf[offset] & 0xFF) << 24 | (buf[offset + 1] & 0xFF) << 16
+                    | (buf[offset + 2] & 0xFF) << 8 | (buf[offset + 3] & 0xFF);
+        }
+    }
+
+    /**
+     * A minimal constant pool (utf8, class, member refs).
+     */
+    static final class ConstantPool
+    {
+        final HashMap<String, Integer> entries = new HashMap<>();
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        int count = 1;
+
+        int utf8(String value) throws IOException
+        {
+            final String key = "1" + value;
+            final Integer existing = entries.get(key);
+            if (existing != null)
+                return existing;
+
+            out.writeByte(1);
+            out.writeUTF(value);
+            return put(key);
+        }
+
+        int clazz(String internalName) throws IOException
+        {
+            final String key = "7" + internalName;
+            final Integer existing = entries.get(key);
+            if (existing != null)
+                return existing;
+
+            final int name = utf8(internalName);
+            out.writeByte(7);
+            out.writeShort(name);
+            return put(key);
+        }
+
+        int nameAndType(String name, String desc) throws IOException
+        {
+            final String key = "12" + name + ' ' + desc;
+            final Integer existing = entries.get(key);
+            if (existing != null)
+                return existing;
+
+            final int n = utf8(name), d = utf8(desc);
+            out.writeByte(12);
+            out.writeShort(n);
+            out.writeShort(d);
+            return put(key);
+        }
+
+        int fieldref(String owner, String name, String desc) throws IOException
+        {
+            return ref(9, owner, name, desc);
+        }
+
+        int methodref(String owner, String name, String desc)
+                throws IOException
+        {
+            return ref(10, owner, name, desc);
+        }
+
+        int interfaceMethodref(String owner, String name, String desc)
+                throws IOException
+        {
+            return ref(11, owner, name, desc);
+        }
+
+        private int ref(int tag, String owner, String name, String desc)
+                throws IOException
+        {
+            final String key = tag + owner + '.' + name + ' ' + desc;
+            final Integer existing = entries.get(key);
+            if (existing != null)
+                return existing;
+
+            final int c = clazz(owner), nt = nameAndType(name, desc);
+            out.writeByte(tag);
+            out.writeShort(c);
+            out.writeShort(nt);
+            return put(key);
+        }
+
+        private int put(String key)
+        {
+            final int index = count++;
+            entries.put(key, index);
+            return index;
+        }
+
+        void writeTo(DataOutputStream target) throws IOException
+        {
+            out.flush();
+            target.writeShort(count);
+            bytes.writeTo(target);
+        }
+    }
+}
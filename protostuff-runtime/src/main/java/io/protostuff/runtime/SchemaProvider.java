@@ -0,0 +1,28 @@
+package io.protostuff.runtime;
+
+import java.util.List;
+
+import io.protostuff.Schema;
+
+/**
+ * Supplies schemas that were generated at build time (e.g by the protostuff-runtime-apt annotation processor) so that
+ * they can be registered in place of the reflection-based {@link RuntimeSchema}.
+ * <p>
+ * Providers are discovered via {@link java.util.ServiceLoader} (META-INF/services/io.protostuff.runtime.SchemaProvider)
+ * and registered with the default {@link IdStrategy} when {@link RuntimeEnv} is loaded if
+ * {@link RuntimeEnv#REGISTER_PROVIDED_SCHEMAS} is enabled, or with
+ * {@link DefaultIdStrategy#registerProvidedSchemas(ClassLoader)}. For an
+ * {@code ExplicitIdStrategy}, use its registry's {@code registerPojos(SchemaProvider, int)}.
+ * <p>
+ * The schemas are piped through their pipe schema if they implement {@link ProvidedSchema}.
+ *
+ * @see RuntimeEnv#REGISTER_PROVIDED_SCHEMAS
+ */
+public interface SchemaProvider
+{
+
+    /**
+     * Returns the schemas bound to the given {@code strategy}, in a stable order.
+     */
+    List<Schema<?>> getSchemas(IdStrategy strategy);
+}
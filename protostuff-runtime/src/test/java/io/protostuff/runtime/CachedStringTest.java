@@ -0,0 +1,147 @@
+package io.protostuff.runtime;
+
+import java.io.ByteArrayInputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import io.protostuff.CachedString;
+import io.protostuff.LinkedBuffer;
+import io.protostuff.ProtobufIOUtil;
+import io.protostuff.ProtostuffIOUtil;
+import io.protostuff.Schema;
+
+/**
+ * Tests the {@link CachedString} fields of the runtime schemas.
+ */
+public class CachedStringTest extends TestCase
+{
+
+    public static final class Order
+    {
+        int id;
+        @CachedString
+        String status;
+        String note;
+    }
+
+    @CachedString
+    public static final class Address
+    {
+        String country;
+        String city;
+        @CachedString(false)
+        String street;
+    }
+
+    public static final class Inventory
+    {
+        @CachedString
+        Map<String, Integer> counts;
+        @CachedString
+        Map<Integer, String> statuses;
+        Map<String, Integer> other;
+    }
+
+    static Order newOrder(int id)
+    {
+        Order order = new Order();
+        order.id = id;
+        order.status = "SHIPPED";
+        order.note = "note";
+        return order;
+    }
+
+    public void testFactory() throws Exception
+    {
+        final Class<?>[] types = { Order.class, Address.class };
+        final String[][] fields = { { "status", "note" }, { "country", "street" } };
+        final boolean[][] cached = { { true, false }, { true, false } };
+        for (int i = 0; i < types.length; i++)
+        {
+            for (int j = 0; j < fields[i].length; j++)
+            {
+                final java.lang.reflect.Field f = types[i].getDeclaredField(fields[i][j]);
+                assertEquals(cached[i][j], RuntimeSchema.getFieldFactory(f,
+                        RuntimeEnv.ID_STRATEGY) == RuntimeCachedStringFieldFactory.CACHED_STRING);
+            }
+        }
+    }
+
+    public void testSameInstance() throws Exception
+    {
+        final Schema<Order> schema = RuntimeSchema.getSchema(Order.class);
+        final byte[] protostuff = ProtostuffIOUtil.toByteArray(newOrder(1), schema,
+                LinkedBuffer.allocate(256));
+        final byte[] protobuf = ProtobufIOUtil.toByteArray(newOrder(2), schema,
+                LinkedBuffer.allocate(256));
+
+        final Order first = schema.newMessage();
+        ProtostuffIOUtil.mergeFrom(protostuff, first, schema);
+        assertEquals(1, first.id);
+        assertEquals("SHIPPED", first.status);
+        assertEquals("note", first.note);
+
+        final Order second = schema.newMessage();
+        ProtobufIOUtil.mergeFrom(protobuf, second, schema);
+        assertEquals(2, second.id);
+        assertSame(first.status, second.status);
+        // not cached
+        assertNotSame(first.note, second.note);
+
+        final Order third = schema.newMessage();
+        ProtostuffIOUtil.mergeFrom(new ByteArrayInputStream(protostuff), third, schema);
+        assertSame(first.status, third.status);
+    }
+
+    public void testClassAnnotation() throws Exception
+    {
+        final Schema<Address> schema = RuntimeSchema.getSchema(Address.class);
+        final Address address = new Address();
+        address.country = "PH";
+        address.city = "Manila";
+        address.street = "Ayala";
+        final byte[] data = ProtostuffIOUtil.toByteArray(address, schema,
+                LinkedBuffer.allocate(256));
+
+        final Address first = schema.newMessage(), second = schema.newMessage();
+        ProtostuffIOUtil.mergeFrom(data, first, schema);
+        ProtostuffIOUtil.mergeFrom(data, second, schema);
+        assertEquals("PH", first.country);
+        assertSame(first.country, second.country);
+        assertSame(first.city, second.city);
+        assertEquals("Ayala", second.street);
+        assertNotSame(first.street, second.street);
+    }
+
+    public void testMap() throws Exception
+    {
+        final Schema<Inventory> schema = RuntimeSchema.getSchema(Inventory.class);
+        final Inventory inventory = new Inventory();
+        inventory.counts = new HashMap<>();
+        inventory.counts.put("apple", 1);
+        inventory.statuses = new HashMap<>();
+        inventory.statuses.put(1, "IN_STOCK");
+        inventory.other = new HashMap<>();
+        inventory.other.put("pear", 2);
+        final byte[] data = ProtostuffIOUtil.toByteArray(inventory, schema,
+                LinkedBuffer.allocate(256));
+
+        final Inventory first = schema.newMessage(), second = schema.newMessage();
+        ProtostuffIOUtil.mergeFrom(data, first, schema);
+        ProtobufIOUtil.mergeFrom(ProtobufIOUtil.toByteArray(inventory, schema,
+                LinkedBuffer.allocate(256)), second, schema);
+        assertEquals(inventory.counts, second.counts);
+        assertEquals(inventory.statuses, second.statuses);
+        assertEquals(inventory.other, second.other);
+
+        // the keys and values are cached
+        assertSame(first.counts.keySet().iterator().next(),
+                second.counts.keySet().iterator().next());
+        assertSame(first.statuses.get(1), second.statuses.get(1));
+        // not cached
+        assertNotSame(first.other.keySet().iterator().next(),
+                second.other.keySet().iterator().next());
+    }
+}
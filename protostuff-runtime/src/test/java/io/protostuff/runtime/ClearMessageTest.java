@@ -0,0 +1,161 @@
+package io.protostuff.runtime;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import io.protostuff.ProtostuffIOUtil;
+import io.protostuff.Tag;
+
+/**
+ * Tests {@link RuntimeSchema#clear(Object)} (with {@link RuntimeEnv#REUSE_ON_MERGE} disabled).
+ */
+public class ClearMessageTest extends TestCase
+{
+
+    public static final class Item
+    {
+        int id;
+        String name;
+
+        public Item()
+        {
+        }
+
+        public Item(int id, String name)
+        {
+            this.id = id;
+            this.name = name;
+        }
+    }
+
+    public static final class Order
+    {
+        int id = 7;
+        String status = "NEW";
+        Boolean paid;
+        Item item;
+        List<Item> items;
+        Map<String, Integer> counts;
+        List<String> tags = new ArrayList<>();
+        int[] values;
+        IntArrayList ints;
+    }
+
+    public static final class Aliased
+    {
+        @Tag(value = 1, alias = "n")
+        String name;
+        @Tag(2)
+        long size;
+    }
+
+    public static final class Primitives
+    {
+        boolean z = true;
+        byte b = 1;
+        char c = 'c';
+        short s = 2;
+        int i = 3;
+        long j = 4;
+        float f = 5.5f;
+        double d = 6.5;
+    }
+
+    static Order newOrder()
+    {
+        final Order order = new Order();
+        order.id = 1;
+        order.status = "SHIPPED";
+        order.paid = Boolean.TRUE;
+        order.item = new Item(2, "a");
+        order.items = new ArrayList<>();
+        order.items.add(new Item(3, "b"));
+        order.counts = new HashMap<>();
+        order.counts.put("x", 1);
+        order.tags.add("t");
+        order.values = new int[] { 4, 5 };
+        order.ints = IntArrayList.of(6);
+        return order;
+    }
+
+    public void testClear() throws Exception
+    {
+        assertFalse(RuntimeEnv.REUSE_ON_MERGE);
+
+        final RuntimeSchema<Order> schema = (RuntimeSchema<Order>) RuntimeSchema
+                .getSchema(Order.class);
+        final Order order = newOrder();
+        final List<String> tags = order.tags;
+        schema.clear(order);
+
+        // the values of a new message
+        assertEquals(7, order.id);
+        assertEquals("NEW", order.status);
+        assertNull(order.paid);
+        assertNull(order.item);
+        assertNull(order.items);
+        assertNull(order.counts);
+        assertNull(order.values);
+        assertNull(order.ints);
+        // the default list is kept (emptied), not shared
+        assertSame(tags, order.tags);
+        assertTrue(tags.isEmpty());
+
+        // a new default list, not left null
+        order.tags = null;
+        schema.clear(order);
+        assertNotNull(order.tags);
+        assertTrue(order.tags.isEmpty());
+        assertNotSame(tags, order.tags);
+
+        final Order expected = newOrder();
+        ProtostuffIOUtil.mergeFrom(ProtostuffIOUtil.toByteArray(expected, schema,
+                SerDeserTest.buf()), order, schema);
+        assertEquals(expected.status, order.status);
+        assertEquals(expected.item.name, order.item.name);
+        assertEquals(expected.tags, order.tags);
+        assertEquals(5, order.values[1]);
+    }
+
+    public void testAlias()
+    {
+        final RuntimeSchema<Aliased> schema = (RuntimeSchema<Aliased>) RuntimeSchema
+                .getSchema(Aliased.class);
+        final Aliased message = new Aliased();
+        message.name = "a";
+        message.size = 3;
+        schema.clear(message);
+        assertNull(message.name);
+        assertEquals(0, message.size);
+    }
+
+    public void testPrimitives()
+    {
+        final RuntimeSchema<Primitives> schema = (RuntimeSchema<Primitives>) RuntimeSchema
+                .getSchema(Primitives.class);
+        final Primitives message = new Primitives();
+        message.z = false;
+        message.b = -1;
+        message.c = 'x';
+        message.s = -2;
+        message.i = -3;
+        message.j = -4;
+        message.f = -5.5f;
+        message.d = -6.5;
+        schema.clear(message);
+
+        final Primitives expected = new Primitives();
+        assertEquals(expected.z, message.z);
+        assertEquals(expected.b, message.b);
+        assertEquals(expected.c, message.c);
+        assertEquals(expected.s, message.s);
+        assertEquals(expected.i, message.i);
+        assertEquals(expected.j, message.j);
+        assertEquals(expected.f, message.f);
+        assertEquals(expected.d, message.d);
+    }
+}
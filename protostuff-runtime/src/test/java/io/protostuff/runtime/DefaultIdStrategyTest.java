@@ -0,0 +1,158 @@
+package io.protostuff.runtime;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.TreeMap;
+
+import io.protostuff.CollectionSchema;
+import io.protostuff.MapSchema;
+import io.protostuff.runtime.SampleDelegates.ShortArrayDelegate;
+import io.protostuff.runtime.SampleDelegates.Singleton;
+import junit.framework.TestCase;
+
+/**
+ * Tests that the lookups by class of {@link DefaultIdStrategy} see the registrations made after them.
+ */
+public class DefaultIdStrategyTest extends TestCase
+{
+
+    public static final class Pojo
+    {
+        int id;
+    }
+
+    public void testDelegateRegisteredAfterLookup()
+    {
+        final DefaultIdStrategy strategy = new DefaultIdStrategy();
+        assertFalse(strategy.isDelegateRegistered(short[].class));
+        assertNull(strategy.getDelegate(short[].class));
+
+        final ShortArrayDelegate delegate = new ShortArrayDelegate();
+        assertTrue(strategy.registerDelegate(delegate));
+        assertFalse(strategy.registerDelegate(new ShortArrayDelegate()));
+
+        assertTrue(strategy.isDelegateRegistered(short[].class));
+        assertSame(delegate, strategy.getDelegate(short[].class));
+    }
+
+    public void testFactoryRegisteredAfterLookup()
+    {
+        final DefaultIdStrategy strategy = new DefaultIdStrategy();
+        assertSame(CollectionSchema.MessageFactories.ArrayList,
+                strategy.getCollectionFactory(ArrayList.class));
+        assertSame(MapSchema.MessageFactories.HashMap,
+                strategy.getMapFactory(HashMap.class));
+
+        final DefaultIdStrategy.RuntimeCollectionFactory collectionFactory =
+                new DefaultIdStrategy.RuntimeCollectionFactory(ArrayList.class);
+        assertTrue(strategy.registerCollection(collectionFactory));
+        assertSame(collectionFactory, strategy.getCollectionFactory(ArrayList.class));
+
+        final DefaultIdStrategy.RuntimeMapFactory mapFactory =
+                new DefaultIdStrategy.RuntimeMapFactory(HashMap.class);
+        assertTrue(strategy.registerMap(mapFactory));
+        assertSame(mapFactory, strategy.getMapFactory(HashMap.class));
+    }
+
+    public void testLookupRacingRegistration()
+    {
+        final DefaultIdStrategy strategy = new DefaultIdStrategy();
+
+        // a lookup that missed the delegate, then a registration before the lookup caches the miss
+        final ClassSlots.Slot slot = strategy.delegateSlots.get(Singleton.class);
+        assertNotSame(ClassSlots.UNCACHED, slot);
+        assertTrue(strategy.registerDelegate(SampleDelegates.SINGLETON_DELEGATE));
+        assertNotSame(ClassSlots.NONE,
+                slot.cache(ClassSlots.NONE));
+
+        assertSame(SampleDelegates.SINGLETON_DELEGATE, strategy.getDelegate(Singleton.class));
+    }
+
+    public void testNoSlotForSharedClasses()
+    {
+        final DefaultIdStrategy strategy = new DefaultIdStrategy();
+
+        // the jdk classes outlive the loader of the strategy
+        assertSame(ClassSlots.UNCACHED, strategy.delegateSlots.get(String.class));
+        assertSame(ClassSlots.UNCACHED, strategy.collectionSlots.get(ArrayList.class));
+        assertSame(ClassSlots.UNCACHED, strategy.mapSlots.get(HashMap.class));
+        assertSame(ClassSlots.UNCACHED, strategy.delegateSlots.get(short[].class));
+        assertNotSame(ClassSlots.UNCACHED, strategy.pojoSlots.get(Pojo.class));
+        assertNotSame(ClassSlots.UNCACHED, strategy.pojoSlots.get(Pojo[].class));
+
+        assertFalse(strategy.isDelegateRegistered(String.class));
+        assertSame(CollectionSchema.MessageFactories.ArrayList,
+                strategy.getCollectionFactory(ArrayList.class));
+        assertNull(ClassSlots.UNCACHED.value);
+
+        // a strategy loaded by a parent loader slots every class
+        final ClassSlots slots = new ClassSlots(true, null);
+        assertNotSame(ClassSlots.UNCACHED, slots.get(String.class));
+        assertNotSame(ClassSlots.UNCACHED, slots.get(Pojo.class));
+    }
+
+    public void testSlotsWithoutClassValue()
+    {
+        // e.g. android below api 34
+        final ClassSlots slots = new ClassSlots(false,
+                DefaultIdStrategyTest.class.getClassLoader());
+        assertSame(ClassSlots.UNCACHED, slots.get(Pojo.class));
+        assertSame(ClassSlots.NONE, slots.get(Pojo.class).cache(ClassSlots.NONE));
+        assertNull(slots.get(Pojo.class).value);
+
+        final HashMap<Class<?>, String> mapping = new HashMap<>();
+        assertNull(slots.lookup(mapping, Pojo.class));
+        mapping.put(Pojo.class, "a");
+        assertEquals("a", slots.lookup(mapping, Pojo.class));
+        mapping.put(Pojo.class, "b");
+        assertEquals("b", slots.lookup(mapping, Pojo.class));
+    }
+
+    public void testRegistrationsWithoutClassValue()
+    {
+        final DefaultIdStrategy strategy = new DefaultIdStrategy(null, 0, false);
+        final DefaultIdStrategy other = new DefaultIdStrategy(null, 0, false);
+        assertSame(ClassSlots.UNCACHED, strategy.delegateSlots.get(short[].class));
+
+        final ShortArrayDelegate delegate = new ShortArrayDelegate();
+        assertTrue(strategy.registerDelegate(delegate));
+        assertSame(delegate, strategy.getDelegate(short[].class));
+        // the registration must not leak into the slot shared by every class
+        assertNull(ClassSlots.UNCACHED.value);
+        assertNull(strategy.getDelegate(int[].class));
+        assertFalse(strategy.isDelegateRegistered(Pojo.class));
+        assertNull(other.getDelegate(short[].class));
+
+        final DefaultIdStrategy.RuntimeCollectionFactory collectionFactory =
+                new DefaultIdStrategy.RuntimeCollectionFactory(ArrayList.class);
+        assertTrue(strategy.registerCollection(collectionFactory));
+        assertSame(collectionFactory, strategy.getCollectionFactory(ArrayList.class));
+        assertSame(CollectionSchema.MessageFactories.LinkedList,
+                strategy.getCollectionFactory(LinkedList.class));
+        assertSame(CollectionSchema.MessageFactories.ArrayList,
+                other.getCollectionFactory(ArrayList.class));
+
+        final DefaultIdStrategy.RuntimeMapFactory mapFactory =
+                new DefaultIdStrategy.RuntimeMapFactory(HashMap.class);
+        assertTrue(strategy.registerMap(mapFactory));
+        assertSame(mapFactory, strategy.getMapFactory(HashMap.class));
+        assertSame(MapSchema.MessageFactories.TreeMap,
+                strategy.getMapFactory(TreeMap.class));
+        assertSame(MapSchema.MessageFactories.HashMap,
+                other.getMapFactory(HashMap.class));
+    }
+
+    public void testSchemaWrapper()
+    {
+        final DefaultIdStrategy strategy = new DefaultIdStrategy();
+        assertNull(strategy.getSchemaWrapper(Pojo.class, false));
+        assertFalse(strategy.isRegistered(Pojo.class));
+
+        final HasSchema<Pojo> wrapper = strategy.getSchemaWrapper(Pojo.class, true);
+        assertSame(wrapper, strategy.getSchemaWrapper(Pojo.class, false));
+        assertSame(wrapper, strategy.getSchemaWrapper(Pojo.class, true));
+        assertFalse(strategy.isRegistered(Pojo.class));
+        assertSame(Pojo.class, wrapper.getSchema().typeClass());
+    }
+}
@@ -0,0 +1,148 @@
+package io.protostuff.runtime;
+
+import static io.protostuff.runtime.SerializableObjects.bar;
+import static io.protostuff.runtime.SerializableObjects.foo;
+
+import java.io.IOException;
+
+import io.protostuff.ProtostuffIOUtil;
+import io.protostuff.ProtostuffOutput;
+import io.protostuff.Schema;
+import io.protostuff.Tag;
+
+/**
+ * Runs the runtime ser/deser tests with {@link RuntimeEnv#USE_GENERATED_SCHEMA} enabled.
+ */
+public class GeneratedSchemaTest extends SerDeserTest
+{
+
+    static
+    {
+        System.setProperty("protostuff.runtime.use_generated_schema", "true");
+    }
+
+    static <T> byte[] toByteArrayWithFieldLoop(T message, RuntimeSchema<T> schema)
+            throws IOException
+    {
+        final ProtostuffOutput output = new ProtostuffOutput(buf());
+        for (Field<T> f : schema.getFields())
+            f.writeTo(output, message);
+
+        return output.toByteArray();
+    }
+
+    public void testGenerated() throws Exception
+    {
+        if (!SchemaDispatchGenerator.isAvailable())
+            return;
+
+        assertTrue(RuntimeEnv.USE_GENERATED_SCHEMA);
+        assertTrue(((RuntimeSchema<Foo>) RuntimeSchema.getSchema(Foo.class))
+                .isGenerated());
+        assertTrue(RuntimeSchema.createFrom(Sparse.class).isGenerated());
+    }
+
+    public void testSameWireFormat() throws Exception
+    {
+        RuntimeSchema<Foo> fooSchema = (RuntimeSchema<Foo>) RuntimeSchema
+                .getSchema(Foo.class);
+        assertEquals(
+                java.util.Arrays.toString(toByteArrayWithFieldLoop(foo, fooSchema)),
+                java.util.Arrays.toString(toByteArray(foo, fooSchema)));
+
+        RuntimeSchema<Bar> barSchema = (RuntimeSchema<Bar>) RuntimeSchema
+                .getSchema(Bar.class);
+        assertEquals(
+                java.util.Arrays.toString(toByteArrayWithFieldLoop(bar, barSchema)),
+                java.util.Arrays.toString(toByteArray(bar, barSchema)));
+    }
+
+    public void testSparseAndUnknownFields() throws Exception
+    {
+        Schema<Sparse> sparseSchema = RuntimeSchema.createFrom(Sparse.class);
+        Schema<Dense> denseSchema = RuntimeSchema.createFrom(Dense.class);
+
+        Sparse sparse = new Sparse();
+        sparse.a = 1;
+        sparse.b = "b";
+        sparse.c = 3L;
+        sparse.d = 4.0;
+
+        // lookupswitch
+        byte[] data = toByteArray(sparse, sparseSchema);
+        Sparse parsedSparse = sparseSchema.newMessage();
+        ProtostuffIOUtil.mergeFrom(data, parsedSparse, sparseSchema);
+        assertEquals(sparse, parsedSparse);
+
+        // tableswitch with fields 1000 and 100000 unknown (skipped)
+        Dense dense = denseSchema.newMessage();
+        ProtostuffIOUtil.mergeFrom(data, dense, denseSchema);
+        assertEquals(1, dense.a);
+        assertEquals("b", dense.b);
+
+        Dense expected = new Dense();
+        expected.a = 5;
+        expected.b = "x";
+        Dense parsedDense = denseSchema.newMessage();
+        ProtostuffIOUtil.mergeFrom(toByteArray(expected, denseSchema),
+                parsedDense, denseSchema);
+        assertEquals(expected.a, parsedDense.a);
+        assertEquals(expected.b, parsedDense.b);
+    }
+
+    public void testEmpty() throws Exception
+    {
+        Schema<Empty> emptySchema = RuntimeSchema.createFrom(Empty.class);
+        Schema<Dense> denseSchema = RuntimeSchema.createFrom(Dense.class);
+
+        Dense dense = new Dense();
+        dense.a = 1;
+        dense.b = "b";
+
+        assertEquals(0, toByteArray(new Empty(), emptySchema).length);
+
+        Empty empty = emptySchema.newMessage();
+        ProtostuffIOUtil.mergeFrom(toByteArray(dense, denseSchema), empty,
+                emptySchema);
+    }
+
+    static final class Sparse
+    {
+        @Tag(1)
+        int a;
+        @Tag(2)
+        String b;
+        @Tag(1000)
+        Long c;
+        @Tag(100000)
+        double d;
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (!(obj instanceof Sparse))
+                return false;
+            Sparse other = (Sparse) obj;
+            return a == other.a && b.equals(other.b) && c.equals(other.c)
+                    && d == other.d;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return a;
+        }
+    }
+
+    static final class Dense
+    {
+        @Tag(1)
+        int a;
+        @Tag(2)
+        String b;
+    }
+
+    static final class Empty
+    {
+    }
+}
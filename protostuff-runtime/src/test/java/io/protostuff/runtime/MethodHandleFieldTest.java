@@ -0,0 +1,123 @@
+package io.protostuff.runtime;
+
+/**
+ * Runs the runtime ser/deser tests with the fields accessed via {@link RuntimeMethodHandleFieldFactory}, and tests its
+ * accessors.
+ */
+public class MethodHandleFieldTest extends SerDeserTest
+{
+
+    static
+    {
+        System.setProperty("protostuff.runtime.use_method_handles", "true");
+    }
+
+    public static final class Primitives
+    {
+        boolean z;
+        byte b;
+        char c;
+        short s;
+        int i;
+        private long j;
+        float f;
+        double d;
+        String str;
+    }
+
+    public void testFactory() throws Exception
+    {
+        assertTrue(RuntimeEnv.USE_METHOD_HANDLES);
+        // RuntimeFieldFactory first (it initializes the factory it picks)
+        final RuntimeFieldFactory<Integer> int32 = RuntimeFieldFactory.INT32;
+        assertSame(RuntimeMethodHandleFieldFactory.INT32, int32);
+
+        if (!SchemaDispatchGenerator.isAvailable())
+            return;
+
+        // a class per field, copied from the templates
+        final Field<Primitives> i = int32.create(1, "i",
+                Primitives.class.getDeclaredField("i"), RuntimeEnv.ID_STRATEGY);
+        final Field<Primitives> j = RuntimeFieldFactory.INT64.create(2, "j",
+                Primitives.class.getDeclaredField("j"), RuntimeEnv.ID_STRATEGY);
+        final Field<Primitives> str = RuntimeFieldFactory.STRING.create(3,
+                "str", Primitives.class.getDeclaredField("str"),
+                RuntimeEnv.ID_STRATEGY);
+        assertNotSame(RuntimeMethodHandleFieldFactory.Int32Field.class,
+                i.getClass());
+        assertNotSame(i.getClass(), int32.create(1, "i",
+                Primitives.class.getDeclaredField("i"), RuntimeEnv.ID_STRATEGY)
+                .getClass());
+        assertEquals(Field.class, j.getClass().getSuperclass());
+        assertNotSame(RuntimeMethodHandleFieldFactory.ValueField.class,
+                str.getClass());
+        assertNotSame(RuntimeMethodHandleFieldFactory.Accessor.class,
+                RuntimeFieldFactory.accessor(
+                        Primitives.class.getDeclaredField("i")).getClass());
+    }
+
+    public void testAccessors() throws Exception
+    {
+        final Primitives p = new Primitives();
+        assertEquals(true, accessor("z").getBoolean(put("z", p)));
+        assertEquals(1, accessor("b").getByte(put("b", p)));
+        assertEquals('c', accessor("c").getChar(put("c", p)));
+        assertEquals(2, accessor("s").getShort(put("s", p)));
+        assertEquals(3, accessor("i").getInt(put("i", p)));
+        assertEquals(4L, accessor("j").getLong(put("j", p)));
+        assertEquals(5f, accessor("f").getFloat(put("f", p)));
+        assertEquals(6d, accessor("d").getDouble(put("d", p)));
+        assertEquals("7", accessor("str").getObject(put("str", p)));
+
+        try
+        {
+            accessor("i").getInt(null);
+            fail("Expected NullPointerException");
+        }
+        catch (NullPointerException e)
+        {
+            // expected
+        }
+    }
+
+    static FieldAccessor accessor(String name) throws Exception
+    {
+        return RuntimeMethodHandleFieldFactory.accessor(Primitives.class
+                .getDeclaredField(name));
+    }
+
+    static Primitives put(String name, Primitives p) throws Exception
+    {
+        final FieldAccessor fa = accessor(name);
+        switch (name)
+        {
+            case "z":
+                fa.putBoolean(p, true);
+                break;
+            case "b":
+                fa.putByte(p, (byte) 1);
+                break;
+            case "c":
+                fa.putChar(p, 'c');
+                break;
+            case "s":
+                fa.putShort(p, (short) 2);
+                break;
+            case "i":
+                fa.putInt(p, 3);
+                break;
+            case "j":
+                fa.putLong(p, 4L);
+                break;
+            case "f":
+                fa.putFloat(p, 5f);
+                break;
+            case "d":
+                fa.putDouble(p, 6d);
+                break;
+            default:
+                fa.putObject(p, "7");
+        }
+        return p;
+    }
+}
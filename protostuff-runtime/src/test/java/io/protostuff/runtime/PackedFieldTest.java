@@ -0,0 +1,250 @@
+package io.protostuff.runtime;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+import io.protostuff.GraphIOUtil;
+import io.protostuff.LinkedBuffer;
+import io.protostuff.ProtobufIOUtil;
+import io.protostuff.ProtostuffIOUtil;
+import io.protostuff.Schema;
+
+/**
+ * Runs the runtime ser/deser tests with {@link RuntimeEnv#PACKED_PRIMITIVE_ARRAYS} enabled, and tests the packed
+ * fields of the primitive arrays and lists.
+ */
+public class PackedFieldTest extends SerDeserTest
+{
+
+    static
+    {
+        System.setProperty("protostuff.runtime.packed_primitive_arrays", "true");
+    }
+
+    public static final class Vectors
+    {
+        int[] ints;
+        long[] longs;
+        float[] floats;
+        double[] doubles;
+        IntArrayList intList;
+        LongArrayList longList;
+        FloatArrayList floatList;
+        DoubleArrayList doubleList;
+        String name;
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (!(obj instanceof Vectors))
+                return false;
+
+            final Vectors other = (Vectors) obj;
+            return Arrays.equals(ints, other.ints)
+                    && Arrays.equals(longs, other.longs)
+                    && Arrays.equals(floats, other.floats)
+                    && Arrays.equals(doubles, other.doubles)
+                    && equal(intList, other.intList)
+                    && equal(longList, other.longList)
+                    && equal(floatList, other.floatList)
+                    && equal(doubleList, other.doubleList)
+                    && equal(name, other.name);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Arrays.hashCode(ints);
+        }
+
+        static boolean equal(Object a, Object b)
+        {
+            return a == null ? b == null : a.equals(b);
+        }
+    }
+
+    static Vectors newVectors()
+    {
+        Vectors v = new Vectors();
+        v.ints = new int[] { 0, 1, -1, 300, Integer.MAX_VALUE, Integer.MIN_VALUE };
+        v.longs = new long[] { 0, -1, 1L << 40, Long.MIN_VALUE };
+        v.floats = new float[] { 1.5f, -0.0f, Float.NaN };
+        v.doubles = new double[] { 2.25, Double.MAX_VALUE };
+        v.intList = IntArrayList.of(5, -5, 128);
+        v.longList = LongArrayList.of(Long.MAX_VALUE);
+        v.floatList = FloatArrayList.of(3.5f, 4.5f);
+        v.doubleList = DoubleArrayList.of(-1.0);
+        v.name = "v";
+        return v;
+    }
+
+    public void testPacked() throws Exception
+    {
+        assertTrue(RuntimeEnv.PACKED_PRIMITIVE_ARRAYS);
+
+        Schema<Vectors> schema = RuntimeSchema.getSchema(Vectors.class);
+        Vectors v = new Vectors();
+        v.ints = new int[] { 1, 2, 300 };
+
+        // tag (1, length-delimited), length, then the raw varints
+        byte[] data = ProtobufIOUtil.toByteArray(v, schema, buf());
+        assertEquals("[10, 4, 1, 2, -84, 2]", Arrays.toString(data));
+        assertEquals(Arrays.toString(data), Arrays.toString(toByteArray(v, schema)));
+        assertEquals(Arrays.toString(data),
+                Arrays.toString(ProtobufIOUtil.toByteArray(v, schema)));
+
+        v = new Vectors();
+        v.doubleList = DoubleArrayList.of(1.0, 2.0);
+        data = ProtobufIOUtil.toByteArray(v, schema, buf());
+        assertEquals(2 + 16, data.length);
+        assertEquals((8 << 3) | 2, data[0]);
+        assertEquals(16, data[1]);
+    }
+
+    public void testRoundTrip() throws Exception
+    {
+        Schema<Vectors> schema = RuntimeSchema.getSchema(Vectors.class);
+        Vectors v = newVectors();
+
+        Vectors parsed = schema.newMessage();
+        ProtostuffIOUtil.mergeFrom(toByteArray(v, schema), parsed, schema);
+        assertEquals(v, parsed);
+
+        parsed = schema.newMessage();
+        ProtobufIOUtil.mergeFrom(ProtobufIOUtil.toByteArray(v, schema, buf()),
+                parsed, schema);
+        assertEquals(v, parsed);
+
+        parsed = schema.newMessage();
+        GraphIOUtil.mergeFrom(GraphIOUtil.toByteArray(v, schema, buf()), parsed,
+                schema);
+        assertEquals(v, parsed);
+
+        // streamed (CodedInput)
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ProtostuffIOUtil.writeDelimitedTo(out, v, schema, buf());
+        parsed = schema.newMessage();
+        ProtostuffIOUtil.mergeDelimitedFrom(
+                new ByteArrayInputStream(out.toByteArray()), parsed, schema);
+        assertEquals(v, parsed);
+
+        // empty values are not written
+        Vectors empty = new Vectors();
+        empty.ints = new int[0];
+        empty.intList = new IntArrayList();
+        assertEquals(0, toByteArray(empty, schema).length);
+    }
+
+    public void testSpanningBuffers() throws Exception
+    {
+        Schema<Vectors> schema = RuntimeSchema.getSchema(Vectors.class);
+        Vectors v = new Vectors();
+        v.ints = new int[1000];
+        v.doubleList = new DoubleArrayList();
+        for (int i = 0; i < v.ints.length; i++)
+        {
+            v.ints[i] = i * 1000 - 500000;
+            v.doubleList.add(i / 3.0);
+        }
+
+        // the values are written directly, across the (small) buffers
+        byte[] data = ProtobufIOUtil.toByteArray(v, schema, LinkedBuffer.allocate(256));
+        assertEquals(Arrays.toString(data),
+                Arrays.toString(ProtobufIOUtil.toByteArray(v, schema)));
+        Vectors parsed = schema.newMessage();
+        ProtobufIOUtil.mergeFrom(data, parsed, schema);
+        assertEquals(v, parsed);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ProtostuffIOUtil.writeTo(out, v, schema, LinkedBuffer.allocate(256));
+        parsed = schema.newMessage();
+        ProtostuffIOUtil.mergeFrom(out.toByteArray(), parsed, schema);
+        assertEquals(v, parsed);
+    }
+
+    public void testPipe() throws Exception
+    {
+        Schema<Vectors> schema = RuntimeSchema.getSchema(Vectors.class);
+        Vectors v = newVectors();
+
+        byte[] protostuff = toByteArray(v, schema);
+        byte[] protobuf = ProtobufIOUtil.toByteArray(
+                ProtostuffIOUtil.newPipe(protostuff),
+                ((RuntimeSchema<Vectors>) schema).getPipeSchema(), buf());
+        assertEquals(Arrays.toString(ProtobufIOUtil.toByteArray(v, schema, buf())),
+                Arrays.toString(protobuf));
+    }
+
+    public void testUnpackedAndAppend() throws Exception
+    {
+        Schema<Vectors> schema = RuntimeSchema.getSchema(Vectors.class);
+
+        // ints (1) and intList (5) unpacked, then ints packed
+        byte[] data = new byte[] { 8, 1, 8, 2, 40, 7, 40, 8, 10, 2, 3, 4 };
+        Vectors parsed = schema.newMessage();
+        parsed.intList = IntArrayList.of(6);
+        ProtobufIOUtil.mergeFrom(data, parsed, schema);
+        assertEquals("[1, 2, 3, 4]", Arrays.toString(parsed.ints));
+        assertEquals(IntArrayList.of(6, 7, 8), parsed.intList);
+
+        parsed = schema.newMessage();
+        ProtostuffIOUtil.mergeFrom(new ByteArrayInputStream(data), parsed, schema);
+        assertEquals("[1, 2, 3, 4]", Arrays.toString(parsed.ints));
+
+        // appended to the existing array, like the lists
+        parsed = schema.newMessage();
+        parsed.ints = new int[] { 0 };
+        ProtobufIOUtil.mergeFrom(data, parsed, schema);
+        assertEquals("[0, 1, 2, 3, 4]", Arrays.toString(parsed.ints));
+    }
+
+    public void testManyUnpacked() throws Exception
+    {
+        Schema<Vectors> schema = RuntimeSchema.getSchema(Vectors.class);
+
+        // longs (2) unpacked, one field per value
+        final int count = 100000;
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < count; i++)
+        {
+            out.write(16);
+            out.write(i & 0x7F);
+        }
+
+        Vectors parsed = schema.newMessage();
+        ProtobufIOUtil.mergeFrom(out.toByteArray(), parsed, schema);
+        assertEquals(count, parsed.longs.length);
+        for (int i = 0; i < count; i++)
+            assertEquals(i & 0x7F, parsed.longs[i]);
+    }
+
+    public void testLists()
+    {
+        IntArrayList list = new IntArrayList();
+        assertTrue(list.isEmpty());
+        for (int i = 0; i < 100; i++)
+            list.add(i);
+
+        assertEquals(100, list.size());
+        assertEquals(42, list.get(42));
+        assertEquals(42, list.set(42, -1));
+        assertEquals(-1, list.toArray()[42]);
+        try
+        {
+            list.get(100);
+            fail("Expected IndexOutOfBoundsException");
+        }
+        catch (IndexOutOfBoundsException e)
+        {
+            // expected
+        }
+
+        list.clear();
+        assertEquals(0, list.size());
+        assertEquals(new IntArrayList(), list);
+        assertEquals("[1, 2]", IntArrayList.of(1, 2).toString());
+        assertEquals(DoubleArrayList.of(Double.NaN), DoubleArrayList.of(Double.NaN));
+        assertEquals(LongArrayList.of(1, 2).hashCode(), LongArrayList.of(1, 2).hashCode());
+    }
+}
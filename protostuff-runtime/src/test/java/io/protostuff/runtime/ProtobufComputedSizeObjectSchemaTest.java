@@ -0,0 +1,21 @@
+package io.protostuff.runtime;
+
+import java.util.Arrays;
+
+import io.protostuff.ProtobufIOUtil;
+import io.protostuff.Schema;
+
+/**
+ * Test protobuf ser/deser for runtime {@link Object} fields, serialized with the sizes computed beforehand.
+ */
+public class ProtobufComputedSizeObjectSchemaTest extends ProtobufRuntimeObjectSchemaTest
+{
+
+    @Override
+    protected <T> byte[] toByteArray(T message, Schema<T> schema)
+    {
+        final byte[] data = ProtobufIOUtil.toByteArray(message, schema);
+        assertTrue(Arrays.equals(ProtobufIOUtil.toByteArray(message, schema, buf()), data));
+        return data;
+    }
+}
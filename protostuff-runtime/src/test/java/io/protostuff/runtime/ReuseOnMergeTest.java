@@ -0,0 +1,128 @@
+package io.protostuff.runtime;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import io.protostuff.GraphIOUtil;
+import io.protostuff.ProtobufIOUtil;
+import io.protostuff.ProtostuffIOUtil;
+import io.protostuff.runtime.ClearMessageTest.Item;
+import io.protostuff.runtime.ClearMessageTest.Order;
+
+/**
+ * Runs the runtime ser/deser tests with {@link RuntimeEnv#REUSE_ON_MERGE} enabled, and tests that a cleared message is
+ * refilled.
+ */
+public class ReuseOnMergeTest extends SerDeserTest
+{
+
+    static
+    {
+        System.setProperty("protostuff.runtime.reuse_on_merge", "true");
+    }
+
+    public static final class Node
+    {
+        int id;
+        Node next;
+    }
+
+    public void testReuse() throws Exception
+    {
+        assertTrue(RuntimeEnv.REUSE_ON_MERGE);
+
+        final RuntimeSchema<Order> schema = (RuntimeSchema<Order>) RuntimeSchema
+                .getSchema(Order.class);
+        final Order order = schema.newMessage();
+        ProtostuffIOUtil.mergeFrom(toByteArray(ClearMessageTest.newOrder(), schema), order,
+                schema);
+
+        final Item item = order.item;
+        final List<Item> items = order.items;
+        final Map<String, Integer> counts = order.counts;
+        final int[] values = order.values;
+        final IntArrayList ints = order.ints;
+
+        final Order other = ClearMessageTest.newOrder();
+        other.item.name = "c";
+        other.counts.put("y", 2);
+        other.values[0] = 9;
+        for (boolean protobuf : new boolean[] { false, true })
+        {
+            schema.clear(order);
+            assertEquals(0, item.id);
+            assertTrue(items.isEmpty() && counts.isEmpty() && ints.size() == 0);
+            assertEquals("[0, 0]", Arrays.toString(values));
+
+            if (protobuf)
+                ProtobufIOUtil.mergeFrom(ProtobufIOUtil.toByteArray(other, schema, buf()),
+                        order, schema);
+            else
+                ProtostuffIOUtil.mergeFrom(toByteArray(other, schema), order, schema);
+
+            // refilled, not replaced
+            assertSame(item, order.item);
+            assertSame(items, order.items);
+            assertSame(counts, order.counts);
+            assertSame(values, order.values);
+            assertSame(ints, order.ints);
+
+            assertEquals("c", order.item.name);
+            assertEquals(1, order.items.size());
+            assertEquals(other.counts, order.counts);
+            assertEquals("[9, 5]", Arrays.toString(order.values));
+            assertEquals(IntArrayList.of(6), order.ints);
+            assertEquals("SHIPPED", order.status);
+        }
+
+        // refilled without a clear as well
+        other.values[0] = 8;
+        ProtostuffIOUtil.mergeFrom(toByteArray(other, schema), order, schema);
+        assertSame(values, order.values);
+        assertEquals("[8, 5]", Arrays.toString(values));
+
+        // another length is not refilled
+        other.values = new int[] { 1, 2, 3 };
+        schema.clear(order);
+        ProtostuffIOUtil.mergeFrom(toByteArray(other, schema), order, schema);
+        assertNotSame(values, order.values);
+        assertEquals("[1, 2, 3]", Arrays.toString(order.values));
+
+        // the absent fields are left cleared
+        schema.clear(order);
+        ProtostuffIOUtil.mergeFrom(toByteArray(new Order(), schema), order, schema);
+        assertSame(item, order.item);
+        assertNull(order.item.name);
+        assertTrue(order.items.isEmpty());
+        assertEquals(7, order.id);
+        assertEquals("NEW", order.status);
+    }
+
+    public void testCycle() throws Exception
+    {
+        final RuntimeSchema<Node> schema = (RuntimeSchema<Node>) RuntimeSchema
+                .getSchema(Node.class);
+        final Node a = new Node(), b = new Node();
+        a.id = 1;
+        a.next = b;
+        b.id = 2;
+        b.next = a;
+
+        schema.clear(a);
+        assertEquals(0, a.id);
+        assertEquals(0, b.id);
+        assertSame(b, a.next);
+        assertSame(a, b.next);
+
+        final Node c = new Node(), d = new Node();
+        c.id = 3;
+        c.next = d;
+        d.id = 4;
+        d.next = c;
+        GraphIOUtil.mergeFrom(GraphIOUtil.toByteArray(c, schema, buf()), a, schema);
+        assertEquals(3, a.id);
+        assertEquals(4, a.next.id);
+        assertSame(a, a.next.next);
+    }
+}
@@ -0,0 +1,206 @@
+package io.protostuff.runtime;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.protostuff.AbstractTest;
+import io.protostuff.GraphIOUtil;
+import io.protostuff.LinkedBuffer;
+import io.protostuff.ProtostuffIOUtil;
+import io.protostuff.ProtostuffException;
+import io.protostuff.Schema;
+import io.protostuff.Tag;
+import io.protostuff.TypeDictionary;
+import io.protostuff.runtime.PolymorphicSerializationTest.Zoo;
+
+/**
+ * Tests the ser/deser of polymorphic fields with the type names written through a {@link TypeDictionary}.
+ */
+public class TypeDictionaryTest extends AbstractTest
+{
+
+    public static final class Event
+    {
+        Object payload;
+        List<Object> attachments;
+    }
+
+    public static final class Circle
+    {
+        int radius;
+    }
+
+    public static final class Square
+    {
+        int side;
+
+        Square()
+        {
+        }
+
+        Square(int side)
+        {
+            this.side = side;
+        }
+    }
+
+    public static final class Shapes
+    {
+        @Tag(1)
+        Object a;
+        @Tag(2)
+        Object b;
+        @Tag(3)
+        Object c;
+    }
+
+    /**
+     * {@link Shapes} without its first field.
+     */
+    public static final class ShapesV2
+    {
+        @Tag(2)
+        Object b;
+        @Tag(3)
+        Object c;
+    }
+
+    static Event newEvent(int i)
+    {
+        final Event event = new Event();
+        event.payload = PolymorphicSerializationTest.filledZoo();
+        event.attachments = new ArrayList<>();
+        event.attachments.add(Integer.valueOf(i));
+        event.attachments.add(PolymorphicSerializationTest.filledZoo());
+        return event;
+    }
+
+    public void testByteArray() throws Exception
+    {
+        final Schema<Zoo> schema = RuntimeSchema.getSchema(Zoo.class);
+        final Zoo zoo = PolymorphicSerializationTest.filledZoo();
+
+        final byte[] full = ProtostuffIOUtil.toByteArray(zoo, schema, buf());
+        final byte[] data = ProtostuffIOUtil.toByteArray(zoo, schema, buf(),
+                new TypeDictionary());
+        assertTrue(data.length < full.length);
+
+        final Zoo parsed = new Zoo();
+        ProtostuffIOUtil.mergeFrom(data, parsed, schema, new TypeDictionary());
+        assertEquals(zoo, parsed);
+
+        // a byte array without the dictionary can be read as well
+        final Zoo parsedFull = new Zoo();
+        ProtostuffIOUtil.mergeFrom(full, parsedFull, schema, new TypeDictionary());
+        assertEquals(zoo, parsedFull);
+    }
+
+    public void testDelimitedStream() throws Exception
+    {
+        final Schema<Event> schema = RuntimeSchema.getSchema(Event.class);
+        final int count = 10;
+
+        final ByteArrayOutputStream fullOut = new ByteArrayOutputStream();
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final TypeDictionary writeDictionary = new TypeDictionary();
+        for (int i = 0; i < count; i++)
+        {
+            ProtostuffIOUtil.writeDelimitedTo(fullOut, newEvent(i), schema, buf());
+            ProtostuffIOUtil.writeDelimitedTo(out, newEvent(i), schema, buf(),
+                    writeDictionary);
+        }
+        assertTrue(out.size() < fullOut.size());
+
+        final ByteArrayInputStream in = new ByteArrayInputStream(out.toByteArray());
+        final TypeDictionary readDictionary = new TypeDictionary();
+        for (int i = 0; i < count; i++)
+        {
+            final Event event = schema.newMessage();
+            ProtostuffIOUtil.mergeDelimitedFrom(in, event, schema,
+                    LinkedBuffer.allocate(1024), readDictionary);
+            assertEquals(PolymorphicSerializationTest.filledZoo(), event.payload);
+            assertEquals(Integer.valueOf(i), event.attachments.get(0));
+            assertEquals(PolymorphicSerializationTest.filledZoo(), event.attachments.get(1));
+        }
+        assertEquals(-1, in.read());
+    }
+
+    public void testGraph() throws Exception
+    {
+        final Schema<Event> schema = RuntimeSchema.getSchema(Event.class);
+        final Event event = newEvent(1);
+        event.attachments.add(event.payload);
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final TypeDictionary writeDictionary = new TypeDictionary();
+        GraphIOUtil.writeDelimitedTo(out, event, schema, buf(), writeDictionary);
+        final byte[] data = GraphIOUtil.toByteArray(event, schema, buf(), writeDictionary);
+
+        final TypeDictionary readDictionary = new TypeDictionary();
+        final Event first = schema.newMessage();
+        GraphIOUtil.mergeDelimitedFrom(new ByteArrayInputStream(out.toByteArray()), first,
+                schema, LinkedBuffer.allocate(1024), readDictionary);
+        assertSame(first.payload, first.attachments.get(2));
+
+        final Event second = schema.newMessage();
+        GraphIOUtil.mergeFrom(data, second, schema, readDictionary);
+        assertSame(second.payload, second.attachments.get(2));
+        assertEquals(event.payload, second.payload);
+    }
+
+    public void testUnknownId() throws Exception
+    {
+        final Schema<Zoo> schema = RuntimeSchema.getSchema(Zoo.class);
+        final TypeDictionary writeDictionary = new TypeDictionary();
+        ProtostuffIOUtil.toByteArray(PolymorphicSerializationTest.filledZoo(), schema, buf(),
+                writeDictionary);
+        final byte[] data = ProtostuffIOUtil.toByteArray(
+                PolymorphicSerializationTest.filledZoo(), schema, buf(), writeDictionary);
+
+        try
+        {
+            ProtostuffIOUtil.mergeFrom(data, new Zoo(), schema, new TypeDictionary());
+            fail("Expected an unknown type id.");
+        }
+        catch (RuntimeException e)
+        {
+            assertTrue(e.getCause().getMessage().startsWith("Unknown type id"));
+        }
+    }
+
+    public void testSkippedField() throws Exception
+    {
+        final Shapes shapes = new Shapes();
+        shapes.a = new Circle();
+        shapes.b = new Square(2);
+        shapes.c = new Square(3);
+
+        final byte[] data = ProtostuffIOUtil.toByteArray(shapes, RuntimeSchema.getSchema(Shapes.class),
+                buf(), new TypeDictionary());
+
+        // the name of Circle is skipped with the removed field
+        final ShapesV2 parsed = new ShapesV2();
+        ProtostuffIOUtil.mergeFrom(data, parsed, RuntimeSchema.getSchema(ShapesV2.class),
+                new TypeDictionary());
+        assertEquals(2, ((Square) parsed.b).side);
+        assertEquals(3, ((Square) parsed.c).side);
+
+        // the name of Square is only written in the removed field
+        shapes.a = new Square(1);
+        final byte[] skippedName = ProtostuffIOUtil.toByteArray(shapes,
+                RuntimeSchema.getSchema(Shapes.class), buf(), new TypeDictionary());
+        try
+        {
+            ProtostuffIOUtil.mergeFrom(skippedName, new ShapesV2(),
+                    RuntimeSchema.getSchema(ShapesV2.class), new TypeDictionary());
+            fail("Expected an unknown type id.");
+        }
+        catch (RuntimeException e)
+        {
+            assertTrue(e.getCause() instanceof ProtostuffException);
+            assertTrue(e.getCause().getMessage().startsWith("Unknown type id"));
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package io.protostuff.runtime;
+
+/**
+ * Runs the runtime ser/deser tests with the fields accessed via {@link RuntimeUnsafeFieldFactory} (the
+ * {@link RuntimeMethodHandleFieldFactory} being the default on jdk9+).
+ */
+public class UnsafeFieldTest extends SerDeserTest
+{
+
+    static
+    {
+        System.setProperty("protostuff.runtime.use_method_handles", "false");
+    }
+
+    public void testFactory()
+    {
+        assertFalse(RuntimeEnv.USE_METHOD_HANDLES);
+        // RuntimeFieldFactory first (it initializes the factory it picks)
+        final RuntimeFieldFactory<Integer> int32 = RuntimeFieldFactory.INT32;
+        if (RuntimeEnv.USE_SUN_MISC_UNSAFE)
+            assertSame(RuntimeUnsafeFieldFactory.INT32, int32);
+        else
+            assertSame(RuntimeReflectionFieldFactory.INT32, int32);
+    }
+}
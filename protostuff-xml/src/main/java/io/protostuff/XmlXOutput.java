@@ -34,8 +34,37 @@ public final class XmlXOutput extends WriteSession implements Output, StatefulOu
             TRUE = new byte[] { 't', 'r', 'u', 'e' },
             FALSE = new byte[] { 'f', 'a', 'l', 's', 'e' };
 
+    /**
+     * The start and end tags of a field.
+     */
+    static final class Tags
+    {
+        final byte[] start, end;
+
+        Tags(String name)
+        {
+            start = FieldNameTokens.ascii("<" + name + ">");
+            end = FieldNameTokens.ascii("</" + name + ">");
+        }
+    }
+
+    /**
+     * The tags of the fields of each schema.
+     */
+    static final FieldNameTokens<Tags> FIELD_TAGS = new FieldNameTokens<Tags>()
+    {
+        @Override
+        protected Tags encode(String fieldName)
+        {
+            return new Tags(fieldName);
+        }
+    };
+
     private Schema<?> schema;
 
+    private Schema<?> tagsSchema;
+    private FieldNameTokens.Table<Tags> tags;
+
     public XmlXOutput(LinkedBuffer head, Schema<?> schema)
     {
         super(head);
@@ -83,46 +112,45 @@ public final class XmlXOutput extends WriteSession implements Output, StatefulOu
         }
     }
 
+    private Tags tags(int fieldNumber)
+    {
+        if (tagsSchema != schema)
+        {
+            tags = FIELD_TAGS.getTable(schema);
+            tagsSchema = schema;
+        }
+
+        return tags.get(fieldNumber);
+    }
+
     @Override
     public void writeBool(int fieldNumber, boolean value, boolean repeated) throws IOException
     {
-        final String name = schema.getFieldName(fieldNumber);
-
-        tail = sink.writeByte(END_TAG, this,
-                sink.writeStrAscii(name, this,
-                        sink.writeByteArray(START_SLASH_TAG, this,
-                                sink.writeByteArray(value ? TRUE : FALSE, this,
-                                        sink.writeByte(END_TAG, this,
-                                                sink.writeStrAscii(name, this,
-                                                        sink.writeByte(START_TAG, this, tail)))))));
+        final Tags tags = tags(fieldNumber);
+
+        tail = sink.writeByteArray(tags.end, this,
+                sink.writeByteArray(value ? TRUE : FALSE, this,
+                        sink.writeByteArray(tags.start, this, tail)));
     }
 
     @Override
     public void writeDouble(int fieldNumber, double value, boolean repeated) throws IOException
     {
-        final String name = schema.getFieldName(fieldNumber);
-
-        tail = sink.writeByte(END_TAG, this,
-                sink.writeStrAscii(name, this,
-                        sink.writeByteArray(START_SLASH_TAG, this,
-                                sink.writeStrFromDouble(value, this,
-                                        sink.writeByte(END_TAG, this,
-                                                sink.writeStrAscii(name, this,
-                                                        sink.writeByte(START_TAG, this, tail)))))));
+        final Tags tags = tags(fieldNumber);
+
+        tail = sink.writeByteArray(tags.end, this,
+                sink.writeStrFromDouble(value, this,
+                        sink.writeByteArray(tags.start, this, tail)));
     }
 
     @Override
     public void writeFloat(int fieldNumber, float value, boolean repeated) throws IOException
     {
-        final String name = schema.getFieldName(fieldNumber);
-
-        tail = sink.writeByte(END_TAG, this,
-                sink.writeStrAscii(name, this,
-                        sink.writeByteArray(START_SLASH_TAG, this,
-                                sink.writeStrFromFloat(value, this,
-                                        sink.writeByte(END_TAG, this,
-                                                sink.writeStrAscii(name, this,
-                                                        sink.writeByte(START_TAG, this, tail)))))));
+        final Tags tags = tags(fieldNumber);
+
+        tail = sink.writeByteArray(tags.end, this,
+                sink.writeStrFromFloat(value, this,
+                        sink.writeByteArray(tags.start, this, tail)));
     }
 
     @Override
@@ -140,15 +168,11 @@ public final class XmlXOutput extends WriteSession implements Output, StatefulOu
     @Override
     public void writeInt32(int fieldNumber, int value, boolean repeated) throws IOException
     {
-        final String name = schema.getFieldName(fieldNumber);
-
-        tail = sink.writeByte(END_TAG, this,
-                sink.writeStrAscii(name, this,
-                        sink.writeByteArray(START_SLASH_TAG, this,
-                                sink.writeStrFromInt(value, this,
-                                        sink.writeByte(END_TAG, this,
-                                                sink.writeStrAscii(name, this,
-                                                        sink.writeByte(START_TAG, this, tail)))))));
+        final Tags tags = tags(fieldNumber);
+
+        tail = sink.writeByteArray(tags.end, this,
+                sink.writeStrFromInt(value, this,
+                        sink.writeByteArray(tags.start, this, tail)));
     }
 
     @Override
@@ -178,15 +202,11 @@ public final class XmlXOutput extends WriteSession implements Output, StatefulOu
     @Override
     public void writeInt64(int fieldNumber, long value, boolean repeated) throws IOException
     {
-        final String name = schema.getFieldName(fieldNumber);
-
-        tail = sink.writeByte(END_TAG, this,
-                sink.writeStrAscii(name, this,
-                        sink.writeByteArray(START_SLASH_TAG, this,
-                                sink.writeStrFromLong(value, this,
-                                        sink.writeByte(END_TAG, this,
-                                                sink.writeStrAscii(name, this,
-                                                        sink.writeByte(START_TAG, this, tail)))))));
+        final Tags tags = tags(fieldNumber);
+
+        tail = sink.writeByteArray(tags.end, this,
+                sink.writeStrFromLong(value, this,
+                        sink.writeByteArray(tags.start, this, tail)));
     }
 
     @Override
@@ -210,15 +230,11 @@ public final class XmlXOutput extends WriteSession implements Output, StatefulOu
     @Override
     public void writeString(int fieldNumber, String value, boolean repeated) throws IOException
     {
-        final String name = schema.getFieldName(fieldNumber);
-
-        tail = sink.writeByte(END_TAG, this,
-                sink.writeStrAscii(name, this,
-                        sink.writeByteArray(START_SLASH_TAG, this,
-                                sink.writeStrUTF8(value, this,
-                                        sink.writeByte(END_TAG, this,
-                                                sink.writeStrAscii(name, this,
-                                                        sink.writeByte(START_TAG, this, tail)))))));
+        final Tags tags = tags(fieldNumber);
+
+        tail = sink.writeByteArray(tags.end, this,
+                sink.writeStrUTF8(value, this,
+                        sink.writeByteArray(tags.start, this, tail)));
     }
 
     @Override
@@ -228,31 +244,23 @@ public final class XmlXOutput extends WriteSession implements Output, StatefulOu
         if (!utf8String)
         {
             // B64 encode
-            writeB64(schema.getFieldName(fieldNumber), value, offset, length, repeated);
+            writeB64(tags(fieldNumber), value, offset, length, repeated);
             return;
         }
 
         // write direct
-        final String name = schema.getFieldName(fieldNumber);
-        tail = sink.writeByte(END_TAG, this,
-                sink.writeStrAscii(name, this,
-                        sink.writeByteArray(START_SLASH_TAG, this,
-                                sink.writeByteArray(value, offset, length, this,
-                                        sink.writeByte(END_TAG, this,
-                                                sink.writeStrAscii(name, this,
-                                                        sink.writeByte(START_TAG, this, tail)))))));
+        final Tags tags = tags(fieldNumber);
+        tail = sink.writeByteArray(tags.end, this,
+                sink.writeByteArray(value, offset, length, this,
+                        sink.writeByteArray(tags.start, this, tail)));
     }
 
-    private void writeB64(String name, byte[] value, int offset, int length,
+    private void writeB64(Tags tags, byte[] value, int offset, int length,
             boolean repeated) throws IOException
     {
-        tail = sink.writeByte(END_TAG, this,
-                sink.writeStrAscii(name, this,
-                        sink.writeByteArray(START_SLASH_TAG, this,
-                                sink.writeByteArrayB64(value, offset, length, this,
-                                        sink.writeByte(END_TAG, this,
-                                                sink.writeStrAscii(name, this,
-                                                        sink.writeByte(START_TAG, this, tail)))))));
+        tail = sink.writeByteArray(tags.end, this,
+                sink.writeByteArrayB64(value, offset, length, this,
+                        sink.writeByteArray(tags.start, this, tail)));
     }
 
     @Override
@@ -264,7 +272,7 @@ public final class XmlXOutput extends WriteSession implements Output, StatefulOu
     @Override
     public void writeByteArray(int fieldNumber, byte[] value, boolean repeated) throws IOException
     {
-        writeB64(schema.getFieldName(fieldNumber), value, 0, value.length, repeated);
+        writeB64(tags(fieldNumber), value, 0, value.length, repeated);
     }
 
     @Override
@@ -272,21 +280,16 @@ public final class XmlXOutput extends WriteSession implements Output, StatefulOu
             throws IOException
     {
         final Schema<?> lastSchema = this.schema;
+        final Tags tags = tags(fieldNumber);
         this.schema = schema;
 
-        final String name = lastSchema.getFieldName(fieldNumber);
-
         // start tag
-        tail = sink.writeByte(END_TAG, this,
-                sink.writeStrAscii(name, this,
-                        sink.writeByte(START_TAG, this, tail)));
+        tail = sink.writeByteArray(tags.start, this, tail);
 
         schema.writeTo(this, value);
 
         // end tag
-        tail = sink.writeByte(END_TAG, this,
-                sink.writeStrAscii(name, this,
-                        sink.writeByteArray(START_SLASH_TAG, this, tail)));
+        tail = sink.writeByteArray(tags.end, this, tail);
 
         // restore state
         this.schema = lastSchema;